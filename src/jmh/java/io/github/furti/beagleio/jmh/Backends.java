@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.jmh;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.DogHouse;
+
+/**
+ * Creates the Beagle for a benchmark.
+ * 
+ * <p>
+ * The backends are selected by the shortcuts of {@link DogHouse#callDog()} or by a class name. The
+ * benchmarks run all backends that work without a BeagleBone by default. Other backends can be
+ * selected on the command line, e.g. <code>-Djmh.args="-p backend=mmap"</code> on the BeagleBone.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public final class Backends
+{
+  private Backends()
+  {
+
+  }
+
+  /**
+   * @param backend a shortcut or class name accepted by {@link DogHouse#callDog()}
+   * @return the new Beagle
+   */
+  public static Beagle create(String backend)
+  {
+    String previous = System.getProperty(DogHouse.DOG_CLASS_PROPERTY);
+
+    System.setProperty(DogHouse.DOG_CLASS_PROPERTY, backend);
+
+    try
+    {
+      return DogHouse.callDog();
+    } finally
+    {
+      if (previous == null)
+      {
+        System.clearProperty(DogHouse.DOG_CLASS_PROPERTY);
+      } else
+      {
+        System.setProperty(DogHouse.DOG_CLASS_PROPERTY, previous);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+
+/**
+ * Measures how fast Pins are initialized and closed again.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LifecycleBenchmark
+{
+  private static final Pin PIN = Pin.P8_03;
+  private static final PinGroup GROUP = PinGroup.fromPins(Pin.P8_07, Pin.P8_08, Pin.P8_09,
+      Pin.P8_10, Pin.P8_11, Pin.P8_12, Pin.P8_14, Pin.P8_15);
+
+  @Param({"temporary", "inmemory"})
+  private String backend;
+
+  private Beagle beagle;
+
+  @Setup
+  public void setup()
+  {
+    beagle = Backends.create(backend);
+  }
+
+  @TearDown
+  public void release()
+  {
+    beagle.release();
+  }
+
+  @Benchmark
+  public void initializeAndClosePin()
+  {
+    beagle.initializePin(PIN, Direction.OUT);
+    beagle.closePin(PIN);
+  }
+
+  @Benchmark
+  public void initializeAndClosePins()
+  {
+    beagle.initializePins(GROUP, Direction.OUT);
+    beagle.closePins(GROUP);
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.jmh;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * Measures the operations on single Pins and on groups of Pins.
+ * 
+ * <p>
+ * The written values alternate, as Beagles may skip writes that do not change a Pin.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinBenchmark
+{
+  private static final Pin OUTPUT = Pin.P8_03;
+  private static final Pin INPUT = Pin.P8_04;
+  private static final PinGroup OUTPUTS = PinGroup.fromPins(Pin.P8_07, Pin.P8_08, Pin.P8_09,
+      Pin.P8_10, Pin.P8_11, Pin.P8_12, Pin.P8_14, Pin.P8_15);
+  private static final PinGroup INPUTS = PinGroup.fromPins(Pin.P8_16, Pin.P8_17, Pin.P8_18,
+      Pin.P8_19, Pin.P8_26, Pin.P9_12, Pin.P9_15, Pin.P9_23);
+
+  @Param({"temporary", "inmemory"})
+  private String backend;
+
+  private Beagle beagle;
+  private boolean high;
+  private long word;
+
+  @Setup
+  public void setup()
+  {
+    beagle = Backends.create(backend);
+
+    beagle.initializePin(OUTPUT, Direction.OUT);
+    beagle.initializePin(INPUT, Direction.IN);
+    beagle.initializePins(OUTPUTS, Direction.OUT);
+    beagle.initializePins(INPUTS, Direction.IN);
+  }
+
+  @TearDown
+  public void release()
+  {
+    beagle.release();
+  }
+
+  @Benchmark
+  public void setPinValue()
+  {
+    high = !high;
+    beagle.setPinValue(OUTPUT, high ? PinValue.HIGH : PinValue.LOW);
+  }
+
+  @Benchmark
+  public PinValue getPinValue()
+  {
+    return beagle.getPinValue(INPUT);
+  }
+
+  @Benchmark
+  public void setPinsValue()
+  {
+    high = !high;
+    beagle.setPinsValue(OUTPUTS, high ? PinValue.HIGH : PinValue.LOW);
+  }
+
+  @Benchmark
+  public Map<Pin, PinValue> getPinsValue()
+  {
+    return beagle.getPinsValue(INPUTS);
+  }
+
+  @Benchmark
+  public void writePins()
+  {
+    word = ~word;
+    beagle.writePins(OUTPUTS, word);
+  }
+
+  @Benchmark
+  public long readPins()
+  {
+    return beagle.readPins(INPUTS);
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+
+/**
+ * Measures the time from a change of a Pin until the change listener of its {@link PollValue} is
+ * executed. The Pin is an output that is polled, so the benchmark can change it without help from
+ * outside.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PollBenchmark
+{
+  private static final Pin PIN = Pin.P8_03;
+  private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  @Param({"temporary", "inmemory"})
+  private String backend;
+
+  private Beagle beagle;
+  private PollValue pollValue;
+  private volatile long notifications;
+  private boolean high;
+
+  @Setup
+  public void setup()
+  {
+    beagle = Backends.create(backend);
+    beagle.initializePin(PIN, Direction.OUT);
+
+    pollValue = beagle.poll(PIN);
+    pollValue.addChangeListener(() -> notifications++);
+  }
+
+  @TearDown
+  public void release()
+  {
+    beagle.release();
+  }
+
+  @Benchmark
+  public long pollToCallback()
+  {
+    long expected = notifications + 1;
+
+    high = !high;
+    beagle.setPinValue(PIN, high ? PinValue.HIGH : PinValue.LOW);
+
+    long deadline = System.nanoTime() + TIMEOUT_NANOS;
+
+    while (notifications < expected)
+    {
+      if (System.nanoTime() > deadline)
+      {
+        throw new BeagleIOException("The change of " + PIN + " was not detected", null);
+      }
+
+      Thread.yield();
+    }
+
+    return notifications;
+  }
+}
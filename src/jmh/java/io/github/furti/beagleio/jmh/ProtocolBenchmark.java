@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.gpio.bitbang.I2cMaster;
+import io.github.furti.beagleio.gpio.bitbang.OneWireMaster;
+import io.github.furti.beagleio.gpio.bitbang.SpiMaster;
+
+/**
+ * Measures the bytes per second of the bit banged protocols. An operation is a transferred byte.
+ * 
+ * <p>
+ * The SPI clock is faster than any backend can write, so it measures the raw speed of the
+ * sequences. I2C runs at 400 kHz and 1-Wire at standard speed, so they show how close the backends
+ * get to the nominal rate. The inputs are never driven, so they read as low and every I2C byte is
+ * acknowledged.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark
+{
+  private static final int SPI_BYTES = 64;
+  private static final int I2C_BYTES = 16;
+  private static final int ONE_WIRE_BYTES = 8;
+
+  private static final Pin CLOCK = Pin.P8_07;
+  private static final Pin DATA = Pin.P8_08;
+  private static final Pin SELECT = Pin.P8_09;
+  private static final Pin INPUT = Pin.P8_10;
+
+  @Param({"temporary", "inmemory"})
+  private String backend;
+
+  private Beagle beagle;
+  private SpiMaster spi;
+  private I2cMaster i2c;
+  private OneWireMaster oneWire;
+  private byte[] spiTx = new byte[SPI_BYTES];
+  private byte[] spiRx = new byte[SPI_BYTES];
+  private byte[] i2cTx = new byte[I2C_BYTES];
+  private byte[] oneWireTx = new byte[ONE_WIRE_BYTES];
+
+  @Setup
+  public void setup()
+  {
+    beagle = Backends.create(backend);
+
+    beagle.initializePins(PinGroup.fromPins(CLOCK, DATA, SELECT), Direction.OUT_HIGH);
+    beagle.initializePin(INPUT, Direction.IN);
+
+    spi = new SpiMaster(beagle, CLOCK, DATA, INPUT, SELECT, 100000000);
+    i2c = new I2cMaster(beagle, CLOCK, DATA, INPUT, 400000);
+    oneWire = new OneWireMaster(beagle, DATA, INPUT);
+
+    for (int i = 0; i < SPI_BYTES; i++)
+    {
+      spiTx[i] = (byte) (i * 37);
+    }
+
+    for (int i = 0; i < I2C_BYTES; i++)
+    {
+      i2cTx[i] = (byte) (i * 37);
+    }
+
+    for (int i = 0; i < ONE_WIRE_BYTES; i++)
+    {
+      oneWireTx[i] = (byte) (i * 37);
+    }
+  }
+
+  @TearDown
+  public void release()
+  {
+    beagle.release();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SPI_BYTES)
+  public byte[] spiTransfer()
+  {
+    spi.transfer(spiTx, spiRx);
+
+    return spiRx;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(I2C_BYTES)
+  public void i2cWrite()
+  {
+    i2c.write(0x50, i2cTx);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ONE_WIRE_BYTES)
+  public void oneWireWrite()
+  {
+    oneWire.write(oneWireTx);
+  }
+}
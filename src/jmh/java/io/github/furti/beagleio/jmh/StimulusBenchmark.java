@@ -0,0 +1,94 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.memory.InMemoryBeagle;
+import io.github.furti.beagleio.gpio.stimulus.StimulusEngine;
+import io.github.furti.beagleio.gpio.stimulus.Waveforms;
+
+/**
+ * Measures how many edges per second the {@link StimulusEngine} drives on an
+ * {@link InMemoryBeagle} when the edges follow each other without delay. A change listener is
+ * registered, so the edges are delivered to the application too.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StimulusBenchmark
+{
+  private static final int EDGES = 100000;
+  private static final Pin PIN = Pin.P8_03;
+
+  private InMemoryBeagle beagle;
+  private volatile long notifications;
+
+  @Setup
+  public void setup()
+  {
+    beagle = new InMemoryBeagle();
+    beagle.initializePin(PIN, Direction.IN);
+
+    PollValue pollValue = beagle.poll(PIN);
+    pollValue.addChangeListener(() -> notifications++);
+  }
+
+  @TearDown
+  public void release()
+  {
+    beagle.release();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EDGES)
+  public long driveEdges() throws InterruptedException
+  {
+    try (StimulusEngine engine = new StimulusEngine(beagle))
+    {
+      engine.add(PIN, Waveforms.squareWave(2, EDGES));
+      engine.start();
+
+      if (!engine.await(1, TimeUnit.MINUTES))
+      {
+        throw new BeagleIOException("The stimulus did not end", null);
+      }
+
+      return notifications;
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import java.util.Arrays;
+
+/**
+ * The values for a set of Pins grouped by their GPIO bank.
+ * 
+ * <p>
+ * For each bank the mask contains the Pins to change and the bits contain the values to set. A set
+ * bit means {@link PinValue#HIGH}. Implementations that can access a whole bank at once can apply
+ * all changes of a bank together, so the Pins change at the same time.
+ * </p>
+ * 
+ * <p>
+ * A BankMask is mutable and can be reused to avoid allocations when the same Pins are written over
+ * and over again.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class BankMask
+{
+  /**
+   * The number of GPIO banks on the BeagleBone Black.
+   */
+  public static final int BANK_COUNT = 4;
+
+  private int[] masks = new int[BANK_COUNT];
+  private int[] bits = new int[BANK_COUNT];
+
+  /**
+   * Adds the Pin with the value. If the Pin was added before, its value is replaced.
+   * 
+   * @param pin the Pin to change
+   * @param value the value to set
+   * @return the instance for a fluent API
+   */
+  public BankMask set(Pin pin, PinValue value)
+  {
+    int bank = pin.getBank();
+    int mask = pin.getBankMask();
+
+    masks[bank] |= mask;
+
+    if (value == PinValue.HIGH)
+    {
+      bits[bank] |= mask;
+    } else
+    {
+      bits[bank] &= ~mask;
+    }
+
+    return this;
+  }
+
+  /**
+   * Removes the Pin.
+   * 
+   * @param pin the Pin that should not be changed
+   * @return the instance for a fluent API
+   */
+  public BankMask remove(Pin pin)
+  {
+    masks[pin.getBank()] &= ~pin.getBankMask();
+    bits[pin.getBank()] &= ~pin.getBankMask();
+
+    return this;
+  }
+
+  /**
+   * @return a new BankMask with the same Pins and values.
+   */
+  public BankMask copy()
+  {
+    return copyTo(new BankMask());
+  }
+
+  /**
+   * Replaces the Pins and values of the target with the ones of this BankMask.
+   * 
+   * @param target the BankMask to overwrite
+   * @return the target for a fluent API
+   */
+  public BankMask copyTo(BankMask target)
+  {
+    System.arraycopy(masks, 0, target.masks, 0, BANK_COUNT);
+    System.arraycopy(bits, 0, target.bits, 0, BANK_COUNT);
+
+    return target;
+  }
+
+  /**
+   * Removes all Pins.
+   * 
+   * @return the instance for a fluent API
+   */
+  public BankMask clear()
+  {
+    Arrays.fill(masks, 0);
+    Arrays.fill(bits, 0);
+
+    return this;
+  }
+
+  /**
+   * @param pin the Pin
+   * @return true if the Pin was added.
+   */
+  public boolean contains(Pin pin)
+  {
+    return (masks[pin.getBank()] & pin.getBankMask()) != 0;
+  }
+
+  /**
+   * @return the added Pins in the order of their kernel numbers.
+   */
+  public PinGroup toPinGroup()
+  {
+    int count = 0;
+
+    for (int mask : masks)
+    {
+      count += Integer.bitCount(mask);
+    }
+
+    Pin[] pins = new Pin[count];
+    int index = 0;
+
+    for (int bank = 0; bank < BANK_COUNT; bank++)
+    {
+      int mask = masks[bank];
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        pins[index++] = Pin.forKernelNumber(bank * 32 + bit);
+      }
+    }
+
+    return PinGroup.fromPins(pins);
+  }
+
+  /**
+   * @param bank the bank
+   * @return the Pins of the bank that should be changed.
+   */
+  public int getMask(int bank)
+  {
+    return masks[bank];
+  }
+
+  /**
+   * @param bank the bank
+   * @return the values for the Pins in the mask. Bits outside of the mask are always 0.
+   */
+  public int getBits(int bank)
+  {
+    return bits[bank];
+  }
+
+  /**
+   * @param bank the bank
+   * @return the Pins of the bank that should be set to {@link PinValue#HIGH}.
+   */
+  public int getHighMask(int bank)
+  {
+    return masks[bank] & bits[bank];
+  }
+
+  /**
+   * @param bank the bank
+   * @return the Pins of the bank that should be set to {@link PinValue#LOW}.
+   */
+  public int getLowMask(int bank)
+  {
+    return masks[bank] & ~bits[bank];
+  }
+
+  /**
+   * @return true if no Pin was added.
+   */
+  public boolean isEmpty()
+  {
+    for (int mask : masks)
+    {
+      if (mask != 0)
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder builder = new StringBuilder("BankMask [");
+
+    for (int bank = 0; bank < BANK_COUNT; bank++)
+    {
+      if (bank > 0)
+      {
+        builder.append(", ");
+      }
+
+      builder.append(bank).append('=').append(Integer.toHexString(masks[bank])).append('/')
+          .append(Integer.toHexString(bits[bank]));
+    }
+
+    return builder.append(']').toString();
+  }
+}
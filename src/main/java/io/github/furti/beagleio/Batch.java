@@ -0,0 +1,304 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects operations on several Pins and executes them together with {@link #commit()}.
+ * 
+ * <p>
+ * Operations are not executed in the order they were added. The Pins to initialize are grouped by
+ * their direction and active low flag and initialized with
+ * {@link Beagle#initializePins(PinGroup, Direction, boolean)}, all values are merged into a single
+ * {@link BankMask} for {@link Beagle#writeBanks(BankMask)} and the Pins to close are closed with
+ * {@link Beagle#closePins(PinGroup)}. So each Beagle can merge the operations as far as it is able
+ * to, e.g. write a whole bank at once or request the lines of several Pins with one ioctl.
+ * </p>
+ * 
+ * <p>
+ * The order of the operations on a single Pin is kept. If a Pin is set after it was closed, or
+ * initialized again, the operations that follow are executed in a step of their own after the
+ * operations added before. Setting a Pin twice in the same step only writes the last value.
+ * </p>
+ * 
+ * <p>
+ * A Batch is not thread safe. It can be reused after it was committed.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class Batch
+{
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  private Beagle beagle;
+  private List<Step> steps = new ArrayList<>();
+  private int stepCount;
+
+  /**
+   * @param beagle the Beagle that executes the operations.
+   */
+  public Batch(Beagle beagle)
+  {
+    this.beagle = beagle;
+  }
+
+  /**
+   * Initializes the Pin with activeLow = false.
+   * 
+   * @param pin the Pin to initialize
+   * @param direction the direction to set for the Pin
+   * @return the instance for a fluent API
+   */
+  public Batch initializePin(Pin pin, Direction direction)
+  {
+    return initializePin(pin, direction, false);
+  }
+
+  /**
+   * @param pin the Pin to initialize
+   * @param direction the direction to set for the Pin
+   * @param activeLow if set to true the logic for high and low for this Pin will be reversed
+   * @return the instance for a fluent API
+   * @see Beagle#initializePin(Pin, Direction, boolean)
+   */
+  public Batch initializePin(Pin pin, Direction direction, boolean activeLow)
+  {
+    Step step = currentStep();
+
+    if (step.initialized.contains(pin) || step.values.contains(pin) || step.closes.contains(pin))
+    {
+      step = nextStep();
+    }
+
+    step.initialized.set(pin, PinValue.HIGH);
+    step.getInits(direction, activeLow).set(pin, PinValue.HIGH);
+
+    return this;
+  }
+
+  /**
+   * @param pins the Pins to initialize
+   * @param direction the direction to set for the Pins
+   * @param activeLow if set to true the logic for high and low for the Pins will be reversed
+   * @return the instance for a fluent API
+   */
+  public Batch initializePins(PinGroup pins, Direction direction, boolean activeLow)
+  {
+    for (Pin pin : pins.getPins())
+    {
+      initializePin(pin, direction, activeLow);
+    }
+
+    return this;
+  }
+
+  /**
+   * @param pin the Pin to set the value for
+   * @param value the value to set
+   * @return the instance for a fluent API
+   */
+  public Batch setPinValue(Pin pin, PinValue value)
+  {
+    Step step = currentStep();
+
+    if (step.closes.contains(pin))
+    {
+      step = nextStep();
+    }
+
+    step.values.set(pin, value);
+
+    return this;
+  }
+
+  /**
+   * @param pins the Pins to set the value for
+   * @param value the value to set
+   * @return the instance for a fluent API
+   */
+  public Batch setPinsValue(PinGroup pins, PinValue value)
+  {
+    for (Pin pin : pins.getPins())
+    {
+      setPinValue(pin, value);
+    }
+
+    return this;
+  }
+
+  /**
+   * @param pins the Pins to write. Must not contain more than {@link PinGroup#MAX_WORD_SIZE} Pins.
+   * @param word the values for the Pins. The first Pin gets the lowest bit of the word.
+   * @return the instance for a fluent API
+   * @throws IllegalArgumentException if the group is too large for a word.
+   */
+  public Batch writePins(PinGroup pins, long word) throws IllegalArgumentException
+  {
+    pins.checkWordSize();
+
+    for (int i = 0; i < pins.size(); i++)
+    {
+      setPinValue(pins.getPins().get(i), (word & (1L << i)) != 0 ? PinValue.HIGH : PinValue.LOW);
+    }
+
+    return this;
+  }
+
+  /**
+   * @param pin the Pin to close
+   * @return the instance for a fluent API
+   */
+  public Batch closePin(Pin pin)
+  {
+    Step step = currentStep();
+
+    if (step.closes.contains(pin))
+    {
+      step = nextStep();
+    }
+
+    step.closes.set(pin, PinValue.HIGH);
+
+    return this;
+  }
+
+  /**
+   * @param pins the Pins to close
+   * @return the instance for a fluent API
+   */
+  public Batch closePins(PinGroup pins)
+  {
+    for (Pin pin : pins.getPins())
+    {
+      closePin(pin);
+    }
+
+    return this;
+  }
+
+  /**
+   * @return true if no operation was added since the last commit.
+   */
+  public boolean isEmpty()
+  {
+    return stepCount == 0;
+  }
+
+  /**
+   * Executes all operations added since the last commit. The batch is empty afterwards, even if an
+   * operation failed. Operations executed before the failed one are not undone.
+   * 
+   * @throws BeagleIOException if an operation fails.
+   */
+  public void commit() throws BeagleIOException
+  {
+    try
+    {
+      for (int i = 0; i < stepCount; i++)
+      {
+        steps.get(i).execute(beagle);
+      }
+    } finally
+    {
+      for (int i = 0; i < stepCount; i++)
+      {
+        steps.get(i).clear();
+      }
+
+      stepCount = 0;
+    }
+  }
+
+  private Step currentStep()
+  {
+    return stepCount == 0 ? nextStep() : steps.get(stepCount - 1);
+  }
+
+  private Step nextStep()
+  {
+    if (stepCount == steps.size())
+    {
+      steps.add(new Step());
+    }
+
+    return steps.get(stepCount++);
+  }
+
+  /**
+   * Operations that can be executed together. The Pins are initialized first, then written and
+   * closed at last.
+   * 
+   * @author Daniel
+   *
+   */
+  private static class Step
+  {
+    private BankMask[] inits = new BankMask[DIRECTIONS.length * 2];
+    private BankMask initialized = new BankMask();
+    private BankMask values = new BankMask();
+    private BankMask closes = new BankMask();
+
+    public BankMask getInits(Direction direction, boolean activeLow)
+    {
+      int index = direction.ordinal() * 2 + (activeLow ? 1 : 0);
+
+      if (inits[index] == null)
+      {
+        inits[index] = new BankMask();
+      }
+
+      return inits[index];
+    }
+
+    public void execute(Beagle beagle)
+    {
+      for (int index = 0; index < inits.length; index++)
+      {
+        if (inits[index] != null && !inits[index].isEmpty())
+        {
+          beagle.initializePins(inits[index].toPinGroup(), DIRECTIONS[index / 2], index % 2 == 1);
+        }
+      }
+
+      if (!values.isEmpty())
+      {
+        beagle.writeBanks(values);
+      }
+
+      if (!closes.isEmpty())
+      {
+        beagle.closePins(closes.toPinGroup());
+      }
+    }
+
+    public void clear()
+    {
+      for (BankMask init : inits)
+      {
+        if (init != null)
+        {
+          init.clear();
+        }
+      }
+
+      initialized.clear();
+      values.clear();
+      closes.clear();
+    }
+  }
+}
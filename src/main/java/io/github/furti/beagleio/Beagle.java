@@ -101,14 +101,54 @@ public interface Beagle
   void setPinValue(Pin pin, PinValue value);
 
   /**
+   * Sets the value for all Pins of the group. The Pins are grouped by bank and written with
+   * {@link #writeBanks(BankMask)}.
+   * 
    * @param pins The Pins to set the value for
    * @param value The value to set for the pins
    */
   default void setPinsValue(PinGroup pins, PinValue value)
   {
-    for (Pin pin : pins.getPins())
+    this.writeBanks(pins.toBankMask(value));
+  }
+
+  /**
+   * Writes a word to the Pins of the group. The first Pin gets the lowest bit of the word.
+   * 
+   * @param pins the Pins to write. Must not contain more than {@link PinGroup#MAX_WORD_SIZE} Pins.
+   * @param word the values for the Pins. A set bit means {@link PinValue#HIGH}.
+   * @throws IllegalArgumentException if the group is too large for a word.
+   */
+  default void writePins(PinGroup pins, long word) throws IllegalArgumentException
+  {
+    this.writeBanks(pins.toBankMask(word));
+  }
+
+  /**
+   * Applies the values of all Pins in the mask.
+   * 
+   * <p>
+   * Implementations that can access a whole bank at once must change all Pins of a bank together.
+   * Otherwise the Pins are written one after another, bank by bank, in the order of their kernel
+   * numbers.
+   * </p>
+   * 
+   * @param banks the Pins and the values to set.
+   */
+  default void writeBanks(BankMask banks)
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
     {
-      this.setPinValue(pin, value);
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        this.setPinValue(Pin.forKernelNumber(bank * 32 + bit),
+            (banks.getBits(bank) & (1 << bit)) != 0 ? PinValue.HIGH : PinValue.LOW);
+      }
     }
   }
 
@@ -134,6 +174,33 @@ public interface Beagle
     return result;
   }
 
+  /**
+   * Reads the Pins of the group as a word. The first Pin is read into the lowest bit of the word.
+   * 
+   * @param pins the Pins to read. Must not contain more than {@link PinGroup#MAX_WORD_SIZE} Pins.
+   * @return the values of the Pins. A set bit means {@link PinValue#HIGH}.
+   * @throws IllegalArgumentException if the group is too large for a word.
+   */
+  default long readPins(PinGroup pins) throws IllegalArgumentException
+  {
+    pins.checkWordSize();
+
+    long word = 0;
+    int bit = 0;
+
+    for (Pin pin : pins.getPins())
+    {
+      if (this.getPinValue(pin) == PinValue.HIGH)
+      {
+        word |= 1L << bit;
+      }
+
+      bit++;
+    }
+
+    return word;
+  }
+
   /**
    * Unlike {@link #getPinValue(Pin)} poll listens for changes on the Pins value and updates the
    * {@link PollValue} accordingly. Depending on the operating system and the duration of a value
@@ -161,6 +228,51 @@ public interface Beagle
    */
   PollValue poll(Pin pin);
 
+  /**
+   * Starts polling the Pin like {@link #poll(Pin)} does, but gives access to every change instead of
+   * the latest value only. Each call returns a new cursor with its own position, so several
+   * consumers can read the changes independently.
+   * 
+   * @param pin The Pin to read the changes for.
+   * @return A cursor that reads all changes of the Pin from now on.
+   */
+  default PinEventCursor events(Pin pin)
+  {
+    return poll(pin).events();
+  }
+
+  /**
+   * Implementations may remember the state they wrote to a Pin and skip writes that would not
+   * change it. The value of an output may be served from memory too. Use this method to turn this
+   * off for a Pin that is changed by someone else.
+   * 
+   * @param pin the Pin
+   * @param cached false to always access the Pin
+   */
+  default void setCached(Pin pin, boolean cached)
+  {
+  }
+
+  /**
+   * Forgets the remembered state of the Pin, so the next operations access the Pin again.
+   * 
+   * @param pin the Pin
+   */
+  default void refresh(Pin pin)
+  {
+  }
+
+  /**
+   * Creates a {@link Batch} that collects operations on several Pins and executes them together
+   * when it is committed. This turns many round trips to the hardware into a few.
+   *
+   * @return a new, empty batch for this Beagle.
+   */
+  default Batch batch()
+  {
+    return new Batch(this);
+  }
+
   /**
    * Closes the Pin so that it can be used for other purposes.
    * 
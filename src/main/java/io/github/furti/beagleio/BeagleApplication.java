@@ -15,6 +15,10 @@ package io.github.furti.beagleio;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import io.github.furti.beagleio.gpio.util.PreciseWait;
 
 /**
  * Main Entry Point for BeagleIO Applications.
@@ -24,9 +28,17 @@ import java.util.List;
  */
 public abstract class BeagleApplication
 {
+  private static final long NO_TIMER = Long.MAX_VALUE;
+
   private Beagle beagle;
-  private boolean running;
+  private volatile boolean running;
   private List<PinListener> listeners = new ArrayList<>();
+  private Runnable changeListener = this::wakeUp;
+  private volatile Thread loopThread;
+  private volatile boolean wakeUpRequested;
+  private long timerDeadline = NO_TIMER;
+  private volatile ProcessImageBeagle processImage;
+  private volatile CycleStatistics cycleStatistics;
 
   /**
    * Actually starts the application.
@@ -68,11 +80,43 @@ public abstract class BeagleApplication
   }
 
   /**
-   * @return The Beagle instance used for this application.
+   * @return The Beagle instance used for this application. In {@link LoopMode#SCAN_CYCLE} this is
+   *         the same process image that is passed to the run method.
    */
   protected final Beagle getBeagle()
   {
-    return beagle;
+    ProcessImageBeagle image = processImage;
+
+    return image != null ? image : beagle;
+  }
+
+  /**
+   * Implementations may override this method to choose how the main loop is executed.
+   * 
+   * @return the mode of the main loop. {@link LoopMode#CONTINUOUS} by default.
+   */
+  protected LoopMode getLoopMode()
+  {
+    return LoopMode.CONTINUOUS;
+  }
+
+  /**
+   * Implementations may override this method to change the period of the {@link LoopMode#SCAN_CYCLE}.
+   * 
+   * @return the time between the start of two cycles in nanoseconds. 1 millisecond by default.
+   */
+  protected long getCyclePeriodNanos()
+  {
+    return TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * @return the timing of the cycles in {@link LoopMode#SCAN_CYCLE} or null if the application runs
+   *         in another mode or was not started yet.
+   */
+  public final CycleStatistics getCycleStatistics()
+  {
+    return cycleStatistics;
   }
 
   /**
@@ -83,9 +127,43 @@ public abstract class BeagleApplication
     PinListener pinListener = new PinListener(pin, beagle);
     listeners.add(pinListener);
 
+    if (getLoopMode() == LoopMode.EVENT_DRIVEN)
+    {
+      pinListener.getPollValue().addChangeListener(changeListener);
+    }
+
     return pinListener;
   }
 
+  /**
+   * Wakes up the main loop if it is sleeping in {@link LoopMode#EVENT_DRIVEN}. The run method will
+   * be called once more even if no Pin changed. It is safe to call this method from any thread.
+   */
+  protected final void wakeUp()
+  {
+    wakeUpRequested = true;
+
+    Thread thread = loopThread;
+
+    if (thread != null)
+    {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Sets a timer that wakes up the main loop in {@link LoopMode#EVENT_DRIVEN} after the delay. Only
+   * one timer is active. Setting a new one replaces the former. Must be called from the main loop,
+   * e.g. from the run method.
+   * 
+   * @param delay the time to wait
+   * @param unit the unit of the delay
+   */
+  protected final void wakeUpAfter(long delay, TimeUnit unit)
+  {
+    timerDeadline = System.nanoTime() + unit.toNanos(delay);
+  }
+
   /**
    * This is the place to do initialization stuff. For Example one can initialize all required Pins
    * here.
@@ -131,6 +209,21 @@ public abstract class BeagleApplication
   {
     running = true;
 
+    switch (getLoopMode())
+    {
+      case EVENT_DRIVEN:
+        startEventLoop();
+        break;
+      case SCAN_CYCLE:
+        startScanCycleLoop();
+        break;
+      default:
+        startContinuousLoop();
+    }
+  }
+
+  private void startContinuousLoop()
+  {
     while (running)
     {
       // Execute all Listeners before running the applications run method
@@ -140,6 +233,129 @@ public abstract class BeagleApplication
     }
   }
 
+  private void startEventLoop()
+  {
+    loopThread = Thread.currentThread();
+
+    try
+    {
+      while (running)
+      {
+        wakeUpRequested = false;
+
+        // Only the listeners of changed Pins must be executed
+        for (PinListener listener : listeners)
+        {
+          if (listener.isChanged())
+          {
+            listener.execute();
+          }
+        }
+
+        running = running && run(beagle);
+
+        if (running)
+        {
+          awaitWakeUp();
+        }
+      }
+    } finally
+    {
+      loopThread = null;
+    }
+  }
+
+  private void startScanCycleLoop()
+  {
+    long period = getCyclePeriodNanos();
+    ProcessImageBeagle image = new ProcessImageBeagle(beagle);
+    CycleStatistics statistics = new CycleStatistics(period);
+
+    processImage = image;
+    cycleStatistics = statistics;
+
+    try
+    {
+      long deadline = System.nanoTime();
+
+      while (running)
+      {
+        long start = PreciseWait.until(deadline);
+        long jitter = start - deadline;
+
+        // Read all inputs first, so every listener and the run method see the same image
+        for (PinListener listener : listeners)
+        {
+          listener.sample();
+          image.setInput(listener.getPin(), listener.getSampledValue());
+        }
+
+        for (PinListener listener : listeners)
+        {
+          listener.dispatch();
+        }
+
+        running = running && run(image);
+
+        image.flush();
+
+        long end = System.nanoTime();
+        deadline += period;
+
+        boolean overrun = end - deadline > 0;
+
+        if (overrun)
+        {
+          // Skip the cycles we missed instead of running them back to back
+          deadline += ((end - deadline) / period + 1) * period;
+        }
+
+        statistics.record(jitter, end - start, overrun);
+      }
+    } finally
+    {
+      processImage = null;
+    }
+  }
+
+  /**
+   * Parks the main loop until a Pin changed, the timer expired or a wake up was requested.
+   */
+  private void awaitWakeUp()
+  {
+    while (running && !wakeUpRequested && !hasChangedListener())
+    {
+      if (timerDeadline == NO_TIMER)
+      {
+        LockSupport.park(this);
+      } else
+      {
+        long remaining = timerDeadline - System.nanoTime();
+
+        if (remaining <= 0)
+        {
+          timerDeadline = NO_TIMER;
+          return;
+        }
+
+        LockSupport.parkNanos(this, remaining);
+      }
+    }
+  }
+
+  private boolean hasChangedListener()
+  {
+    for (PinListener listener : listeners)
+    {
+      if (listener.isChanged())
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   /**
    * 
    */
@@ -151,6 +367,7 @@ public abstract class BeagleApplication
   private void onShutdown()
   {
     running = false;
+    wakeUp();
 
     try
     {
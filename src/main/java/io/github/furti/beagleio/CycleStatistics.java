@@ -0,0 +1,166 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+/**
+ * Timing statistics of the scan cycles of a {@link BeagleApplication} running in
+ * {@link LoopMode#SCAN_CYCLE}.
+ * 
+ * <p>
+ * The statistics are written by the main loop only and can be read from any other thread. All times
+ * are in nanoseconds.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class CycleStatistics
+{
+  private long periodNanos;
+  private volatile long cycleCount;
+  private volatile long overrunCount;
+  private volatile long lastCycleNanos;
+  private volatile long maxCycleNanos;
+  private volatile long totalCycleNanos;
+  private volatile long lastJitterNanos;
+  private volatile long maxJitterNanos;
+  private volatile long totalJitterNanos;
+
+  /**
+   * @param periodNanos the time available for each cycle
+   */
+  public CycleStatistics(long periodNanos)
+  {
+    this.periodNanos = periodNanos;
+  }
+
+  /**
+   * Records a finished cycle.
+   * 
+   * @param jitterNanos how late the cycle started
+   * @param cycleNanos how long the cycle took from input sampling to output flushing
+   * @param overrun true if the cycle ended after the next one should have started
+   */
+  void record(long jitterNanos, long cycleNanos, boolean overrun)
+  {
+    lastJitterNanos = jitterNanos;
+    totalJitterNanos += jitterNanos;
+
+    if (jitterNanos > maxJitterNanos)
+    {
+      maxJitterNanos = jitterNanos;
+    }
+
+    lastCycleNanos = cycleNanos;
+    totalCycleNanos += cycleNanos;
+
+    if (cycleNanos > maxCycleNanos)
+    {
+      maxCycleNanos = cycleNanos;
+    }
+
+    if (overrun)
+    {
+      overrunCount++;
+    }
+
+    cycleCount++;
+  }
+
+  /**
+   * @return the time available for each cycle.
+   */
+  public long getPeriodNanos()
+  {
+    return periodNanos;
+  }
+
+  /**
+   * @return the number of cycles executed so far.
+   */
+  public long getCycleCount()
+  {
+    return cycleCount;
+  }
+
+  /**
+   * @return the number of cycles that ended after the next cycle should have started. The cycles
+   *         that should have started in the meantime are skipped.
+   */
+  public long getOverrunCount()
+  {
+    return overrunCount;
+  }
+
+  /**
+   * @return the duration of the last cycle.
+   */
+  public long getLastCycleNanos()
+  {
+    return lastCycleNanos;
+  }
+
+  /**
+   * @return the duration of the longest cycle.
+   */
+  public long getMaxCycleNanos()
+  {
+    return maxCycleNanos;
+  }
+
+  /**
+   * @return the average duration of a cycle.
+   */
+  public long getAverageCycleNanos()
+  {
+    long count = cycleCount;
+
+    return count == 0 ? 0 : totalCycleNanos / count;
+  }
+
+  /**
+   * @return how late the last cycle started.
+   */
+  public long getLastJitterNanos()
+  {
+    return lastJitterNanos;
+  }
+
+  /**
+   * @return the latest start of a cycle.
+   */
+  public long getMaxJitterNanos()
+  {
+    return maxJitterNanos;
+  }
+
+  /**
+   * @return how late a cycle started on average.
+   */
+  public long getAverageJitterNanos()
+  {
+    long count = cycleCount;
+
+    return count == 0 ? 0 : totalJitterNanos / count;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "CycleStatistics [periodNanos=" + periodNanos + ", cycleCount=" + cycleCount
+        + ", overrunCount=" + overrunCount + ", averageCycleNanos=" + getAverageCycleNanos()
+        + ", maxCycleNanos=" + maxCycleNanos + ", averageJitterNanos=" + getAverageJitterNanos()
+        + ", maxJitterNanos=" + maxJitterNanos + "]";
+  }
+}
@@ -13,7 +13,10 @@
  */
 package io.github.furti.beagleio;
 
+import io.github.furti.beagleio.gpio.chardev.CharacterDeviceBeagle;
 import io.github.furti.beagleio.gpio.local.LocalBeagle;
+import io.github.furti.beagleio.gpio.memory.InMemoryBeagle;
+import io.github.furti.beagleio.gpio.mmap.MemoryMappedBeagle;
 import io.github.furti.beagleio.gpio.remote.RemoteBeagle;
 import io.github.furti.beagleio.gpio.temporary.TemporaryFilesystemBeagle;
 
@@ -39,14 +42,21 @@ public final class DogHouse
    * beagleio.dogclass specifies the full Classname of a class implementing the {@link Beagle}
    * interface.
    * 
-   * There are three shortcuts available for this property.
+   * There are some shortcuts available for this property.
    * 
    * <ul>
    * <li><b>local</b>: Instantiates a {@link LocalBeagle} that operates on the local System</li>
+   * <li><b>mmap</b>: Instantiates a {@link MemoryMappedBeagle} that accesses the GPIO registers of
+   * the local System directly</li>
+   * <li><b>chardev</b>: Instantiates a {@link CharacterDeviceBeagle} that uses the GPIO character
+   * devices of the local System</li>
    * <li><b>remote</b>: Instantiates a {@link RemoteBeagle} that sends all operations over the
    * network to an remote BeagleBone</li>
-   * <li><b>inmemory</b>: Instantiates A {@link TemporaryFilesystemBeagle} that is a dummy implementation for
-   * Development Systems that do not contain a GPIO System.</li>
+   * <li><b>temporary</b>: Instantiates a {@link TemporaryFilesystemBeagle} that is a dummy
+   * implementation for Development Systems that do not contain a GPIO System.</li>
+   * <li><b>inmemory</b>: Instantiates an {@link InMemoryBeagle} that keeps the state of the Pins on
+   * the heap. Like the temporary Beagle it needs no GPIO System, but it does not touch the
+   * filesystem at all.</li>
    * </ul>
    * 
    * @return a new Beagle to use for accessing the GPIO System.
@@ -70,6 +80,15 @@ public final class DogHouse
         case "temporary":
           dogClass = TemporaryFilesystemBeagle.class;
           break;
+        case "inmemory":
+          dogClass = InMemoryBeagle.class;
+          break;
+        case "mmap":
+          dogClass = MemoryMappedBeagle.class;
+          break;
+        case "chardev":
+          dogClass = CharacterDeviceBeagle.class;
+          break;
         case "remote":
           dogClass = RemoteBeagle.class;
           break;
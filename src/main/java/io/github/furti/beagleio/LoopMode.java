@@ -0,0 +1,46 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+/**
+ * The ways a {@link BeagleApplication} can execute its main loop.
+ * 
+ * @author Daniel
+ *
+ */
+public enum LoopMode
+{
+  /**
+   * The listeners and the run method are executed over and over again without any pause. This
+   * reacts fast but keeps a CPU core busy all the time.
+   */
+  CONTINUOUS,
+
+  /**
+   * The loop sleeps until a listened Pin changes, a timer set with
+   * {@link BeagleApplication#wakeUpAfter(long, java.util.concurrent.TimeUnit)} expires or
+   * {@link BeagleApplication#wakeUp()} is called. Then only the listeners of the changed Pins and
+   * the run method are executed. No CPU is used while nothing happens.
+   */
+  EVENT_DRIVEN,
+
+  /**
+   * The loop is executed at a fixed period like the scan cycle of a PLC. At the start of each cycle
+   * all listened Pins are read into an input image, then the listeners and the run method are
+   * executed and at the end of the cycle all values set in the meantime are written together. The
+   * period is defined by {@link BeagleApplication#getCyclePeriodNanos()} and the timing of the
+   * cycles is recorded in {@link BeagleApplication#getCycleStatistics()}.
+   */
+  SCAN_CYCLE;
+}
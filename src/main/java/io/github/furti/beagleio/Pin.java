@@ -34,6 +34,16 @@ public enum Pin
 
   P9_30(112), P9_31(110), LED_USR0(53), LED_USR1(54), LED_USR2(55), LED_USR3(56);
 
+  private static final Pin[] BY_KERNEL_NUMBER = new Pin[BankMask.BANK_COUNT * 32];
+
+  static
+  {
+    for (Pin pin : values())
+    {
+      BY_KERNEL_NUMBER[pin.kernelNumber] = pin;
+    }
+  }
+
   private Integer kernelNumber;
 
   private Pin(Integer kernelNumber)
@@ -48,4 +58,34 @@ public enum Pin
   {
     return kernelNumber;
   }
+
+  /**
+   * @return the GPIO bank the Pin belongs to. Each bank controls 32 Pins.
+   */
+  public int getBank()
+  {
+    return kernelNumber >> 5;
+  }
+
+  /**
+   * @return the mask with the bit of the Pin set in the registers of its bank.
+   */
+  public int getBankMask()
+  {
+    return 1 << (kernelNumber & 31);
+  }
+
+  /**
+   * @param kernelNumber the number of the GPIO in the kernel
+   * @return the Pin with the kernel number or null if no header Pin is connected to the GPIO.
+   */
+  public static Pin forKernelNumber(int kernelNumber)
+  {
+    if (kernelNumber < 0 || kernelNumber >= BY_KERNEL_NUMBER.length)
+    {
+      return null;
+    }
+
+    return BY_KERNEL_NUMBER[kernelNumber];
+  }
 }
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+/**
+ * A change of a Pins value.
+ * 
+ * <p>
+ * Instances are meant to be reused. The reader passes the same PinEvent every time it reads a
+ * change, so no allocation is needed.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class PinEvent
+{
+  private PinValue value;
+  private long sequence;
+  private long timestamp;
+
+  /**
+   * @param value the value of the Pin after the change
+   * @param sequence the number of the change
+   * @param timestamp the time of the change
+   * @return the instance for a fluent API
+   */
+  public PinEvent set(PinValue value, long sequence, long timestamp)
+  {
+    this.value = value;
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+
+    return this;
+  }
+
+  /**
+   * @return the value of the Pin after the change.
+   */
+  public PinValue getValue()
+  {
+    return value;
+  }
+
+  /**
+   * @return the number of the change. Changes of a Pin are numbered consecutively, so a gap between
+   *         two events tells how many changes were missed.
+   */
+  public long getSequence()
+  {
+    return sequence;
+  }
+
+  /**
+   * @return the time of the change in nanoseconds, as returned by {@link System#nanoTime()}.
+   */
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PinEvent [value=" + value + ", sequence=" + sequence + ", timestamp=" + timestamp + "]";
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+/**
+ * Reads the changes of a Pin one after another.
+ * 
+ * <p>
+ * Each cursor keeps its own position, so several consumers can read the same changes independently.
+ * The changes are stored in a buffer of fixed size. If a consumer is too slow, the oldest changes
+ * are overwritten before they are read. The cursor skips them and counts them as overrun.
+ * </p>
+ * 
+ * <p>
+ * A cursor must only be used by one thread.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public interface PinEventCursor
+{
+
+  /**
+   * Reads the next change into the event.
+   * 
+   * @param event the event to fill
+   * @return true if a change was read, false if there is no new change.
+   */
+  boolean next(PinEvent event);
+
+  /**
+   * @return the number of changes that were overwritten before this cursor could read them.
+   */
+  long getOverrunCount();
+}
@@ -31,6 +31,11 @@ import java.util.List;
  */
 public class PinGroup
 {
+  /**
+   * The maximum number of Pins that can be written and read as a word.
+   */
+  public static final int MAX_WORD_SIZE = Long.SIZE;
+
   private List<Pin> pins;
 
   private PinGroup(List<Pin> pins)
@@ -47,7 +52,68 @@ public class PinGroup
   }
 
   /**
-   * Create a PinGroup for the list of pins. Pins will be processed in the order they are specified.
+   * @return the number of Pins in this group.
+   */
+  public int size()
+  {
+    return pins.size();
+  }
+
+  /**
+   * @param value the value for all Pins
+   * @return the Pins of this group grouped by bank with the same value for all of them.
+   */
+  public BankMask toBankMask(PinValue value)
+  {
+    BankMask banks = new BankMask();
+
+    for (Pin pin : pins)
+    {
+      banks.set(pin, value);
+    }
+
+    return banks;
+  }
+
+  /**
+   * The first Pin of the group gets the lowest bit of the word, the second Pin the next bit and so
+   * on.
+   * 
+   * @param word the values for the Pins. A set bit means {@link PinValue#HIGH}.
+   * @return the Pins of this group grouped by bank with the values from the word.
+   * @throws IllegalArgumentException if the group contains more than {@link #MAX_WORD_SIZE} Pins.
+   */
+  public BankMask toBankMask(long word) throws IllegalArgumentException
+  {
+    checkWordSize();
+
+    BankMask banks = new BankMask();
+
+    for (int i = 0; i < pins.size(); i++)
+    {
+      banks.set(pins.get(i), (word & (1L << i)) != 0 ? PinValue.HIGH : PinValue.LOW);
+    }
+
+    return banks;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the group contains more Pins than fit into a word.
+   */
+  void checkWordSize() throws IllegalArgumentException
+  {
+    if (pins.size() > MAX_WORD_SIZE)
+    {
+      throw new IllegalArgumentException("A word can hold " + MAX_WORD_SIZE
+          + " Pins but the group contains " + pins.size());
+    }
+  }
+
+  /**
+   * Create a PinGroup for the list of pins. The order of the Pins only decides which bit of a word
+   * belongs to which Pin. The Pins are written and read bank by bank, in the order of their kernel
+   * numbers, no matter in which order they are specified. Pins that must change one after another
+   * have to be written with separate calls.
    * 
    * @param pins Pins to add
    * @return the {@link PinGroup}
@@ -21,13 +21,24 @@ import java.util.function.Consumer;
  * Listens for Changes on a Pins value and executes the callbacks accordingly. The callbacks will be
  * executed immediately once when the Pins value is retrieved for the first time.
  * 
+ * <p>
+ * Changes that happened between two executions are not lost. The sequence of the {@link PollValue}
+ * tells how many changes happened since the last execution. As the value alternates with every
+ * change, the callbacks are executed for each of them in the order they happened. If the
+ * {@link PollValue} does not count the changes, only the changes of the value between two executions
+ * are detected.
+ * </p>
+ * 
  * @author Daniel
  *
  */
 public class PinListener
 {
+  private Pin pin;
   private PinValue lastValue;
+  private long lastSequence;
   private PollValue pollValue;
+  private PinEvent event = new PinEvent();
   private List<Consumer<PinValue>> callbacks = new ArrayList<>();
 
   /**
@@ -36,6 +47,7 @@ public class PinListener
    */
   public PinListener(Pin pin, Beagle beagle)
   {
+    this.pin = pin;
     pollValue = beagle.poll(pin);
   }
 
@@ -55,21 +67,95 @@ public class PinListener
     return this;
   }
 
+  /**
+   * @return true if the Pin changed since the listener was executed the last time.
+   */
+  boolean isChanged()
+  {
+    return lastValue == null || pollValue.getSequence() != lastSequence
+        || pollValue.getValue() != lastValue;
+  }
+
+  /**
+   * @return the value the listener is polling.
+   */
+  PollValue getPollValue()
+  {
+    return pollValue;
+  }
+
+  /**
+   * @return the Pin the listener is polling.
+   */
+  Pin getPin()
+  {
+    return pin;
+  }
+
+  /**
+   * @return the value read by the last call to {@link #sample()}.
+   */
+  PinValue getSampledValue()
+  {
+    return event.getValue();
+  }
+
   /**
    * Execute the listener to dedect changes
    */
   void execute()
   {
-    PinValue actualValue = pollValue.getValue();
+    sample();
+    dispatch();
+  }
+
+  /**
+   * Reads the actual value of the Pin without notifying the callbacks. Used to read all Pins first
+   * when a consistent image of the inputs is needed.
+   */
+  void sample()
+  {
+    pollValue.read(event);
+  }
+
+  /**
+   * Notifies the callbacks about the changes up to the last {@link #sample()}.
+   */
+  void dispatch()
+  {
+    PinValue actualValue = event.getValue();
+    long actualSequence = event.getSequence();
 
-    if (actualValue != lastValue)
+    if (lastValue == null)
+    {
+      notifyCallbacks(actualValue);
+    } else
     {
-      for (Consumer<PinValue> callback : callbacks)
+      /*
+       * Replay the changes we missed. The value before the last change was the opposite of the
+       * actual value and so on.
+       */
+      for (long missed = actualSequence - lastSequence - 1; missed > 0; missed--)
+      {
+        notifyCallbacks(missed % 2 == 0 ? actualValue : actualValue.opposite());
+      }
+
+      // PollValues that do not count the changes keep the sequence, so the value is compared too
+      if (actualSequence != lastSequence || actualValue != lastValue)
       {
-        callback.accept(actualValue);
+        notifyCallbacks(actualValue);
       }
+    }
+
+    lastValue = actualValue;
+    lastSequence = actualSequence;
+  }
 
-      lastValue = actualValue;
+  private void notifyCallbacks(PinValue value)
+  {
+    for (Consumer<PinValue> callback : callbacks)
+    {
+      callback.accept(value);
     }
   }
 
@@ -33,6 +33,14 @@ public enum PinValue
     return value;
   }
 
+  /**
+   * @return HIGH for LOW and LOW for HIGH
+   */
+  public PinValue opposite()
+  {
+    return this == HIGH ? LOW : HIGH;
+  }
+
   /**
    * @param readFromFile
    * @return
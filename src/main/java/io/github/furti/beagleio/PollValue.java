@@ -13,6 +13,8 @@
  */
 package io.github.furti.beagleio;
 
+import io.github.furti.beagleio.gpio.ChangeWatcher;
+
 /**
  * @author Daniel
  *
@@ -24,4 +26,79 @@ public interface PollValue
    * @return the actual value for the Pin.
    */
   PinValue getValue();
+
+  /**
+   * Each change of the value increments the sequence by one. As the value alternates with every
+   * change, a difference of two between the sequences seen by a reader means that a short pulse
+   * happened in between.
+   * 
+   * <p>
+   * Implementations that do not count the changes return 0.
+   * </p>
+   * 
+   * @return the number of changes since the Pin is polled.
+   */
+  default long getSequence()
+  {
+    return 0;
+  }
+
+  /**
+   * Implementations that do not record the time of the changes return 0. The value has no meaning
+   * then and must not be compared with {@link System#nanoTime()}.
+   * 
+   * @return the time of the last change in nanoseconds, as returned by {@link System#nanoTime()}.
+   */
+  default long getTimestamp()
+  {
+    return 0;
+  }
+
+  /**
+   * Reads the value, the sequence and the timestamp at once. Unlike calling the getters one after
+   * another, the fields are guaranteed to belong to the same change. The default implementation
+   * calls the getters, so only implementations that publish the fields atomically give this
+   * guarantee.
+   * 
+   * @param event the event to fill
+   * @return the event for a fluent API
+   */
+  default PinEvent read(PinEvent event)
+  {
+    return event.set(getValue(), getSequence(), getTimestamp());
+  }
+
+  /**
+   * Unlike the value, which only holds the latest change, a cursor reads every change in the order
+   * it happened. The default implementation lets the {@link ChangeWatcher} read the value every
+   * millisecond and record the changes. Changes in between are only seen if the sequence counts
+   * them.
+   * 
+   * @return a new cursor that reads all changes from now on.
+   */
+  default PinEventCursor events()
+  {
+    return ChangeWatcher.events(this);
+  }
+
+  /**
+   * Registers a listener that is executed every time the value changes. Listeners are executed on
+   * the thread that detected the change, so they must return quickly and must not block. The
+   * default implementation lets the {@link ChangeWatcher} read the value every millisecond and
+   * executes the listeners on its thread.
+   * 
+   * @param listener the listener to execute
+   */
+  default void addChangeListener(Runnable listener)
+  {
+    ChangeWatcher.addChangeListener(this, listener);
+  }
+
+  /**
+   * @param listener the listener to remove
+   */
+  default void removeChangeListener(Runnable listener)
+  {
+    ChangeWatcher.removeChangeListener(this, listener);
+  }
 }
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import java.util.Arrays;
+
+/**
+ * The Beagle passed to the application in {@link LoopMode#SCAN_CYCLE}.
+ * 
+ * <p>
+ * Reading a listened Pin returns the value from the input image taken at the start of the cycle, so
+ * the whole cycle works with the same inputs. Values set during the cycle are stored in the output
+ * image and written to the real Beagle by {@link #flush()} at the end of the cycle. Everything else
+ * is passed through.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+class ProcessImageBeagle implements Beagle
+{
+  private static final Pin[] PINS = Pin.values();
+
+  private Beagle beagle;
+  private PinValue[] inputs = new PinValue[PINS.length];
+  private PinValue[] outputs = new PinValue[PINS.length];
+  private int[] pendingOutputs = new int[PINS.length];
+  private int pendingCount;
+  private BankMask outputBanks = new BankMask();
+
+  /**
+   * @param beagle the Beagle that reads and writes the Pins.
+   */
+  ProcessImageBeagle(Beagle beagle)
+  {
+    this.beagle = beagle;
+  }
+
+  /**
+   * Stores the value of the Pin in the input image.
+   */
+  void setInput(Pin pin, PinValue value)
+  {
+    inputs[pin.ordinal()] = value;
+  }
+
+  /**
+   * Writes all values set since the last flush with {@link Beagle#writeBanks(BankMask)}, so the
+   * outputs of a bank change together if the Beagle supports it.
+   */
+  void flush()
+  {
+    if (pendingCount == 0)
+    {
+      return;
+    }
+
+    try
+    {
+      outputBanks.clear();
+
+      for (int i = 0; i < pendingCount; i++)
+      {
+        int ordinal = pendingOutputs[i];
+
+        outputBanks.set(PINS[ordinal], outputs[ordinal]);
+      }
+
+      beagle.writeBanks(outputBanks);
+    } finally
+    {
+      for (int i = 0; i < pendingCount; i++)
+      {
+        outputs[pendingOutputs[i]] = null;
+      }
+
+      pendingCount = 0;
+    }
+  }
+
+  @Override
+  public void initializePin(Pin pin, Direction direction, boolean activeLow)
+      throws BeagleIOException
+  {
+    beagle.initializePin(pin, direction, activeLow);
+  }
+
+  @Override
+  public void setPinValue(Pin pin, PinValue value)
+  {
+    int ordinal = pin.ordinal();
+
+    if (outputs[ordinal] == null)
+    {
+      pendingOutputs[pendingCount++] = ordinal;
+    }
+
+    outputs[ordinal] = value;
+  }
+
+  /**
+   * Returns the value set in this cycle, the value from the input image or the actual value of the
+   * Pin in this order.
+   */
+  @Override
+  public PinValue getPinValue(Pin pin)
+  {
+    PinValue value = outputs[pin.ordinal()];
+
+    if (value == null)
+    {
+      value = inputs[pin.ordinal()];
+    }
+
+    return value != null ? value : beagle.getPinValue(pin);
+  }
+
+  @Override
+  public PollValue poll(Pin pin)
+  {
+    return beagle.poll(pin);
+  }
+
+  @Override
+  public void setCached(Pin pin, boolean cached)
+  {
+    beagle.setCached(pin, cached);
+  }
+
+  @Override
+  public void refresh(Pin pin)
+  {
+    beagle.refresh(pin);
+  }
+
+  @Override
+  public void closePin(Pin pin) throws BeagleIOException
+  {
+    int ordinal = pin.ordinal();
+
+    if (outputs[ordinal] != null)
+    {
+      outputs[ordinal] = null;
+
+      int index = indexOf(ordinal);
+      System.arraycopy(pendingOutputs, index + 1, pendingOutputs, index, pendingCount - index - 1);
+      pendingCount--;
+    }
+
+    inputs[ordinal] = null;
+    beagle.closePin(pin);
+  }
+
+  @Override
+  public void release() throws BeagleIOException
+  {
+    Arrays.fill(inputs, null);
+    Arrays.fill(outputs, null);
+    pendingCount = 0;
+
+    beagle.release();
+  }
+
+  private int indexOf(int ordinal)
+  {
+    for (int i = 0; i < pendingCount; i++)
+    {
+      if (pendingOutputs[i] == ordinal)
+      {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+}
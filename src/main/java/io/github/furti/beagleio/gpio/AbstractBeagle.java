@@ -16,26 +16,58 @@ package io.github.furti.beagleio.gpio;
 import static io.github.furti.beagleio.gpio.util.BeagleAssert.isNotNull;
 import static io.github.furti.beagleio.gpio.util.BeagleAssert.isNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+import io.github.furti.beagleio.BankMask;
 import io.github.furti.beagleio.Beagle;
 import io.github.furti.beagleio.BeagleIOException;
 import io.github.furti.beagleio.Direction;
 import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
 import io.github.furti.beagleio.PinValue;
 import io.github.furti.beagleio.PollValue;
 
 /**
  * Base implementation of a Beagle that handles some common functionality.
  * 
+ * <p>
+ * The Beagle can be used from several threads. The PinManagers are stored in an array indexed by
+ * the ordinal of the Pin, so looking them up needs no lock. Each Pin has a lock of its own that
+ * serializes all operations on it. So threads working on different Pins never wait for each other.
+ * Operations on several Pins lock them in the order of their kernel numbers.
+ * </p>
+ * 
+ * <p>
+ * Values that an output already has are not written again and the values of outputs are read from
+ * the shadow state of the {@link PinManager} if it knows them. The hits and skipped writes are
+ * counted, so the saved I/O can be measured.
+ * </p>
+ * 
  * @author Daniel
  *
  */
 public abstract class AbstractBeagle implements Beagle
 {
-  private Map<Pin, PinManager> pins = new HashMap<>();
-  private Map<Pin, PollValue> activePolls = new HashMap<>();
+  private static final Pin[] PINS = Pin.values();
+
+  private AtomicReferenceArray<PinManager> pins = new AtomicReferenceArray<>(PINS.length);
+  private AtomicReferenceArray<PollValue> activePolls = new AtomicReferenceArray<>(PINS.length);
+  private ReentrantLock[] locks = new ReentrantLock[PINS.length];
+  private LongAdder cacheHits = new LongAdder();
+  private LongAdder skippedWrites = new LongAdder();
+  private ThreadLocal<BankMask> changeMasks = ThreadLocal.withInitial(BankMask::new);
+  private ThreadLocal<BankMask> lockMasks = ThreadLocal.withInitial(BankMask::new);
+
+  public AbstractBeagle()
+  {
+    for (int i = 0; i < locks.length; i++)
+    {
+      locks[i] = new ReentrantLock();
+    }
+  }
 
   /*
    * (non-Javadoc)
@@ -46,40 +78,218 @@ public abstract class AbstractBeagle implements Beagle
   public void initializePin(Pin pin, Direction direction, boolean activeLow)
       throws BeagleIOException
   {
-    isNull(pins.get(pin), "Pin %s is already initilized", pin);
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      isNull(pins.get(pin.ordinal()), "Pin %s is already initilized", pin);
 
-    PinManager pinManager = createPinManager(pin);
-    pinManager
-        .setDirection(direction)
-        .setActiveLow(activeLow)
-        .performOutstandingOperations();
+      PinManager pinManager = createPinManager(pin);
+      pinManager
+          .setDirection(direction)
+          .setActiveLow(activeLow)
+          .performOutstandingOperations();
 
-    pins.put(pin, pinManager);
+      pins.set(pin.ordinal(), pinManager);
+    } finally
+    {
+      lock.unlock();
+    }
   }
 
   @Override
   public void setPinValue(Pin pin, PinValue value)
   {
-    findPinManager(pin)
-        .setValue(value)
-        .performOutstandingOperations();
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      PinManager pinManager = findPinManager(pin);
+
+      if (pinManager.getCachedValue() == value)
+      {
+        skippedWrites.increment();
+        return;
+      }
+
+      pinManager
+          .setValue(value)
+          .performOutstandingOperations();
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * All Pins are checked before the first one is written, so either all or none of them are
+   * changed when a Pin was not initialized. The Pins stay locked until all of them are written.
+   */
+  @Override
+  public void writeBanks(BankMask banks)
+  {
+    lock(banks);
+
+    try
+    {
+      for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+      {
+        int mask = banks.getMask(bank);
+
+        while (mask != 0)
+        {
+          int bit = Integer.numberOfTrailingZeros(mask);
+          mask &= mask - 1;
+
+          findPinManager(Pin.forKernelNumber(bank * 32 + bit));
+        }
+      }
+
+      BankMask changes = withoutCachedValues(banks);
+
+      if (changes.isEmpty())
+      {
+        return;
+      }
+
+      doWriteBanks(changes);
+      valuesWritten(changes);
+    } finally
+    {
+      unlock(banks);
+    }
   }
 
   @Override
   public PinValue getPinValue(Pin pin)
   {
-    return findPinManager(pin).getValue();
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      PinManager pinManager = findPinManager(pin);
+      PinValue value = pinManager.getCachedValue();
+
+      if (value != null)
+      {
+        cacheHits.increment();
+        return value;
+      }
+
+      return pinManager.getValue();
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The Pins stay locked until all of them are read.
+   */
+  @Override
+  public long readPins(PinGroup pins)
+  {
+    List<Pin> groupPins = pins.getPins();
+    BankMask banks = lockMasks.get().clear();
+
+    for (int i = 0; i < groupPins.size(); i++)
+    {
+      banks.set(groupPins.get(i), PinValue.LOW);
+    }
+
+    lock(banks);
+
+    try
+    {
+      for (int i = 0; i < groupPins.size(); i++)
+      {
+        findPinManager(groupPins.get(i));
+      }
+
+      return doReadPins(pins);
+    } finally
+    {
+      unlock(banks);
+    }
   }
 
   @Override
   public PollValue poll(Pin pin)
   {
-    if (!activePolls.containsKey(pin))
+    PollValue pollValue = activePolls.get(pin.ordinal());
+
+    if (pollValue != null)
+    {
+      return pollValue;
+    }
+
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      pollValue = activePolls.get(pin.ordinal());
+
+      if (pollValue == null)
+      {
+        pollValue = findPinManager(pin).poll();
+        activePolls.set(pin.ordinal(), pollValue);
+      }
+
+      return pollValue;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void setCached(Pin pin, boolean cached)
+  {
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      findPinManager(pin).setCached(cached);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void refresh(Pin pin)
+  {
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      findPinManager(pin).refresh();
+    } finally
     {
-      activePolls.put(pin, findPinManager(pin).poll());
+      lock.unlock();
     }
+  }
+
+  /**
+   * @return the number of values of outputs that were served from the shadow state.
+   */
+  public long getCacheHits()
+  {
+    return cacheHits.sum();
+  }
 
-    return activePolls.get(pin);
+  /**
+   * @return the number of values that were not written because the output already had them.
+   */
+  public long getSkippedWrites()
+  {
+    return skippedWrites.sum();
   }
 
   /*
@@ -90,12 +300,21 @@ public abstract class AbstractBeagle implements Beagle
   @Override
   public void closePin(Pin pin) throws BeagleIOException
   {
-    findPinManager(pin)
-        .release()
-        .performOutstandingOperations();
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      findPinManager(pin)
+          .release()
+          .performOutstandingOperations();
 
-    pins.remove(pin);
-    activePolls.remove(pin);
+      pins.set(pin.ordinal(), null);
+      activePolls.set(pin.ordinal(), null);
+    } finally
+    {
+      lock.unlock();
+    }
   }
 
   @Override
@@ -104,14 +323,29 @@ public abstract class AbstractBeagle implements Beagle
     try
     {
       // At first we should release all pins so that all Resources are closed.
-      for (PinManager pinManager : pins.values())
+      for (Pin pin : PINS)
       {
-        pinManager
-            .release()
-            .performOutstandingOperations();
-      }
+        ReentrantLock lock = getLock(pin);
+        lock.lock();
+
+        try
+        {
+          PinManager pinManager = pins.get(pin.ordinal());
 
-      pins.clear();
+          if (pinManager != null)
+          {
+            pinManager
+                .release()
+                .performOutstandingOperations();
+
+            pins.set(pin.ordinal(), null);
+            activePolls.set(pin.ordinal(), null);
+          }
+        } finally
+        {
+          lock.unlock();
+        }
+      }
 
       // After all pins are closed we let the implementation do its custom work.
       doRelease();
@@ -126,7 +360,7 @@ public abstract class AbstractBeagle implements Beagle
    */
   private PinManager findPinManager(Pin pin)
   {
-    PinManager pinManager = pins.get(pin);
+    PinManager pinManager = pins.get(pin.ordinal());
 
     isNotNull(pinManager,
         "Pin %s was not found. Did you forgot to initialize it? Always call beagle.initializePin(pin, direction) before using a Pin.",
@@ -135,6 +369,173 @@ public abstract class AbstractBeagle implements Beagle
     return pinManager;
   }
 
+  /**
+   * Removes the Pins that already have the value from the mask. The mask is copied only if a Pin
+   * is removed. The copy is reused by the next write of the thread, so a write loop does not
+   * allocate.
+   */
+  private BankMask withoutCachedValues(BankMask banks)
+  {
+    BankMask changes = banks;
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        PinValue value = (banks.getBits(bank) & (1 << bit)) != 0 ? PinValue.HIGH : PinValue.LOW;
+        Pin pin = Pin.forKernelNumber(bank * 32 + bit);
+
+        if (pins.get(pin.ordinal()).getCachedValue() == value)
+        {
+          if (changes == banks)
+          {
+            changes = banks.copyTo(changeMasks.get());
+          }
+
+          changes.remove(pin);
+          skippedWrites.increment();
+        }
+      }
+    }
+
+    return changes;
+  }
+
+  /**
+   * Updates the shadow state of all written Pins. Implementations of
+   * {@link #doWriteBanks(BankMask)} may write the Pins without their PinManagers.
+   */
+  private void valuesWritten(BankMask banks)
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        pins.get(Pin.forKernelNumber(bank * 32 + bit).ordinal())
+            .valueWritten((banks.getBits(bank) & (1 << bit)) != 0 ? PinValue.HIGH : PinValue.LOW);
+      }
+    }
+  }
+
+  /**
+   * Locks all Pins in the mask in the order of their kernel numbers.
+   */
+  private void lock(BankMask banks)
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        getLock(Pin.forKernelNumber(bank * 32 + bit)).lock();
+      }
+    }
+  }
+
+  /**
+   * Unlocks all Pins in the mask.
+   */
+  private void unlock(BankMask banks)
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        getLock(Pin.forKernelNumber(bank * 32 + bit)).unlock();
+      }
+    }
+  }
+
+  /**
+   * Implementations that keep state per Pin outside of the PinManager can hold this lock to
+   * serialize their work with the operations on the Pin. The lock is reentrant.
+   * 
+   * @param pin the Pin
+   * @return the lock that serializes all operations on the Pin.
+   */
+  protected final ReentrantLock getLock(Pin pin)
+  {
+    return locks[pin.ordinal()];
+  }
+
+  /**
+   * Writes the values of the Pins in the mask. All Pins in the mask are initialized.
+   * 
+   * <p>
+   * By default the values are queued for all Pins first and then written one after another, bank by
+   * bank. Implementations that can write a whole bank at once should override this method.
+   * </p>
+   * 
+   * <p>
+   * The mask may be reused by the next write, so implementations must not keep it after they
+   * returned.
+   * </p>
+   * 
+   * @param banks the Pins and values to write
+   */
+  protected void doWriteBanks(BankMask banks)
+  {
+    for (int pass = 0; pass < 2; pass++)
+    {
+      for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+      {
+        int mask = banks.getMask(bank);
+
+        while (mask != 0)
+        {
+          int bit = Integer.numberOfTrailingZeros(mask);
+          mask &= mask - 1;
+
+          PinManager pinManager = pins.get(Pin.forKernelNumber(bank * 32 + bit).ordinal());
+
+          if (pass == 0)
+          {
+            pinManager.setValue((banks.getBits(bank) & (1 << bit)) != 0 ? PinValue.HIGH
+                : PinValue.LOW);
+          } else
+          {
+            pinManager.performOutstandingOperations();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the Pins of the group as a word. All Pins of the group are initialized.
+   * 
+   * <p>
+   * By default the Pins are read one after another. Implementations that can read a whole bank at
+   * once should override this method.
+   * </p>
+   * 
+   * @param pins the Pins to read
+   * @return the values of the Pins. The first Pin is read into the lowest bit.
+   */
+  protected long doReadPins(PinGroup pins)
+  {
+    return Beagle.super.readPins(pins);
+  }
+
   /**
    * @param pin
    * @return
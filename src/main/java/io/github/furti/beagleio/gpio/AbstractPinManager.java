@@ -13,21 +13,62 @@
  */
 package io.github.furti.beagleio.gpio;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.function.Consumer;
+import java.util.Arrays;
 
 import io.github.furti.beagleio.Direction;
 import io.github.furti.beagleio.PinValue;
 
 /**
+ * Queues the operations on a Pin until {@link #performOutstandingOperations()} is called and keeps
+ * a shadow of the state written to the Pin.
+ * 
+ * <p>
+ * The operations are encoded as ints in a preallocated buffer, the opcode in the upper bits and
+ * the ordinal of the argument in the lowest byte. So queuing and performing the usual operations
+ * allocates nothing. Redundant operations are coalesced while they are queued:
+ * </p>
+ * 
+ * <ul>
+ * <li>Two direction, active low or value operations in a row keep only the last one.</li>
+ * <li>A value following an output direction is folded into {@link Direction#OUT_HIGH} or
+ * {@link Direction#OUT_LOW}, so the Pin starts with the right value.</li>
+ * </ul>
+ * 
+ * <p>
+ * The shadow tracks the direction, active low and the raw level of the output as far as they are
+ * known from the performed operations. Setting a direction or active low value the Pin already has
+ * is skipped, and the value of an output can be served from the shadow.
+ * </p>
+ * 
  * @author Daniel
  *
  */
 public abstract class AbstractPinManager implements PinManager
 {
-  private List<OutstandingOperation> operations = new ArrayList<>();
+  private static final int INITIAL_CAPACITY = 8;
+
+  private static final int OPCODE_SHIFT = 8;
+  private static final int ARGUMENT_MASK = 0xFF;
+
+  private static final int DIRECTION = 1;
+  private static final int ACTIVE_LOW = 2;
+  private static final int VALUE = 3;
+  private static final int RELEASE = 4;
+  private static final int CUSTOM = 5;
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private static final PinValue[] VALUES = PinValue.values();
+
+  private static final int UNKNOWN = -1;
+
+  private int[] operations = new int[INITIAL_CAPACITY];
+  private OutstandingOperation[] customOperations = new OutstandingOperation[INITIAL_CAPACITY];
+  private int count;
+  private boolean queuedActiveLow;
+  private boolean cached = true;
+  private Direction knownDirection;
+  private int knownActiveLow = UNKNOWN;
+  private int knownLevel = UNKNOWN;
 
   /*
    * (non-Javadoc)
@@ -37,7 +78,17 @@ public abstract class AbstractPinManager implements PinManager
   @Override
   public PinManager setDirection(Direction direction)
   {
-    addOperation(this::doSetDirection, direction);
+    if (count == 0 && cached && isKnown(direction))
+    {
+      return this;
+    }
+
+    if (lastOpcode() == DIRECTION)
+    {
+      count--;
+    }
+
+    add(DIRECTION, direction.ordinal());
     return this;
   }
 
@@ -49,21 +100,51 @@ public abstract class AbstractPinManager implements PinManager
   @Override
   public PinManager setActiveLow(boolean activeLow)
   {
-    addOperation(this::doSetActiveLow, activeLow);
+    if (count == 0 && cached && knownActiveLow == (activeLow ? 1 : 0))
+    {
+      queuedActiveLow = activeLow;
+      return this;
+    }
+
+    if (lastOpcode() == ACTIVE_LOW)
+    {
+      count--;
+    }
+
+    queuedActiveLow = activeLow;
+    add(ACTIVE_LOW, activeLow ? 1 : 0);
     return this;
   }
 
+  /**
+   * The direction is written as raw value like the sysfs does. So the value is inverted for active
+   * low Pins when it is folded into the direction.
+   */
   @Override
   public PinManager setValue(PinValue value)
   {
-    addOperation(this::doSetValue, value);
+    int last = lastOpcode();
+
+    if (last == VALUE)
+    {
+      count--;
+    } else if (last == DIRECTION && DIRECTIONS[lastArgument()] != Direction.IN)
+    {
+      boolean high = (value == PinValue.HIGH) != queuedActiveLow;
+
+      operations[count - 1] = encode(DIRECTION,
+          (high ? Direction.OUT_HIGH : Direction.OUT_LOW).ordinal());
+      return this;
+    }
+
+    add(VALUE, value.ordinal());
     return this;
   }
 
   @Override
   public PinManager release()
   {
-    addOperation(this::doRelease);
+    add(RELEASE, 0);
     return this;
   }
 
@@ -75,29 +156,64 @@ public abstract class AbstractPinManager implements PinManager
   @Override
   public PinManager performOutstandingOperations()
   {
-    Iterator<OutstandingOperation> iterator = operations.iterator();
+    int performed = 0;
 
-    while (iterator.hasNext())
+    try
+    {
+      while (performed < count)
+      {
+        perform(performed);
+        performed++;
+      }
+    } finally
     {
-      OutstandingOperation operation = iterator.next();
-      operation.perform();
-      iterator.remove();
+      // If an operation failed, it stays queued with all operations after it
+      int remaining = count - performed;
+
+      System.arraycopy(operations, performed, operations, 0, remaining);
+      System.arraycopy(customOperations, performed, customOperations, 0, remaining);
+      Arrays.fill(customOperations, remaining, count, null);
+      count = remaining;
     }
 
     return this;
   }
 
+  @Override
+  public PinManager setCached(boolean cached)
+  {
+    this.cached = cached;
+    return this;
+  }
+
+  @Override
+  public PinManager refresh()
+  {
+    knownDirection = null;
+    knownActiveLow = UNKNOWN;
+    knownLevel = UNKNOWN;
+    return this;
+  }
+
   /**
-   * Add an operation to the queue that should be performed the next time the
-   * {@link #performOutstandingOperations()} method is called. The argument is passed as a parameter
-   * to the consumer when the operation is called.
-   * 
-   * @param consumer operation to call.
-   * @param argument to use for the call of the consumer.
+   * The value is only known for outputs when no operation is queued.
    */
-  protected <T> void addOperation(Consumer<T> consumer, T argument)
+  @Override
+  public PinValue getCachedValue()
+  {
+    if (!cached || count > 0 || !isOutput(knownDirection) || knownActiveLow == UNKNOWN
+        || knownLevel == UNKNOWN)
+    {
+      return null;
+    }
+
+    return (knownLevel ^ knownActiveLow) == 1 ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  @Override
+  public void valueWritten(PinValue value)
   {
-    operations.add(new OutstandingConsumer<T>(consumer, argument));
+    updateLevel(value);
   }
 
   /**
@@ -105,12 +221,12 @@ public abstract class AbstractPinManager implements PinManager
    * {@link #performOutstandingOperations()} method is called. The operation does not need any
    * parameters.
    * 
-   * @param consumer operation to call.
-   * @param argument to use for the call of the consumer.
+   * @param operation operation to call.
    */
-  protected <T> void addOperation(OutstandingOperation operation)
+  protected void addOperation(OutstandingOperation operation)
   {
-    operations.add(operation);
+    add(CUSTOM, 0);
+    customOperations[count - 1] = operation;
   }
 
   /**
@@ -139,27 +255,93 @@ public abstract class AbstractPinManager implements PinManager
    */
   protected abstract void doRelease();
 
+  private void perform(int index)
+  {
+    int operation = operations[index];
+    int argument = operation & ARGUMENT_MASK;
+
+    switch (operation >>> OPCODE_SHIFT)
+    {
+      case DIRECTION:
+        Direction direction = DIRECTIONS[argument];
+
+        doSetDirection(direction);
+        knownDirection = direction;
+        knownLevel = direction == Direction.OUT_HIGH ? 1 : isOutput(direction) ? 0 : UNKNOWN;
+        break;
+      case ACTIVE_LOW:
+        doSetActiveLow(argument != 0);
+        // The level of the Pin stays the same, only its meaning changes
+        knownActiveLow = argument;
+        break;
+      case VALUE:
+        doSetValue(VALUES[argument]);
+        updateLevel(VALUES[argument]);
+        break;
+      case RELEASE:
+        doRelease();
+        refresh();
+        break;
+      default:
+        customOperations[index].perform();
+    }
+  }
+
+  private void updateLevel(PinValue value)
+  {
+    knownLevel = knownActiveLow == UNKNOWN ? UNKNOWN
+        : (value == PinValue.HIGH ? 1 : 0) ^ knownActiveLow;
+  }
+
   /**
-   * @author Daniel
-   *
-   * @param <T> type of argument
+   * Writing an output direction sets the level too. So it is only known if the level matches.
    */
-  public static class OutstandingConsumer<T> implements OutstandingOperation
+  private boolean isKnown(Direction direction)
   {
-    private Consumer<T> consumer;
-    private T argument;
+    if (direction != knownDirection)
+    {
+      return false;
+    }
 
-    public OutstandingConsumer(Consumer<T> consumer, T argument)
+    switch (direction)
     {
-      super();
-      this.consumer = consumer;
-      this.argument = argument;
+      case IN:
+        return true;
+      case OUT_HIGH:
+        return knownLevel == 1;
+      default:
+        return knownLevel == 0;
     }
+  }
 
-    @Override
-    public void perform()
+  private static boolean isOutput(Direction direction)
+  {
+    return direction != null && direction != Direction.IN;
+  }
+
+  private void add(int opcode, int argument)
+  {
+    if (count == operations.length)
     {
-      consumer.accept(argument);
+      operations = Arrays.copyOf(operations, count * 2);
+      customOperations = Arrays.copyOf(customOperations, count * 2);
     }
+
+    operations[count++] = encode(opcode, argument);
+  }
+
+  private int lastOpcode()
+  {
+    return count == 0 ? 0 : operations[count - 1] >>> OPCODE_SHIFT;
+  }
+
+  private int lastArgument()
+  {
+    return operations[count - 1] & ARGUMENT_MASK;
+  }
+
+  private static int encode(int opcode, int argument)
+  {
+    return opcode << OPCODE_SHIFT | argument;
   }
 }
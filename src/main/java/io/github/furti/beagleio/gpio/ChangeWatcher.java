@@ -0,0 +1,186 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.github.furti.beagleio.PinEvent;
+import io.github.furti.beagleio.PinEventCursor;
+import io.github.furti.beagleio.PollValue;
+
+/**
+ * Records the changes of {@link PollValue}s that do not record them themselves.
+ *
+ * <p>
+ * The default methods of {@link PollValue} use the watcher. The first call for a PollValue adds it
+ * to the sweep of a shared {@link PollDispatcher}. Each sweep reads the value and the sequence and
+ * publishes the changes to a {@link DefaultPollValue} that mirrors the watched one. Cursors and
+ * change listeners are served by the mirror, so listeners run on the watcher thread. If the sequence
+ * advanced by more than one, the missed changes are replayed like
+ * {@link io.github.furti.beagleio.PinListener} does. Without a sequence only the changes between two
+ * sweeps are seen.
+ * </p>
+ *
+ * <p>
+ * The watcher only keeps a weak reference to the watched PollValue. Once it is collected, it is
+ * removed from the sweep.
+ * </p>
+ *
+ * @author Daniel
+ *
+ */
+public final class ChangeWatcher
+{
+  /**
+   * The time between two sweeps in microseconds.
+   */
+  public static final long TICK_MICROS = 1000;
+
+  private static final Map<PollValue, Watch> WATCHES = new WeakHashMap<>();
+  private static PollDispatcher dispatcher;
+
+  private ChangeWatcher()
+  {
+
+  }
+
+  /**
+   * @param pollValue the value to watch
+   * @return a new cursor that reads all changes of the value from now on.
+   */
+  public static PinEventCursor events(PollValue pollValue)
+  {
+    return watch(pollValue).mirror.events();
+  }
+
+  /**
+   * Executes the listener on the watcher thread every time the value changed.
+   *
+   * @param pollValue the value to watch
+   * @param listener the listener to execute
+   */
+  public static void addChangeListener(PollValue pollValue, Runnable listener)
+  {
+    watch(pollValue).mirror.addChangeListener(listener);
+  }
+
+  /**
+   * @param pollValue the watched value
+   * @param listener the listener to remove
+   */
+  public static void removeChangeListener(PollValue pollValue, Runnable listener)
+  {
+    Watch watch;
+
+    synchronized (ChangeWatcher.class)
+    {
+      watch = WATCHES.get(pollValue);
+    }
+
+    if (watch != null)
+    {
+      watch.mirror.removeChangeListener(listener);
+    }
+  }
+
+  /**
+   * @return the number of PollValues that are watched.
+   */
+  public static synchronized int getWatchCount()
+  {
+    return WATCHES.size();
+  }
+
+  private static synchronized Watch watch(PollValue pollValue)
+  {
+    Watch watch = WATCHES.get(pollValue);
+
+    if (watch == null)
+    {
+      if (dispatcher == null)
+      {
+        dispatcher = new PollDispatcher(Executors.newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "beagleio-change-watcher");
+          thread.setDaemon(true);
+          return thread;
+        }), TICK_MICROS, TimeUnit.MICROSECONDS);
+      }
+
+      watch = new Watch(pollValue);
+      WATCHES.put(pollValue, watch);
+      dispatcher.add(watch);
+    }
+
+    return watch;
+  }
+
+  private static synchronized void unwatch(Watch watch)
+  {
+    dispatcher.remove(watch);
+  }
+
+  /**
+   * Mirrors the changes of one PollValue. Must not reference the PollValue strongly, otherwise the
+   * sweep would keep it alive.
+   *
+   * @author Daniel
+   *
+   */
+  private static class Watch implements Runnable
+  {
+    private WeakReference<PollValue> source;
+    private DefaultPollValue mirror;
+    private PinEvent event = new PinEvent();
+    private long lastSequence;
+
+    private Watch(PollValue pollValue)
+    {
+      pollValue.read(event);
+
+      this.source = new WeakReference<>(pollValue);
+      this.mirror = new DefaultPollValue(event.getValue());
+      this.lastSequence = event.getSequence();
+    }
+
+    @Override
+    public void run()
+    {
+      PollValue pollValue = source.get();
+
+      if (pollValue == null)
+      {
+        unwatch(this);
+        return;
+      }
+
+      pollValue.read(event);
+
+      long timestamp = event.getTimestamp() != 0 ? event.getTimestamp() : System.nanoTime();
+
+      // The value alternates with every change, so the missed values can be replayed
+      for (long missed = event.getSequence() - lastSequence - 1; missed > 0; missed--)
+      {
+        mirror.setValue(missed % 2 == 0 ? event.getValue() : event.getValue().opposite(),
+            timestamp);
+      }
+
+      mirror.setValue(event.getValue(), timestamp);
+      lastSequence = event.getSequence();
+    }
+  }
+}
@@ -13,21 +13,66 @@
  */
 package io.github.furti.beagleio.gpio;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import io.github.furti.beagleio.PinEvent;
+import io.github.furti.beagleio.PinEventCursor;
 import io.github.furti.beagleio.PinValue;
 import io.github.furti.beagleio.PollValue;
 
 /**
+ * A {@link PollValue} that can be read from any thread without locking.
+ * 
+ * <p>
+ * Value, sequence and timestamp are published with a sequence lock. The version is odd while a
+ * change is written. Readers retry when they saw an odd version or the version changed while they
+ * read the fields. Readers never block the writer, and the single volatile fields can be read
+ * without retrying at all.
+ * </p>
+ * 
+ * <p>
+ * Every change is also written to a {@link PinEventBuffer}, so consumers that need each edge can
+ * read them with a {@link PinEventCursor}.
+ * </p>
+ * 
  * @author Daniel
  *
  */
 public class DefaultPollValue implements PollValue
 {
-  private PinValue value;
+  private static final AtomicLongFieldUpdater<DefaultPollValue> VERSION =
+      AtomicLongFieldUpdater.newUpdater(DefaultPollValue.class, "version");
+
+  /**
+   * The number of changes kept for {@link PinEventCursor}s if not specified otherwise.
+   */
+  public static final int DEFAULT_EVENT_CAPACITY = 1024;
+
+  private static final Runnable[] NO_LISTENERS = new Runnable[0];
+
+  private volatile long version;
+  private volatile PinValue value;
+  private volatile long sequence;
+  private volatile long timestamp;
+  private PinEventBuffer events;
+  private volatile Runnable[] changeListeners = NO_LISTENERS;
 
   public DefaultPollValue(PinValue value)
+  {
+    this(value, DEFAULT_EVENT_CAPACITY);
+  }
+
+  /**
+   * @param value the initial value
+   * @param eventCapacity the number of changes kept for {@link PinEventCursor}s
+   */
+  public DefaultPollValue(PinValue value, int eventCapacity)
   {
     super();
     this.value = value;
+    this.timestamp = System.nanoTime();
+    this.events = new PinEventBuffer(eventCapacity, 1);
   }
 
   @Override
@@ -36,8 +81,132 @@ public class DefaultPollValue implements PollValue
     return value;
   }
 
+  @Override
+  public long getSequence()
+  {
+    return sequence;
+  }
+
+  @Override
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+  @Override
+  public PinEventCursor events()
+  {
+    return events.newCursor();
+  }
+
+  @Override
+  public synchronized void addChangeListener(Runnable listener)
+  {
+    Runnable[] newListeners = Arrays.copyOf(changeListeners, changeListeners.length + 1);
+    newListeners[changeListeners.length] = listener;
+    changeListeners = newListeners;
+  }
+
+  @Override
+  public synchronized void removeChangeListener(Runnable listener)
+  {
+    Runnable[] actualListeners = changeListeners;
+
+    for (int i = 0; i < actualListeners.length; i++)
+    {
+      if (actualListeners[i] == listener)
+      {
+        Runnable[] newListeners = new Runnable[actualListeners.length - 1];
+        System.arraycopy(actualListeners, 0, newListeners, 0, i);
+        System.arraycopy(actualListeners, i + 1, newListeners, i, newListeners.length - i);
+        changeListeners = newListeners;
+        return;
+      }
+    }
+  }
+
+  @Override
+  public PinEvent read(PinEvent event)
+  {
+    while (true)
+    {
+      long before = version;
+      PinValue actualValue = value;
+      long actualSequence = sequence;
+      long actualTimestamp = timestamp;
+
+      if ((before & 1) == 0 && before == version)
+      {
+        return event.set(actualValue, actualSequence, actualTimestamp);
+      }
+    }
+  }
+
+  /**
+   * Sets the value with the current time as timestamp.
+   * 
+   * @param value the new value
+   */
   public void setValue(PinValue value)
   {
-    this.value = value;
+    setValue(value, System.nanoTime());
+  }
+
+  /**
+   * Publishes a change of the value. Nothing happens if the value did not change, so the sequence
+   * only counts real changes. After the change is published the change listeners are executed.
+   * 
+   * @param value the new value
+   * @param timestamp the time of the change in nanoseconds
+   * @return true if the value changed
+   */
+  public boolean setValue(PinValue value, long timestamp)
+  {
+    long actualVersion = beginWrite();
+
+    try
+    {
+      if (this.value == value)
+      {
+        return false;
+      }
+
+      long newSequence = sequence + 1;
+
+      this.timestamp = timestamp;
+      this.value = value;
+      this.sequence = newSequence;
+
+      events.write(value, newSequence, timestamp);
+    } finally
+    {
+      version = actualVersion + 2;
+    }
+
+    for (Runnable listener : changeListeners)
+    {
+      listener.run();
+    }
+
+    return true;
+  }
+
+  /**
+   * Usually there is only one thread writing the value. But if another thread writes at the same
+   * time we have to wait until it finished.
+   * 
+   * @return the version before the write started
+   */
+  private long beginWrite()
+  {
+    while (true)
+    {
+      long actualVersion = version;
+
+      if ((actualVersion & 1) == 0 && VERSION.compareAndSet(this, actualVersion, actualVersion + 1))
+      {
+        return actualVersion;
+      }
+    }
   }
 }
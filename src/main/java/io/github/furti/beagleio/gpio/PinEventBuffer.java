@@ -0,0 +1,161 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.github.furti.beagleio.PinEvent;
+import io.github.furti.beagleio.PinEventCursor;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * A ring buffer with the latest changes of a Pin. There must only be one thread writing to the
+ * buffer, but any number of {@link PinEventCursor}s can read from it.
+ * 
+ * <p>
+ * All slots are allocated when the buffer is created. Each slot stores the timestamp and the
+ * sequence of a change together with the new value. While a slot is written it is marked as
+ * invalid, so a reader can detect that a slot was overwritten while it was read.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class PinEventBuffer
+{
+  private static final long INVALID = -1;
+
+  private int mask;
+  private int capacity;
+
+  /**
+   * Two longs per slot. The first one is the sequence shifted left by one with the value in the
+   * lowest bit, the second one is the timestamp.
+   */
+  private AtomicLongArray slots;
+
+  /**
+   * The sequence of the next change that will be written.
+   */
+  private volatile long head;
+
+  /**
+   * @param capacity the number of changes to keep. Is rounded up to the next power of two.
+   * @param firstSequence the sequence of the first change that will be written.
+   */
+  public PinEventBuffer(int capacity, long firstSequence)
+  {
+    this.capacity = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    this.mask = this.capacity - 1;
+    this.slots = new AtomicLongArray(this.capacity * 2);
+    this.head = firstSequence;
+
+    for (int i = 0; i < this.capacity; i++)
+    {
+      slots.set(i * 2, INVALID);
+    }
+  }
+
+  /**
+   * Writes the change to the buffer. Sequences must be written consecutively.
+   * 
+   * @param value the new value
+   * @param sequence the sequence of the change
+   * @param timestamp the time of the change
+   */
+  public void write(PinValue value, long sequence, long timestamp)
+  {
+    int index = (int) (sequence & mask) * 2;
+
+    slots.set(index, INVALID);
+    slots.set(index + 1, timestamp);
+    slots.set(index, sequence << 1 | (value == PinValue.HIGH ? 1 : 0));
+
+    head = sequence + 1;
+  }
+
+  /**
+   * @return the number of changes the buffer can keep.
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * @return a new cursor that reads the changes written from now on.
+   */
+  public PinEventCursor newCursor()
+  {
+    return new Cursor(head);
+  }
+
+  /**
+   * @author Daniel
+   *
+   */
+  private class Cursor implements PinEventCursor
+  {
+    private long nextSequence;
+    private long overrunCount;
+
+    public Cursor(long nextSequence)
+    {
+      this.nextSequence = nextSequence;
+    }
+
+    @Override
+    public boolean next(PinEvent event)
+    {
+      while (true)
+      {
+        long actualHead = head;
+
+        if (nextSequence >= actualHead)
+        {
+          return false;
+        }
+
+        long oldest = actualHead - capacity;
+
+        if (nextSequence < oldest)
+        {
+          overrunCount += oldest - nextSequence;
+          nextSequence = oldest;
+        }
+
+        int index = (int) (nextSequence & mask) * 2;
+        long before = slots.get(index);
+        long timestamp = slots.get(index + 1);
+        long after = slots.get(index);
+
+        if (before == after && before >>> 1 == nextSequence)
+        {
+          event.set((before & 1) == 1 ? PinValue.HIGH : PinValue.LOW, nextSequence, timestamp);
+          nextSequence++;
+
+          return true;
+        }
+
+        // The slot was overwritten while we read it. Start again with the oldest change.
+      }
+    }
+
+    @Override
+    public long getOverrunCount()
+    {
+      return overrunCount;
+    }
+  }
+}
@@ -84,4 +84,45 @@ public interface PinManager
    * @return the instance for a fluent API
    */
   PinManager performOutstandingOperations();
+
+  /**
+   * Implementations may keep a shadow of the state they wrote to the Pin to avoid redundant I/O.
+   * 
+   * @param cached false to always access the Pin
+   * @return the instance for a fluent API
+   */
+  default PinManager setCached(boolean cached)
+  {
+    return this;
+  }
+
+  /**
+   * Forgets the shadow state, so the next operations access the Pin again. Use it when the Pin
+   * might have been changed by someone else.
+   * 
+   * @return the instance for a fluent API
+   */
+  default PinManager refresh()
+  {
+    return this;
+  }
+
+  /**
+   * @return the value of the output from the shadow state or null if it is not known or the Pin
+   *         is not an output.
+   */
+  default PinValue getCachedValue()
+  {
+    return null;
+  }
+
+  /**
+   * Tells the PinManager that the value was written to the Pin without its help, e.g. together
+   * with other Pins of its bank.
+   * 
+   * @param value the written value
+   */
+  default void valueWritten(PinValue value)
+  {
+  }
 }
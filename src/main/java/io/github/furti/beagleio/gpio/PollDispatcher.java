@@ -0,0 +1,220 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * Polls all registered Pins in one sweep per tick.
+ *
+ * <p>
+ * Pins that can not notify us about changes must be read periodically. Instead of scheduling a task
+ * for each of them, a single task is scheduled that reads all Pins one after another. So the
+ * scheduling overhead stays the same no matter how many Pins are polled.
+ * </p>
+ *
+ * <p>
+ * The duration of each sweep is recorded. If a sweep takes longer than a tick the next sweep is
+ * delayed and the sweep is counted as overrun.
+ * </p>
+ *
+ * <p>
+ * An exception thrown by a target would cancel the scheduled sweeps for good. So it is caught,
+ * counted and kept, and the other targets are read as usual.
+ * </p>
+ *
+ * @author Daniel
+ *
+ */
+public class PollDispatcher
+{
+  private static final Runnable[] NO_TARGETS = new Runnable[0];
+
+  private ScheduledExecutorService executor;
+  private long tickNanos;
+  private ScheduledFuture<?> sweepFuture;
+  private volatile Runnable[] targets = NO_TARGETS;
+  private volatile long sweepCount;
+  private volatile long overrunCount;
+  private volatile long lastSweepNanos;
+  private volatile long maxSweepNanos;
+  private volatile long failureCount;
+  private volatile RuntimeException lastFailure;
+
+  /**
+   * @param executor the executor that runs the sweeps
+   * @param tick the time between two sweeps
+   * @param unit the unit of the tick
+   */
+  public PollDispatcher(ScheduledExecutorService executor, long tick, TimeUnit unit)
+  {
+    this.executor = executor;
+    this.tickNanos = unit.toNanos(tick);
+  }
+
+  /**
+   * Adds the target to the sweep. The first target starts the sweeps.
+   *
+   * @param target reads the Pin and updates its {@link io.github.furti.beagleio.PollValue}
+   */
+  public synchronized void add(Runnable target)
+  {
+    Runnable[] newTargets = Arrays.copyOf(targets, targets.length + 1);
+    newTargets[targets.length] = target;
+    targets = newTargets;
+
+    if (sweepFuture == null)
+    {
+      sweepFuture =
+          executor.scheduleAtFixedRate(this::sweep, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Removes the target from the sweep. When the last target is removed the sweeps are stopped.
+   *
+   * @param target the target to remove
+   */
+  public synchronized void remove(Runnable target)
+  {
+    Runnable[] actualTargets = targets;
+
+    for (int i = 0; i < actualTargets.length; i++)
+    {
+      if (actualTargets[i] == target)
+      {
+        Runnable[] newTargets = new Runnable[actualTargets.length - 1];
+        System.arraycopy(actualTargets, 0, newTargets, 0, i);
+        System.arraycopy(actualTargets, i + 1, newTargets, i, newTargets.length - i);
+        targets = newTargets;
+        break;
+      }
+    }
+
+    if (targets.length == 0 && sweepFuture != null)
+    {
+      sweepFuture.cancel(false);
+      sweepFuture = null;
+    }
+  }
+
+  /**
+   * @return the number of targets read in each sweep.
+   */
+  public int getTargetCount()
+  {
+    return targets.length;
+  }
+
+  /**
+   * @return the time between two sweeps in nanoseconds.
+   */
+  public long getTickNanos()
+  {
+    return tickNanos;
+  }
+
+  /**
+   * @return the number of sweeps executed so far.
+   */
+  public long getSweepCount()
+  {
+    return sweepCount;
+  }
+
+  /**
+   * @return the number of sweeps that took longer than a tick.
+   */
+  public long getOverrunCount()
+  {
+    return overrunCount;
+  }
+
+  /**
+   * @return the duration of the last sweep in nanoseconds.
+   */
+  public long getLastSweepNanos()
+  {
+    return lastSweepNanos;
+  }
+
+  /**
+   * @return the duration of the longest sweep in nanoseconds.
+   */
+  public long getMaxSweepNanos()
+  {
+    return maxSweepNanos;
+  }
+
+  /**
+   * @return the number of unexpected exceptions thrown by the targets.
+   */
+  public long getFailureCount()
+  {
+    return failureCount;
+  }
+
+  /**
+   * @return the last unexpected exception thrown by a target, or null.
+   */
+  public RuntimeException getLastFailure()
+  {
+    return lastFailure;
+  }
+
+  /**
+   * Reads all targets. Only the executor thread writes the statistics, so the plain increments of
+   * the volatile fields are safe.
+   */
+  private void sweep()
+  {
+    long start = System.nanoTime();
+
+    for (Runnable target : targets)
+    {
+      try
+      {
+        target.run();
+      } catch (BeagleIOException e)
+      {
+        // The Pin was released during the sweep. It will be removed, the others must be polled.
+      } catch (RuntimeException e)
+      {
+        lastFailure = e;
+        failureCount++;
+      }
+    }
+
+    long duration = System.nanoTime() - start;
+
+    lastSweepNanos = duration;
+
+    if (duration > maxSweepNanos)
+    {
+      maxSweepNanos = duration;
+    }
+
+    if (duration > tickNanos)
+    {
+      overrunCount++;
+    }
+
+    sweepCount++;
+  }
+}
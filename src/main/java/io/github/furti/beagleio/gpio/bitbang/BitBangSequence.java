@@ -0,0 +1,393 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.bitbang;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.mmap.GpioRegisters;
+import io.github.furti.beagleio.gpio.mmap.MemoryMappedBeagle;
+import io.github.furti.beagleio.gpio.util.PreciseWait;
+
+/**
+ * Executes a sequence of output patterns with exact timing. This is the engine behind the bit
+ * banged protocols.
+ * 
+ * <p>
+ * Each state the outputs can be in is registered once as a {@link BankMask} pattern. A transfer is
+ * then encoded as a list of steps. Each step writes a pattern, holds it for the time of the step and
+ * optionally samples the input at the end of the step. The arrays of the steps and samples are
+ * reused, so executing a sequence does not allocate once they are large enough.
+ * </p>
+ * 
+ * <p>
+ * On a {@link MemoryMappedBeagle} the patterns are written directly to the registers of the banks,
+ * so a step is a single store. Otherwise they are written with {@link Beagle#writeBanks(BankMask)}.
+ * Each step waits until its deadline with {@link PreciseWait}. The deadlines are computed from the
+ * start of the sequence, so the errors do not add up, and a step that is late because a write took
+ * too long is followed by the next step right away. The time a write takes is measured by
+ * {@link #calibrate(int, int)}, so the shortest step the Beagle can keep up with is known.
+ * </p>
+ * 
+ * <p>
+ * A sequence is not thread safe.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class BitBangSequence
+{
+  private static final int SAMPLE_FLAG = 1 << 31;
+  private static final int CALIBRATION_WRITES = 64;
+
+  private Beagle beagle;
+  private PinGroup outputs;
+  private Pin input;
+  private GpioRegisters registers;
+  private BankMask[] patterns = new BankMask[8];
+  private int[] patternMasks = new int[8 * BankMask.BANK_COUNT];
+  private int[] patternBits = new int[8 * BankMask.BANK_COUNT];
+  private int patternCount;
+  private int[] steps = new int[256];
+  private long[] stepNanos = new long[256];
+  private int stepCount;
+  private long[] samples = new long[4];
+  private int plannedSamples;
+  private int sampleCount;
+  private long writeNanos;
+  private long lastDurationNanos;
+  private long maxLatenessNanos;
+
+  /**
+   * @param beagle the Beagle to write the outputs with
+   * @param outputs the Pins the patterns may contain. They must be initialized as outputs.
+   * @param input the Pin to sample, or null if nothing is read. It must be initialized as input.
+   */
+  public BitBangSequence(Beagle beagle, PinGroup outputs, Pin input)
+  {
+    this.beagle = beagle;
+    this.outputs = outputs;
+    this.input = input;
+
+    // Fails early if the Pins are not initialized
+    beagle.readPins(outputs);
+
+    if (input != null)
+    {
+      beagle.getPinValue(input);
+    }
+
+    if (beagle instanceof MemoryMappedBeagle)
+    {
+      registers = ((MemoryMappedBeagle) beagle).getRegisters();
+    }
+  }
+
+  /**
+   * @return true if the patterns are written directly to the registers of the banks.
+   */
+  public boolean isRegisterMapped()
+  {
+    return registers != null;
+  }
+
+  /**
+   * Registers a state of the outputs.
+   * 
+   * @param pattern the outputs and their values. The pattern is copied.
+   * @return the index of the pattern to use in the steps.
+   * @throws IllegalArgumentException if the pattern contains a Pin that is not an output.
+   */
+  public int addPattern(BankMask pattern) throws IllegalArgumentException
+  {
+    for (Pin pin : pattern.toPinGroup().getPins())
+    {
+      if (!outputs.getPins().contains(pin))
+      {
+        throw new IllegalArgumentException("Pin " + pin + " is not an output of the sequence");
+      }
+    }
+
+    if (patternCount == patterns.length)
+    {
+      patterns = Arrays.copyOf(patterns, patternCount * 2);
+      patternMasks = Arrays.copyOf(patternMasks, patterns.length * BankMask.BANK_COUNT);
+      patternBits = Arrays.copyOf(patternBits, patterns.length * BankMask.BANK_COUNT);
+    }
+
+    patterns[patternCount] = pattern.copy();
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      patternMasks[patternCount * BankMask.BANK_COUNT + bank] = pattern.getMask(bank);
+      patternBits[patternCount * BankMask.BANK_COUNT + bank] = pattern.getBits(bank);
+    }
+
+    return patternCount++;
+  }
+
+  /**
+   * Measures the time a write takes by alternating between the two patterns. The patterns should
+   * not mean anything to the connected devices. The outputs are left in the first pattern.
+   * 
+   * @param first the first pattern
+   * @param second the second pattern
+   * @return the average time of a write in nanoseconds.
+   */
+  public long calibrate(int first, int second)
+  {
+    checkPattern(first);
+    checkPattern(second);
+
+    long start = System.nanoTime();
+
+    for (int i = 0; i < CALIBRATION_WRITES; i++)
+    {
+      write((i & 1) == 0 ? first : second);
+    }
+
+    writeNanos = (System.nanoTime() - start) / CALIBRATION_WRITES;
+
+    write(first);
+    refreshOutputs();
+
+    return writeNanos;
+  }
+
+  /**
+   * @return the average time of a write measured by {@link #calibrate(int, int)}. Steps that are
+   *         shorter than this will be late.
+   */
+  public long getWriteNanos()
+  {
+    return writeNanos;
+  }
+
+  /**
+   * Removes all steps.
+   */
+  public void clear()
+  {
+    stepCount = 0;
+    plannedSamples = 0;
+  }
+
+  /**
+   * Adds a step that does not sample the input.
+   * 
+   * @param pattern the pattern to write
+   * @param nanos the time to hold the pattern
+   */
+  public void add(int pattern, long nanos)
+  {
+    add(pattern, nanos, false);
+  }
+
+  /**
+   * Adds a step.
+   * 
+   * @param pattern the pattern to write
+   * @param nanos the time to hold the pattern
+   * @param sample true to sample the input at the end of the step
+   */
+  public void add(int pattern, long nanos, boolean sample)
+  {
+    checkPattern(pattern);
+
+    if (sample && input == null)
+    {
+      throw new IllegalArgumentException("The sequence has no input to sample");
+    }
+
+    if (stepCount == steps.length)
+    {
+      steps = Arrays.copyOf(steps, stepCount * 2);
+      stepNanos = Arrays.copyOf(stepNanos, stepCount * 2);
+    }
+
+    steps[stepCount] = sample ? pattern | SAMPLE_FLAG : pattern;
+    stepNanos[stepCount] = nanos;
+    stepCount++;
+
+    if (sample)
+    {
+      plannedSamples++;
+
+      if (plannedSamples > samples.length * Long.SIZE)
+      {
+        samples = Arrays.copyOf(samples, samples.length * 2);
+      }
+    }
+  }
+
+  /**
+   * @return the number of steps.
+   */
+  public int size()
+  {
+    return stepCount;
+  }
+
+  /**
+   * Executes all steps.
+   * 
+   * @return the number of samples taken.
+   */
+  public int execute()
+  {
+    Arrays.fill(samples, 0);
+    sampleCount = 0;
+
+    long start = System.nanoTime();
+    long deadline = start;
+
+    try
+    {
+      for (int i = 0; i < stepCount; i++)
+      {
+        int step = steps[i];
+
+        write(step & ~SAMPLE_FLAG);
+        deadline += stepNanos[i];
+
+        long lateness = PreciseWait.until(deadline) - deadline;
+
+        if (lateness > maxLatenessNanos)
+        {
+          maxLatenessNanos = lateness;
+        }
+
+        if (step < 0)
+        {
+          sample();
+        }
+      }
+    } finally
+    {
+      lastDurationNanos = System.nanoTime() - start;
+      refreshOutputs();
+    }
+
+    return sampleCount;
+  }
+
+  /**
+   * @param index the index of the sample in the order they were taken
+   * @return true if the input was {@link PinValue#HIGH}.
+   * @throws IndexOutOfBoundsException if the sample was not taken in the last execution.
+   */
+  public boolean getSample(int index) throws IndexOutOfBoundsException
+  {
+    if (index < 0 || index >= sampleCount)
+    {
+      throw new IndexOutOfBoundsException("Sample " + index + " of " + sampleCount);
+    }
+
+    return (samples[index >> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * @return the duration of the last execution in nanoseconds.
+   */
+  public long getLastDurationNanos()
+  {
+    return lastDurationNanos;
+  }
+
+  /**
+   * @return the longest time a step ended after its deadline.
+   */
+  public long getMaxLatenessNanos()
+  {
+    return maxLatenessNanos;
+  }
+
+  private void write(int pattern)
+  {
+    if (registers == null)
+    {
+      beagle.writeBanks(patterns[pattern]);
+      return;
+    }
+
+    int offset = pattern * BankMask.BANK_COUNT;
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = patternMasks[offset + bank];
+
+      if (mask != 0)
+      {
+        registers.writeMasked(bank, mask,
+            patternBits[offset + bank] ^ registers.getInvertedMask(bank));
+      }
+    }
+  }
+
+  private void sample()
+  {
+    boolean high;
+
+    if (registers == null)
+    {
+      high = beagle.getPinValue(input) == PinValue.HIGH;
+    } else
+    {
+      int bank = input.getBank();
+
+      high = ((registers.read(bank, GpioRegisters.DATAIN) ^ registers.getInvertedMask(bank))
+          & input.getBankMask()) != 0;
+    }
+
+    if (high)
+    {
+      samples[sampleCount >> 6] |= 1L << sampleCount;
+    }
+
+    sampleCount++;
+  }
+
+  /**
+   * The registers were written behind the back of the Beagle. So it must forget the values it
+   * remembers for the outputs.
+   */
+  private void refreshOutputs()
+  {
+    if (registers == null)
+    {
+      return;
+    }
+
+    List<Pin> pins = outputs.getPins();
+
+    for (int i = 0; i < pins.size(); i++)
+    {
+      beagle.refresh(pins.get(i));
+    }
+  }
+
+  private void checkPattern(int pattern)
+  {
+    if (pattern < 0 || pattern >= patternCount)
+    {
+      throw new IllegalArgumentException("Unknown pattern " + pattern);
+    }
+  }
+}
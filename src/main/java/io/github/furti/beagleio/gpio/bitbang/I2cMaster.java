@@ -0,0 +1,258 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.bitbang;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * A bit banged I2C master with 7 bit addresses.
+ * 
+ * <p>
+ * A Pin can not switch between input and output fast enough through the Beagle. So SDA is driven
+ * by an output Pin through an open drain buffer or a diode, where {@link PinValue#HIGH} releases
+ * the line, and read back on a separate input Pin. SCL is driven push-pull, so devices that stretch
+ * the clock are not supported.
+ * </p>
+ * 
+ * <p>
+ * A transfer is executed as a whole before the acknowledges of the device are checked. If the device
+ * did not acknowledge a byte, a {@link BeagleIOException} is thrown after the transfer.
+ * </p>
+ * 
+ * <p>
+ * SCL and SDA must be initialized as outputs and the SDA input as input before the master is
+ * created.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class I2cMaster
+{
+  private static final int SCL_HIGH = 1;
+  private static final int SDA_HIGH = 2;
+
+  private BitBangSequence sequence;
+  private long quarterPeriodNanos;
+  private int[] patterns = new int[4];
+
+  /**
+   * @param beagle the Beagle to drive the Pins with
+   * @param scl the clock
+   * @param sda the output that drives the data line
+   * @param sdaIn the input that reads the data line
+   * @param clockHz the frequency of the clock, e.g. 100000 or 400000
+   * @throws IllegalArgumentException if the frequency is not positive.
+   */
+  public I2cMaster(Beagle beagle, Pin scl, Pin sda, Pin sdaIn, long clockHz)
+      throws IllegalArgumentException
+  {
+    if (clockHz <= 0)
+    {
+      throw new IllegalArgumentException("The clock frequency must be positive but was "
+          + clockHz);
+    }
+
+    this.sequence = new BitBangSequence(beagle, PinGroup.fromPins(scl, sda), sdaIn);
+    this.quarterPeriodNanos = 250000000L / clockHz;
+
+    for (int state = 0; state < 4; state++)
+    {
+      patterns[state] = sequence.addPattern(new BankMask()
+          .set(scl, (state & SCL_HIGH) != 0 ? PinValue.HIGH : PinValue.LOW)
+          .set(sda, (state & SDA_HIGH) != 0 ? PinValue.HIGH : PinValue.LOW));
+    }
+
+    // Clock pulses while the data line is released are ignored outside of a transfer
+    sequence.calibrate(patterns[SCL_HIGH | SDA_HIGH], patterns[SDA_HIGH]);
+  }
+
+  /**
+   * @param address the address of the device
+   * @param data the bytes to write
+   * @throws BeagleIOException if the device did not acknowledge.
+   */
+  public synchronized void write(int address, byte[] data) throws BeagleIOException
+  {
+    transfer(address, data, null);
+  }
+
+  /**
+   * @param address the address of the device
+   * @param buffer receives the bytes read from the device
+   * @throws BeagleIOException if the device did not acknowledge.
+   */
+  public synchronized void read(int address, byte[] buffer) throws BeagleIOException
+  {
+    transfer(address, null, buffer);
+  }
+
+  /**
+   * Writes the bytes and reads the answer after a repeated start condition. This is how most
+   * devices are asked for the content of a register.
+   * 
+   * @param address the address of the device
+   * @param tx the bytes to write
+   * @param rx receives the bytes read from the device
+   * @throws BeagleIOException if the device did not acknowledge.
+   */
+  public synchronized void writeRead(int address, byte[] tx, byte[] rx) throws BeagleIOException
+  {
+    transfer(address, tx, rx);
+  }
+
+  /**
+   * @return the sequence that drives the Pins.
+   */
+  public BitBangSequence getSequence()
+  {
+    return sequence;
+  }
+
+  private void transfer(int address, byte[] tx, byte[] rx)
+  {
+    if (address < 0 || address > 0x7F)
+    {
+      throw new IllegalArgumentException("The address must be between 0 and 0x7F but was "
+          + address);
+    }
+
+    sequence.clear();
+
+    if (tx != null)
+    {
+      start();
+      writeByte(address << 1);
+
+      for (byte value : tx)
+      {
+        writeByte(value);
+      }
+    }
+
+    if (rx != null)
+    {
+      start();
+      writeByte((address << 1) | 1);
+
+      for (int i = 0; i < rx.length; i++)
+      {
+        // The last byte is not acknowledged to tell the device that we are done
+        readByte(i < rx.length - 1);
+      }
+    }
+
+    stop();
+    sequence.execute();
+
+    int sample = 0;
+
+    if (tx != null)
+    {
+      checkAcknowledges(address, sample, tx.length + 1);
+      sample += tx.length + 1;
+    }
+
+    if (rx != null)
+    {
+      checkAcknowledges(address, sample, 1);
+      sample++;
+
+      for (int i = 0; i < rx.length; i++)
+      {
+        int value = 0;
+
+        for (int bit = 0; bit < 8; bit++)
+        {
+          value = (value << 1) | (sequence.getSample(sample++) ? 1 : 0);
+        }
+
+        rx[i] = (byte) value;
+      }
+    }
+  }
+
+  private void checkAcknowledges(int address, int first, int count)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      if (sequence.getSample(first + i))
+      {
+        throw new BeagleIOException(String.format("Device 0x%02X did not acknowledge %s", address,
+            i == 0 ? "its address" : "byte " + (i - 1)), null);
+      }
+    }
+  }
+
+  /**
+   * Releases the data line while the clock is low, so this is a repeated start condition too.
+   */
+  private void start()
+  {
+    sequence.add(patterns[SDA_HIGH], quarterPeriodNanos);
+    sequence.add(patterns[SCL_HIGH | SDA_HIGH], quarterPeriodNanos);
+    sequence.add(patterns[SCL_HIGH], quarterPeriodNanos);
+    sequence.add(patterns[0], quarterPeriodNanos);
+  }
+
+  private void stop()
+  {
+    sequence.add(patterns[0], quarterPeriodNanos);
+    sequence.add(patterns[SCL_HIGH], quarterPeriodNanos);
+    sequence.add(patterns[SCL_HIGH | SDA_HIGH], quarterPeriodNanos);
+  }
+
+  /**
+   * Writes the byte and samples the acknowledge of the device.
+   */
+  private void writeByte(int value)
+  {
+    for (int bit = 7; bit >= 0; bit--)
+    {
+      bit((value >> bit) & 1, false);
+    }
+
+    bit(1, true);
+  }
+
+  /**
+   * Samples the byte and writes the acknowledge.
+   */
+  private void readByte(boolean acknowledge)
+  {
+    for (int bit = 0; bit < 8; bit++)
+    {
+      bit(1, true);
+    }
+
+    bit(acknowledge ? 0 : 1, false);
+  }
+
+  /**
+   * The data changes while the clock is low and is sampled right before the clock falls.
+   */
+  private void bit(int data, boolean sample)
+  {
+    int sda = data != 0 ? SDA_HIGH : 0;
+
+    sequence.add(patterns[sda], quarterPeriodNanos);
+    sequence.add(patterns[SCL_HIGH | sda], 2 * quarterPeriodNanos, sample);
+    sequence.add(patterns[sda], quarterPeriodNanos);
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.bitbang;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * A bit banged 1-Wire master with standard speed timing. The bytes are sent with the least
+ * significant bit first.
+ * 
+ * <p>
+ * Like the data line of the {@link I2cMaster}, the line is driven by an output Pin through an open
+ * drain buffer or a diode, where {@link PinValue#HIGH} releases the line, and read back on a
+ * separate input Pin.
+ * </p>
+ * 
+ * <p>
+ * The output must be initialized as output and the input as input before the master is created.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class OneWireMaster
+{
+  private static final long SLOT_START_NANOS = TimeUnit.MICROSECONDS.toNanos(6);
+  private static final long WRITE_ONE_RECOVERY_NANOS = TimeUnit.MICROSECONDS.toNanos(64);
+  private static final long WRITE_ZERO_NANOS = TimeUnit.MICROSECONDS.toNanos(60);
+  private static final long WRITE_ZERO_RECOVERY_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long READ_SAMPLE_NANOS = TimeUnit.MICROSECONDS.toNanos(9);
+  private static final long READ_RECOVERY_NANOS = TimeUnit.MICROSECONDS.toNanos(55);
+  private static final long RESET_NANOS = TimeUnit.MICROSECONDS.toNanos(480);
+  private static final long PRESENCE_SAMPLE_NANOS = TimeUnit.MICROSECONDS.toNanos(70);
+  private static final long PRESENCE_RECOVERY_NANOS = TimeUnit.MICROSECONDS.toNanos(410);
+
+  private BitBangSequence sequence;
+  private int released;
+  private int low;
+
+  /**
+   * @param beagle the Beagle to drive the Pins with
+   * @param out the output that drives the line
+   * @param in the input that reads the line
+   */
+  public OneWireMaster(Beagle beagle, Pin out, Pin in)
+  {
+    this.sequence = new BitBangSequence(beagle, PinGroup.fromPins(out), in);
+
+    released = sequence.addPattern(new BankMask().set(out, PinValue.HIGH));
+    low = sequence.addPattern(new BankMask().set(out, PinValue.LOW));
+
+    // Every low pulse starts a time slot, so only the released line can be written
+    sequence.calibrate(released, released);
+  }
+
+  /**
+   * Sends a reset pulse.
+   * 
+   * @return true if a device answered with a presence pulse.
+   */
+  public synchronized boolean reset()
+  {
+    sequence.clear();
+    addReset();
+    sequence.execute();
+
+    return !sequence.getSample(0);
+  }
+
+  /**
+   * @param data the bytes to write
+   */
+  public synchronized void write(byte[] data)
+  {
+    sequence.clear();
+    addWrite(data);
+    sequence.execute();
+  }
+
+  /**
+   * @param buffer receives the bytes read from the device
+   */
+  public synchronized void read(byte[] buffer)
+  {
+    sequence.clear();
+    addRead(buffer.length);
+    sequence.execute();
+    decode(buffer, 0);
+  }
+
+  /**
+   * Resets the bus, writes the bytes and reads the answer in a single sequence.
+   * 
+   * @param tx the bytes to write, usually a ROM command followed by a function command
+   * @param rx receives the bytes read from the device
+   * @throws BeagleIOException if no device answered the reset.
+   */
+  public synchronized void transaction(byte[] tx, byte[] rx) throws BeagleIOException
+  {
+    sequence.clear();
+    addReset();
+    addWrite(tx);
+    addRead(rx.length);
+    sequence.execute();
+
+    if (sequence.getSample(0))
+    {
+      throw new BeagleIOException("No device answered the reset", null);
+    }
+
+    decode(rx, 1);
+  }
+
+  /**
+   * @return the sequence that drives the Pins.
+   */
+  public BitBangSequence getSequence()
+  {
+    return sequence;
+  }
+
+  private void addReset()
+  {
+    sequence.add(low, RESET_NANOS);
+    sequence.add(released, PRESENCE_SAMPLE_NANOS, true);
+    sequence.add(released, PRESENCE_RECOVERY_NANOS);
+  }
+
+  private void addWrite(byte[] data)
+  {
+    for (byte value : data)
+    {
+      for (int bit = 0; bit < 8; bit++)
+      {
+        if ((value & (1 << bit)) != 0)
+        {
+          sequence.add(low, SLOT_START_NANOS);
+          sequence.add(released, WRITE_ONE_RECOVERY_NANOS);
+        } else
+        {
+          sequence.add(low, WRITE_ZERO_NANOS);
+          sequence.add(released, WRITE_ZERO_RECOVERY_NANOS);
+        }
+      }
+    }
+  }
+
+  private void addRead(int length)
+  {
+    for (int i = 0; i < length * 8; i++)
+    {
+      sequence.add(low, SLOT_START_NANOS);
+      sequence.add(released, READ_SAMPLE_NANOS, true);
+      sequence.add(released, READ_RECOVERY_NANOS);
+    }
+  }
+
+  private void decode(byte[] buffer, int firstSample)
+  {
+    for (int i = 0; i < buffer.length; i++)
+    {
+      int value = 0;
+
+      for (int bit = 0; bit < 8; bit++)
+      {
+        if (sequence.getSample(firstSample + i * 8 + bit))
+        {
+          value |= 1 << bit;
+        }
+      }
+
+      buffer[i] = (byte) value;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.bitbang;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * A bit banged SPI master in mode 0. The bytes are sent with the most significant bit first.
+ * 
+ * <p>
+ * The clock is low when idle. The data is put on MOSI while the clock is low and MISO is sampled
+ * right before the clock rises. The chip select is low for the whole transfer.
+ * </p>
+ * 
+ * <p>
+ * SCLK, MOSI and CS must be initialized as outputs and MISO as input before the master is created.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class SpiMaster
+{
+  private BitBangSequence sequence;
+  private long halfPeriodNanos;
+  private int idle;
+  private int selected;
+  private int[] clockLow = new int[2];
+  private int[] clockHigh = new int[2];
+  private boolean canRead;
+
+  /**
+   * @param beagle the Beagle to drive the Pins with
+   * @param sclk the clock
+   * @param mosi the data from the master to the device
+   * @param miso the data from the device to the master, or null if the master only writes
+   * @param cs the chip select, active low
+   * @param clockHz the frequency of the clock. Higher frequencies than the Beagle can write are
+   *        clocked as fast as possible.
+   * @throws IllegalArgumentException if the frequency is not positive.
+   */
+  public SpiMaster(Beagle beagle, Pin sclk, Pin mosi, Pin miso, Pin cs, long clockHz)
+      throws IllegalArgumentException
+  {
+    if (clockHz <= 0)
+    {
+      throw new IllegalArgumentException("The clock frequency must be positive but was "
+          + clockHz);
+    }
+
+    this.sequence = new BitBangSequence(beagle, PinGroup.fromPins(sclk, mosi, cs), miso);
+    this.halfPeriodNanos = 500000000L / clockHz;
+    this.canRead = miso != null;
+
+    idle = sequence.addPattern(pattern(sclk, PinValue.LOW, mosi, PinValue.LOW, cs, PinValue.HIGH));
+    int idleClocked = sequence.addPattern(pattern(sclk, PinValue.HIGH, mosi, PinValue.LOW, cs,
+        PinValue.HIGH));
+    selected = sequence.addPattern(pattern(sclk, PinValue.LOW, mosi, PinValue.LOW, cs,
+        PinValue.LOW));
+
+    for (int bit = 0; bit < 2; bit++)
+    {
+      PinValue data = bit == 1 ? PinValue.HIGH : PinValue.LOW;
+
+      clockLow[bit] = sequence.addPattern(pattern(sclk, PinValue.LOW, mosi, data, cs,
+          PinValue.LOW));
+      clockHigh[bit] = sequence.addPattern(pattern(sclk, PinValue.HIGH, mosi, data, cs,
+          PinValue.LOW));
+    }
+
+    // Devices ignore the clock while they are not selected
+    sequence.calibrate(idle, idleClocked);
+  }
+
+  /**
+   * Writes the bytes and ignores the data sent by the device.
+   * 
+   * @param data the bytes to send
+   */
+  public synchronized void write(byte[] data)
+  {
+    transfer(data, null);
+  }
+
+  /**
+   * Sends and receives the bytes in a single transfer.
+   * 
+   * @param tx the bytes to send
+   * @param rx receives the bytes sent by the device, or null to ignore them. Must not be shorter
+   *        than tx.
+   * @throws IllegalArgumentException if rx is too short or there is no MISO to read from.
+   */
+  public synchronized void transfer(byte[] tx, byte[] rx) throws IllegalArgumentException
+  {
+    boolean read = rx != null;
+
+    if (read && !canRead)
+    {
+      throw new IllegalArgumentException("The master has no MISO to read from");
+    }
+
+    if (read && rx.length < tx.length)
+    {
+      throw new IllegalArgumentException("The receive buffer must hold " + tx.length
+          + " bytes but holds " + rx.length);
+    }
+
+    sequence.clear();
+    sequence.add(selected, halfPeriodNanos);
+
+    for (byte value : tx)
+    {
+      for (int bit = 7; bit >= 0; bit--)
+      {
+        int data = (value >> bit) & 1;
+
+        sequence.add(clockLow[data], halfPeriodNanos, read);
+        sequence.add(clockHigh[data], halfPeriodNanos);
+      }
+    }
+
+    sequence.add(selected, halfPeriodNanos);
+    sequence.add(idle, halfPeriodNanos);
+    sequence.execute();
+
+    if (read)
+    {
+      for (int i = 0; i < tx.length; i++)
+      {
+        int value = 0;
+
+        for (int bit = 0; bit < 8; bit++)
+        {
+          value = (value << 1) | (sequence.getSample(i * 8 + bit) ? 1 : 0);
+        }
+
+        rx[i] = (byte) value;
+      }
+    }
+  }
+
+  /**
+   * @return the sequence that drives the Pins.
+   */
+  public BitBangSequence getSequence()
+  {
+    return sequence;
+  }
+
+  private static BankMask pattern(Pin sclk, PinValue clock, Pin mosi, PinValue data, Pin cs,
+      PinValue select)
+  {
+    return new BankMask().set(sclk, clock).set(mosi, data).set(cs, select);
+  }
+}
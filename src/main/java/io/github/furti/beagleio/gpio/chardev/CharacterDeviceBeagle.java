@@ -0,0 +1,482 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.gpio.AbstractBeagle;
+import io.github.furti.beagleio.gpio.PinManager;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+import io.github.furti.beagleio.gpio.file.EdgeEngine;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * A Beagle that uses the GPIO character devices (/dev/gpiochipN) instead of the deprecated sysfs.
+ * 
+ * <p>
+ * The Pins of a {@link PinGroup} initialized with {@link #initializePins(PinGroup, Direction)} are
+ * requested with one line request per chip. Writing or reading the group needs a single ioctl per
+ * request then. Pins initialized on their own get a request of their own. Edges are read as
+ * kernel timestamped events from the request. A Pin closed while other Pins still use its request
+ * keeps its line, so initializing it again reuses the request instead of asking for a busy line.
+ * </p>
+ * 
+ * <p>
+ * The chips are opened by a {@link GpioChipProvider}. Its class name is read from the system
+ * property <b>beagleio.chardev.provider</b> when the first Pin is initialized. If it is not set, the
+ * {@link NativeGpioChipProvider} issues the ioctls with the {@link NativeLibrary}. On the AM335x the
+ * bank of a Pin is the number of its chip and the bit in the bank the offset of its line.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class CharacterDeviceBeagle extends AbstractBeagle
+{
+  public static final String PROVIDER_PROPERTY = "beagleio.chardev.provider";
+
+  private static final String CONSUMER = "beagleio";
+  private static final long POLL_TICK_MILLIS = 10;
+
+  private GpioChipProvider provider;
+  private GpioChip[] chips = new GpioChip[BankMask.BANK_COUNT];
+  private AtomicReferenceArray<LineGroup> lines =
+      new AtomicReferenceArray<>(Pin.values().length);
+  private ScheduledExecutorService executor;
+  private PollDispatcher pollDispatcher;
+  private EdgeEngine edgeEngine;
+  private LineGroup[] scratchGroups = new LineGroup[BankMask.BANK_COUNT];
+  private long[] scratchMasks = new long[BankMask.BANK_COUNT];
+  private long[] scratchBits = new long[BankMask.BANK_COUNT];
+
+  /**
+   * @throws IOException if the edge engine can not be created
+   */
+  public CharacterDeviceBeagle() throws IOException
+  {
+    this(null);
+  }
+
+  /**
+   * @param provider opens the chips. If null the provider is created from the system property.
+   * @throws IOException if the edge engine can not be created
+   */
+  public CharacterDeviceBeagle(GpioChipProvider provider) throws IOException
+  {
+    this.provider = provider;
+    this.executor = Executors.newSingleThreadScheduledExecutor();
+    this.pollDispatcher = new PollDispatcher(executor, POLL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    this.edgeEngine = new EdgeEngine();
+  }
+
+  /**
+   * Requests the lines of all Pins in the group together before they are initialized. If a Pin can
+   * not be initialized, the requests whose lines are not used by any Pin are closed.
+   */
+  @Override
+  public void initializePins(PinGroup pins, Direction direction)
+  {
+    List<LineGroup> groups = requestLines(pins.getPins());
+
+    try
+    {
+      super.initializePins(pins, direction);
+    } catch (RuntimeException e)
+    {
+      closeUnused(groups, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Requests the lines of all Pins in the group together before they are initialized. If a Pin can
+   * not be initialized, the requests whose lines are not used by any Pin are closed.
+   */
+  @Override
+  public void initializePins(PinGroup pins, Direction direction, boolean activeLow)
+  {
+    List<LineGroup> groups = requestLines(pins.getPins());
+
+    try
+    {
+      super.initializePins(pins, direction, activeLow);
+    } catch (RuntimeException e)
+    {
+      closeUnused(groups, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Releases the line again if the Pin acquired it but could not be configured.
+   */
+  @Override
+  public void initializePin(Pin pin, Direction direction, boolean activeLow)
+      throws BeagleIOException
+  {
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      boolean acquired = isAcquired(pin);
+
+      try
+      {
+        super.initializePin(pin, direction, activeLow);
+      } catch (RuntimeException e)
+      {
+        if (!acquired && isAcquired(pin))
+        {
+          LineGroup group = lines.get(pin.ordinal());
+
+          try
+          {
+            group.release(group.indexOf(getOffset(pin)));
+          } catch (IOException releaseFailure)
+          {
+            e.addSuppressed(releaseFailure);
+          }
+        }
+
+        throw e;
+      }
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param pin the Pin
+   * @return the number of the chip that controls the Pin.
+   */
+  protected int getChip(Pin pin)
+  {
+    return pin.getBank();
+  }
+
+  /**
+   * @param pin the Pin
+   * @return the offset of the line of the Pin on its chip.
+   */
+  protected int getOffset(Pin pin)
+  {
+    return pin.getKernelNumber() & 31;
+  }
+
+  public PollDispatcher getPollDispatcher()
+  {
+    return pollDispatcher;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * io.github.furti.beagleio.gpio.AbstractBeagle#createPinManager(io.github.furti.beagleio.Pin)
+   */
+  @Override
+  protected PinManager createPinManager(Pin pin)
+  {
+    LineGroup group = lines.get(pin.ordinal());
+    int offset = getOffset(pin);
+
+    if (group == null || !group.acquire(group.indexOf(offset)))
+    {
+      group = requestLines(getChip(pin), new int[] {offset});
+      group.acquire(0);
+      lines.set(pin.ordinal(), group);
+    }
+
+    return new CharacterDevicePinManager(pin, group, group.indexOf(offset));
+  }
+
+  /**
+   * The Pins are grouped by their line request and each request is written with a single ioctl. The
+   * line of a Pin is looked up in its request, so nothing is allocated. The pending write of each
+   * chip is kept in the scratch arrays, so the buffers are locked while they are used.
+   */
+  @Override
+  protected void doWriteBanks(BankMask banks)
+  {
+    synchronized (scratchGroups)
+    {
+      try
+      {
+        for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+        {
+          int mask = banks.getMask(bank);
+
+          while (mask != 0)
+          {
+            int bit = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            Pin pin = Pin.forKernelNumber(bank * 32 + bit);
+            LineGroup group = lines.get(pin.ordinal());
+            int chip = group.getChip();
+            long line = 1L << group.indexOf(getOffset(pin));
+
+            if (scratchGroups[chip] != group)
+            {
+              flushWrite(chip);
+              scratchGroups[chip] = group;
+            }
+
+            scratchMasks[chip] |= line;
+
+            if ((banks.getBits(bank) & (1 << bit)) != 0)
+            {
+              scratchBits[chip] |= line;
+            }
+          }
+        }
+
+        for (int chip = 0; chip < scratchGroups.length; chip++)
+        {
+          flushWrite(chip);
+        }
+      } finally
+      {
+        clearScratch();
+      }
+    }
+  }
+
+  /**
+   * Each line request used by the group is read with a single ioctl. The values of the last request
+   * read on each chip are kept in the scratch arrays, so the buffers are locked while they are used.
+   */
+  @Override
+  protected long doReadPins(PinGroup pins)
+  {
+    List<Pin> groupPins = pins.getPins();
+    long word = 0;
+
+    synchronized (scratchGroups)
+    {
+      try
+      {
+        for (int bit = 0; bit < groupPins.size(); bit++)
+        {
+          Pin pin = groupPins.get(bit);
+          LineGroup group = lines.get(pin.ordinal());
+          int chip = group.getChip();
+
+          if (scratchGroups[chip] != group)
+          {
+            scratchGroups[chip] = group;
+            scratchBits[chip] = group.getRequest().getValues(group.getLineMask());
+          }
+
+          if ((scratchBits[chip] & (1L << group.indexOf(getOffset(pin)))) != 0)
+          {
+            word |= 1L << bit;
+          }
+        }
+      } finally
+      {
+        clearScratch();
+      }
+    }
+
+    return word;
+  }
+
+  @Override
+  protected void doRelease() throws Exception
+  {
+    executor.shutdownNow();
+    edgeEngine.close();
+
+    for (int chip = 0; chip < chips.length; chip++)
+    {
+      if (chips[chip] != null)
+      {
+        chips[chip].close();
+        chips[chip] = null;
+      }
+    }
+  }
+
+  /**
+   * Requests the lines of the Pins that have no line yet with one request per chip.
+   * 
+   * @return the new requests.
+   */
+  private synchronized List<LineGroup> requestLines(List<Pin> pins)
+  {
+    List<LineGroup> groups = new ArrayList<>();
+
+    for (int chip = 0; chip < chips.length; chip++)
+    {
+      List<Pin> chipPins = new ArrayList<>();
+
+      for (Pin pin : pins)
+      {
+        if (getChip(pin) == chip && !hasLine(pin) && !chipPins.contains(pin))
+        {
+          chipPins.add(pin);
+        }
+      }
+
+      if (!chipPins.isEmpty())
+      {
+        int[] offsets = new int[chipPins.size()];
+
+        for (int i = 0; i < offsets.length; i++)
+        {
+          offsets[i] = getOffset(chipPins.get(i));
+        }
+
+        LineGroup group = requestLines(chip, offsets);
+
+        for (Pin pin : chipPins)
+        {
+          lines.set(pin.ordinal(), group);
+        }
+
+        groups.add(group);
+      }
+    }
+
+    return groups;
+  }
+
+  /**
+   * @return true if the Pin has a line in a request that is still open.
+   */
+  private boolean hasLine(Pin pin)
+  {
+    LineGroup group = lines.get(pin.ordinal());
+
+    return group != null && !group.isClosed();
+  }
+
+  private boolean isAcquired(Pin pin)
+  {
+    LineGroup group = lines.get(pin.ordinal());
+
+    return group != null && group.isAcquired(group.indexOf(getOffset(pin)));
+  }
+
+  private void closeUnused(List<LineGroup> groups, RuntimeException failure)
+  {
+    for (LineGroup group : groups)
+    {
+      try
+      {
+        group.closeIfUnused();
+      } catch (IOException e)
+      {
+        failure.addSuppressed(e);
+      }
+    }
+  }
+
+  /**
+   * Writes the pending values of the chip with a single ioctl and clears them.
+   */
+  private void flushWrite(int chip)
+  {
+    LineGroup group = scratchGroups[chip];
+
+    if (group == null)
+    {
+      return;
+    }
+
+    long mask = scratchMasks[chip];
+    long bits = scratchBits[chip];
+
+    scratchGroups[chip] = null;
+    scratchMasks[chip] = 0;
+    scratchBits[chip] = 0;
+
+    group.getRequest().setValues(mask, bits);
+  }
+
+  private void clearScratch()
+  {
+    for (int chip = 0; chip < scratchGroups.length; chip++)
+    {
+      scratchGroups[chip] = null;
+      scratchMasks[chip] = 0;
+      scratchBits[chip] = 0;
+    }
+  }
+
+  private synchronized LineGroup requestLines(int chip, int[] offsets)
+  {
+    LineRequest request = openChip(chip).requestLines(offsets, CONSUMER);
+
+    return new LineGroup(chip, request, edgeEngine, pollDispatcher);
+  }
+
+  private GpioChip openChip(int chip)
+  {
+    if (chips[chip] == null)
+    {
+      chips[chip] = getProvider().open(chip);
+    }
+
+    return chips[chip];
+  }
+
+  private GpioChipProvider getProvider()
+  {
+    if (provider == null)
+    {
+      String providerClass = System.getProperty(PROVIDER_PROPERTY);
+
+      if (providerClass == null)
+      {
+        if (!NativeGpioChipProvider.isSupported())
+        {
+          throw new BeagleIOException("No GpioChipProvider configured and the native library is "
+              + "not available. Set the system property " + PROVIDER_PROPERTY
+              + " to the class that opens the GPIO character devices.",
+              NativeLibrary.getLoadFailure());
+        }
+
+        provider = new NativeGpioChipProvider();
+        return provider;
+      }
+
+      try
+      {
+        provider =
+            (GpioChipProvider) Class.forName(providerClass).getDeclaredConstructor().newInstance();
+      } catch (Exception e)
+      {
+        throw new BeagleIOException("Error creating GpioChipProvider " + providerClass, e);
+      }
+    }
+
+    return provider;
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.IOException;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.AbstractPinManager;
+
+/**
+ * Controls a single line of a {@link LineGroup}.
+ * 
+ * @author Daniel
+ *
+ */
+public class CharacterDevicePinManager extends AbstractPinManager
+{
+  private static final long DIRECTION_FLAGS = LineRequest.FLAG_INPUT | LineRequest.FLAG_OUTPUT;
+  private static final long EDGE_FLAGS = LineRequest.FLAG_EDGE_RISING
+      | LineRequest.FLAG_EDGE_FALLING;
+
+  private Pin pin;
+  private LineGroup group;
+  private LineRequest request;
+  private int index;
+  private long bit;
+  private long flags = LineRequest.FLAG_INPUT;
+
+  CharacterDevicePinManager(Pin pin, LineGroup group, int index)
+  {
+    this.pin = pin;
+    this.group = group;
+    this.request = group.getRequest();
+    this.index = index;
+    this.bit = 1L << index;
+  }
+
+  /**
+   * Outputs get their initial value with the same ioctl that configures them.
+   */
+  @Override
+  protected void doSetDirection(Direction direction)
+  {
+    if (direction == Direction.IN)
+    {
+      flags = (flags & ~DIRECTION_FLAGS) | LineRequest.FLAG_INPUT;
+      request.configure(bit, flags, 0);
+    } else
+    {
+      // Edges can only be detected on inputs
+      // Like the sysfs, the initial value of the direction is a raw value
+      boolean high = (direction == Direction.OUT_HIGH) != isActiveLow();
+
+      flags = (flags & ~DIRECTION_FLAGS & ~EDGE_FLAGS) | LineRequest.FLAG_OUTPUT;
+      request.configure(bit, flags, high ? bit : 0);
+    }
+  }
+
+  /**
+   * The kernel applies active low to all values. The level of an output is kept.
+   */
+  @Override
+  protected void doSetActiveLow(boolean activeLow)
+  {
+    if (activeLow == isActiveLow())
+    {
+      return;
+    }
+
+    long values = isOutput() ? request.getValues(bit) ^ bit : 0;
+
+    flags ^= LineRequest.FLAG_ACTIVE_LOW;
+    request.configure(bit, flags, values);
+  }
+
+  @Override
+  protected void doSetValue(PinValue value)
+  {
+    request.setValues(bit, value == PinValue.HIGH ? bit : 0);
+  }
+
+  @Override
+  public PinValue getValue()
+  {
+    return request.getValues(bit) != 0 ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  /**
+   * Inputs are configured to report both edges. Outputs can not report edges and are polled.
+   */
+  @Override
+  public PollValue poll()
+  {
+    boolean edges = !isOutput();
+
+    if (edges)
+    {
+      flags |= EDGE_FLAGS;
+      request.configure(bit, flags, 0);
+    }
+
+    return group.poll(index, getValue(), edges);
+  }
+
+  @Override
+  protected void doRelease()
+  {
+    try
+    {
+      group.release(index);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("An error occured while releasing the Pin " + pin, e);
+    }
+  }
+
+  private boolean isActiveLow()
+  {
+    return (flags & LineRequest.FLAG_ACTIVE_LOW) != 0;
+  }
+
+  private boolean isOutput()
+  {
+    return (flags & LineRequest.FLAG_OUTPUT) != 0;
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.Closeable;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * A GPIO character device like /dev/gpiochip0.
+ * 
+ * <p>
+ * The access to the device is hidden behind this interface and provided by a
+ * {@link GpioChipProvider}, e.g. the {@link NativeGpioChipProvider} or a fake chip in tests.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public interface GpioChip extends Closeable
+{
+  /**
+   * @return the name of the chip, e.g. gpiochip0.
+   */
+  String getName();
+
+  /**
+   * @return the number of lines the chip provides.
+   */
+  int getLineCount();
+
+  /**
+   * Requests several lines with a single line request (GPIO_V2_GET_LINE_IOCTL). The lines are
+   * configured as inputs without edge detection until they are configured otherwise.
+   * 
+   * @param offsets the offsets of the lines on the chip. The index of an offset in this array is the
+   *        index of the line in the request.
+   * @param consumer the name shown as the user of the lines.
+   * @return the request that controls the lines.
+   * @throws BeagleIOException if the lines can not be requested, e.g. because they are busy.
+   */
+  LineRequest requestLines(int[] offsets, String consumer) throws BeagleIOException;
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * Opens the GPIO character devices for the {@link CharacterDeviceBeagle}.
+ * 
+ * @author Daniel
+ *
+ */
+public interface GpioChipProvider
+{
+  /**
+   * @param chip the number of the chip, 0 for /dev/gpiochip0.
+   * @return the opened chip.
+   * @throws BeagleIOException if the chip can not be opened.
+   */
+  GpioChip open(int chip) throws BeagleIOException;
+}
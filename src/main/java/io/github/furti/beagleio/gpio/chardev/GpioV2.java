@@ -0,0 +1,102 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.IOException;
+
+/**
+ * The native calls of the gpio v2 uAPI. Each method is a single ioctl or system call on a chip or
+ * a line request.
+ * 
+ * <p>
+ * The methods must only be used if {@link io.github.furti.beagleio.gpio.util.NativeLibrary} is
+ * available.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+final class GpioV2
+{
+  /**
+   * Each event read by {@link #readEvents(int, long[])} takes this many elements of the array.
+   */
+  static final int EVENT_FIELDS = 4;
+
+  private GpioV2()
+  {
+
+  }
+
+  /**
+   * @param path the path of the chip, e.g. /dev/gpiochip0
+   * @return the file descriptor of the chip
+   */
+  static native int open(String path) throws IOException;
+
+  /**
+   * @return the name of the chip (GPIO_GET_CHIPINFO_IOCTL)
+   */
+  static native String getName(int fd) throws IOException;
+
+  /**
+   * @return the number of lines of the chip (GPIO_GET_CHIPINFO_IOCTL)
+   */
+  static native int getLineCount(int fd) throws IOException;
+
+  /**
+   * Requests the lines as inputs (GPIO_V2_GET_LINE_IOCTL).
+   * 
+   * @return the non blocking file descriptor of the request
+   */
+  static native int requestLines(int fd, int[] offsets, String consumer) throws IOException;
+
+  /**
+   * Replaces the configuration of all lines of the request (GPIO_V2_LINE_SET_CONFIG_IOCTL).
+   * 
+   * @param lineFlags the flags of each line of the request
+   * @param outputMask the lines whose output value is set
+   * @param outputValues the output values
+   */
+  static native void setConfig(int fd, long[] lineFlags, long outputMask, long outputValues)
+      throws IOException;
+
+  static native long getValues(int fd, long mask) throws IOException;
+
+  static native void setValues(int fd, long mask, long bits) throws IOException;
+
+  /**
+   * Reads the pending events without blocking. Each event is stored as offset, 1 for a rising or 0
+   * for a falling edge, timestamp and line sequence number.
+   * 
+   * @return the number of events read. 0 if no event is pending.
+   */
+  static native int readEvents(int fd, long[] target) throws IOException;
+
+  /**
+   * @return an eventfd that ends {@link #await(int, int)} when {@link #wakeup(int)} is called
+   */
+  static native int createWakeup() throws IOException;
+
+  static native void wakeup(int fd) throws IOException;
+
+  /**
+   * Blocks until events are pending on the request or the eventfd was woken up.
+   * 
+   * @return true if events are pending
+   */
+  static native boolean await(int fd, int wakeupFd) throws IOException;
+
+  static native void close(int fd) throws IOException;
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+/**
+ * An edge reported by the kernel for a line of a {@link LineRequest}. Instances are reused to read
+ * the events without allocations.
+ * 
+ * @author Daniel
+ *
+ */
+public class LineEvent
+{
+  private int offset;
+  private boolean rising;
+  private long timestamp;
+  private long lineSequence;
+
+  /**
+   * @param offset the offset of the line on the chip
+   * @param rising true for a rising edge, false for a falling one
+   * @param timestamp the time of the edge from CLOCK_MONOTONIC in nanoseconds, the same clock as
+   *        {@link System#nanoTime()}
+   * @param lineSequence the number of the event on this line
+   * @return the instance for a fluent API
+   */
+  public LineEvent set(int offset, boolean rising, long timestamp, long lineSequence)
+  {
+    this.offset = offset;
+    this.rising = rising;
+    this.timestamp = timestamp;
+    this.lineSequence = lineSequence;
+
+    return this;
+  }
+
+  public int getOffset()
+  {
+    return offset;
+  }
+
+  public boolean isRising()
+  {
+    return rising;
+  }
+
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+  public long getLineSequence()
+  {
+    return lineSequence;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "LineEvent [offset=" + offset + ", rising=" + rising + ", timestamp=" + timestamp
+        + ", lineSequence=" + lineSequence + "]";
+  }
+}
@@ -0,0 +1,360 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.util.Arrays;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+import io.github.furti.beagleio.gpio.file.EdgeEngine;
+
+/**
+ * A {@link LineRequest} shared by the Pins whose lines were requested together.
+ * 
+ * <p>
+ * All edge events of the request arrive on one channel, so the channel is registered with the
+ * {@link EdgeEngine} once and the events are dispatched to the polled lines. A request without
+ * event channel waits for its events on its own thread, see
+ * {@link LineRequest#watchEvents(Runnable, Runnable)}. If it can not wait for events either, or
+ * reading the events fails, all polled lines are read with a single ioctl in each sweep of the
+ * {@link PollDispatcher}.
+ * </p>
+ * 
+ * <p>
+ * A line is acquired by the Pin that uses it and released when the Pin is closed. The request is
+ * closed when the last acquired line is released. Lines that were requested but never acquired,
+ * e.g. because initializing the group failed, do not keep the request open.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+class LineGroup
+{
+  private static final int EVENT_BATCH = 16;
+
+  private int chip;
+  private LineRequest request;
+  private int[] offsets;
+  private int[] indexes;
+  private long lineMask;
+  private EdgeEngine edgeEngine;
+  private PollDispatcher pollDispatcher;
+  private DefaultPollValue[] pollValues;
+  private LineEvent[] events = new LineEvent[EVENT_BATCH];
+  private volatile long pollMask;
+  private long eventMask;
+  private long acquired;
+  private boolean closed;
+  private boolean eventsFailed;
+  private EdgeEngine.Registration registration;
+  private Closeable watch;
+  private Runnable pollTask;
+
+  LineGroup(int chip, LineRequest request, EdgeEngine edgeEngine, PollDispatcher pollDispatcher)
+  {
+    this.chip = chip;
+    this.request = request;
+    this.offsets = request.getOffsets();
+    this.edgeEngine = edgeEngine;
+    this.pollDispatcher = pollDispatcher;
+    this.pollValues = new DefaultPollValue[offsets.length];
+
+    int maxOffset = 0;
+
+    for (int offset : offsets)
+    {
+      maxOffset = Math.max(maxOffset, offset);
+    }
+
+    this.indexes = new int[maxOffset + 1];
+    Arrays.fill(indexes, -1);
+
+    for (int i = 0; i < offsets.length; i++)
+    {
+      indexes[offsets[i]] = i;
+      lineMask |= 1L << i;
+    }
+
+    for (int i = 0; i < events.length; i++)
+    {
+      events[i] = new LineEvent();
+    }
+  }
+
+  int getChip()
+  {
+    return chip;
+  }
+
+  LineRequest getRequest()
+  {
+    return request;
+  }
+
+  /**
+   * @param offset the offset of the line on the chip
+   * @return the index of the line in the request or -1 if it is not part of the request.
+   */
+  int indexOf(int offset)
+  {
+    return offset >= 0 && offset < indexes.length ? indexes[offset] : -1;
+  }
+
+  /**
+   * @return the mask of all lines of the request.
+   */
+  long getLineMask()
+  {
+    return lineMask;
+  }
+
+  /**
+   * Marks the line as used by a Pin.
+   * 
+   * @param index the index of the line in the request
+   * @return false if the request is already closed and the line must be requested again.
+   */
+  synchronized boolean acquire(int index)
+  {
+    if (closed)
+    {
+      return false;
+    }
+
+    acquired |= 1L << index;
+
+    return true;
+  }
+
+  /**
+   * @param index the index of the line in the request
+   * @return true if a Pin uses the line.
+   */
+  synchronized boolean isAcquired(int index)
+  {
+    return (acquired & (1L << index)) != 0;
+  }
+
+  synchronized boolean isClosed()
+  {
+    return closed;
+  }
+
+  /**
+   * Closes the request if none of its lines is acquired.
+   */
+  synchronized void closeIfUnused() throws IOException
+  {
+    if (acquired == 0 && !closed)
+    {
+      close();
+    }
+  }
+
+  /**
+   * Starts watching the line.
+   * 
+   * @param index the index of the line in the request
+   * @param value the actual value of the line
+   * @param edges true if the line was configured to report edges
+   * @return the value that is updated on each change
+   */
+  synchronized PollValue poll(int index, PinValue value, boolean edges)
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(value);
+    pollValues[index] = pollValue;
+
+    if (edges && watchEvents())
+    {
+      eventMask |= 1L << index;
+    } else
+    {
+      pollMask |= 1L << index;
+
+      if (pollTask == null)
+      {
+        pollTask = this::pollLines;
+        pollDispatcher.add(pollTask);
+      }
+    }
+
+    return pollValue;
+  }
+
+  /**
+   * Releases the line. The request is closed when all acquired lines are released.
+   * 
+   * @param index the index of the line in the request
+   */
+  synchronized void release(int index) throws IOException
+  {
+    pollValues[index] = null;
+    pollMask &= ~(1L << index);
+    eventMask &= ~(1L << index);
+
+    if (pollMask == 0 && pollTask != null)
+    {
+      pollDispatcher.remove(pollTask);
+      pollTask = null;
+    }
+
+    acquired &= ~(1L << index);
+    closeIfUnused();
+  }
+
+  private void close() throws IOException
+  {
+    closed = true;
+
+    if (registration != null)
+    {
+      registration.cancel();
+      registration = null;
+    }
+
+    try
+    {
+      if (watch != null)
+      {
+        watch.close();
+        watch = null;
+      }
+    } finally
+    {
+      request.close();
+    }
+  }
+
+  /**
+   * Starts waiting for the events of the request, with the {@link EdgeEngine} if it has an event
+   * channel or on the thread of the request otherwise.
+   * 
+   * @return false if the lines must be polled.
+   */
+  private boolean watchEvents()
+  {
+    if (eventsFailed)
+    {
+      return false;
+    }
+
+    if (registration != null || watch != null)
+    {
+      return true;
+    }
+
+    SelectableChannel channel = request.getEventChannel();
+
+    if (channel != null)
+    {
+      registration = edgeEngine.register(channel, this::dispatchEvents);
+      return true;
+    }
+
+    watch = request.watchEvents(this::dispatchEvents, this::pollEventLines);
+
+    return watch != null;
+  }
+
+  /**
+   * The events can not be read anymore. So the lines that waited for them are polled from now on.
+   */
+  private synchronized void pollEventLines()
+  {
+    if (closed || eventsFailed)
+    {
+      return;
+    }
+
+    eventsFailed = true;
+    pollMask |= eventMask;
+    eventMask = 0;
+
+    if (pollMask != 0 && pollTask == null)
+    {
+      pollTask = this::pollLines;
+      pollDispatcher.add(pollTask);
+    }
+  }
+
+  /**
+   * Executed on the {@link EdgeEngine} thread when events are pending. The events carry the kernel
+   * timestamp of the edge, which is the same clock as {@link System#nanoTime()}.
+   */
+  private void dispatchEvents()
+  {
+    int count;
+
+    while ((count = readEvents()) > 0)
+    {
+      for (int i = 0; i < count; i++)
+      {
+        LineEvent event = events[i];
+        int index = indexOf(event.getOffset());
+        DefaultPollValue pollValue = index < 0 ? null : pollValues[index];
+
+        if (pollValue != null)
+        {
+          pollValue.setValue(event.isRising() ? PinValue.HIGH : PinValue.LOW,
+              event.getTimestamp());
+        }
+      }
+    }
+  }
+
+  /**
+   * Only a failure to read the events switches to polling. A failing listener does not.
+   */
+  private int readEvents()
+  {
+    try
+    {
+      return request.readEvents(events);
+    } catch (BeagleIOException e)
+    {
+      pollEventLines();
+      throw e;
+    }
+  }
+
+  /**
+   * Executed in each sweep of the {@link PollDispatcher}. All polled lines are read at once.
+   */
+  private void pollLines()
+  {
+    long mask = pollMask;
+    long values = request.getValues(mask);
+
+    while (mask != 0)
+    {
+      int index = Long.numberOfTrailingZeros(mask);
+      mask &= mask - 1;
+
+      DefaultPollValue pollValue = pollValues[index];
+      PinValue value = (values & (1L << index)) != 0 ? PinValue.HIGH : PinValue.LOW;
+
+      if (pollValue != null && value != pollValue.getValue())
+      {
+        pollValue.setValue(value);
+      }
+    }
+  }
+}
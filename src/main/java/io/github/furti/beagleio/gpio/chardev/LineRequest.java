@@ -0,0 +1,129 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.Closeable;
+import java.nio.channels.SelectableChannel;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * Lines of a {@link GpioChip} requested together.
+ * 
+ * <p>
+ * Lines are addressed by their index in the request. A mask or bitmap with bit n set refers to the
+ * line at index n, like in the gpio v2 uAPI. So the values of all lines can be read or written with
+ * a single ioctl. Values are logical values, the kernel applies active low.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public interface LineRequest extends Closeable
+{
+  /**
+   * The line is active low. Same value as GPIO_V2_LINE_FLAG_ACTIVE_LOW.
+   */
+  long FLAG_ACTIVE_LOW = 1 << 1;
+
+  /**
+   * The line is an input. Same value as GPIO_V2_LINE_FLAG_INPUT.
+   */
+  long FLAG_INPUT = 1 << 2;
+
+  /**
+   * The line is an output. Same value as GPIO_V2_LINE_FLAG_OUTPUT.
+   */
+  long FLAG_OUTPUT = 1 << 3;
+
+  /**
+   * Rising edges are reported as events. Same value as GPIO_V2_LINE_FLAG_EDGE_RISING.
+   */
+  long FLAG_EDGE_RISING = 1 << 4;
+
+  /**
+   * Falling edges are reported as events. Same value as GPIO_V2_LINE_FLAG_EDGE_FALLING.
+   */
+  long FLAG_EDGE_FALLING = 1 << 5;
+
+  /**
+   * @return the offsets of the requested lines on the chip.
+   */
+  int[] getOffsets();
+
+  /**
+   * Changes the configuration of the lines in the mask (GPIO_V2_LINE_SET_CONFIG_IOCTL). The other
+   * lines keep their configuration.
+   * 
+   * @param mask the lines to configure
+   * @param flags the flags for the lines
+   * @param values the initial values of the lines configured as outputs
+   * @throws BeagleIOException if the configuration is rejected.
+   */
+  void configure(long mask, long flags, long values) throws BeagleIOException;
+
+  /**
+   * Reads the values of the lines in the mask (GPIO_V2_LINE_GET_VALUES_IOCTL).
+   * 
+   * @param mask the lines to read
+   * @return the values of the lines. Bits outside of the mask are 0.
+   * @throws BeagleIOException if the values can not be read.
+   */
+  long getValues(long mask) throws BeagleIOException;
+
+  /**
+   * Writes the values of the lines in the mask (GPIO_V2_LINE_SET_VALUES_IOCTL).
+   * 
+   * @param mask the lines to write
+   * @param bits the values for the lines
+   * @throws BeagleIOException if the values can not be written.
+   */
+  void setValues(long mask, long bits) throws BeagleIOException;
+
+  /**
+   * @return a channel that becomes readable when edge events are pending or null if the
+   *         implementation can not provide one. The lines are polled in this case.
+   */
+  SelectableChannel getEventChannel();
+
+  /**
+   * Waits for edge events on a thread of the request and executes the callback whenever events are
+   * pending. Used if the request has no {@link #getEventChannel() event channel}.
+   * 
+   * <p>
+   * The callback reads the events with {@link #readEvents(LineEvent[])}. A
+   * {@link BeagleIOException} thrown by the callback stops waiting, other exceptions are ignored.
+   * Closing the request stops waiting, too.
+   * </p>
+   * 
+   * @param onEvents executed when events are pending
+   * @param onFailure executed on the thread of the request if waiting fails
+   * @return a Closeable that stops waiting, or null if the request can not wait for events. The
+   *         lines are polled in this case.
+   * @throws BeagleIOException if waiting can not be started.
+   */
+  default Closeable watchEvents(Runnable onEvents, Runnable onFailure) throws BeagleIOException
+  {
+    return null;
+  }
+
+  /**
+   * Reads the pending edge events without blocking.
+   * 
+   * @param events the events to fill
+   * @return the number of events read. 0 if no event is pending.
+   * @throws BeagleIOException if the events can not be read.
+   */
+  int readEvents(LineEvent[] events) throws BeagleIOException;
+}
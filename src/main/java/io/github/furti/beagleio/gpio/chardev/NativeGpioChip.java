@@ -0,0 +1,113 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * A GPIO character device opened by the {@link NativeGpioChipProvider}. Closing the chip does not
+ * close the line requests, they stay valid until they are closed on their own.
+ * 
+ * @author Daniel
+ *
+ */
+public class NativeGpioChip implements GpioChip
+{
+  private Path path;
+  private int fd;
+  private String name;
+  private int lineCount;
+  private boolean closed;
+
+  NativeGpioChip(Path path) throws BeagleIOException
+  {
+    this.path = path;
+
+    try
+    {
+      fd = GpioV2.open(path.toString());
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error opening " + path, e);
+    }
+
+    try
+    {
+      name = GpioV2.getName(fd);
+      lineCount = GpioV2.getLineCount(fd);
+    } catch (IOException e)
+    {
+      BeagleIOException failure = new BeagleIOException(path + " is no GPIO chip", e);
+
+      try
+      {
+        GpioV2.close(fd);
+      } catch (IOException closeFailure)
+      {
+        failure.addSuppressed(closeFailure);
+      }
+
+      throw failure;
+    }
+  }
+
+  @Override
+  public String getName()
+  {
+    return name;
+  }
+
+  @Override
+  public int getLineCount()
+  {
+    return lineCount;
+  }
+
+  @Override
+  public synchronized LineRequest requestLines(int[] offsets, String consumer)
+      throws BeagleIOException
+  {
+    if (closed)
+    {
+      throw new BeagleIOException("The chip " + path + " is closed", null);
+    }
+
+    try
+    {
+      return new NativeLineRequest(GpioV2.requestLines(fd, offsets, consumer), offsets);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error requesting the lines of " + path, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (!closed)
+    {
+      closed = true;
+      GpioV2.close(fd);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "NativeGpioChip [path=" + path + ", name=" + name + ", lineCount=" + lineCount + "]";
+  }
+}
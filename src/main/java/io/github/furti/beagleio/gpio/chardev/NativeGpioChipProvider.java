@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * Opens the GPIO character devices with the ioctls of the gpio v2 uAPI issued by the
+ * {@link NativeLibrary}. It is the provider the {@link CharacterDeviceBeagle} uses if no other one
+ * is configured.
+ * 
+ * @author Daniel
+ *
+ */
+public class NativeGpioChipProvider implements GpioChipProvider
+{
+  public static final Path DEFAULT_DEVICES = Paths.get("/dev");
+
+  private Path devices;
+
+  public NativeGpioChipProvider()
+  {
+    this(DEFAULT_DEVICES);
+  }
+
+  /**
+   * @param devices the directory that contains the gpiochipN devices
+   */
+  public NativeGpioChipProvider(Path devices)
+  {
+    this.devices = devices;
+  }
+
+  /**
+   * @return true if the native library is available.
+   */
+  public static boolean isSupported()
+  {
+    return NativeLibrary.isAvailable();
+  }
+
+  @Override
+  public GpioChip open(int chip) throws BeagleIOException
+  {
+    if (!isSupported())
+    {
+      throw new BeagleIOException("The native library is needed to open the GPIO character devices",
+          NativeLibrary.getLoadFailure());
+    }
+
+    return new NativeGpioChip(devices.resolve("gpiochip" + chip));
+  }
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.chardev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * A line request of a {@link NativeGpioChip}. Each method is a single ioctl on the file descriptor
+ * of the request.
+ * 
+ * <p>
+ * The file descriptor can not be wrapped in a {@link SelectableChannel}. So the request waits for
+ * edge events on a thread of its own when {@link #watchEvents(Runnable, Runnable)} is called. The
+ * thread is blocked in the kernel while no edge occurs and woken up with an eventfd when waiting
+ * stops. If the request is closed while the thread is waiting, the thread closes the file
+ * descriptor, so it can not be reused while it is still waited for.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class NativeLineRequest implements LineRequest
+{
+  private int fd;
+  private int[] offsets;
+  private long[] lineFlags;
+  private long[] eventFields = new long[0];
+  private int wakeupFd = -1;
+  private Thread thread;
+  private boolean watching;
+  private boolean closed;
+  private volatile IOException failure;
+  private volatile long callbackFailureCount;
+  private volatile RuntimeException lastCallbackFailure;
+
+  NativeLineRequest(int fd, int[] offsets)
+  {
+    this.fd = fd;
+    this.offsets = offsets.clone();
+    this.lineFlags = new long[offsets.length];
+
+    for (int i = 0; i < lineFlags.length; i++)
+    {
+      lineFlags[i] = FLAG_INPUT;
+    }
+  }
+
+  @Override
+  public int[] getOffsets()
+  {
+    return offsets.clone();
+  }
+
+  /**
+   * The kernel replaces the configuration of all lines of the request. So the flags of the other
+   * lines are sent again and their outputs keep their actual value.
+   */
+  @Override
+  public synchronized void configure(long mask, long flags, long values) throws BeagleIOException
+  {
+    long[] configured = lineFlags.clone();
+    long outputs = 0;
+
+    for (int i = 0; i < configured.length; i++)
+    {
+      if ((mask & (1L << i)) != 0)
+      {
+        configured[i] = flags;
+      }
+
+      if ((configured[i] & FLAG_OUTPUT) != 0)
+      {
+        outputs |= 1L << i;
+      }
+    }
+
+    long kept = outputs & ~mask;
+    long outputValues = (kept != 0 ? getValues(kept) : 0) | (values & mask);
+
+    try
+    {
+      GpioV2.setConfig(fd, configured, outputs, outputValues);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error configuring the lines " + Long.toBinaryString(mask), e);
+    }
+
+    lineFlags = configured;
+  }
+
+  @Override
+  public long getValues(long mask) throws BeagleIOException
+  {
+    try
+    {
+      return GpioV2.getValues(fd, mask);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error reading the lines " + Long.toBinaryString(mask), e);
+    }
+  }
+
+  @Override
+  public void setValues(long mask, long bits) throws BeagleIOException
+  {
+    try
+    {
+      GpioV2.setValues(fd, mask, bits);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error writing the lines " + Long.toBinaryString(mask), e);
+    }
+  }
+
+  /**
+   * @return always null. The events are waited for with
+   *         {@link #watchEvents(Runnable, Runnable)}.
+   */
+  @Override
+  public SelectableChannel getEventChannel()
+  {
+    return null;
+  }
+
+  @Override
+  public synchronized Closeable watchEvents(Runnable onEvents, Runnable onFailure)
+      throws BeagleIOException
+  {
+    if (closed)
+    {
+      throw new BeagleIOException("The line request is closed", null);
+    }
+
+    if (thread != null)
+    {
+      throw new BeagleIOException("The events of the line request are already watched", null);
+    }
+
+    try
+    {
+      wakeupFd = GpioV2.createWakeup();
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error creating the wakeup of the line request", e);
+    }
+
+    watching = true;
+    thread = new Thread(() -> {
+      watch(onEvents, onFailure);
+    }, "beagleio-line-events");
+    thread.setDaemon(true);
+    thread.start();
+
+    return this::stopWatching;
+  }
+
+  /**
+   * Must only be called by one thread at a time, usually the one executing the callback of
+   * {@link #watchEvents(Runnable, Runnable)}.
+   */
+  @Override
+  public int readEvents(LineEvent[] events) throws BeagleIOException
+  {
+    if (eventFields.length != events.length * GpioV2.EVENT_FIELDS)
+    {
+      eventFields = new long[events.length * GpioV2.EVENT_FIELDS];
+    }
+
+    int count;
+
+    try
+    {
+      count = GpioV2.readEvents(fd, eventFields);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error reading the events of the line request", e);
+    }
+
+    for (int i = 0; i < count; i++)
+    {
+      int field = i * GpioV2.EVENT_FIELDS;
+
+      events[i].set((int) eventFields[field], eventFields[field + 1] != 0, eventFields[field + 2],
+          eventFields[field + 3]);
+    }
+
+    return count;
+  }
+
+  /**
+   * @return the exception that stopped waiting for events, or null.
+   */
+  public IOException getFailure()
+  {
+    return failure;
+  }
+
+  /**
+   * @return the number of callbacks that threw an exception.
+   */
+  public long getCallbackFailureCount()
+  {
+    return callbackFailureCount;
+  }
+
+  /**
+   * @return the last exception thrown by a callback, or null if no callback failed.
+   */
+  public RuntimeException getLastCallbackFailure()
+  {
+    return lastCallbackFailure;
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (closed)
+    {
+      return;
+    }
+
+    closed = true;
+
+    if (thread != null)
+    {
+      // The thread closes the file descriptor when it stops waiting
+      GpioV2.wakeup(wakeupFd);
+    } else
+    {
+      GpioV2.close(fd);
+    }
+  }
+
+  private void watch(Runnable onEvents, Runnable onFailure)
+  {
+    try
+    {
+      while (isWatching())
+      {
+        if (GpioV2.await(fd, wakeupFd) && isWatching())
+        {
+          try
+          {
+            onEvents.run();
+          } catch (BeagleIOException e)
+          {
+            lastCallbackFailure = e;
+            callbackFailureCount++;
+            return;
+          } catch (RuntimeException e)
+          {
+            // A listener failed. The other lines must still receive their events.
+            lastCallbackFailure = e;
+            callbackFailureCount++;
+          }
+        }
+      }
+    } catch (IOException e)
+    {
+      if (isWatching())
+      {
+        failure = e;
+        onFailure.run();
+      }
+    } finally
+    {
+      stopped();
+    }
+  }
+
+  private synchronized boolean isWatching()
+  {
+    return watching && !closed;
+  }
+
+  private synchronized void stopWatching() throws IOException
+  {
+    if (watching)
+    {
+      watching = false;
+      GpioV2.wakeup(wakeupFd);
+    }
+  }
+
+  private synchronized void stopped()
+  {
+    watching = false;
+    thread = null;
+
+    closeDescriptor(wakeupFd);
+    wakeupFd = -1;
+
+    if (closed)
+    {
+      closeDescriptor(fd);
+    }
+  }
+
+  private void closeDescriptor(int descriptor)
+  {
+    try
+    {
+      GpioV2.close(descriptor);
+    } catch (IOException e)
+    {
+      // Nobody waits for the result of closing on this thread
+      failure = e;
+    }
+  }
+}
@@ -0,0 +1,665 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+
+/**
+ * A Beagle that spreads its Pins over several boards.
+ * 
+ * <p>
+ * Each Pin used by the application is routed to a Pin of a board. The board is any Beagle, usually
+ * a {@link io.github.furti.beagleio.gpio.remote.RemoteBeagle}. Operations on a single Pin are
+ * executed on the board of the Pin. Operations on a {@link PinGroup} or a {@link BankMask} are split
+ * by board and executed on all boards in parallel, so they take as long as the slowest board, not
+ * the sum of all boards. The words read from the boards are merged into a single word.
+ * </p>
+ * 
+ * <p>
+ * The latency and the failures of each board are recorded in its {@link Board}. If an operation
+ * fails on some boards, it is still executed on the others and the exception names the failed
+ * boards. The exception of each board is added as suppressed exception.
+ * </p>
+ * 
+ * <p>
+ * The boards and routes must be configured before the Beagle is used by several threads.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class ClusterBeagle implements Beagle
+{
+  private static final Pin[] PINS = Pin.values();
+
+  private Map<String, Board> boards = new LinkedHashMap<>();
+  private Board[] routes = new Board[PINS.length];
+  private Pin[] boardPins = new Pin[PINS.length];
+  private ExecutorService executor;
+
+  public ClusterBeagle()
+  {
+    AtomicInteger threadNumber = new AtomicInteger();
+
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "beagleio-cluster-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param name the name of the board
+   * @param beagle the Beagle that controls the Pins of the board
+   * @return the instance for a fluent API
+   */
+  public ClusterBeagle addBoard(String name, Beagle beagle)
+  {
+    if (boards.containsKey(name))
+    {
+      throw new IllegalArgumentException("Board " + name + " was already added");
+    }
+
+    boards.put(name, new Board(name, beagle));
+    return this;
+  }
+
+  /**
+   * Routes the Pin to the same Pin of the board.
+   * 
+   * @param pin the Pin
+   * @param board the name of the board
+   * @return the instance for a fluent API
+   */
+  public ClusterBeagle route(Pin pin, String board)
+  {
+    return route(pin, board, pin);
+  }
+
+  /**
+   * @param pin the Pin used by the application
+   * @param board the name of the board
+   * @param boardPin the Pin of the board
+   * @return the instance for a fluent API
+   */
+  public ClusterBeagle route(Pin pin, String board, Pin boardPin)
+  {
+    Board actualBoard = boards.get(board);
+
+    if (actualBoard == null)
+    {
+      throw new IllegalArgumentException("Unknown board " + board);
+    }
+
+    routes[pin.ordinal()] = actualBoard;
+    boardPins[pin.ordinal()] = boardPin;
+    return this;
+  }
+
+  /**
+   * @return the boards in the order they were added.
+   */
+  public List<Board> getBoards()
+  {
+    return Collections.unmodifiableList(new ArrayList<>(boards.values()));
+  }
+
+  /**
+   * @param name the name of the board
+   * @return the board or null if there is no board with this name.
+   */
+  public Board getBoard(String name)
+  {
+    return boards.get(name);
+  }
+
+  @Override
+  public void initializePin(Pin pin, Direction direction, boolean activeLow)
+      throws BeagleIOException
+  {
+    Board board = findBoard(pin);
+
+    board.execute(() -> {
+      board.beagle.initializePin(boardPins[pin.ordinal()], direction, activeLow);
+      return 0;
+    });
+  }
+
+  @Override
+  public void initializePins(PinGroup pins, Direction direction)
+  {
+    initializePins(pins, direction, false);
+  }
+
+  @Override
+  public void initializePins(PinGroup pins, Direction direction, boolean activeLow)
+  {
+    Split split = split(pins);
+    LongSupplier[] operations = new LongSupplier[split.boards.size()];
+
+    for (int i = 0; i < operations.length; i++)
+    {
+      Board board = split.boards.get(i);
+      PinGroup boardGroup = split.groups.get(i);
+
+      operations[i] = () -> {
+        board.beagle.initializePins(boardGroup, direction, activeLow);
+        return 0;
+      };
+    }
+
+    fanOut(split.boards, operations);
+  }
+
+  @Override
+  public void setPinValue(Pin pin, PinValue value)
+  {
+    Board board = findBoard(pin);
+
+    board.execute(() -> {
+      board.beagle.setPinValue(boardPins[pin.ordinal()], value);
+      return 0;
+    });
+  }
+
+  /**
+   * The Pins are split by board and each board is written with a single
+   * {@link Beagle#writeBanks(BankMask)}.
+   */
+  @Override
+  public void writeBanks(BankMask banks)
+  {
+    List<Board> targets = new ArrayList<>();
+    List<BankMask> boardBanks = new ArrayList<>();
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        Pin pin = Pin.forKernelNumber(bank * 32 + bit);
+        Board board = findBoard(pin);
+        int index = targets.indexOf(board);
+
+        if (index < 0)
+        {
+          index = targets.size();
+          targets.add(board);
+          boardBanks.add(new BankMask());
+        }
+
+        boardBanks.get(index).set(boardPins[pin.ordinal()],
+            (banks.getBits(bank) & (1 << bit)) != 0 ? PinValue.HIGH : PinValue.LOW);
+      }
+    }
+
+    LongSupplier[] operations = new LongSupplier[targets.size()];
+
+    for (int i = 0; i < operations.length; i++)
+    {
+      Board board = targets.get(i);
+      BankMask boardMask = boardBanks.get(i);
+
+      operations[i] = () -> {
+        board.beagle.writeBanks(boardMask);
+        return 0;
+      };
+    }
+
+    fanOut(targets, operations);
+  }
+
+  @Override
+  public PinValue getPinValue(Pin pin)
+  {
+    Board board = findBoard(pin);
+
+    return board
+        .execute(() -> board.beagle.getPinValue(boardPins[pin.ordinal()]) == PinValue.HIGH ? 1 : 0)
+        != 0 ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  /**
+   * Each board reads its Pins as a word of its own. The words are merged in the order of the group.
+   */
+  @Override
+  public long readPins(PinGroup pins) throws IllegalArgumentException
+  {
+    if (pins.size() > PinGroup.MAX_WORD_SIZE)
+    {
+      throw new IllegalArgumentException("A word can hold " + PinGroup.MAX_WORD_SIZE
+          + " Pins but the group contains " + pins.size());
+    }
+
+    Split split = split(pins);
+    LongSupplier[] operations = new LongSupplier[split.boards.size()];
+
+    for (int i = 0; i < operations.length; i++)
+    {
+      Board board = split.boards.get(i);
+      PinGroup boardGroup = split.groups.get(i);
+
+      operations[i] = () -> board.beagle.readPins(boardGroup);
+    }
+
+    long[] words = fanOut(split.boards, operations);
+    long word = 0;
+
+    for (int i = 0; i < words.length; i++)
+    {
+      int[] positions = split.positions.get(i);
+
+      for (int bit = 0; bit < positions.length; bit++)
+      {
+        if ((words[i] & (1L << bit)) != 0)
+        {
+          word |= 1L << positions[bit];
+        }
+      }
+    }
+
+    return word;
+  }
+
+  @Override
+  public PollValue poll(Pin pin)
+  {
+    Board board = findBoard(pin);
+
+    return board.beagle.poll(boardPins[pin.ordinal()]);
+  }
+
+  @Override
+  public void setCached(Pin pin, boolean cached)
+  {
+    findBoard(pin).beagle.setCached(boardPins[pin.ordinal()], cached);
+  }
+
+  @Override
+  public void refresh(Pin pin)
+  {
+    findBoard(pin).beagle.refresh(boardPins[pin.ordinal()]);
+  }
+
+  @Override
+  public void closePin(Pin pin) throws BeagleIOException
+  {
+    Board board = findBoard(pin);
+
+    board.execute(() -> {
+      board.beagle.closePin(boardPins[pin.ordinal()]);
+      return 0;
+    });
+  }
+
+  @Override
+  public void closePins(PinGroup pins) throws BeagleIOException
+  {
+    Split split = split(pins);
+    LongSupplier[] operations = new LongSupplier[split.boards.size()];
+
+    for (int i = 0; i < operations.length; i++)
+    {
+      Board board = split.boards.get(i);
+      PinGroup boardGroup = split.groups.get(i);
+
+      operations[i] = () -> {
+        board.beagle.closePins(boardGroup);
+        return 0;
+      };
+    }
+
+    fanOut(split.boards, operations);
+  }
+
+  /**
+   * Releases all boards in parallel.
+   */
+  @Override
+  public void release() throws BeagleIOException
+  {
+    List<Board> targets = getBoards();
+    LongSupplier[] operations = new LongSupplier[targets.size()];
+
+    for (int i = 0; i < operations.length; i++)
+    {
+      Board board = targets.get(i);
+
+      operations[i] = () -> {
+        board.beagle.release();
+        return 0;
+      };
+    }
+
+    try
+    {
+      fanOut(targets, operations);
+    } finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  private Board findBoard(Pin pin)
+  {
+    Board board = routes[pin.ordinal()];
+
+    if (board == null)
+    {
+      throw new BeagleIOException("Pin " + pin + " is not routed to a board", null);
+    }
+
+    return board;
+  }
+
+  /**
+   * Splits the group into a group of board Pins for each board.
+   */
+  private Split split(PinGroup pins)
+  {
+    Split split = new Split();
+    List<List<Pin>> boardPinLists = new ArrayList<>();
+    List<List<Integer>> positionLists = new ArrayList<>();
+
+    for (int position = 0; position < pins.size(); position++)
+    {
+      Pin pin = pins.getPins().get(position);
+      Board board = findBoard(pin);
+      int index = split.boards.indexOf(board);
+
+      if (index < 0)
+      {
+        index = split.boards.size();
+        split.boards.add(board);
+        boardPinLists.add(new ArrayList<>());
+        positionLists.add(new ArrayList<>());
+      }
+
+      boardPinLists.get(index).add(boardPins[pin.ordinal()]);
+      positionLists.get(index).add(position);
+    }
+
+    for (int i = 0; i < split.boards.size(); i++)
+    {
+      List<Pin> boardPinList = boardPinLists.get(i);
+      List<Integer> positionList = positionLists.get(i);
+      int[] positions = new int[positionList.size()];
+
+      for (int j = 0; j < positions.length; j++)
+      {
+        positions[j] = positionList.get(j);
+      }
+
+      split.groups.add(PinGroup.fromPins(boardPinList.toArray(new Pin[boardPinList.size()])));
+      split.positions.add(positions);
+    }
+
+    return split;
+  }
+
+  /**
+   * Executes the operation of each board in parallel. The first board is executed on the calling
+   * thread. Waits until all boards are done, even if some of them failed.
+   * 
+   * @return the results of the boards
+   * @throws BeagleIOException if the operation failed on a board
+   */
+  private long[] fanOut(List<Board> targets, LongSupplier[] operations)
+  {
+    long[] results = new long[operations.length];
+    RuntimeException[] errors = new RuntimeException[operations.length];
+    List<Future<Long>> futures = new ArrayList<>();
+
+    for (int i = 1; i < operations.length; i++)
+    {
+      Board board = targets.get(i);
+      LongSupplier operation = operations[i];
+
+      futures.add(executor.submit(() -> board.execute(operation)));
+    }
+
+    if (operations.length > 0)
+    {
+      try
+      {
+        results[0] = targets.get(0).execute(operations[0]);
+      } catch (RuntimeException e)
+      {
+        errors[0] = e;
+      }
+    }
+
+    boolean interrupted = false;
+
+    for (int i = 1; i < operations.length; i++)
+    {
+      while (true)
+      {
+        try
+        {
+          results[i] = futures.get(i - 1).get();
+          break;
+        } catch (ExecutionException e)
+        {
+          errors[i] = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+              : new BeagleIOException(e.getCause().getMessage(), e.getCause());
+          break;
+        } catch (InterruptedException e)
+        {
+          // The boards are waited for anyway, otherwise their state would be unknown
+          interrupted = true;
+        }
+      }
+    }
+
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    throwErrors(targets, errors);
+
+    return results;
+  }
+
+  private void throwErrors(List<Board> targets, RuntimeException[] errors)
+  {
+    StringBuilder failed = null;
+
+    for (int i = 0; i < errors.length; i++)
+    {
+      if (errors[i] != null)
+      {
+        failed = failed == null ? new StringBuilder() : failed.append(", ");
+        failed.append(targets.get(i).name).append(": ").append(errors[i].getMessage());
+      }
+    }
+
+    if (failed != null)
+    {
+      BeagleIOException exception =
+          new BeagleIOException("Operation failed on boards " + failed, null);
+
+      for (RuntimeException error : errors)
+      {
+        if (error != null)
+        {
+          exception.addSuppressed(error);
+        }
+      }
+
+      throw exception;
+    }
+  }
+
+  /**
+   * The Pins of a group split by board.
+   * 
+   * @author Daniel
+   *
+   */
+  private static class Split
+  {
+    private List<Board> boards = new ArrayList<>();
+    private List<PinGroup> groups = new ArrayList<>();
+    private List<int[]> positions = new ArrayList<>();
+  }
+
+  /**
+   * A board of the cluster with the statistics of the operations executed on it.
+   * 
+   * @author Daniel
+   *
+   */
+  public static class Board
+  {
+    private String name;
+    private Beagle beagle;
+    private volatile long operations;
+    private volatile long failures;
+    private volatile long lastLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile long totalLatencyNanos;
+    private volatile RuntimeException lastFailure;
+
+    private Board(String name, Beagle beagle)
+    {
+      this.name = name;
+      this.beagle = beagle;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public Beagle getBeagle()
+    {
+      return beagle;
+    }
+
+    /**
+     * @return the number of operations executed on the board, including the failed ones.
+     */
+    public long getOperations()
+    {
+      return operations;
+    }
+
+    /**
+     * @return the number of operations that failed on the board.
+     */
+    public long getFailures()
+    {
+      return failures;
+    }
+
+    /**
+     * @return the exception of the last failed operation, or null if none failed.
+     */
+    public RuntimeException getLastFailure()
+    {
+      return lastFailure;
+    }
+
+    /**
+     * @return the duration of the last operation in nanoseconds.
+     */
+    public long getLastLatencyNanos()
+    {
+      return lastLatencyNanos;
+    }
+
+    /**
+     * @return the duration of the longest operation in nanoseconds.
+     */
+    public long getMaxLatencyNanos()
+    {
+      return maxLatencyNanos;
+    }
+
+    /**
+     * @return the average duration of the operations in nanoseconds.
+     */
+    public long getAverageLatencyNanos()
+    {
+      long actualOperations = operations;
+
+      return actualOperations == 0 ? 0 : totalLatencyNanos / actualOperations;
+    }
+
+    /**
+     * Executes the operation and records its latency. The statistics are updated under the lock of
+     * the board, as operations on the board can run on several threads.
+     */
+    private long execute(LongSupplier operation)
+    {
+      long start = System.nanoTime();
+
+      try
+      {
+        long result = operation.getAsLong();
+        record(System.nanoTime() - start, null);
+        return result;
+      } catch (RuntimeException e)
+      {
+        record(System.nanoTime() - start, e);
+        throw e;
+      }
+    }
+
+    private synchronized void record(long latency, RuntimeException failure)
+    {
+      lastLatencyNanos = latency;
+      maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+      totalLatencyNanos += latency;
+      operations++;
+
+      if (failure != null)
+      {
+        lastFailure = failure;
+        failures++;
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Board [" + name + "]";
+    }
+  }
+}
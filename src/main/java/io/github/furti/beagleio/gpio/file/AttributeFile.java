@@ -0,0 +1,194 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * A sysfs attribute file that is kept open as long as the Pin is in use.
+ *
+ * <p>
+ * Opening, writing and closing a file for every access costs three syscalls and some allocations.
+ * An AttributeFile opens the file only once and uses positional reads and writes from preallocated
+ * direct buffers. So a single pread/pwrite is needed to access the attribute.
+ * </p>
+ *
+ * @author Daniel
+ *
+ */
+public class AttributeFile implements Closeable
+{
+  private static final int BUFFER_SIZE = 64;
+
+  private Path path;
+  private FileChannel channel;
+  private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private boolean truncate;
+
+  /**
+   * @param path the attribute file to open.
+   * @param truncate if true the file is truncated after each write. Sysfs attributes do not need
+   *        this, but regular files would keep stale bytes when a shorter value is written.
+   * @throws BeagleIOException if the file can not be opened.
+   */
+  public AttributeFile(Path path, boolean truncate) throws BeagleIOException
+  {
+    this.path = path;
+    this.truncate = truncate;
+
+    try
+    {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error opening file " + path, e);
+    }
+  }
+
+  /**
+   * Writes the bytes to the beginning of the file.
+   *
+   * @param value the bytes to write. Must not be larger than the internal buffer.
+   */
+  public synchronized void write(byte[] value)
+  {
+    write(value, 0, value.length);
+  }
+
+  /**
+   * Writes length bytes of the value, starting at offset, to the beginning of the file.
+   *
+   * @param value the bytes to write.
+   * @param offset the first byte in value to write.
+   * @param length the number of bytes to write. Must not be larger than the internal buffer.
+   */
+  public synchronized void write(byte[] value, int offset, int length)
+  {
+    writeBuffer.clear();
+    writeBuffer.put(value, offset, length);
+    writeBuffer.flip();
+
+    try
+    {
+      long position = 0;
+
+      while (writeBuffer.hasRemaining())
+      {
+        position += channel.write(writeBuffer, position);
+      }
+
+      if (truncate)
+      {
+        channel.truncate(length);
+      }
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error writing to file " + path, e);
+    }
+  }
+
+  /**
+   * Reads the content of the file into the target array.
+   *
+   * @param target the array to read into.
+   * @return the number of bytes read.
+   */
+  public synchronized int read(byte[] target)
+  {
+    int read = fill();
+    int length = Math.min(read, target.length);
+
+    readBuffer.get(target, 0, length);
+
+    return length;
+  }
+
+  /**
+   * @return the first byte of the file.
+   */
+  public synchronized byte readByte()
+  {
+    if (fill() < 1)
+    {
+      throw new BeagleIOException("File " + path + " is empty", null);
+    }
+
+    return readBuffer.get(0);
+  }
+
+  /**
+   * Opens the file for writing only, writes the value and closes it again. Attributes like export
+   * and unexport are write only and accessed once per Pin. So they are not kept open.
+   *
+   * @param path the attribute file to write.
+   * @param value the value to write. It is encoded as US-ASCII.
+   * @throws BeagleIOException if the file can not be opened or written.
+   */
+  public static void write(Path path, String value) throws BeagleIOException
+  {
+    ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+    {
+      while (buffer.hasRemaining())
+      {
+        channel.write(buffer);
+      }
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error writing value " + value + " to file " + path, e);
+    }
+  }
+
+  public Path getPath()
+  {
+    return path;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    channel.close();
+  }
+
+  /**
+   * Reads the file from the beginning into the read buffer.
+   *
+   * @return the number of bytes available in the read buffer.
+   */
+  private int fill()
+  {
+    readBuffer.clear();
+
+    try
+    {
+      int read = channel.read(readBuffer, 0);
+      readBuffer.flip();
+
+      return Math.max(read, 0);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error reading value from file " + path, e);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.file;
+
+/**
+ * The values of the edge file of a GPIO Pin. The edge decides which signal transitions make the
+ * kernel wake up processes waiting for changes on the value file.
+ * 
+ * @author Daniel
+ *
+ */
+public enum Edge
+{
+  /**
+   * No interrupts are generated for the Pin.
+   */
+  NONE("none"),
+
+  /**
+   * Interrupts are generated when the Pin changes from LOW to HIGH.
+   */
+  RISING("rising"),
+
+  /**
+   * Interrupts are generated when the Pin changes from HIGH to LOW.
+   */
+  FALLING("falling"),
+
+  /**
+   * Interrupts are generated for every change of the Pin.
+   */
+  BOTH("both");
+
+  private String value;
+
+  private Edge(String value)
+  {
+    this.value = value;
+  }
+
+  public String getValue()
+  {
+    return value;
+  }
+}
@@ -0,0 +1,396 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+
+/**
+ * Waits for edges on all registered channels with a single {@link Selector}. On Linux the selector
+ * is backed by epoll, so one thread is blocked in the kernel until any of the Pins changes and no
+ * CPU is used while the Pins are idle.
+ *
+ * <p>
+ * The thread is started when the first channel is registered. Every time a channel becomes ready
+ * its pending data is drained and the callback registered for the channel is executed on the engine
+ * thread.
+ * </p>
+ *
+ * <p>
+ * If a channel can not be read anymore, its callback is added to the fallback
+ * {@link PollDispatcher}, so the Pin is polled from then on. If the selector itself fails, the
+ * thread ends and all callbacks are polled. The failure is kept and can be read with
+ * {@link #getFailure()}.
+ * </p>
+ *
+ * <p>
+ * A callback that throws does not stop the engine. The exception is recorded and can be read with
+ * {@link #getLastCallbackFailure()}. If it is a {@link BeagleIOException}, the Pin can not be read
+ * after the edge and its callback is moved to the fallback dispatcher as well.
+ * </p>
+ *
+ * @author Daniel
+ *
+ */
+public class EdgeEngine implements Closeable
+{
+  private Selector selector;
+  private PollDispatcher fallback;
+  private Thread thread;
+  private Queue<Registration> pendingRegistrations = new ConcurrentLinkedQueue<>();
+  private Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+  private ByteBuffer drainBuffer = ByteBuffer.allocateDirect(64);
+  private volatile boolean running;
+  private volatile IOException failure;
+  private LongAdder fallbackCount = new LongAdder();
+  private volatile long callbackFailureCount;
+  private volatile RuntimeException lastCallbackFailure;
+
+  /**
+   * Creates an engine without fallback. Callbacks of failed channels are not executed anymore.
+   * 
+   * @throws IOException if the selector can not be opened.
+   */
+  public EdgeEngine() throws IOException
+  {
+    this(null);
+  }
+
+  /**
+   * @param fallback the dispatcher that polls the Pins whose channels failed, or null
+   * @throws IOException if the selector can not be opened.
+   */
+  public EdgeEngine(PollDispatcher fallback) throws IOException
+  {
+    this.fallback = fallback;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Registers the channel with the engine. The channel is switched to non blocking mode.
+   *
+   * @param channel the channel that becomes readable when an edge occurs.
+   * @param onEdge the callback to execute on the engine thread when an edge occurs.
+   * @return the registration that can be used to stop listening for edges on the channel.
+   */
+  public synchronized Registration register(SelectableChannel channel, Runnable onEdge)
+  {
+    try
+    {
+      channel.configureBlocking(false);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error configuring channel " + channel, e);
+    }
+
+    Registration registration = new Registration(channel, onEdge);
+    registrations.add(registration);
+
+    if (failure != null && !running)
+    {
+      // The selector failed before, so the Pin is polled right away
+      registration.fallBack();
+      return registration;
+    }
+
+    pendingRegistrations.add(registration);
+
+    if (thread == null)
+    {
+      running = true;
+      thread = new Thread(this::run, "beagleio-edge-engine");
+      thread.setDaemon(true);
+      thread.start();
+    } else
+    {
+      selector.wakeup();
+    }
+
+    return registration;
+  }
+
+  /**
+   * @return the last failure of a channel or the selector, or null if nothing failed.
+   */
+  public IOException getFailure()
+  {
+    return failure;
+  }
+
+  /**
+   * @return the number of callbacks that were moved to the fallback dispatcher.
+   */
+  public long getFallbackCount()
+  {
+    return fallbackCount.sum();
+  }
+
+  /**
+   * @return the number of callbacks that threw an exception.
+   */
+  public long getCallbackFailureCount()
+  {
+    return callbackFailureCount;
+  }
+
+  /**
+   * @return the last exception thrown by a callback, or null if no callback failed.
+   */
+  public RuntimeException getLastCallbackFailure()
+  {
+    return lastCallbackFailure;
+  }
+
+  /**
+   * Stops the engine thread and closes the selector.
+   */
+  @Override
+  public synchronized void close() throws IOException
+  {
+    running = false;
+    selector.wakeup();
+
+    if (thread != null)
+    {
+      try
+      {
+        thread.join(1000);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    selector.close();
+  }
+
+  private void run()
+  {
+    while (running)
+    {
+      try
+      {
+        registerPending();
+
+        selector.select();
+
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+        while (iterator.hasNext())
+        {
+          SelectionKey key = iterator.next();
+          iterator.remove();
+
+          if (key.isValid())
+          {
+            dispatch(key);
+          }
+        }
+      } catch (IOException e)
+      {
+        if (running)
+        {
+          failure = e;
+          running = false;
+          fallBackAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * The selector can not be used anymore. So all Pins are polled from now on.
+   */
+  private synchronized void fallBackAll()
+  {
+    pendingRegistrations.clear();
+
+    for (Registration registration : registrations)
+    {
+      registration.fallBack();
+    }
+  }
+
+  private void dispatch(SelectionKey key)
+  {
+    Registration registration = (Registration) key.attachment();
+
+    try
+    {
+      drain(key.channel());
+    } catch (IOException e)
+    {
+      // Only this channel is broken. Its Pin is polled, the others keep waiting for edges.
+      failure = e;
+      key.cancel();
+      registration.fallBack();
+      return;
+    }
+
+    try
+    {
+      registration.onEdge.run();
+    } catch (BeagleIOException e)
+    {
+      // The Pin can not be read after this edge. If it was released meanwhile, the registration is
+      // cancelled and nothing is polled. Otherwise the fallback retries it.
+      lastCallbackFailure = e;
+      callbackFailureCount++;
+      key.cancel();
+      registration.fallBack();
+    } catch (RuntimeException e)
+    {
+      // A listener failed. The engine thread must keep waiting for the edges of all Pins.
+      lastCallbackFailure = e;
+      callbackFailureCount++;
+    }
+  }
+
+  private void registerPending() throws IOException
+  {
+    Registration registration;
+
+    while ((registration = pendingRegistrations.poll()) != null)
+    {
+      if (!registration.cancelled)
+      {
+        try
+        {
+          registration.key =
+              registration.channel.register(selector, SelectionKey.OP_READ, registration);
+        } catch (IOException e)
+        {
+          failure = e;
+          registration.fallBack();
+          continue;
+        }
+
+        // The registration might have been cancelled while we registered the channel
+        if (registration.cancelled)
+        {
+          registration.key.cancel();
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads all pending data from the channel. Otherwise the channel would stay ready and the selector
+   * would not block anymore. A channel at its end would be ready forever, so it is treated as
+   * failed.
+   */
+  private void drain(SelectableChannel channel) throws IOException
+  {
+    if (channel instanceof ReadableByteChannel)
+    {
+      ReadableByteChannel readable = (ReadableByteChannel) channel;
+      int read;
+
+      do
+      {
+        drainBuffer.clear();
+        read = readable.read(drainBuffer);
+      } while (read > 0);
+
+      if (read < 0)
+      {
+        throw new IOException("End of stream on " + channel);
+      }
+    }
+  }
+
+  /**
+   * A channel registered with the {@link EdgeEngine}.
+   *
+   * @author Daniel
+   *
+   */
+  public class Registration
+  {
+    private SelectableChannel channel;
+    private Runnable onEdge;
+    private volatile SelectionKey key;
+    private volatile boolean cancelled;
+    private boolean polled;
+
+    private Registration(SelectableChannel channel, Runnable onEdge)
+    {
+      this.channel = channel;
+      this.onEdge = onEdge;
+    }
+
+    /**
+     * Stops listening for edges on the channel. The channel itself is not closed.
+     */
+    public void cancel()
+    {
+      cancelled = true;
+      registrations.remove(this);
+
+      synchronized (this)
+      {
+        if (polled)
+        {
+          fallback.remove(onEdge);
+          polled = false;
+        }
+      }
+
+      SelectionKey selectionKey = key;
+
+      if (selectionKey != null)
+      {
+        selectionKey.cancel();
+        selector.wakeup();
+      }
+    }
+
+    /**
+     * @return true if the callback is executed by the fallback dispatcher.
+     */
+    public synchronized boolean isPolled()
+    {
+      return polled;
+    }
+
+    /**
+     * Moves the callback to the fallback dispatcher.
+     */
+    private synchronized void fallBack()
+    {
+      if (cancelled || polled || fallback == null)
+      {
+        return;
+      }
+
+      fallback.add(onEdge);
+      polled = true;
+      fallbackCount.increment();
+    }
+  }
+}
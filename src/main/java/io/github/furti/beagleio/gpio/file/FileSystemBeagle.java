@@ -14,14 +14,14 @@
 package io.github.furti.beagleio.gpio.file;
 
 import java.io.IOException;
-import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.nio.file.WatchService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import io.github.furti.beagleio.BeagleIOException;
 import io.github.furti.beagleio.gpio.AbstractBeagle;
+import io.github.furti.beagleio.gpio.PollDispatcher;
 
 /**
  * Base class for beagles that need to access the filesystem for interactions with the GPIO system.
@@ -31,9 +31,12 @@ import io.github.furti.beagleio.gpio.AbstractBeagle;
  */
 public abstract class FileSystemBeagle extends AbstractBeagle
 {
+  private static final long POLL_TICK_MILLIS = 10;
+
   private Path baseDirectory;
   private ScheduledExecutorService executor;
-  private WatchService watcher;
+  private PollDispatcher pollDispatcher;
+  private EdgeEngine edgeEngine;
 
   /**
    * @throws IOException if an exception occurs creating the tmp directory.
@@ -42,7 +45,8 @@ public abstract class FileSystemBeagle extends AbstractBeagle
   {
     baseDirectory = initBaseDirectory();
     executor = Executors.newSingleThreadScheduledExecutor();
-    watcher = FileSystems.getDefault().newWatchService();
+    pollDispatcher = new PollDispatcher(executor, POLL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    edgeEngine = new EdgeEngine(pollDispatcher);
   }
 
   public Path getBaseDirectory()
@@ -55,10 +59,18 @@ public abstract class FileSystemBeagle extends AbstractBeagle
     return executor;
   }
 
+  /**
+   * @return the dispatcher that polls all Pins that can not wait for edges. Its sweep statistics
+   *         show whether all polled Pins can be read within a tick.
+   */
+  public PollDispatcher getPollDispatcher()
+  {
+    return pollDispatcher;
+  }
 
-  public WatchService getWatcher()
+  public EdgeEngine getEdgeEngine()
   {
-    return watcher;
+    return edgeEngine;
   }
 
   /*
@@ -72,7 +84,7 @@ public abstract class FileSystemBeagle extends AbstractBeagle
     try
     {
       executor.shutdownNow();
-      watcher.close();
+      edgeEngine.close();
     } catch (IOException e)
     {
       throw new BeagleIOException("Error deleting tmp directory", e);
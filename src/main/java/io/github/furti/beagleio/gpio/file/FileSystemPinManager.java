@@ -13,21 +13,11 @@
  */
 package io.github.furti.beagleio.gpio.file;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
-import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import io.github.furti.beagleio.BeagleIOException;
 import io.github.furti.beagleio.Direction;
@@ -36,6 +26,7 @@ import io.github.furti.beagleio.PinValue;
 import io.github.furti.beagleio.PollValue;
 import io.github.furti.beagleio.gpio.AbstractPinManager;
 import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.PollDispatcher;
 
 /**
  * @author Daniel
@@ -50,8 +41,29 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   public static final String POWER_FILE = "power";
   public static final String UEVENT_FILE = "uevent";
 
-  private ScheduledExecutorService executor;
-  private WatchService watcher;
+  private static final byte[][] DIRECTION_BYTES = new byte[Direction.values().length][];
+  private static final byte[][] VALUE_BYTES = new byte[PinValue.values().length][];
+  private static final byte[] ACTIVE_LOW_BYTES = {'1'};
+  private static final byte[] ACTIVE_HIGH_BYTES = {'0'};
+  private static final byte[] EDGE_BOTH_BYTES =
+      Edge.BOTH.getValue().getBytes(StandardCharsets.US_ASCII);
+
+  static
+  {
+    for (Direction direction : Direction.values())
+    {
+      DIRECTION_BYTES[direction.ordinal()] =
+          direction.getValue().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    for (PinValue value : PinValue.values())
+    {
+      VALUE_BYTES[value.ordinal()] = value.getValue().getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private PollDispatcher pollDispatcher;
+  private EdgeEngine edgeEngine;
   private Pin pin;
   private Path pinDirectory;
   private Path activeLowFile;
@@ -60,21 +72,25 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   private Path powerFile;
   private Path ueventFile;
   private Path valueFile;
-  private WatchKey watchKey;
+  private AttributeFile activeLowAttribute;
+  private AttributeFile directionAttribute;
+  private AttributeFile edgeAttribute;
+  private AttributeFile valueAttribute;
   private DefaultPollValue pollValue;
-  private ScheduledFuture<?> pollFuture;
+  private Runnable pollTask;
+  private Closeable edgeWatch;
 
   /**
    * @param pin
    * @param baseDirectory
-   * @param watcher
-   * @param executor
+   * @param pollDispatcher
+   * @param edgeEngine
    */
-  public FileSystemPinManager(Pin pin, Path baseDirectory, ScheduledExecutorService executor,
-      WatchService watcher)
+  public FileSystemPinManager(Pin pin, Path baseDirectory, PollDispatcher pollDispatcher,
+      EdgeEngine edgeEngine)
   {
-    this.watcher = watcher;
-    this.executor = executor;
+    this.pollDispatcher = pollDispatcher;
+    this.edgeEngine = edgeEngine;
     this.pin = pin;
     this.pinDirectory = this.initialize(pin, baseDirectory);
 
@@ -91,7 +107,7 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   @Override
   protected void doSetDirection(Direction direction)
   {
-    writeToFile(directionFile, direction.getValue());
+    directionAttribute.write(DIRECTION_BYTES[direction.ordinal()]);
   }
 
   /*
@@ -102,7 +118,7 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   @Override
   protected void doSetActiveLow(boolean activeLow)
   {
-    writeToFile(activeLowFile, activeLow ? Integer.valueOf(1) : Integer.valueOf(0));
+    activeLowAttribute.write(activeLow ? ACTIVE_LOW_BYTES : ACTIVE_HIGH_BYTES);
   }
 
   /*
@@ -114,24 +130,43 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   @Override
   protected void doSetValue(PinValue value)
   {
-    writeToFile(valueFile, value.getValue());
+    valueAttribute.write(VALUE_BYTES[value.ordinal()]);
   }
 
   @Override
   public PinValue getValue()
   {
-    return PinValue.forValue(readFromFile(valueFile));
+    byte value = valueAttribute.readByte();
+
+    switch (value)
+    {
+      case '1':
+        return PinValue.HIGH;
+      case '0':
+        return PinValue.LOW;
+      default:
+        throw new BeagleIOException("PinValue " + (char) value + " not found in " + valueFile, null);
+    }
   }
 
+  /**
+   * Configures the Pin to generate interrupts on both edges. If the implementation can wait for the
+   * interrupts, the value is read only when an edge occurs. Otherwise, or if the Pin does not
+   * support interrupts, the Pin is added to the sweep of the {@link PollDispatcher}.
+   */
   @Override
   public PollValue poll()
   {
     try
     {
-      watchKey = pinDirectory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
       pollValue = new DefaultPollValue(getValue());
-      pollFuture = executor.scheduleAtFixedRate(this::updatePollValue, 10, 10,
-          TimeUnit.MILLISECONDS);
+      edgeWatch = enableEdges() ? watchEdges(this::updatePollValue) : null;
+
+      if (edgeWatch == null)
+      {
+        pollTask = this::updatePollValue;
+        pollDispatcher.add(pollTask);
+      }
 
       return pollValue;
     } catch (IOException e)
@@ -140,27 +175,37 @@ public abstract class FileSystemPinManager extends AbstractPinManager
     }
   }
 
-  private void updatePollValue()
+  /**
+   * Not every Pin can generate interrupts. The kernel rejects writes to the edge file of such Pins.
+   * They are polled instead.
+   * 
+   * @return true if the Pin generates interrupts on both edges.
+   */
+  private boolean enableEdges()
   {
-    List<WatchEvent<?>> pollEvents = watchKey.pollEvents();
-
-    for (WatchEvent<?> event : pollEvents)
+    try
     {
-      Path path = (Path) event.context();
+      edgeAttribute.write(EDGE_BOTH_BYTES);
 
-      /*
-       * If a change was detected in the value file we have to read the actual value and store it in
-       * the pollValue
-       */
-      if ("value".equals(path.toString()))
-      {
-        pollValue.setValue(getValue());
-        break;
-      }
+      return true;
+    } catch (BeagleIOException e)
+    {
+      return false;
     }
+  }
 
+  /**
+   * Reads the value of the Pin and updates the {@link PollValue} if it changed. Is called by the
+   * edge watch when an edge occured or by the {@link PollDispatcher} in each sweep.
+   */
+  private void updatePollValue()
+  {
+    PinValue value = getValue();
 
-    watchKey.reset();
+    if (value != pollValue.getValue())
+    {
+      pollValue.setValue(value);
+    }
   }
 
   /*
@@ -173,12 +218,15 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   {
     try
     {
-      if (pollValue != null)
+      if (edgeWatch != null)
+      {
+        edgeWatch.close();
+      } else if (pollTask != null)
       {
-        watchKey.cancel();
-        pollFuture.cancel(true);
+        pollDispatcher.remove(pollTask);
       }
 
+      closeAttributes();
       releaseFileSystemPin(pin, pinDirectory);
     } catch (IOException e)
     {
@@ -187,35 +235,69 @@ public abstract class FileSystemPinManager extends AbstractPinManager
   }
 
   /**
-   * @param path to write to
-   * @param value to write to the file. The toString method is used to obtain the actual value to
-   *        write to the file.
+   * Starts waiting for the interrupts of the Pin. By default the channel returned by
+   * {@link #openEdgeChannel()} is registered with the {@link EdgeEngine}. Implementations that wait
+   * for the interrupts themselves override this method.
+   * 
+   * @param onEdge reads the Pin. Must be executed every time an edge occurs.
+   * @return closed when the Pin is released, or null if waiting for edges is not supported.
+   * @throws IOException if an exception occurs setting up the wait.
    */
-  protected void writeToFile(Path path, Object value)
+  protected Closeable watchEdges(Runnable onEdge) throws IOException
   {
-    try (BufferedWriter writer = Files.newBufferedWriter(path, Charset.defaultCharset(),
-        StandardOpenOption.WRITE))
-    {
-      writer.write(value.toString());
-    } catch (IOException e)
+    SelectableChannel channel = openEdgeChannel();
+
+    if (channel == null)
     {
-      throw new BeagleIOException("Error writing value " + value + " to file " + path, e);
+      return null;
     }
+
+    EdgeEngine.Registration registration = edgeEngine.register(channel, onEdge);
+
+    return () -> {
+      registration.cancel();
+      closeEdgeChannel(channel);
+    };
   }
 
   /**
-   * @param path The path to read from
-   * @return The content of the file
+   * Implementations may provide a channel that becomes readable every time an edge occurs on the Pin.
+   * 
+   * <p>
+   * The kernel signals edges on the value file of an exported Pin with POLLPRI. Java selectors can
+   * only wait for readable channels. So a real sysfs needs to override
+   * {@link #watchEdges(Runnable)} instead. If null is returned, the value of the Pin is polled
+   * periodically.
+   * </p>
+   * 
+   * @return a channel to wait for edges or null if waiting for edges is not supported.
+   * @throws IOException if an exception occurs opening the channel.
    */
-  protected String readFromFile(Path path)
+  protected SelectableChannel openEdgeChannel() throws IOException
   {
-    try (BufferedReader reader = Files.newBufferedReader(path, Charset.defaultCharset()))
-    {
-      return reader.readLine();
-    } catch (IOException e)
-    {
-      throw new BeagleIOException("Error reading value from file " + path, e);
-    }
+    return null;
+  }
+
+  /**
+   * Closes the channel returned by {@link #openEdgeChannel()} when the Pin is released.
+   * 
+   * @param channel the channel to close
+   * @throws IOException if an exception occurs closing the channel.
+   */
+  protected void closeEdgeChannel(SelectableChannel channel) throws IOException
+  {
+    channel.close();
+  }
+
+  /**
+   * Implementations that do not operate on a real sysfs must return true here. Otherwise a shorter
+   * value written to an attribute would leave stale bytes of the former value in the file.
+   * 
+   * @return true if attribute files should be truncated after they are written.
+   */
+  protected boolean isTruncateOnWrite()
+  {
+    return false;
   }
 
   /**
@@ -230,8 +312,13 @@ public abstract class FileSystemPinManager extends AbstractPinManager
    */
   protected abstract Path initialize(Pin pin, Path baseDirectory);
 
+  protected Path getPinDirectory()
+  {
+    return pinDirectory;
+  }
+
   /**
-   * Initialize the Paths to all files.
+   * Initialize the Paths to all files and open the attributes that are used frequently.
    */
   private void setupFiles()
   {
@@ -241,6 +328,28 @@ public abstract class FileSystemPinManager extends AbstractPinManager
     this.powerFile = this.pinDirectory.resolve(POWER_FILE);
     this.ueventFile = this.pinDirectory.resolve(UEVENT_FILE);
     this.valueFile = this.pinDirectory.resolve(VALUE_FILE);
+
+    boolean truncate = isTruncateOnWrite();
+    this.activeLowAttribute = new AttributeFile(activeLowFile, truncate);
+    this.directionAttribute = new AttributeFile(directionFile, truncate);
+    this.edgeAttribute = new AttributeFile(edgeFile, truncate);
+    this.valueAttribute = new AttributeFile(valueFile, truncate);
+  }
+
+  /**
+   * Closes the attribute files that are kept open while the Pin is in use.
+   */
+  private void closeAttributes() throws IOException
+  {
+    try
+    {
+      activeLowAttribute.close();
+      directionAttribute.close();
+      edgeAttribute.close();
+    } finally
+    {
+      valueAttribute.close();
+    }
   }
 
 
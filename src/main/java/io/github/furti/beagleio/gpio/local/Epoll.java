@@ -0,0 +1,83 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.local;
+
+import java.io.IOException;
+
+/**
+ * The native calls to wait for POLLPRI on the value files of the sysfs. Java selectors can only
+ * wait for readable channels, but the kernel signals edges with POLLPRI.
+ * 
+ * <p>
+ * The methods must only be used if {@link io.github.furti.beagleio.gpio.util.NativeLibrary} is
+ * available.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+final class Epoll
+{
+  private Epoll()
+  {
+
+  }
+
+  /**
+   * @return a new epoll instance.
+   */
+  static native int create() throws IOException;
+
+  /**
+   * Opens the attribute and reads it once, so the next POLLPRI means a new edge.
+   * 
+   * @return the file descriptor
+   */
+  static native int open(String path) throws IOException;
+
+  /**
+   * Waits for POLLPRI on the file descriptor.
+   */
+  static native void add(int epfd, int fd) throws IOException;
+
+  static native void remove(int epfd, int fd) throws IOException;
+
+  /**
+   * Creates an eventfd and adds it to the epoll instance. It is reported as ready after
+   * {@link #wakeup(int)} was called.
+   * 
+   * @return the file descriptor of the eventfd
+   */
+  static native int createWakeup(int epfd) throws IOException;
+
+  /**
+   * Makes the eventfd ready, so a thread waiting in {@link #await(int, int[], int)} returns.
+   */
+  static native void wakeup(int fd) throws IOException;
+
+  /**
+   * @param ready receives the file descriptors that signaled POLLPRI
+   * @param timeoutMillis the maximum time to wait, or -1 to wait until a descriptor is ready
+   * @return the number of ready file descriptors. 0 if the timeout elapsed or a signal interrupted
+   *         the wait.
+   */
+  static native int await(int epfd, int[] ready, int timeoutMillis) throws IOException;
+
+  /**
+   * Reads the attribute from the start, so it stops signaling POLLPRI until the next edge.
+   */
+  static native void clear(int fd);
+
+  static native void close(int fd) throws IOException;
+}
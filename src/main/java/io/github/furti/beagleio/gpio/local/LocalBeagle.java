@@ -17,16 +17,26 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import io.github.furti.beagleio.BeagleIOException;
 import io.github.furti.beagleio.Pin;
 import io.github.furti.beagleio.gpio.PinManager;
 import io.github.furti.beagleio.gpio.file.FileSystemBeagle;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
 
 /**
+ * Operates on the GPIO system of the kernel under /sys/class/gpio.
+ * 
+ * <p>
+ * If the {@link NativeLibrary} is available, polled Pins wait for the edges the kernel signals on
+ * their value files. Otherwise they are read in each sweep of the poll dispatcher.
+ * </p>
+ * 
  * @author Daniel
  *
  */
 public class LocalBeagle extends FileSystemBeagle
 {
+  private LocalEdgeNotifier edgeNotifier;
 
   /**
    * @throws IOException if an exception occurs initializing the Beagle
@@ -34,6 +44,37 @@ public class LocalBeagle extends FileSystemBeagle
   public LocalBeagle() throws IOException
   {
     super();
+
+    if (LocalEdgeNotifier.isSupported())
+    {
+      edgeNotifier = new LocalEdgeNotifier(getPollDispatcher());
+    }
+  }
+
+  /**
+   * @return the notifier that waits for edges, or null if the Pins are polled.
+   */
+  public LocalEdgeNotifier getEdgeNotifier()
+  {
+    return edgeNotifier;
+  }
+
+  @Override
+  public void doRelease()
+  {
+    try
+    {
+      if (edgeNotifier != null)
+      {
+        edgeNotifier.close();
+      }
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error closing the edge notifier", e);
+    } finally
+    {
+      super.doRelease();
+    }
   }
 
   /*
@@ -56,6 +97,7 @@ public class LocalBeagle extends FileSystemBeagle
   @Override
   protected PinManager createPinManager(Pin pin)
   {
-    return null;
+    return new LocalPinManager(pin, getBaseDirectory(), getPollDispatcher(), getEdgeEngine(),
+        edgeNotifier);
   }
 }
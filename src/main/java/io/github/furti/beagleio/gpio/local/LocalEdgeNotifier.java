@@ -0,0 +1,384 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.local;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * Waits for the edges signaled by the kernel on the value files of the sysfs.
+ *
+ * <p>
+ * The kernel signals an edge with POLLPRI on the value file, which a Java selector can not wait for.
+ * So the notifier waits for POLLPRI with a native epoll instance and executes the callback of the
+ * Pin right on its thread. The thread is blocked in the kernel without a timeout while the Pins are
+ * idle. Closing the notifier wakes it up with an eventfd.
+ * </p>
+ *
+ * <p>
+ * A callback that throws does not stop the notifier. The exception is recorded and can be read with
+ * {@link #getLastCallbackFailure()}. If it is a {@link BeagleIOException}, or if waiting fails, the
+ * callbacks are added to the fallback {@link PollDispatcher}, so the Pins are polled from then on.
+ * </p>
+ *
+ * <p>
+ * The notifier needs the {@link NativeLibrary}. Use {@link #isSupported()} to check whether it can
+ * be used.
+ * </p>
+ *
+ * @author Daniel
+ *
+ */
+public class LocalEdgeNotifier implements Closeable
+{
+  private PollDispatcher fallback;
+  private int epollFd = -1;
+  private int wakeupFd = -1;
+  private Map<Integer, Registration> registrations = new HashMap<>();
+  private int[] ready = new int[16];
+  private Thread thread;
+  private volatile boolean running;
+  private volatile IOException failure;
+  private volatile long callbackFailureCount;
+  private volatile RuntimeException lastCallbackFailure;
+
+  /**
+   * @return true if the native library is available.
+   */
+  public static boolean isSupported()
+  {
+    return NativeLibrary.isAvailable();
+  }
+
+  /**
+   * Creates a notifier without fallback. Callbacks are not executed anymore after waiting failed.
+   */
+  public LocalEdgeNotifier()
+  {
+    this(null);
+  }
+
+  /**
+   * @param fallback the dispatcher that polls the Pins that can not wait for edges anymore, or null
+   */
+  public LocalEdgeNotifier(PollDispatcher fallback)
+  {
+    this.fallback = fallback;
+  }
+
+  /**
+   * Starts waiting for edges on the value file.
+   *
+   * @param valueFile the value file of the Pin.
+   * @param onEdge the callback to execute on the notifier thread when an edge occurs.
+   * @return the registration that stops waiting for edges when it is closed.
+   * @throws IOException if the file can not be watched.
+   */
+  public synchronized Registration register(Path valueFile, Runnable onEdge) throws IOException
+  {
+    if (failure != null)
+    {
+      throw new IOException("Waiting for edges failed before", failure);
+    }
+
+    if (epollFd < 0)
+    {
+      epollFd = Epoll.create();
+      wakeupFd = Epoll.createWakeup(epollFd);
+    }
+
+    int fd = Epoll.open(valueFile.toString());
+
+    try
+    {
+      Epoll.add(epollFd, fd);
+    } catch (IOException e)
+    {
+      Epoll.close(fd);
+      throw e;
+    }
+
+    Registration registration = new Registration(fd, onEdge);
+    registrations.put(fd, registration);
+
+    if (thread == null)
+    {
+      running = true;
+      thread = new Thread(this::run, "beagleio-local-edges");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    return registration;
+  }
+
+  /**
+   * @return the exception that stopped the thread, or null.
+   */
+  public IOException getFailure()
+  {
+    return failure;
+  }
+
+  /**
+   * @return the number of callbacks that threw an exception.
+   */
+  public long getCallbackFailureCount()
+  {
+    return callbackFailureCount;
+  }
+
+  /**
+   * @return the last exception thrown by a callback, or null if no callback failed.
+   */
+  public RuntimeException getLastCallbackFailure()
+  {
+    return lastCallbackFailure;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    Thread waiting;
+
+    synchronized (this)
+    {
+      running = false;
+      waiting = thread;
+
+      if (wakeupFd >= 0)
+      {
+        Epoll.wakeup(wakeupFd);
+      }
+    }
+
+    if (waiting != null && waiting != Thread.currentThread())
+    {
+      try
+      {
+        waiting.join(1000);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (this)
+    {
+      for (Registration registration : registrations.values())
+      {
+        registration.stopPolling();
+        Epoll.close(registration.fd);
+      }
+
+      registrations.clear();
+
+      if (epollFd >= 0)
+      {
+        Epoll.close(wakeupFd);
+        Epoll.close(epollFd);
+        epollFd = -1;
+        wakeupFd = -1;
+      }
+    }
+  }
+
+  private void run()
+  {
+    try
+    {
+      while (running)
+      {
+        int count = Epoll.await(epollFd, ready, -1);
+
+        for (int i = 0; i < count && running; i++)
+        {
+          if (ready[i] != wakeupFd)
+          {
+            dispatch(ready[i]);
+          }
+        }
+      }
+    } catch (IOException e)
+    {
+      if (running)
+      {
+        failure = e;
+        running = false;
+        fallBackAll();
+      }
+    }
+  }
+
+  private void dispatch(int fd)
+  {
+    Registration registration = clear(fd);
+
+    if (registration == null)
+    {
+      return;
+    }
+
+    try
+    {
+      registration.onEdge.run();
+    } catch (BeagleIOException e)
+    {
+      // The Pin can not be read after this edge. If it was released meanwhile, the registration is
+      // closed and nothing is polled. Otherwise the fallback retries it.
+      lastCallbackFailure = e;
+      callbackFailureCount++;
+      fallBack(registration);
+    } catch (RuntimeException e)
+    {
+      // A listener failed. The thread must keep waiting for the edges of all Pins.
+      lastCallbackFailure = e;
+      callbackFailureCount++;
+    }
+  }
+
+  /**
+   * The lock makes sure that the file descriptor was not closed and reused since it was reported.
+   * 
+   * @return the registration of the file descriptor, or null if it was closed.
+   */
+  private synchronized Registration clear(int fd)
+  {
+    Registration registration = registrations.get(fd);
+
+    if (registration != null && !registration.polled)
+    {
+      Epoll.clear(fd);
+      return registration;
+    }
+
+    return null;
+  }
+
+  /**
+   * Stops waiting for edges on the file descriptor and polls the Pin instead.
+   */
+  private synchronized void fallBack(Registration registration)
+  {
+    if (registrations.get(registration.fd) != registration || registration.polled)
+    {
+      return;
+    }
+
+    try
+    {
+      Epoll.remove(epollFd, registration.fd);
+    } catch (IOException e)
+    {
+      // The descriptor is not reported anymore once the Pin is polled
+    }
+
+    registration.startPolling();
+  }
+
+  /**
+   * Waiting failed. So all Pins are polled from now on.
+   */
+  private synchronized void fallBackAll()
+  {
+    for (Registration registration : registrations.values())
+    {
+      registration.startPolling();
+    }
+  }
+
+  /**
+   * A value file the {@link LocalEdgeNotifier} waits for.
+   *
+   * @author Daniel
+   *
+   */
+  public class Registration implements Closeable
+  {
+    private int fd;
+    private Runnable onEdge;
+    private boolean polled;
+
+    private Registration(int fd, Runnable onEdge)
+    {
+      this.fd = fd;
+      this.onEdge = onEdge;
+    }
+
+    /**
+     * @return true if the callback is executed by the fallback dispatcher.
+     */
+    public boolean isPolled()
+    {
+      synchronized (LocalEdgeNotifier.this)
+      {
+        return polled;
+      }
+    }
+
+    /**
+     * Stops waiting for edges and closes the value file.
+     */
+    @Override
+    public void close() throws IOException
+    {
+      synchronized (LocalEdgeNotifier.this)
+      {
+        if (registrations.get(fd) != this)
+        {
+          return;
+        }
+
+        registrations.remove(fd);
+
+        try
+        {
+          if (!polled && epollFd >= 0)
+          {
+            Epoll.remove(epollFd, fd);
+          }
+        } finally
+        {
+          stopPolling();
+          Epoll.close(fd);
+        }
+      }
+    }
+
+    private void startPolling()
+    {
+      if (!polled && fallback != null)
+      {
+        fallback.add(onEdge);
+        polled = true;
+      }
+    }
+
+    private void stopPolling()
+    {
+      if (polled)
+      {
+        fallback.remove(onEdge);
+        polled = false;
+      }
+    }
+  }
+}
@@ -13,12 +13,14 @@
  */
 package io.github.furti.beagleio.gpio.local;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.WatchService;
-import java.util.concurrent.ScheduledExecutorService;
 
 import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+import io.github.furti.beagleio.gpio.file.AttributeFile;
+import io.github.furti.beagleio.gpio.file.EdgeEngine;
 import io.github.furti.beagleio.gpio.file.FileSystemPinManager;
 
 /**
@@ -30,22 +32,46 @@ public class LocalPinManager extends FileSystemPinManager
   private static final String EXPORT_FILE = "export";
   private static final String UNEXPORT_FILE = "unexport";
 
+  private LocalEdgeNotifier edgeNotifier;
   private Path exportPath;
   private Path unexportPath;
 
   /**
    * @param pin
    * @param baseDirectory
-   * @param executor
-   * @param watcher
+   * @param pollDispatcher
+   * @param edgeEngine
+   * @param edgeNotifier waits for the edges signaled by the kernel, or null to poll the Pin
    */
-  public LocalPinManager(Pin pin, Path baseDirectory, ScheduledExecutorService executor,
-      WatchService watcher)
+  public LocalPinManager(Pin pin, Path baseDirectory, PollDispatcher pollDispatcher,
+      EdgeEngine edgeEngine, LocalEdgeNotifier edgeNotifier)
   {
-    super(pin, baseDirectory, executor, watcher);
+    super(pin, baseDirectory, pollDispatcher, edgeEngine);
+
+    this.edgeNotifier = edgeNotifier;
   }
 
+  /**
+   * The kernel signals edges with POLLPRI on the value file. The {@link LocalEdgeNotifier} waits
+   * for them natively and reads the Pin on its own thread. If the value file can not be watched, the
+   * Pin is polled.
+   */
+  @Override
+  protected Closeable watchEdges(Runnable onEdge)
+  {
+    if (edgeNotifier == null)
+    {
+      return null;
+    }
 
+    try
+    {
+      return edgeNotifier.register(getPinDirectory().resolve(VALUE_FILE), onEdge);
+    } catch (IOException e)
+    {
+      return null;
+    }
+  }
 
   /*
    * (non-Javadoc)
@@ -57,7 +83,7 @@ public class LocalPinManager extends FileSystemPinManager
   @Override
   protected void releaseFileSystemPin(Pin pin, Path pinDirectory) throws IOException
   {
-    writeToFile(unexportPath, pin.getKernelNumber());
+    AttributeFile.write(unexportPath, pin.getKernelNumber().toString());
   }
 
   /*
@@ -73,7 +99,7 @@ public class LocalPinManager extends FileSystemPinManager
     this.exportPath = baseDirectory.resolve(EXPORT_FILE);
     this.unexportPath = baseDirectory.resolve(UNEXPORT_FILE);
 
-    writeToFile(exportPath, pin.getKernelNumber());
+    AttributeFile.write(exportPath, pin.getKernelNumber().toString());
 
     return baseDirectory.resolve(pin.getKernelNumber().toString());
   }
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.memory;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.AbstractBeagle;
+import io.github.furti.beagleio.gpio.PinManager;
+import io.github.furti.beagleio.gpio.stimulus.StimulusTarget;
+
+/**
+ * A Beagle that keeps the state of all Pins on the heap. It behaves like the GPIO system of the
+ * BeagleBone Black without touching the filesystem, so tests and benchmarks run at memory speed.
+ * 
+ * <p>
+ * The values of outputs can not be set from outside and the values of inputs can only be set from
+ * outside by {@link #drive(Pin, PinValue)}. A {@link io.github.furti.beagleio.gpio.stimulus.StimulusEngine}
+ * can drive them at high rates. Active low inverts the values like the sysfs does and
+ * {@link io.github.furti.beagleio.PollValue}s are updated as soon as the value of a Pin changes.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class InMemoryBeagle extends AbstractBeagle implements StimulusTarget
+{
+  private AtomicReferenceArray<InMemoryPinManager> pinManagers =
+      new AtomicReferenceArray<>(Pin.values().length);
+
+  /**
+   * Sets the level of an input as if it was driven by the hardware connected to the Pin.
+   * 
+   * @param pin the input
+   * @param level the electrical level. {@link PinValue#HIGH} means 3.3V, so the value read from an
+   *        active low Pin is {@link PinValue#LOW}.
+   * @throws BeagleIOException if the Pin is not initialized or is an output.
+   */
+  public void drive(Pin pin, PinValue level) throws BeagleIOException
+  {
+    drive(pin, level, System.nanoTime());
+  }
+
+  /**
+   * The timestamp is passed on to the {@link io.github.furti.beagleio.PollValue} of the Pin.
+   */
+  @Override
+  public void drive(Pin pin, PinValue level, long timestamp) throws BeagleIOException
+  {
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      InMemoryPinManager pinManager = pinManagers.get(pin.ordinal());
+
+      if (pinManager == null)
+      {
+        throw new BeagleIOException("Pin " + pin + " is not initialized", null);
+      }
+
+      pinManager.drive(level, timestamp);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @throws BeagleIOException if the Pin is an input.
+   */
+  @Override
+  public void setPinValue(Pin pin, PinValue value)
+  {
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      checkOutput(pin);
+      super.setPinValue(pin, value);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * All Pins are checked before the first one is written, so no Pin is changed if one of them is an
+   * input.
+   * 
+   * @throws BeagleIOException if a Pin is an input.
+   */
+  @Override
+  public void writeBanks(BankMask banks)
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        checkOutput(Pin.forKernelNumber(bank * 32 + bit));
+      }
+    }
+
+    super.writeBanks(banks);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * io.github.furti.beagleio.gpio.AbstractBeagle#createPinManager(io.github.furti.beagleio.Pin)
+   */
+  @Override
+  protected PinManager createPinManager(Pin pin)
+  {
+    InMemoryPinManager pinManager = new InMemoryPinManager(pin, this);
+
+    pinManagers.set(pin.ordinal(), pinManager);
+    return pinManager;
+  }
+
+  @Override
+  protected void doRelease()
+  {
+  }
+
+  /**
+   * The sysfs refuses to write the value of an input. The check is done before the value is queued,
+   * because the PinManager would keep a failed value queued and fail again on every following
+   * operation.
+   */
+  private void checkOutput(Pin pin)
+  {
+    InMemoryPinManager pinManager = pinManagers.get(pin.ordinal());
+
+    if (pinManager != null && pinManager.isInput())
+    {
+      throw new BeagleIOException("Pin " + pin + " is an input. Its value can not be set", null);
+    }
+  }
+
+  /**
+   * Is called by the PinManager when the Pin is closed.
+   */
+  void released(Pin pin)
+  {
+    pinManagers.set(pin.ordinal(), null);
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.memory;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.AbstractPinManager;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * Keeps the direction, active low and the level of a Pin in fields. All methods are called while
+ * the {@link InMemoryBeagle} holds the lock of the Pin.
+ * 
+ * @author Daniel
+ *
+ */
+public class InMemoryPinManager extends AbstractPinManager
+{
+  private Pin pin;
+  private InMemoryBeagle beagle;
+  private Direction direction = Direction.IN;
+  private boolean activeLow;
+  private boolean level;
+  private DefaultPollValue pollValue;
+
+  InMemoryPinManager(Pin pin, InMemoryBeagle beagle)
+  {
+    this.pin = pin;
+    this.beagle = beagle;
+  }
+
+  /**
+   * Like the sysfs, the initial value of an output direction is a raw value. An input keeps the
+   * level it is driven with.
+   */
+  @Override
+  protected void doSetDirection(Direction direction)
+  {
+    this.direction = direction;
+
+    if (direction != Direction.IN)
+    {
+      level = direction == Direction.OUT_HIGH;
+    }
+
+    publish();
+  }
+
+  /**
+   * The level of the Pin stays the same, so its value is inverted.
+   */
+  @Override
+  protected void doSetActiveLow(boolean activeLow)
+  {
+    this.activeLow = activeLow;
+    publish();
+  }
+
+  /**
+   * The {@link InMemoryBeagle} makes sure that the Pin is an output.
+   */
+  @Override
+  protected void doSetValue(PinValue value)
+  {
+    level = (value == PinValue.HIGH) != activeLow;
+    publish();
+  }
+
+  @Override
+  public PinValue getValue()
+  {
+    return level != activeLow ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  /**
+   * There is nothing to wait for. The value is updated by the thread that changes the Pin.
+   */
+  @Override
+  public PollValue poll()
+  {
+    if (pollValue == null)
+    {
+      pollValue = new DefaultPollValue(getValue());
+    }
+
+    return pollValue;
+  }
+
+  @Override
+  protected void doRelease()
+  {
+    pollValue = null;
+    beagle.released(pin);
+  }
+
+  boolean isInput()
+  {
+    return direction == Direction.IN;
+  }
+
+  /**
+   * @param level the electrical level of the input
+   * @param timestamp the time of the change
+   * @throws BeagleIOException if the Pin is an output.
+   */
+  void drive(PinValue level, long timestamp)
+  {
+    if (direction != Direction.IN)
+    {
+      throw new BeagleIOException("Pin " + pin + " is an output. It can not be driven from outside",
+          null);
+    }
+
+    this.level = level == PinValue.HIGH;
+    publish(timestamp);
+  }
+
+  private void publish()
+  {
+    publish(System.nanoTime());
+  }
+
+  private void publish(long timestamp)
+  {
+    if (pollValue != null)
+    {
+      pollValue.setValue(getValue(), timestamp);
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.mmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * The registers of the GPIO banks mapped into memory.
+ * 
+ * <p>
+ * Each bank is mapped separately, so the device file only needs to contain the pages of the banks.
+ * Reading the input of a Pin or setting its output is a single load or store on the mapped buffer
+ * and does not enter the kernel at all.
+ * </p>
+ * 
+ * <p>
+ * Regular files are mapped with a {@link FileChannel}. Devices like /dev/mem or /dev/gpiomem can
+ * not be mapped that way, because the channel tries to grow them to the size of the region. They
+ * are mapped with the {@link NativeLibrary}.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class GpioRegisters implements Closeable
+{
+  /**
+   * The physical addresses of the four GPIO banks of the AM335x.
+   */
+  public static final long[] AM335X_BANK_ADDRESSES = {0x44E07000L, 0x4804C000L, 0x481AC000L,
+      0x481AE000L};
+
+  /**
+   * The size of the register space of a bank.
+   */
+  public static final int BANK_SIZE = 0x1000;
+
+  /**
+   * Output enable. A bit set to 1 configures the Pin as input.
+   */
+  public static final int OE = 0x134;
+
+  /**
+   * The sampled values of the Pins.
+   */
+  public static final int DATAIN = 0x138;
+
+  /**
+   * The values driven on the output Pins.
+   */
+  public static final int DATAOUT = 0x13C;
+
+  /**
+   * Writing a 1 clears the corresponding bit in {@link #DATAOUT}.
+   */
+  public static final int CLEARDATAOUT = 0x190;
+
+  /**
+   * Writing a 1 sets the corresponding bit in {@link #DATAOUT}.
+   */
+  public static final int SETDATAOUT = 0x194;
+
+  private Path device;
+  private FileChannel channel;
+  private ByteBuffer[] banks;
+  private volatile int[] invertedMasks;
+
+  /**
+   * @param device the device that exposes the physical memory, e.g. /dev/mem.
+   * @param bankAddresses the offsets of the banks in the device.
+   * @throws BeagleIOException if the device can not be mapped.
+   */
+  public GpioRegisters(Path device, long[] bankAddresses) throws BeagleIOException
+  {
+    this.device = device;
+    this.banks = new ByteBuffer[bankAddresses.length];
+    this.invertedMasks = new int[bankAddresses.length];
+
+    if (Files.isRegularFile(device))
+    {
+      mapFile(bankAddresses);
+    } else
+    {
+      mapDevice(bankAddresses);
+    }
+  }
+
+  private void mapFile(long[] bankAddresses) throws BeagleIOException
+  {
+    try
+    {
+      channel = FileChannel.open(device, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+      for (int bank = 0; bank < bankAddresses.length; bank++)
+      {
+        banks[bank] = channel.map(FileChannel.MapMode.READ_WRITE, bankAddresses[bank], BANK_SIZE);
+        banks[bank].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error mapping GPIO registers from " + device, e);
+    }
+  }
+
+  private void mapDevice(long[] bankAddresses) throws BeagleIOException
+  {
+    if (!NativeLibrary.isAvailable())
+    {
+      throw new BeagleIOException("Mapping the GPIO registers from " + device
+          + " needs the native library", NativeLibrary.getLoadFailure());
+    }
+
+    try
+    {
+      for (int bank = 0; bank < bankAddresses.length; bank++)
+      {
+        banks[bank] = Mmap.map(device.toString(), bankAddresses[bank], BANK_SIZE);
+        banks[bank].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    } catch (IOException e)
+    {
+      try
+      {
+        unmapDevice();
+      } catch (IOException unmapFailure)
+      {
+        e.addSuppressed(unmapFailure);
+      }
+
+      throw new BeagleIOException("Error mapping GPIO registers from " + device, e);
+    }
+  }
+
+  private void unmapDevice() throws IOException
+  {
+    IOException failure = null;
+
+    for (int bank = 0; bank < banks.length; bank++)
+    {
+      if (banks[bank] != null)
+      {
+        try
+        {
+          Mmap.unmap(banks[bank]);
+        } catch (IOException e)
+        {
+          failure = e;
+        }
+
+        banks[bank] = null;
+      }
+    }
+
+    if (failure != null)
+    {
+      throw failure;
+    }
+  }
+
+  /**
+   * @param bank the bank to read
+   * @param register the offset of the register in the bank
+   * @return the value of the register
+   */
+  public int read(int bank, int register)
+  {
+    return banks[bank].getInt(register);
+  }
+
+  /**
+   * @param bank the bank to write
+   * @param register the offset of the register in the bank
+   * @param value the value to write
+   */
+  public void write(int bank, int register, int value)
+  {
+    banks[bank].putInt(register, value);
+  }
+
+  /**
+   * Sets the output of all Pins in the mask to high with a single store. The bank is locked, so the
+   * store can not get lost in a concurrent read-modify-write of DATAOUT.
+   */
+  public void set(int bank, int mask)
+  {
+    ByteBuffer registers = banks[bank];
+
+    synchronized (registers)
+    {
+      registers.putInt(SETDATAOUT, mask);
+    }
+  }
+
+  /**
+   * Sets the output of all Pins in the mask to low with a single store. The bank is locked, so the
+   * store can not get lost in a concurrent read-modify-write of DATAOUT.
+   */
+  public void clear(int bank, int mask)
+  {
+    ByteBuffer registers = banks[bank];
+
+    synchronized (registers)
+    {
+      registers.putInt(CLEARDATAOUT, mask);
+    }
+  }
+
+  /**
+   * Configures the Pins in the mask as inputs or outputs. The output enable register has no set and
+   * clear registers, so it is read, modified and written back while the bank is locked.
+   * 
+   * @param bank the bank of the Pins
+   * @param mask the Pins to configure
+   * @param output true to drive the Pins, false to use them as inputs
+   */
+  public void setOutput(int bank, int mask, boolean output)
+  {
+    ByteBuffer registers = banks[bank];
+
+    synchronized (registers)
+    {
+      int value = registers.getInt(OE);
+
+      registers.putInt(OE, output ? value & ~mask : value | mask);
+    }
+  }
+
+  /**
+   * Writes the Pins of the mask with a single store. If all Pins are set to the same value the set or
+   * clear register is used. Otherwise DATAOUT is read, modified and written back while the bank is
+   * locked. Values are written as they are, the inverted Pins must already be applied.
+   * 
+   * @param bank the bank of the Pins
+   * @param mask the Pins to write
+   * @param bits the values for the Pins in the mask
+   */
+  public void writeMasked(int bank, int mask, int bits)
+  {
+    int high = mask & bits;
+
+    if (high == 0)
+    {
+      clear(bank, mask);
+    } else if (high == mask)
+    {
+      set(bank, mask);
+    } else
+    {
+      ByteBuffer registers = banks[bank];
+
+      synchronized (registers)
+      {
+        registers.putInt(DATAOUT, (registers.getInt(DATAOUT) & ~mask) | high);
+      }
+    }
+  }
+
+  /**
+   * The registers know nothing about active low. So the polarity of the Pins is tracked here and
+   * applied in software.
+   * 
+   * @param bank the bank of the Pins
+   * @param mask the Pins to configure
+   * @param inverted true if the values of the Pins should be inverted.
+   */
+  public synchronized void setInverted(int bank, int mask, boolean inverted)
+  {
+    int[] newMasks = invertedMasks.clone();
+    newMasks[bank] = inverted ? newMasks[bank] | mask : newMasks[bank] & ~mask;
+    invertedMasks = newMasks;
+  }
+
+  /**
+   * @param bank the bank
+   * @return the Pins of the bank whose values are inverted.
+   */
+  public int getInvertedMask(int bank)
+  {
+    return invertedMasks[bank];
+  }
+
+  /**
+   * @return the number of mapped banks.
+   */
+  public int getBankCount()
+  {
+    return banks.length;
+  }
+
+  public Path getDevice()
+  {
+    return device;
+  }
+
+  /**
+   * Closes the device. The mappings of a regular file stay valid until the buffers are garbage
+   * collected. The mappings of a device are removed at once, so the registers must not be used
+   * afterwards.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (channel != null)
+    {
+      channel.close();
+    } else
+    {
+      unmapDevice();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.mmap;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.gpio.AbstractBeagle;
+import io.github.furti.beagleio.gpio.PinManager;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+
+/**
+ * A Beagle that drives the GPIO banks of the AM335x directly through their memory mapped registers.
+ * 
+ * <p>
+ * Each access through the sysfs costs a syscall and the formatting and parsing of the value. Here a
+ * read is a single load from DATAIN and a write a single store to SETDATAOUT or CLEARDATAOUT. The
+ * Pins must be muxed as GPIO and the clocks of their banks must be enabled, which is the default
+ * for the Pins exported by the standard device tree.
+ * </p>
+ * 
+ * <p>
+ * The device is read from the system property <b>beagleio.mmap.device</b> and defaults to /dev/mem.
+ * It is mapped when the first Pin is initialized, so root permissions are only needed when the
+ * Beagle is actually used.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class MemoryMappedBeagle extends AbstractBeagle
+{
+  public static final String DEVICE_PROPERTY = "beagleio.mmap.device";
+
+  private static final String DEFAULT_DEVICE = "/dev/mem";
+  private static final long POLL_TICK_MILLIS = 1;
+
+  private Path device;
+  private long[] bankAddresses;
+  private volatile GpioRegisters registers;
+  private ScheduledExecutorService executor;
+  private PollDispatcher pollDispatcher;
+  private int[] bankValues = new int[BankMask.BANK_COUNT];
+
+  public MemoryMappedBeagle()
+  {
+    this(Paths.get(System.getProperty(DEVICE_PROPERTY, DEFAULT_DEVICE)),
+        GpioRegisters.AM335X_BANK_ADDRESSES);
+  }
+
+  /**
+   * @param device the device to map the registers from
+   * @param bankAddresses the offsets of the banks in the device
+   */
+  public MemoryMappedBeagle(Path device, long[] bankAddresses)
+  {
+    this.device = device;
+    this.bankAddresses = bankAddresses.clone();
+    this.executor = Executors.newSingleThreadScheduledExecutor();
+    this.pollDispatcher = new PollDispatcher(executor, POLL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the mapped registers. The device is mapped on the first call.
+   */
+  public GpioRegisters getRegisters()
+  {
+    GpioRegisters actualRegisters = registers;
+
+    if (actualRegisters == null)
+    {
+      synchronized (this)
+      {
+        actualRegisters = registers;
+
+        if (actualRegisters == null)
+        {
+          actualRegisters = new GpioRegisters(device, bankAddresses);
+          registers = actualRegisters;
+        }
+      }
+    }
+
+    return actualRegisters;
+  }
+
+  /**
+   * @return the dispatcher that polls the Pins.
+   */
+  public PollDispatcher getPollDispatcher()
+  {
+    return pollDispatcher;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * io.github.furti.beagleio.gpio.AbstractBeagle#createPinManager(io.github.furti.beagleio.Pin)
+   */
+  @Override
+  protected PinManager createPinManager(Pin pin)
+  {
+    return new MemoryMappedPinManager(pin, getRegisters(), pollDispatcher);
+  }
+
+  /**
+   * Each bank is written with a single store, so all Pins of a bank change at the same time.
+   */
+  @Override
+  protected void doWriteBanks(BankMask banks)
+  {
+    GpioRegisters actualRegisters = getRegisters();
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = banks.getMask(bank);
+
+      if (mask != 0)
+      {
+        int bits = banks.getBits(bank) ^ actualRegisters.getInvertedMask(bank);
+
+        actualRegisters.writeMasked(bank, mask, bits);
+      }
+    }
+  }
+
+  /**
+   * Each bank used by the group is read once, so the word is a snapshot of all Pins in a bank. The
+   * words are kept in a buffer of the Beagle. Groups of different Pins may be read at the same time,
+   * so the buffer is locked while it is used.
+   */
+  @Override
+  protected long doReadPins(PinGroup pins)
+  {
+    GpioRegisters actualRegisters = getRegisters();
+    List<Pin> groupPins = pins.getPins();
+    long word = 0;
+    int readBanks = 0;
+
+    synchronized (bankValues)
+    {
+      for (int bit = 0; bit < groupPins.size(); bit++)
+      {
+        Pin pin = groupPins.get(bit);
+        int bank = pin.getBank();
+
+        if ((readBanks & 1 << bank) == 0)
+        {
+          bankValues[bank] = actualRegisters.read(bank, GpioRegisters.DATAIN)
+              ^ actualRegisters.getInvertedMask(bank);
+          readBanks |= 1 << bank;
+        }
+
+        if ((bankValues[bank] & pin.getBankMask()) != 0)
+        {
+          word |= 1L << bit;
+        }
+      }
+    }
+
+    return word;
+  }
+
+  @Override
+  protected void doRelease() throws Exception
+  {
+    executor.shutdownNow();
+    // A device is unmapped on close, so no poll may still read the registers
+    executor.awaitTermination(POLL_TICK_MILLIS * 10, TimeUnit.MILLISECONDS);
+
+    if (registers != null)
+    {
+      registers.close();
+    }
+  }
+}
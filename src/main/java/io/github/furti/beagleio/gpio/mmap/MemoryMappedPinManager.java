@@ -0,0 +1,146 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.mmap;
+
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.AbstractPinManager;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+
+/**
+ * Controls a Pin through the registers of its bank.
+ * 
+ * <p>
+ * The registers do not know about active low. So it is handled here by inverting the values that
+ * are read and written.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class MemoryMappedPinManager extends AbstractPinManager
+{
+  private GpioRegisters registers;
+  private PollDispatcher pollDispatcher;
+  private int bank;
+  private int mask;
+  private DefaultPollValue pollValue;
+  private Runnable pollTask;
+
+  /**
+   * @param pin the Pin to control
+   * @param registers the mapped registers of all banks
+   * @param pollDispatcher the dispatcher that polls the Pin when requested
+   */
+  public MemoryMappedPinManager(Pin pin, GpioRegisters registers, PollDispatcher pollDispatcher)
+  {
+    this.registers = registers;
+    this.pollDispatcher = pollDispatcher;
+    this.bank = pin.getBank();
+    this.mask = pin.getBankMask();
+  }
+
+  /**
+   * Outputs with an initial value get their value before the output is enabled, so the Pin never
+   * drives the wrong level.
+   */
+  @Override
+  protected void doSetDirection(Direction direction)
+  {
+    switch (direction)
+    {
+      case IN:
+        registers.setOutput(bank, mask, false);
+        break;
+      case OUT_HIGH:
+        registers.set(bank, mask);
+        registers.setOutput(bank, mask, true);
+        break;
+      default:
+        // Like the sysfs, out starts with a low value
+        registers.clear(bank, mask);
+        registers.setOutput(bank, mask, true);
+    }
+  }
+
+  @Override
+  protected void doSetActiveLow(boolean activeLow)
+  {
+    registers.setInverted(bank, mask, activeLow);
+  }
+
+  @Override
+  protected void doSetValue(PinValue value)
+  {
+    if ((value == PinValue.HIGH) != isActiveLow())
+    {
+      registers.set(bank, mask);
+    } else
+    {
+      registers.clear(bank, mask);
+    }
+  }
+
+  @Override
+  public PinValue getValue()
+  {
+    boolean high = (registers.read(bank, GpioRegisters.DATAIN) & mask) != 0;
+
+    return high != isActiveLow() ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  /**
+   * The registers can not notify us about changes, so the Pin is added to the sweep of the
+   * {@link PollDispatcher}. Reading a register is cheap enough to poll with a short tick.
+   */
+  @Override
+  public PollValue poll()
+  {
+    pollValue = new DefaultPollValue(getValue());
+    pollTask = this::updatePollValue;
+    pollDispatcher.add(pollTask);
+
+    return pollValue;
+  }
+
+  @Override
+  protected void doRelease()
+  {
+    if (pollTask != null)
+    {
+      pollDispatcher.remove(pollTask);
+      pollTask = null;
+    }
+
+    registers.setInverted(bank, mask, false);
+  }
+
+  private boolean isActiveLow()
+  {
+    return (registers.getInvertedMask(bank) & mask) != 0;
+  }
+
+  private void updatePollValue()
+  {
+    PinValue value = getValue();
+
+    if (value != pollValue.getValue())
+    {
+      pollValue.setValue(value);
+    }
+  }
+}
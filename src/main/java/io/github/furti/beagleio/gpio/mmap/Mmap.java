@@ -0,0 +1,53 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.mmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The native calls to map the GPIO registers from a device like /dev/mem. Java can only map regular
+ * files, because {@link java.nio.channels.FileChannel#map} grows the file to the size of the region.
+ * 
+ * <p>
+ * The methods must only be used if {@link io.github.furti.beagleio.gpio.util.NativeLibrary} is
+ * available.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+final class Mmap
+{
+  private Mmap()
+  {
+
+  }
+
+  /**
+   * Maps the region shared, so stores go straight to the device.
+   * 
+   * @param path the device to map
+   * @param offset the offset of the region. Must be a multiple of the page size.
+   * @param size the size of the region
+   * @return a direct buffer over the mapped region.
+   */
+  static native ByteBuffer map(String path, long offset, int size) throws IOException;
+
+  /**
+   * Unmaps a buffer returned by {@link #map(String, long, int)}. The buffer must not be used
+   * afterwards.
+   */
+  static native void unmap(ByteBuffer buffer) throws IOException;
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.multicast;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * The values of the Pins of a board at one point in time.
+ * 
+ * <p>
+ * A snapshot is sent as a single datagram with one bit per {@link Pin} constant. All numbers are
+ * big endian:
+ * </p>
+ * 
+ * <pre>
+ * byte version | int session | long sequence | short pin count | present bits | value bits
+ * </pre>
+ * 
+ * <p>
+ * The session is chosen randomly when the publisher starts, so readers notice a restart. The
+ * sequence is incremented for every snapshot of the session. The present bits mark the Pins that are
+ * published, the value bits are set for the Pins that are {@link PinValue#HIGH}.
+ * </p>
+ * 
+ * <p>
+ * A snapshot is mutable and can be reused for every datagram.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class BoardSnapshot
+{
+  public static final byte VERSION = 1;
+
+  private static final Pin[] PINS = Pin.values();
+  private static final int BIT_BYTES = (PINS.length + 7) / 8;
+
+  /**
+   * The size of a snapshot in bytes.
+   */
+  public static final int SIZE = 1 + 4 + 8 + 2 + 2 * BIT_BYTES;
+
+  private int session;
+  private long sequence;
+  private byte[] present = new byte[BIT_BYTES];
+  private byte[] values = new byte[BIT_BYTES];
+
+  public int getSession()
+  {
+    return session;
+  }
+
+  public long getSequence()
+  {
+    return sequence;
+  }
+
+  /**
+   * @param session the session of the publisher
+   * @param sequence the number of the snapshot in the session
+   * @return the instance for a fluent API
+   */
+  public BoardSnapshot setHeader(int session, long sequence)
+  {
+    this.session = session;
+    this.sequence = sequence;
+    return this;
+  }
+
+  /**
+   * @param pin the Pin
+   * @param value the value of the Pin
+   * @return the instance for a fluent API
+   */
+  public BoardSnapshot setValue(Pin pin, PinValue value)
+  {
+    int index = pin.ordinal() >> 3;
+    int bit = 1 << (pin.ordinal() & 7);
+
+    present[index] |= bit;
+
+    if (value == PinValue.HIGH)
+    {
+      values[index] |= bit;
+    } else
+    {
+      values[index] &= ~bit;
+    }
+
+    return this;
+  }
+
+  /**
+   * @param pin the Pin
+   * @return the value of the Pin, or null if the Pin is not published.
+   */
+  public PinValue getValue(Pin pin)
+  {
+    int index = pin.ordinal() >> 3;
+    int bit = 1 << (pin.ordinal() & 7);
+
+    if ((present[index] & bit) == 0)
+    {
+      return null;
+    }
+
+    return (values[index] & bit) != 0 ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  /**
+   * Removes all Pins.
+   * 
+   * @return the instance for a fluent API
+   */
+  public BoardSnapshot clear()
+  {
+    Arrays.fill(present, (byte) 0);
+    Arrays.fill(values, (byte) 0);
+    return this;
+  }
+
+  /**
+   * @param buffer the buffer to write the snapshot to
+   */
+  public void encode(ByteBuffer buffer)
+  {
+    buffer.put(VERSION).putInt(session).putLong(sequence).putShort((short) PINS.length)
+        .put(present).put(values);
+  }
+
+  /**
+   * Reads a snapshot. Snapshots of another version or for another set of Pins are not read.
+   * 
+   * @param buffer the buffer with the datagram, ready for reading
+   * @return true if the snapshot was read
+   */
+  public boolean decode(ByteBuffer buffer)
+  {
+    if (buffer.remaining() != SIZE || buffer.get(buffer.position()) != VERSION
+        || buffer.getShort(buffer.position() + 13) != PINS.length)
+    {
+      return false;
+    }
+
+    buffer.get();
+    session = buffer.getInt();
+    sequence = buffer.getLong();
+    buffer.getShort();
+    buffer.get(present).get(values);
+
+    return true;
+  }
+}
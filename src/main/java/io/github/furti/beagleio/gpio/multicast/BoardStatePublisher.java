@@ -0,0 +1,227 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.multicast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PollValue;
+
+/**
+ * Broadcasts the values of Pins of a Beagle over UDP multicast, so any number of
+ * {@link MulticastBeagle}s can read them without loading the board.
+ * 
+ * <p>
+ * A {@link BoardSnapshot} of all Pins is sent periodically and every time one of them changes. The
+ * Pins are polled on the Beagle, so a change is published as soon as the Beagle detects it.
+ * Changes that happen while a snapshot is sent are merged into the next one.
+ * </p>
+ * 
+ * <p>
+ * The group is read from the system properties <b>beagleio.multicast.group</b> (default
+ * {@value Multicast#DEFAULT_GROUP}) and <b>beagleio.multicast.port</b> (default
+ * {@value Multicast#DEFAULT_PORT}), the interface from <b>beagleio.multicast.interface</b> and the
+ * time between two periodic snapshots from <b>beagleio.multicast.period</b> in milliseconds.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class BoardStatePublisher implements Closeable
+{
+  public static final String PERIOD_PROPERTY = "beagleio.multicast.period";
+
+  private static final long DEFAULT_PERIOD_MILLIS = 100;
+
+  private Beagle beagle;
+  private PinGroup pins;
+  private InetSocketAddress group;
+  private NetworkInterface networkInterface;
+  private long periodMillis;
+  private DatagramChannel channel;
+  private ScheduledExecutorService executor;
+  private PollValue[] polls;
+  private Runnable changeListener = this::changed;
+  private AtomicBoolean publishPending = new AtomicBoolean();
+  private BoardSnapshot snapshot = new BoardSnapshot();
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(BoardSnapshot.SIZE);
+  private int session;
+  private long sequence;
+  private volatile long publishedCount;
+
+  /**
+   * Publishes the Pins with the settings from the system properties.
+   * 
+   * @param beagle the Beagle to read the Pins from
+   * @param pins the initialized Pins to publish
+   */
+  public BoardStatePublisher(Beagle beagle, PinGroup pins)
+  {
+    this(beagle, pins, Multicast.getGroup(), Multicast.getInterface(),
+        Long.getLong(PERIOD_PROPERTY, DEFAULT_PERIOD_MILLIS));
+  }
+
+  /**
+   * @param beagle the Beagle to read the Pins from
+   * @param pins the initialized Pins to publish
+   * @param group the multicast group and port to send the snapshots to
+   * @param networkInterface the interface to send the snapshots on
+   * @param periodMillis the time between two periodic snapshots
+   */
+  public BoardStatePublisher(Beagle beagle, PinGroup pins, InetSocketAddress group,
+      NetworkInterface networkInterface, long periodMillis)
+  {
+    this.beagle = beagle;
+    this.pins = pins;
+    this.group = group;
+    this.networkInterface = networkInterface;
+    this.periodMillis = periodMillis;
+  }
+
+  /**
+   * Starts polling the Pins and sending the snapshots.
+   * 
+   * @throws IOException if the channel can not be opened.
+   */
+  public synchronized void start() throws IOException
+  {
+    if (channel != null)
+    {
+      return;
+    }
+
+    channel = DatagramChannel.open(StandardProtocolFamily.INET);
+    channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+    channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+
+    session = new Random().nextInt();
+    executor = Executors.newSingleThreadScheduledExecutor();
+    polls = new PollValue[pins.size()];
+
+    for (int i = 0; i < polls.length; i++)
+    {
+      polls[i] = beagle.poll(pins.getPins().get(i));
+      polls[i].addChangeListener(changeListener);
+    }
+
+    executor.scheduleAtFixedRate(this::publish, 0, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the number of snapshots sent so far.
+   */
+  public long getPublishedCount()
+  {
+    return publishedCount;
+  }
+
+  /**
+   * @return the random id of this publisher, sent with each snapshot.
+   */
+  public int getSession()
+  {
+    return session;
+  }
+
+  /**
+   * Stops sending snapshots. The Beagle is not released.
+   */
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (channel == null)
+    {
+      return;
+    }
+
+    for (PollValue pollValue : polls)
+    {
+      pollValue.removeChangeListener(changeListener);
+    }
+
+    executor.shutdownNow();
+
+    try
+    {
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    channel.close();
+    channel = null;
+  }
+
+  /**
+   * Executed on the thread that detected the change. A snapshot is sent by the executor, unless one
+   * is waiting to be sent anyway.
+   */
+  private void changed()
+  {
+    if (publishPending.compareAndSet(false, true))
+    {
+      try
+      {
+        executor.execute(this::publish);
+      } catch (RejectedExecutionException e)
+      {
+        // The publisher was closed
+      }
+    }
+  }
+
+  /**
+   * Sends a snapshot of all Pins. Only the executor thread calls it.
+   */
+  private void publish()
+  {
+    publishPending.set(false);
+    snapshot.clear();
+
+    for (int i = 0; i < polls.length; i++)
+    {
+      snapshot.setValue(pins.getPins().get(i), polls[i].getValue());
+    }
+
+    snapshot.setHeader(session, ++sequence);
+
+    buffer.clear();
+    snapshot.encode(buffer);
+    buffer.flip();
+
+    try
+    {
+      channel.send(buffer, group);
+      publishedCount++;
+    } catch (IOException e)
+    {
+      // Readers detect the gap, the next snapshot is sent anyway
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.multicast;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Enumeration;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * The settings shared by the {@link BoardStatePublisher} and the {@link MulticastBeagle}.
+ * 
+ * @author Daniel
+ *
+ */
+final class Multicast
+{
+  public static final String GROUP_PROPERTY = "beagleio.multicast.group";
+  public static final String PORT_PROPERTY = "beagleio.multicast.port";
+  public static final String INTERFACE_PROPERTY = "beagleio.multicast.interface";
+
+  public static final String DEFAULT_GROUP = "239.255.66.66";
+  public static final int DEFAULT_PORT = 7421;
+
+  private Multicast()
+  {
+
+  }
+
+  /**
+   * @return the group read from the system properties.
+   */
+  public static InetSocketAddress getGroup()
+  {
+    try
+    {
+      return new InetSocketAddress(
+          InetAddress.getByName(System.getProperty(GROUP_PROPERTY, DEFAULT_GROUP)),
+          Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT));
+    } catch (UnknownHostException e)
+    {
+      throw new BeagleIOException("Unknown multicast group " + System.getProperty(GROUP_PROPERTY),
+          e);
+    }
+  }
+
+  /**
+   * @return the interface named by the system property, or the first interface that is up and
+   *         supports multicast.
+   */
+  public static NetworkInterface getInterface()
+  {
+    String name = System.getProperty(INTERFACE_PROPERTY);
+
+    try
+    {
+      if (name != null)
+      {
+        NetworkInterface networkInterface = NetworkInterface.getByName(name);
+
+        if (networkInterface == null)
+        {
+          throw new BeagleIOException("Unknown network interface " + name, null);
+        }
+
+        return networkInterface;
+      }
+
+      Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+
+      while (interfaces.hasMoreElements())
+      {
+        NetworkInterface networkInterface = interfaces.nextElement();
+
+        if (networkInterface.isUp() && networkInterface.supportsMulticast()
+            && !networkInterface.isLoopback())
+        {
+          return networkInterface;
+        }
+      }
+
+      return NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+    } catch (SocketException e)
+    {
+      throw new BeagleIOException("Error looking up the network interfaces", e);
+    }
+  }
+}
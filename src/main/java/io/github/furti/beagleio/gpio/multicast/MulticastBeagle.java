@@ -0,0 +1,331 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.multicast;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * A read only Beagle that serves the values of the Pins from the snapshots sent by a
+ * {@link BoardStatePublisher}.
+ * 
+ * <p>
+ * Pins can only be initialized as inputs. Reading a value or a {@link PollValue} never leaves the
+ * process, the values are updated by a thread that receives the snapshots. As datagrams can be
+ * lost, the sequence numbers of the snapshots are checked and the missing ones are counted.
+ * Snapshots that arrive late are ignored. When the publisher is restarted the sequence starts over.
+ * </p>
+ * 
+ * <p>
+ * The group and the interface are read from the same system properties as the publisher. The group
+ * is joined when the first Pin is initialized.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class MulticastBeagle implements Beagle
+{
+  private static final Pin[] PINS = Pin.values();
+
+  private InetSocketAddress group;
+  private NetworkInterface networkInterface;
+  private DatagramChannel channel;
+  private Thread receiver;
+  private AtomicReferenceArray<ReceivedPin> pins = new AtomicReferenceArray<>(PINS.length);
+  private BoardSnapshot snapshot = new BoardSnapshot();
+  private volatile boolean sessionKnown;
+  private volatile int session;
+  private volatile long sequence;
+  private volatile long receivedSnapshots;
+  private volatile long lostSnapshots;
+
+  public MulticastBeagle()
+  {
+    this(Multicast.getGroup(), Multicast.getInterface());
+  }
+
+  /**
+   * @param group the multicast group and port the snapshots are sent to
+   * @param networkInterface the interface to receive the snapshots on
+   */
+  public MulticastBeagle(InetSocketAddress group, NetworkInterface networkInterface)
+  {
+    this.group = group;
+    this.networkInterface = networkInterface;
+  }
+
+  /**
+   * @throws BeagleIOException if the direction is not {@link Direction#IN}.
+   */
+  @Override
+  public void initializePin(Pin pin, Direction direction, boolean activeLow)
+      throws BeagleIOException
+  {
+    if (direction != Direction.IN)
+    {
+      throw new BeagleIOException("Pin " + pin + " can only be read from the snapshots", null);
+    }
+
+    join();
+
+    if (!pins.compareAndSet(pin.ordinal(), null, new ReceivedPin(activeLow)))
+    {
+      throw new BeagleIOException("Pin " + pin + " is already initilized", null);
+    }
+  }
+
+  @Override
+  public void setPinValue(Pin pin, PinValue value)
+  {
+    throw new BeagleIOException("Pin " + pin + " can only be read from the snapshots", null);
+  }
+
+  @Override
+  public void writeBanks(BankMask banks)
+  {
+    throw new BeagleIOException("Pins " + banks + " can only be read from the snapshots", null);
+  }
+
+  /**
+   * @throws BeagleIOException if no snapshot with the Pin was received yet.
+   */
+  @Override
+  public PinValue getPinValue(Pin pin)
+  {
+    ReceivedPin receivedPin = findPin(pin);
+
+    if (!receivedPin.received)
+    {
+      throw new BeagleIOException("No snapshot with Pin " + pin + " was received yet", null);
+    }
+
+    return receivedPin.value.getValue();
+  }
+
+  /**
+   * The value is LOW until the first snapshot with the Pin is received.
+   */
+  @Override
+  public PollValue poll(Pin pin)
+  {
+    return findPin(pin).value;
+  }
+
+  @Override
+  public void closePin(Pin pin) throws BeagleIOException
+  {
+    findPin(pin);
+    pins.set(pin.ordinal(), null);
+  }
+
+  @Override
+  public synchronized void release() throws BeagleIOException
+  {
+    for (int i = 0; i < PINS.length; i++)
+    {
+      pins.set(i, null);
+    }
+
+    if (channel != null)
+    {
+      try
+      {
+        channel.close();
+        receiver.join(1000);
+      } catch (IOException e)
+      {
+        throw new BeagleIOException("Error releasing Beagle", e);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+
+      channel = null;
+    }
+  }
+
+  /**
+   * @return the sequence of the latest snapshot.
+   */
+  public long getSequence()
+  {
+    return sequence;
+  }
+
+  /**
+   * @return the number of snapshots received.
+   */
+  public long getReceivedSnapshots()
+  {
+    return receivedSnapshots;
+  }
+
+  /**
+   * @return the number of snapshots that were not received, detected by gaps in the sequence.
+   */
+  public long getLostSnapshots()
+  {
+    return lostSnapshots;
+  }
+
+  private ReceivedPin findPin(Pin pin)
+  {
+    ReceivedPin receivedPin = pins.get(pin.ordinal());
+
+    if (receivedPin == null)
+    {
+      throw new BeagleIOException("Pin " + pin
+          + " was not found. Did you forgot to initialize it? Always call beagle.initializePin(pin, direction) before using a Pin.",
+          null);
+    }
+
+    return receivedPin;
+  }
+
+  /**
+   * Joins the group and starts receiving the snapshots.
+   */
+  private synchronized void join()
+  {
+    if (channel != null)
+    {
+      return;
+    }
+
+    try
+    {
+      channel = DatagramChannel.open(StandardProtocolFamily.INET)
+          .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+          .bind(new InetSocketAddress(group.getPort()));
+      channel.join(group.getAddress(), networkInterface);
+    } catch (IOException e)
+    {
+      channel = null;
+      throw new BeagleIOException("Error joining multicast group " + group, e);
+    }
+
+    DatagramChannel actualChannel = channel;
+    receiver = new Thread(() -> receive(actualChannel), "beagleio-multicast-receiver");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  private void receive(DatagramChannel actualChannel)
+  {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BoardSnapshot.SIZE + 1);
+
+    try
+    {
+      while (true)
+      {
+        buffer.clear();
+        actualChannel.receive(buffer);
+        buffer.flip();
+
+        if (snapshot.decode(buffer) && accept(snapshot))
+        {
+          apply(snapshot, System.nanoTime());
+        }
+      }
+    } catch (ClosedChannelException e)
+    {
+      // The Beagle was released
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error receiving snapshots from " + group, e);
+    }
+  }
+
+  /**
+   * Checks the sequence of the snapshot and counts the lost snapshots.
+   * 
+   * @return false if the snapshot arrived late.
+   */
+  private boolean accept(BoardSnapshot actualSnapshot)
+  {
+    if (!sessionKnown || actualSnapshot.getSession() != session)
+    {
+      // The first snapshot or the publisher was restarted
+      sessionKnown = true;
+      session = actualSnapshot.getSession();
+    } else if (actualSnapshot.getSequence() <= sequence)
+    {
+      return false;
+    } else
+    {
+      lostSnapshots += actualSnapshot.getSequence() - sequence - 1;
+    }
+
+    sequence = actualSnapshot.getSequence();
+    receivedSnapshots++;
+
+    return true;
+  }
+
+  private void apply(BoardSnapshot actualSnapshot, long timestamp)
+  {
+    for (int i = 0; i < PINS.length; i++)
+    {
+      ReceivedPin receivedPin = pins.get(i);
+
+      if (receivedPin == null)
+      {
+        continue;
+      }
+
+      PinValue value = actualSnapshot.getValue(PINS[i]);
+
+      if (value != null)
+      {
+        receivedPin.value.setValue(receivedPin.activeLow ? value.opposite() : value, timestamp);
+        receivedPin.received = true;
+      }
+    }
+  }
+
+  /**
+   * The state of an initialized Pin.
+   * 
+   * @author Daniel
+   *
+   */
+  private static class ReceivedPin
+  {
+    private boolean activeLow;
+    private DefaultPollValue value = new DefaultPollValue(PinValue.LOW);
+    private volatile boolean received;
+
+    public ReceivedPin(boolean activeLow)
+    {
+      this.activeLow = activeLow;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.pwm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.furti.beagleio.BeagleIOException;
+
+/**
+ * Base class for the PWM subsystem of the kernel under /sys/class/pwm.
+ * 
+ * <p>
+ * The AM335x has eHRPWM and eCAP modules that generate PWM signals without any CPU load. The kernel
+ * exposes each of them as a pwmchip directory with a pwm directory for each exported channel. A
+ * channel is configured by writing its period, duty cycle and enable attributes. The
+ * {@link HardwarePwmChannel}s keep these attributes open like the Pins of a
+ * {@link io.github.furti.beagleio.gpio.file.FileSystemBeagle} do.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public abstract class HardwarePwm implements Closeable
+{
+  public static final String EXPORT_FILE = "export";
+  public static final String UNEXPORT_FILE = "unexport";
+  public static final String PERIOD_FILE = "period";
+  public static final String DUTY_CYCLE_FILE = "duty_cycle";
+  public static final String ENABLE_FILE = "enable";
+  public static final String POLARITY_FILE = "polarity";
+
+  private Path baseDirectory;
+  private Map<String, HardwarePwmChannel> channels = new LinkedHashMap<>();
+
+  /**
+   * @throws IOException if an exception occurs initializing the base directory.
+   */
+  public HardwarePwm() throws IOException
+  {
+    baseDirectory = initBaseDirectory();
+  }
+
+  public Path getBaseDirectory()
+  {
+    return baseDirectory;
+  }
+
+  /**
+   * Exports the channel and sets its period. The channel starts with a duty cycle of 0 and is
+   * disabled.
+   * 
+   * @param chip the number of the pwmchip
+   * @param channel the number of the channel of the chip
+   * @param periodNanos the period of the signal
+   * @return the channel
+   * @throws BeagleIOException if the channel is already open or can not be exported.
+   */
+  public synchronized HardwarePwmChannel open(int chip, int channel, long periodNanos)
+      throws BeagleIOException
+  {
+    String key = key(chip, channel);
+
+    if (channels.containsKey(key))
+    {
+      throw new BeagleIOException("PWM channel " + key + " is already open", null);
+    }
+
+    Path channelDirectory;
+
+    try
+    {
+      channelDirectory = export(chip, channel);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error exporting PWM channel " + key, e);
+    }
+
+    HardwarePwmChannel pwmChannel = null;
+
+    try
+    {
+      pwmChannel =
+          new HardwarePwmChannel(this, chip, channel, channelDirectory, isTruncateOnWrite());
+      pwmChannel.setup(periodNanos);
+    } catch (RuntimeException e)
+    {
+      // Opening the attributes or writing them failed. BeagleIOException is a RuntimeException too.
+      if (pwmChannel != null)
+      {
+        try
+        {
+          pwmChannel.closeAttributes();
+        } catch (BeagleIOException closeFailure)
+        {
+          e.addSuppressed(closeFailure);
+        }
+      }
+
+      // Otherwise the channel stays exported until the next reboot
+      try
+      {
+        unexport(chip, channel, channelDirectory);
+      } catch (IOException unexportFailure)
+      {
+        e.addSuppressed(unexportFailure);
+      }
+
+      throw e;
+    }
+
+    channels.put(key, pwmChannel);
+    return pwmChannel;
+  }
+
+  /**
+   * Disables and unexports all open channels.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    List<HardwarePwmChannel> openChannels;
+
+    synchronized (this)
+    {
+      openChannels = new ArrayList<>(channels.values());
+    }
+
+    for (HardwarePwmChannel channel : openChannels)
+    {
+      channel.close();
+    }
+
+    doRelease();
+  }
+
+  /**
+   * Is called by the channel when it is closed.
+   */
+  void closed(HardwarePwmChannel channel, Path channelDirectory) throws IOException
+  {
+    synchronized (this)
+    {
+      channels.remove(key(channel.getChip(), channel.getChannel()));
+    }
+
+    unexport(channel.getChip(), channel.getChannel(), channelDirectory);
+  }
+
+  /**
+   * @return the Path to the base directory of the PWM subsystem
+   * @throws IOException when an exception occurs initializing the directory
+   */
+  protected abstract Path initBaseDirectory() throws IOException;
+
+  /**
+   * Makes the channel available.
+   * 
+   * @param chip the number of the pwmchip
+   * @param channel the number of the channel of the chip
+   * @return the directory of the channel
+   * @throws IOException if an exception occurs exporting the channel
+   */
+  protected abstract Path export(int chip, int channel) throws IOException;
+
+  /**
+   * Releases the channel so that it can be used for other purposes.
+   * 
+   * @param chip the number of the pwmchip
+   * @param channel the number of the channel of the chip
+   * @param channelDirectory the directory returned by {@link #export(int, int)}
+   * @throws IOException if an exception occurs unexporting the channel
+   */
+  protected abstract void unexport(int chip, int channel, Path channelDirectory)
+      throws IOException;
+
+  /**
+   * Implementations that do not operate on a real sysfs must return true here.
+   * 
+   * @return true if attribute files should be truncated after they are written.
+   * @see io.github.furti.beagleio.gpio.file.AttributeFile
+   */
+  protected boolean isTruncateOnWrite()
+  {
+    return false;
+  }
+
+  /**
+   * Is called after all channels are closed to let implementations do custom cleanup.
+   * 
+   * @throws IOException if an exception occurs releasing resources
+   */
+  protected void doRelease() throws IOException
+  {
+  }
+
+  /**
+   * @return the directory of the chip
+   */
+  protected Path getChipDirectory(int chip)
+  {
+    return baseDirectory.resolve("pwmchip" + chip);
+  }
+
+  private static String key(int chip, int channel)
+  {
+    return chip + "/" + channel;
+  }
+}
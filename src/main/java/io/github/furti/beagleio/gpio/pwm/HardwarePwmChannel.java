@@ -0,0 +1,349 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.pwm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.file.AttributeFile;
+
+/**
+ * A channel of the PWM subsystem of the kernel.
+ * 
+ * <p>
+ * The period, duty cycle and enable attributes are kept open. The values are formatted into a
+ * preallocated buffer and written with a single pwrite, so changing the duty cycle allocates
+ * nothing. Writes that would not change an attribute are skipped.
+ * </p>
+ * 
+ * <p>
+ * The kernel rejects a duty cycle that is longer than the period. So when the period changes, the
+ * attributes are written in the order that keeps the duty cycle within the period.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class HardwarePwmChannel implements PwmChannel
+{
+  private static final byte[] ENABLED_BYTES = {'1'};
+  private static final byte[] DISABLED_BYTES = {'0'};
+  private static final int MAX_DIGITS = 19;
+
+  private HardwarePwm pwm;
+  private int chip;
+  private int channel;
+  private Path channelDirectory;
+  private AttributeFile periodAttribute;
+  private AttributeFile dutyCycleAttribute;
+  private AttributeFile enableAttribute;
+  private byte[] digits = new byte[MAX_DIGITS];
+  private long periodNanos = -1;
+  private long dutyNanos = -1;
+  private boolean enabled;
+  private boolean closed;
+
+  HardwarePwmChannel(HardwarePwm pwm, int chip, int channel, Path channelDirectory,
+      boolean truncate)
+  {
+    this.pwm = pwm;
+    this.chip = chip;
+    this.channel = channel;
+    this.channelDirectory = channelDirectory;
+
+    try
+    {
+      this.periodAttribute =
+          new AttributeFile(channelDirectory.resolve(HardwarePwm.PERIOD_FILE), truncate);
+      this.dutyCycleAttribute =
+          new AttributeFile(channelDirectory.resolve(HardwarePwm.DUTY_CYCLE_FILE), truncate);
+      this.enableAttribute =
+          new AttributeFile(channelDirectory.resolve(HardwarePwm.ENABLE_FILE), truncate);
+    } catch (BeagleIOException e)
+    {
+      // The attributes opened so far would leak otherwise
+      try
+      {
+        closeAttributes();
+      } catch (BeagleIOException closeFailure)
+      {
+        e.addSuppressed(closeFailure);
+      }
+
+      throw e;
+    }
+  }
+
+  public int getChip()
+  {
+    return chip;
+  }
+
+  public int getChannel()
+  {
+    return channel;
+  }
+
+  @Override
+  public synchronized long getPeriodNanos()
+  {
+    return periodNanos;
+  }
+
+  /**
+   * @return the time the signal is high in each period.
+   */
+  public synchronized long getDutyNanos()
+  {
+    return dutyNanos;
+  }
+
+  @Override
+  public synchronized double getDutyCycle()
+  {
+    return periodNanos == 0 ? 0 : (double) dutyNanos / periodNanos;
+  }
+
+  /**
+   * The kernel applies the new duty cycle at the end of the running period.
+   */
+  @Override
+  public synchronized void setDutyCycle(double dutyCycle) throws IllegalArgumentException
+  {
+    if (!(dutyCycle >= 0 && dutyCycle <= 1))
+    {
+      throw new IllegalArgumentException("The duty cycle must be between 0 and 1 but was "
+          + dutyCycle);
+    }
+
+    setDutyNanos(Math.round(dutyCycle * periodNanos));
+  }
+
+  /**
+   * @param dutyNanos the time the signal is high in each period
+   * @throws IllegalArgumentException if the time is negative or longer than the period.
+   */
+  public synchronized void setDutyNanos(long dutyNanos) throws IllegalArgumentException
+  {
+    if (dutyNanos < 0 || dutyNanos > periodNanos)
+    {
+      throw new IllegalArgumentException("The duty cycle must be between 0 and " + periodNanos
+          + " nanoseconds but was " + dutyNanos);
+    }
+
+    checkOpen();
+
+    if (dutyNanos != this.dutyNanos)
+    {
+      write(dutyCycleAttribute, dutyNanos);
+      this.dutyNanos = dutyNanos;
+    }
+  }
+
+  /**
+   * Changes the period and keeps the duty cycle.
+   * 
+   * @param periodNanos the new period
+   * @throws IllegalArgumentException if the period is not positive.
+   */
+  public synchronized void setPeriodNanos(long periodNanos) throws IllegalArgumentException
+  {
+    if (periodNanos <= 0)
+    {
+      throw new IllegalArgumentException("The period must be positive but was " + periodNanos);
+    }
+
+    checkOpen();
+
+    long newDutyNanos = Math.round(getDutyCycle() * periodNanos);
+
+    if (periodNanos > this.periodNanos)
+    {
+      write(periodAttribute, periodNanos);
+      this.periodNanos = periodNanos;
+      setDutyNanos(newDutyNanos);
+    } else if (periodNanos < this.periodNanos)
+    {
+      setDutyNanos(newDutyNanos);
+      write(periodAttribute, periodNanos);
+      this.periodNanos = periodNanos;
+    }
+  }
+
+  /**
+   * Starts generating the signal.
+   */
+  public synchronized void enable()
+  {
+    setEnabled(true);
+  }
+
+  /**
+   * Stops generating the signal.
+   */
+  public synchronized void disable()
+  {
+    setEnabled(false);
+  }
+
+  public synchronized boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Disables and unexports the channel. The channel is unexported even if it can not be disabled.
+   * 
+   * @throws BeagleIOException if an exception occurs disabling or unexporting the channel.
+   */
+  public void close() throws BeagleIOException
+  {
+    boolean closing = false;
+
+    try
+    {
+      synchronized (this)
+      {
+        if (closed)
+        {
+          return;
+        }
+
+        closing = true;
+
+        try
+        {
+          setEnabled(false);
+        } finally
+        {
+          closed = true;
+          closeAttributes();
+        }
+      }
+    } finally
+    {
+      if (closing)
+      {
+        unexport();
+      }
+    }
+  }
+
+  /**
+   * Writes the initial state. The duty cycle is cleared first, so any period is accepted.
+   */
+  void setup(long periodNanos)
+  {
+    if (periodNanos <= 0)
+    {
+      throw new IllegalArgumentException("The period must be positive but was " + periodNanos);
+    }
+
+    enableAttribute.write(DISABLED_BYTES);
+    write(dutyCycleAttribute, 0);
+    write(periodAttribute, periodNanos);
+
+    this.dutyNanos = 0;
+    this.periodNanos = periodNanos;
+  }
+
+  /**
+   * Closes all attributes that were opened, even if closing one of them fails.
+   */
+  void closeAttributes()
+  {
+    try
+    {
+      try
+      {
+        close(periodAttribute);
+      } finally
+      {
+        try
+        {
+          close(dutyCycleAttribute);
+        } finally
+        {
+          close(enableAttribute);
+        }
+      }
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error closing attributes of PWM channel " + chip + "/"
+          + channel, e);
+    }
+  }
+
+  private void unexport()
+  {
+    try
+    {
+      pwm.closed(this, channelDirectory);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error unexporting PWM channel " + chip + "/" + channel, e);
+    }
+  }
+
+  private static void close(AttributeFile attribute) throws IOException
+  {
+    if (attribute != null)
+    {
+      attribute.close();
+    }
+  }
+
+  private void setEnabled(boolean enabled)
+  {
+    checkOpen();
+
+    if (enabled != this.enabled)
+    {
+      enableAttribute.write(enabled ? ENABLED_BYTES : DISABLED_BYTES);
+      this.enabled = enabled;
+    }
+  }
+
+  private void checkOpen()
+  {
+    if (closed)
+    {
+      throw new BeagleIOException("PWM channel " + chip + "/" + channel + " is closed", null);
+    }
+  }
+
+  /**
+   * Formats the value as decimal digits at the end of the buffer and writes them.
+   */
+  private void write(AttributeFile attribute, long value)
+  {
+    int offset = MAX_DIGITS;
+
+    do
+    {
+      digits[--offset] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+
+    attribute.write(digits, offset, MAX_DIGITS - offset);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "HardwarePwmChannel [" + chip + "/" + channel + ", period=" + periodNanos
+        + "ns, duty=" + dutyNanos + "ns, enabled=" + enabled + "]";
+  }
+}
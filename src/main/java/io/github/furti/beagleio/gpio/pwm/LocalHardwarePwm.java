@@ -0,0 +1,108 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.pwm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Operates on the PWM subsystem of the kernel under /sys/class/pwm.
+ * 
+ * <p>
+ * The pwm directory of a channel is created asynchronously after the channel was exported. So
+ * {@link #export(int, int)} waits a short time for it to appear.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class LocalHardwarePwm extends HardwarePwm
+{
+  private static final long EXPORT_TIMEOUT_MILLIS = 1000;
+
+  public LocalHardwarePwm() throws IOException
+  {
+    super();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.github.furti.beagleio.gpio.pwm.HardwarePwm#initBaseDirectory()
+   */
+  @Override
+  protected Path initBaseDirectory() throws IOException
+  {
+    return Paths.get("/sys/class/pwm");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.github.furti.beagleio.gpio.pwm.HardwarePwm#export(int, int)
+   */
+  @Override
+  protected Path export(int chip, int channel) throws IOException
+  {
+    Path chipDirectory = getChipDirectory(chip);
+    Path channelDirectory = chipDirectory.resolve("pwm" + channel);
+
+    if (Files.exists(channelDirectory))
+    {
+      return channelDirectory;
+    }
+
+    write(chipDirectory.resolve(EXPORT_FILE), channel);
+
+    long deadline = System.currentTimeMillis() + EXPORT_TIMEOUT_MILLIS;
+
+    while (!Files.isWritable(channelDirectory.resolve(PERIOD_FILE)))
+    {
+      if (System.currentTimeMillis() > deadline)
+      {
+        throw new IOException("Channel directory " + channelDirectory + " was not created");
+      }
+
+      try
+      {
+        Thread.sleep(10);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for " + channelDirectory, e);
+      }
+    }
+
+    return channelDirectory;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.github.furti.beagleio.gpio.pwm.HardwarePwm#unexport(int, int, java.nio.file.Path)
+   */
+  @Override
+  protected void unexport(int chip, int channel, Path channelDirectory) throws IOException
+  {
+    write(getChipDirectory(chip).resolve(UNEXPORT_FILE), channel);
+  }
+
+  private void write(Path file, int value) throws IOException
+  {
+    Files.write(file, String.valueOf(value).getBytes(StandardCharsets.US_ASCII));
+  }
+}
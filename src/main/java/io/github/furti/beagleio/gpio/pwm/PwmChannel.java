@@ -0,0 +1,42 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.pwm;
+
+/**
+ * A channel that generates a pulse width modulated signal.
+ * 
+ * @author Daniel
+ *
+ */
+public interface PwmChannel
+{
+  /**
+   * @return the time of a full period in nanoseconds.
+   */
+  long getPeriodNanos();
+
+  /**
+   * @return the part of the period the signal is high, between 0 and 1.
+   */
+  double getDutyCycle();
+
+  /**
+   * Changes the duty cycle. The new duty cycle is applied with the next period, so the running
+   * period is not cut short.
+   * 
+   * @param dutyCycle the part of the period the signal is high, between 0 and 1.
+   * @throws IllegalArgumentException if the duty cycle is not between 0 and 1.
+   */
+  void setDutyCycle(double dutyCycle) throws IllegalArgumentException;
+}
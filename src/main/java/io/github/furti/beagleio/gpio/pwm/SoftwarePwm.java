@@ -0,0 +1,561 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.pwm;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.util.PreciseWait;
+
+/**
+ * Generates PWM signals on any number of outputs from a single thread.
+ * 
+ * <p>
+ * The channels are kept in a heap sorted by the deadline of their next edge. The thread parks until
+ * shortly before the earliest deadline and spins for the rest, like {@link PreciseWait}. All edges
+ * that are due are collected in a {@link BankMask} and written with a single
+ * {@link Beagle#writeBanks(BankMask)}, so Beagles that write whole banks at once change the Pins
+ * together.
+ * </p>
+ * 
+ * <p>
+ * The duty cycle of a channel can be changed from any thread without locking. It is read once per
+ * period. If the thread falls behind, the missed periods are skipped and counted. Each channel
+ * records how late its periods started and the frequency it achieved.
+ * </p>
+ * 
+ * <p>
+ * The Pins must be initialized as outputs before they are added.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class SoftwarePwm implements Closeable
+{
+  private Beagle beagle;
+  private long spinNanos;
+  private Queue<Channel> added = new ConcurrentLinkedQueue<>();
+  private Channel[] heap = new Channel[8];
+  private int size;
+  private BankMask edges = new BankMask();
+  private Thread thread;
+  private volatile boolean running;
+  private volatile RuntimeException failure;
+
+  /**
+   * @param beagle the Beagle to write the outputs with
+   */
+  public SoftwarePwm(Beagle beagle)
+  {
+    this(beagle, PreciseWait.DEFAULT_SPIN_NANOS);
+  }
+
+  /**
+   * @param beagle the Beagle to write the outputs with
+   * @param spinNanos the time before an edge where the thread stops parking and starts spinning.
+   *        Longer times improve the accuracy on a busy system but burn more CPU.
+   */
+  public SoftwarePwm(Beagle beagle, long spinNanos)
+  {
+    this.beagle = beagle;
+    this.spinNanos = spinNanos;
+  }
+
+  /**
+   * Adds an output that is {@link PinValue#LOW}. The first period starts when the thread picks up
+   * the channel. Channels added before {@link #start()} start at the same time.
+   * 
+   * @param pin the output
+   * @param periodNanos the time of a full period
+   * @param dutyCycle the initial duty cycle between 0 and 1
+   * @return the channel to control the output
+   * @throws IllegalArgumentException if the period is not positive or the duty cycle is not between
+   *         0 and 1.
+   */
+  public Channel add(Pin pin, long periodNanos, double dutyCycle) throws IllegalArgumentException
+  {
+    if (periodNanos <= 0)
+    {
+      throw new IllegalArgumentException("The period must be positive but was " + periodNanos);
+    }
+
+    Channel channel = new Channel(pin, periodNanos);
+    channel.setDutyCycle(dutyCycle);
+
+    added.add(channel);
+    wakeUp();
+
+    return channel;
+  }
+
+  /**
+   * Starts the thread that generates the signals.
+   */
+  public synchronized void start()
+  {
+    if (thread != null)
+    {
+      throw new IllegalStateException("The PWM is already started");
+    }
+
+    running = true;
+    thread = new Thread(this::run, "beagleio-pwm");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MAX_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * @return the exception that stopped the thread, or null if it is still running or was closed.
+   */
+  public RuntimeException getFailure()
+  {
+    return failure;
+  }
+
+  /**
+   * Stops the thread. All outputs are set to {@link PinValue#LOW}.
+   */
+  @Override
+  public void close()
+  {
+    Thread actualThread;
+
+    synchronized (this)
+    {
+      running = false;
+      actualThread = thread;
+    }
+
+    if (actualThread != null)
+    {
+      LockSupport.unpark(actualThread);
+
+      try
+      {
+        actualThread.join();
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void wakeUp()
+  {
+    Thread actualThread = thread;
+
+    if (actualThread != null)
+    {
+      LockSupport.unpark(actualThread);
+    }
+  }
+
+  private void run()
+  {
+    try
+    {
+      while (running)
+      {
+        addChannels(System.nanoTime());
+
+        if (size == 0)
+        {
+          LockSupport.park(this);
+          continue;
+        }
+
+        long deadline = heap[0].deadline;
+
+        if (!await(deadline))
+        {
+          continue;
+        }
+
+        long now = System.nanoTime();
+
+        // An output can only change once per write, so a late channel continues with the next write
+        while (size > 0 && heap[0].deadline - now <= 0 && !edges.contains(heap[0].pin))
+        {
+          Channel channel = heap[0];
+
+          if (channel.closed)
+          {
+            edges.set(channel.pin, PinValue.LOW);
+            remove();
+          } else
+          {
+            channel.edge(now, edges);
+            siftDown(0);
+          }
+        }
+
+        if (!edges.isEmpty())
+        {
+          beagle.writeBanks(edges);
+          edges.clear();
+        }
+      }
+    } catch (RuntimeException e)
+    {
+      failure = e;
+    } finally
+    {
+      running = false;
+      stopAll();
+    }
+  }
+
+  /**
+   * Parks until shortly before the deadline and spins for the rest of the time.
+   * 
+   * @return false if the wait was cut short because channels were added or the thread was stopped.
+   */
+  private boolean await(long deadline)
+  {
+    long now = System.nanoTime();
+
+    while (deadline - now > spinNanos)
+    {
+      if (!running || !added.isEmpty())
+      {
+        return false;
+      }
+
+      LockSupport.parkNanos(this, deadline - now - spinNanos);
+      now = System.nanoTime();
+    }
+
+    PreciseWait.until(deadline, spinNanos);
+    return true;
+  }
+
+  private void addChannels(long now)
+  {
+    Channel channel;
+
+    while ((channel = added.poll()) != null)
+    {
+      channel.start(now);
+
+      if (size == heap.length)
+      {
+        heap = Arrays.copyOf(heap, size * 2);
+      }
+
+      heap[size] = channel;
+      siftUp(size++);
+    }
+  }
+
+  /**
+   * Sets all outputs to LOW. Errors are ignored, the thread is stopping anyway.
+   */
+  private void stopAll()
+  {
+    edges.clear();
+
+    for (int i = 0; i < size; i++)
+    {
+      edges.set(heap[i].pin, PinValue.LOW);
+    }
+
+    Arrays.fill(heap, 0, size, null);
+    size = 0;
+
+    if (!edges.isEmpty() && failure == null)
+    {
+      try
+      {
+        beagle.writeBanks(edges);
+      } catch (RuntimeException e)
+      {
+        failure = e;
+      }
+    }
+
+    edges.clear();
+  }
+
+  private void remove()
+  {
+    heap[0] = heap[--size];
+    heap[size] = null;
+
+    if (size > 0)
+    {
+      siftDown(0);
+    }
+  }
+
+  private void siftUp(int index)
+  {
+    Channel channel = heap[index];
+
+    while (index > 0)
+    {
+      int parent = (index - 1) >>> 1;
+
+      if (heap[parent].deadline - channel.deadline <= 0)
+      {
+        break;
+      }
+
+      heap[index] = heap[parent];
+      index = parent;
+    }
+
+    heap[index] = channel;
+  }
+
+  private void siftDown(int index)
+  {
+    Channel channel = heap[index];
+    int half = size >>> 1;
+
+    while (index < half)
+    {
+      int child = 2 * index + 1;
+
+      if (child + 1 < size && heap[child + 1].deadline - heap[child].deadline < 0)
+      {
+        child++;
+      }
+
+      if (channel.deadline - heap[child].deadline <= 0)
+      {
+        break;
+      }
+
+      heap[index] = heap[child];
+      index = child;
+    }
+
+    heap[index] = channel;
+  }
+
+  /**
+   * An output driven by the PWM. The schedule is only touched by the PWM thread, the duty cycle is
+   * the only field written by other threads.
+   * 
+   * @author Daniel
+   *
+   */
+  public static class Channel implements PwmChannel
+  {
+    private Pin pin;
+    private long periodNanos;
+    private volatile double dutyCycle;
+    private volatile boolean closed;
+
+    private long deadline;
+    private long periodStart;
+    private boolean rising;
+    private boolean high;
+
+    private volatile long cycles;
+    private volatile long skippedCycles;
+    private volatile long maxJitterNanos;
+    private volatile long totalJitterNanos;
+    private volatile long firstEdgeNanos;
+    private volatile long lastEdgeNanos;
+
+    private Channel(Pin pin, long periodNanos)
+    {
+      this.pin = pin;
+      this.periodNanos = periodNanos;
+    }
+
+    public Pin getPin()
+    {
+      return pin;
+    }
+
+    @Override
+    public long getPeriodNanos()
+    {
+      return periodNanos;
+    }
+
+    @Override
+    public double getDutyCycle()
+    {
+      return dutyCycle;
+    }
+
+    @Override
+    public void setDutyCycle(double dutyCycle) throws IllegalArgumentException
+    {
+      if (!(dutyCycle >= 0 && dutyCycle <= 1))
+      {
+        throw new IllegalArgumentException("The duty cycle must be between 0 and 1 but was "
+            + dutyCycle);
+      }
+
+      this.dutyCycle = dutyCycle;
+    }
+
+    /**
+     * Removes the channel from the PWM. The output is set to {@link PinValue#LOW} at the next
+     * scheduled edge.
+     */
+    public void close()
+    {
+      closed = true;
+    }
+
+    /**
+     * @return the number of periods that were generated.
+     */
+    public long getCycles()
+    {
+      return cycles;
+    }
+
+    /**
+     * @return the number of periods that were skipped because the thread was too late.
+     */
+    public long getSkippedCycles()
+    {
+      return skippedCycles;
+    }
+
+    /**
+     * @return the longest time a period started after it was scheduled, in nanoseconds.
+     */
+    public long getMaxJitterNanos()
+    {
+      return maxJitterNanos;
+    }
+
+    /**
+     * @return the average time the periods started after they were scheduled, in nanoseconds.
+     */
+    public long getAverageJitterNanos()
+    {
+      long actualCycles = cycles;
+
+      return actualCycles == 0 ? 0 : totalJitterNanos / actualCycles;
+    }
+
+    /**
+     * The frequency is measured between the times the first and the last period actually started,
+     * not the times they were scheduled for.
+     * 
+     * @return the number of generated periods per second since the channel was started.
+     */
+    public double getAchievedFrequency()
+    {
+      long actualCycles = cycles;
+      long elapsed = lastEdgeNanos - firstEdgeNanos;
+
+      return actualCycles < 2 || elapsed <= 0 ? 0 : (actualCycles - 1) * 1e9 / elapsed;
+    }
+
+    private void start(long now)
+    {
+      periodStart = now;
+      deadline = now;
+      rising = true;
+    }
+
+    /**
+     * Adds the edge that is due to the mask and schedules the next one.
+     */
+    private void edge(long now, BankMask edges)
+    {
+      if (!rising)
+      {
+        set(edges, false);
+        rising = true;
+        deadline = periodStart + periodNanos;
+        return;
+      }
+
+      long jitter = now - deadline;
+
+      if (jitter >= periodNanos)
+      {
+        // Skip the periods we missed instead of running them back to back
+        long missed = jitter / periodNanos;
+
+        skippedCycles += missed;
+        periodStart = deadline + missed * periodNanos;
+        jitter -= missed * periodNanos;
+      } else
+      {
+        periodStart = deadline;
+      }
+
+      long highNanos = Math.round(dutyCycle * periodNanos);
+
+      if (jitter > maxJitterNanos)
+      {
+        maxJitterNanos = jitter;
+      }
+
+      totalJitterNanos += jitter;
+
+      if (cycles == 0)
+      {
+        firstEdgeNanos = now;
+      }
+
+      lastEdgeNanos = now;
+      cycles++;
+
+      if (highNanos == 0)
+      {
+        set(edges, false);
+        deadline = periodStart + periodNanos;
+      } else if (highNanos >= periodNanos)
+      {
+        set(edges, true);
+        deadline = periodStart + periodNanos;
+      } else
+      {
+        set(edges, true);
+        rising = false;
+        deadline = periodStart + highNanos;
+      }
+    }
+
+    /**
+     * Adds the level to the mask if it differs from the last one, so an output with a duty cycle of
+     * 0 or 1 is not written at all.
+     */
+    private void set(BankMask edges, boolean level)
+    {
+      if (level != high)
+      {
+        edges.set(pin, level ? PinValue.HIGH : PinValue.LOW);
+        high = level;
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Channel [" + pin + ", period=" + periodNanos + "ns, dutyCycle=" + dutyCycle + "]";
+    }
+  }
+}
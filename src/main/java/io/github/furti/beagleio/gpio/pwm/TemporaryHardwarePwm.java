@@ -0,0 +1,120 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.pwm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import io.github.furti.beagleio.gpio.util.FileUtils;
+
+/**
+ * Stands in for /sys/class/pwm on the temporary filesystem. Can be used for testing without a real
+ * BeagleBone Black.
+ * 
+ * <p>
+ * Exporting a channel creates its directory with the attribute files the kernel would provide. The
+ * directory is deleted when the channel is unexported and the base directory is deleted when the
+ * PWM is closed.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class TemporaryHardwarePwm extends HardwarePwm
+{
+
+  public TemporaryHardwarePwm() throws IOException
+  {
+    super();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.github.furti.beagleio.gpio.pwm.HardwarePwm#initBaseDirectory()
+   */
+  @Override
+  protected Path initBaseDirectory() throws IOException
+  {
+    Path baseDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "beagleio-pwm");
+
+    if (!Files.exists(baseDirectory))
+    {
+      Files.createDirectories(baseDirectory);
+    }
+
+    return baseDirectory;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.github.furti.beagleio.gpio.pwm.HardwarePwm#export(int, int)
+   */
+  @Override
+  protected Path export(int chip, int channel) throws IOException
+  {
+    Path channelDirectory = getChipDirectory(chip).resolve("pwm" + channel);
+
+    Files.createDirectories(channelDirectory);
+
+    createWithContent(channelDirectory, PERIOD_FILE, "0");
+    createWithContent(channelDirectory, DUTY_CYCLE_FILE, "0");
+    createWithContent(channelDirectory, ENABLE_FILE, "0");
+    createWithContent(channelDirectory, POLARITY_FILE, "normal");
+
+    return channelDirectory;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.github.furti.beagleio.gpio.pwm.HardwarePwm#unexport(int, int, java.nio.file.Path)
+   */
+  @Override
+  protected void unexport(int chip, int channel, Path channelDirectory) throws IOException
+  {
+    FileUtils.deleteDirectory(channelDirectory);
+  }
+
+  /**
+   * The files in the temporary directory are regular files. So they must be truncated when a
+   * shorter value is written.
+   */
+  @Override
+  protected boolean isTruncateOnWrite()
+  {
+    return true;
+  }
+
+  @Override
+  protected void doRelease() throws IOException
+  {
+    FileUtils.deleteDirectory(getBaseDirectory());
+  }
+
+  private void createWithContent(Path directory, String fileName, String content)
+      throws IOException
+  {
+    Path file = directory.resolve(fileName);
+
+    if (!Files.exists(file))
+    {
+      Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+}
@@ -0,0 +1,878 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.DogHouse;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinEvent;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+
+/**
+ * Serves a Beagle to {@link RemoteBeagle}s over the network.
+ * 
+ * <p>
+ * All clients are served by a single thread with a {@link Selector}. Each client has preallocated
+ * buffers for its requests and responses. The requests of a client are executed in the order they
+ * arrive and the responses are sent in the same order. If a client does not read its responses,
+ * its requests are not read anymore until the responses were sent.
+ * </p>
+ * 
+ * <p>
+ * A Pin belongs to the client that initialized it, and only this client can use it. An input can be
+ * shared: other clients that initialize it as input with the same active low flag can read it too.
+ * The Pin is closed when the last of its clients closes it. The Pins of a client are closed when
+ * the client disconnects.
+ * </p>
+ * 
+ * <p>
+ * Clients can subscribe to the changes of their Pins. The server polls each subscribed Pin once on
+ * the served Beagle, no matter how many clients subscribed to it. A change only marks the Pin and
+ * wakes up the selector. The changes of all Pins that happened in the meantime are sent to each
+ * client in a single event. If the responses of a client are not read, its events are held back and
+ * merged, so a slow client never delays the others.
+ * </p>
+ * 
+ * <p>
+ * Run the server with {@link #main(String[])}. It serves the Beagle created by the {@link DogHouse}
+ * on the address read from the system properties <b>beagleio.server.host</b> (default all
+ * interfaces) and <b>beagleio.server.port</b> (default {@value Protocol#DEFAULT_PORT}).
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class BeagleServer implements Closeable
+{
+  public static final String HOST_PROPERTY = "beagleio.server.host";
+  public static final String PORT_PROPERTY = "beagleio.server.port";
+
+  private static final int BUFFER_SIZE = Protocol.MAX_FRAME_SIZE * 16;
+  private static final Pin[] PINS = Pin.values();
+
+  private Beagle beagle;
+  private InetSocketAddress address;
+  private ServerSocketChannel serverChannel;
+  private Selector selector;
+  private Thread thread;
+  private List<Client> clients = new ArrayList<>();
+  private int[] users = new int[PINS.length];
+  private Direction[] directions = new Direction[PINS.length];
+  private boolean[] activeLows = new boolean[PINS.length];
+  private PollValue[] polls = new PollValue[PINS.length];
+  private Runnable[] changeListeners = new Runnable[PINS.length];
+  private int[] subscribers = new int[PINS.length];
+  private AtomicIntegerArray changed = new AtomicIntegerArray(BankMask.BANK_COUNT);
+  private AtomicBoolean changesPending = new AtomicBoolean();
+  private int[] changedBanks = new int[BankMask.BANK_COUNT];
+  private PinEvent event = new PinEvent();
+  private volatile int connectionCount;
+  private volatile long requestCount;
+  private volatile boolean running;
+  private volatile Exception failure;
+
+  /**
+   * @param beagle the Beagle to serve. It is not released when the server is closed.
+   * @param address the address to listen on. Use port 0 to pick a free port.
+   */
+  public BeagleServer(Beagle beagle, InetSocketAddress address)
+  {
+    this.beagle = beagle;
+    this.address = address;
+  }
+
+  /**
+   * Starts listening for clients.
+   * 
+   * @throws IOException if the address can not be bound.
+   */
+  public synchronized void start() throws IOException
+  {
+    if (running)
+    {
+      return;
+    }
+
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(address);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    address = (InetSocketAddress) serverChannel.getLocalAddress();
+
+    running = true;
+    thread = new Thread(this::run, "beagleio-server");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * @return the address the server listens on.
+   */
+  public InetSocketAddress getAddress()
+  {
+    return address;
+  }
+
+  /**
+   * @return the number of connected clients.
+   */
+  public int getConnectionCount()
+  {
+    return connectionCount;
+  }
+
+  /**
+   * @return the number of requests executed so far.
+   */
+  public long getRequestCount()
+  {
+    return requestCount;
+  }
+
+  /**
+   * @return the error that stopped the server, or null if it is running or was closed.
+   */
+  public Exception getFailure()
+  {
+    return failure;
+  }
+
+  /**
+   * Waits until the server is closed.
+   * 
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   * @throws BeagleIOException if the server stopped because of an error.
+   */
+  public void join() throws InterruptedException, BeagleIOException
+  {
+    Thread actualThread = thread;
+
+    if (actualThread != null)
+    {
+      actualThread.join();
+    }
+
+    Exception actualFailure = failure;
+
+    if (actualFailure != null)
+    {
+      throw new BeagleIOException("Error serving clients on " + address, actualFailure);
+    }
+  }
+
+  /**
+   * Disconnects all clients, which closes their Pins, and stops listening.
+   */
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (!running)
+    {
+      return;
+    }
+
+    running = false;
+    selector.wakeup();
+
+    try
+    {
+      thread.join();
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run()
+  {
+    try
+    {
+      while (running)
+      {
+        selector.select();
+
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+        while (iterator.hasNext())
+        {
+          SelectionKey key = iterator.next();
+          iterator.remove();
+
+          if (!key.isValid())
+          {
+            continue;
+          }
+
+          if (key.isAcceptable())
+          {
+            accept();
+          } else
+          {
+            handle((Client) key.attachment(), key);
+          }
+        }
+
+        if (changesPending.getAndSet(false))
+        {
+          publishChanges();
+        }
+      }
+    } catch (IOException | RuntimeException e)
+    {
+      if (running)
+      {
+        // Kept for join(), nobody else could catch it on this thread
+        failure = e;
+      }
+    } finally
+    {
+      running = false;
+
+      for (Client client : new ArrayList<>(clients))
+      {
+        disconnect(client);
+      }
+
+      try
+      {
+        serverChannel.close();
+        selector.close();
+      } catch (IOException e)
+      {
+        // Nothing left to clean up
+      }
+    }
+  }
+
+  private void accept() throws IOException
+  {
+    SocketChannel channel = serverChannel.accept();
+
+    if (channel == null)
+    {
+      return;
+    }
+
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+    Client client = new Client(channel);
+    client.key = channel.register(selector, SelectionKey.OP_READ, client);
+    clients.add(client);
+    connectionCount = clients.size();
+  }
+
+  /**
+   * An error of a client only disconnects that client. The other clients are served on.
+   */
+  private void handle(Client client, SelectionKey key)
+  {
+    try
+    {
+      if (key.isWritable())
+      {
+        client.onWritable();
+      } else if (key.isReadable())
+      {
+        client.onReadable();
+      }
+    } catch (IOException | RuntimeException e)
+    {
+      disconnect(client);
+    }
+  }
+
+  /**
+   * Adds the Pins changed since the last call to the pending events of their subscribers and sends
+   * the events to all clients that can take them.
+   */
+  private void publishChanges()
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      changedBanks[bank] = changed.getAndSet(bank, 0);
+    }
+
+    for (Client client : new ArrayList<>(clients))
+    {
+      for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+      {
+        client.pendingEvents[bank] |= changedBanks[bank] & client.subscriptions[bank];
+      }
+
+      try
+      {
+        client.sendEvents();
+      } catch (IOException | RuntimeException e)
+      {
+        disconnect(client);
+      }
+    }
+  }
+
+  /**
+   * Starts the events of the Pin for the client. The Pin is polled on the served Beagle when the
+   * first client subscribes to it.
+   * 
+   * @return the actual value of the Pin.
+   */
+  private PinValue subscribe(Client client, Pin pin)
+  {
+    int index = pin.ordinal();
+    int bank = pin.getBank();
+    int mask = pin.getBankMask();
+
+    if (polls[index] == null)
+    {
+      Runnable listener = () -> {
+        changed.accumulateAndGet(bank, mask, (a, b) -> a | b);
+
+        if (changesPending.compareAndSet(false, true))
+        {
+          selector.wakeup();
+        }
+      };
+
+      polls[index] = beagle.poll(pin);
+      polls[index].addChangeListener(listener);
+      changeListeners[index] = listener;
+    }
+
+    if ((client.subscriptions[bank] & mask) == 0)
+    {
+      client.subscriptions[bank] |= mask;
+      subscribers[index]++;
+    }
+
+    // The client starts with the actual value, so only later changes must be sent
+    polls[index].read(event);
+    client.sentSequences[index] = event.getSequence();
+    client.sentValues[index] = event.getValue();
+    client.pendingEvents[bank] &= ~mask;
+
+    return event.getValue();
+  }
+
+  /**
+   * Stops the events of the Pin for the client. The Pin is not polled anymore when the last client
+   * unsubscribed.
+   */
+  private void unsubscribe(Client client, Pin pin)
+  {
+    int index = pin.ordinal();
+    int bank = pin.getBank();
+    int mask = pin.getBankMask();
+
+    if ((client.subscriptions[bank] & mask) == 0)
+    {
+      return;
+    }
+
+    client.subscriptions[bank] &= ~mask;
+    client.pendingEvents[bank] &= ~mask;
+
+    if (--subscribers[index] == 0)
+    {
+      polls[index].removeChangeListener(changeListeners[index]);
+      polls[index] = null;
+      changeListeners[index] = null;
+    }
+  }
+
+  /**
+   * Closes the connection and all Pins of the client.
+   */
+  private void disconnect(Client client)
+  {
+    client.key.cancel();
+
+    try
+    {
+      client.channel.close();
+    } catch (IOException e)
+    {
+      // The connection is gone anyway
+    }
+
+    for (Pin pin : PINS)
+    {
+      if (client.pins.contains(pin))
+      {
+        try
+        {
+          release(client, pin);
+        } catch (RuntimeException e)
+        {
+          // The other Pins must be closed anyway
+        }
+      }
+    }
+
+    clients.remove(client);
+    connectionCount = clients.size();
+  }
+
+  /**
+   * Initializes the Pins for the client or adds the client to the users of shared inputs. The free
+   * Pins are initialized together. No Pin is acquired if one of them is not available.
+   */
+  private void acquire(Client client, PinGroup pins, Direction direction, boolean activeLow)
+  {
+    List<Pin> free = new ArrayList<>();
+
+    for (Pin pin : pins.getPins())
+    {
+      int index = pin.ordinal();
+
+      if (client.pins.contains(pin))
+      {
+        throw new BeagleIOException("Pin " + pin + " is already initialized", null);
+      }
+
+      if (users[index] == 0)
+      {
+        free.add(pin);
+      } else if (direction != Direction.IN || directions[index] != Direction.IN
+          || activeLows[index] != activeLow)
+      {
+        throw new BeagleIOException("Pin " + pin + " is used by another client", null);
+      }
+    }
+
+    if (!free.isEmpty())
+    {
+      beagle.initializePins(PinGroup.fromPins(free.toArray(new Pin[free.size()])), direction,
+          activeLow);
+    }
+
+    for (Pin pin : pins.getPins())
+    {
+      directions[pin.ordinal()] = direction;
+      activeLows[pin.ordinal()] = activeLow;
+      users[pin.ordinal()]++;
+      client.pins.set(pin, PinValue.HIGH);
+    }
+  }
+
+  /**
+   * Removes the client from the users of the Pin. The last user closes the Pin.
+   */
+  private void release(Client client, Pin pin)
+  {
+    unsubscribe(client, pin);
+    client.pins.remove(pin);
+
+    if (--users[pin.ordinal()] == 0)
+    {
+      directions[pin.ordinal()] = null;
+      beagle.closePin(pin);
+    }
+  }
+
+  /**
+   * Serves the Beagle created by the {@link DogHouse} until the process is stopped.
+   * 
+   * @param args not used
+   * @throws IOException if the address can not be bound.
+   * @throws InterruptedException if the main thread is interrupted.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException
+  {
+    String host = System.getProperty(HOST_PROPERTY);
+    int port = Integer.getInteger(PORT_PROPERTY, Protocol.DEFAULT_PORT);
+    Beagle beagle = DogHouse.callDog();
+    BeagleServer server = new BeagleServer(beagle,
+        host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port));
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try
+      {
+        server.close();
+      } catch (IOException e)
+      {
+        // The process is going down anyway
+      } finally
+      {
+        beagle.release();
+      }
+    }));
+
+    server.start();
+    System.out.println("Serving " + beagle.getClass().getSimpleName() + " on "
+        + server.getAddress());
+    server.join();
+  }
+
+  /**
+   * A connected client with its buffers and Pins.
+   * 
+   * @author Daniel
+   *
+   */
+  private class Client
+  {
+    private SocketChannel channel;
+    private SelectionKey key;
+    private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private BankMask banks = new BankMask();
+    private BankMask pins = new BankMask();
+    private int[] subscriptions = new int[BankMask.BANK_COUNT];
+    private int[] pendingEvents = new int[BankMask.BANK_COUNT];
+    private long[] sentSequences = new long[PINS.length];
+    private PinValue[] sentValues = new PinValue[PINS.length];
+    private int[] eventMasks = new int[BankMask.BANK_COUNT];
+    private int[] eventBits = new int[BankMask.BANK_COUNT];
+    private long[] eventChanges = new long[PINS.length];
+
+    public Client(SocketChannel channel)
+    {
+      this.channel = channel;
+    }
+
+    public void onReadable() throws IOException
+    {
+      if (channel.read(in) < 0)
+      {
+        throw new IOException("Client disconnected");
+      }
+
+      serve();
+    }
+
+    /**
+     * The requests that did not fit into the responses can be processed now.
+     */
+    public void onWritable() throws IOException
+    {
+      write();
+
+      if (out.position() == 0)
+      {
+        serve();
+        sendEvents();
+      }
+    }
+
+    /**
+     * Sends the pending events if there is space for them. Otherwise they stay pending and are
+     * merged with the next changes.
+     */
+    public void sendEvents() throws IOException
+    {
+      if (out.remaining() < Protocol.MAX_FRAME_SIZE)
+      {
+        return;
+      }
+
+      long latest = Long.MIN_VALUE;
+
+      for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+      {
+        int mask = pendingEvents[bank];
+        pendingEvents[bank] = 0;
+        eventMasks[bank] = 0;
+        eventBits[bank] = 0;
+
+        while (mask != 0)
+        {
+          int bit = Integer.numberOfTrailingZeros(mask);
+          mask &= mask - 1;
+
+          int index = Pin.forKernelNumber(bank * 32 + bit).ordinal();
+          polls[index].read(event);
+
+          long changes = event.getSequence() - sentSequences[index];
+
+          // PollValues that do not count the changes keep the sequence and the timestamp
+          if (changes == 0 && event.getValue() != sentValues[index])
+          {
+            changes = 1;
+            event.set(event.getValue(), event.getSequence(), System.nanoTime());
+          }
+
+          if (changes > 0)
+          {
+            eventMasks[bank] |= 1 << bit;
+            eventBits[bank] |= event.getValue() == PinValue.HIGH ? 1 << bit : 0;
+            eventChanges[index] = changes;
+            sentSequences[index] = event.getSequence();
+            sentValues[index] = event.getValue();
+            latest = Math.max(latest, event.getTimestamp());
+          }
+        }
+      }
+
+      if (latest == Long.MIN_VALUE)
+      {
+        return;
+      }
+
+      int start = Protocol.beginFrame(out, Protocol.EVENT_ID, Protocol.STATUS_EVENT);
+      out.putLong(System.nanoTime() - latest);
+
+      for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+      {
+        out.putInt(eventMasks[bank]).putInt(eventBits[bank]);
+      }
+
+      for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+      {
+        int mask = eventMasks[bank];
+
+        while (mask != 0)
+        {
+          int bit = Integer.numberOfTrailingZeros(mask);
+          mask &= mask - 1;
+
+          long changes = eventChanges[Pin.forKernelNumber(bank * 32 + bit).ordinal()];
+
+          if (changes > Protocol.MAX_EVENT_CHANGES)
+          {
+            // An odd number of changes means the value changed, so it must stay odd
+            changes = Protocol.MAX_EVENT_CHANGES - (changes & 1);
+          }
+
+          out.putShort((short) changes);
+        }
+      }
+
+      Protocol.endFrame(out, start);
+      write();
+    }
+
+    /**
+     * Processes the requests and sends the responses until all requests are done or the responses
+     * can not be sent at once.
+     */
+    private void serve() throws IOException
+    {
+      boolean more;
+
+      do
+      {
+        more = process();
+        write();
+      } while (more && out.position() == 0);
+    }
+
+    /**
+     * Executes the received requests as long as there is space for their responses.
+     * 
+     * @return true if requests are left.
+     */
+    private boolean process() throws IOException
+    {
+      in.flip();
+
+      try
+      {
+        while (out.remaining() >= Protocol.MAX_FRAME_SIZE && Protocol.hasFrame(in))
+        {
+          int start = in.position();
+          int length = in.getInt();
+
+          if (length < Protocol.HEADER_SIZE - 4 || length > Protocol.MAX_FRAME_SIZE - 4)
+          {
+            throw new IOException("Invalid frame length " + length);
+          }
+
+          int id = in.getInt();
+          byte opcode = in.get();
+
+          respond(id, opcode);
+
+          in.position(start + 4 + length);
+          requestCount++;
+        }
+
+        // A frame that can never fit into the buffer
+        if (in.remaining() >= 4 && in.getInt(in.position()) > Protocol.MAX_FRAME_SIZE - 4)
+        {
+          throw new IOException("Invalid frame length " + in.getInt(in.position()));
+        }
+
+        return Protocol.hasFrame(in);
+      } finally
+      {
+        in.compact();
+      }
+    }
+
+    private void respond(int id, byte opcode)
+    {
+      int start = Protocol.beginFrame(out, id, Protocol.STATUS_OK);
+
+      try
+      {
+        out.putLong(execute(opcode));
+      } catch (RuntimeException e)
+      {
+        out.position(start);
+        start = Protocol.beginFrame(out, id, Protocol.STATUS_ERROR);
+        Protocol.putMessage(out, e.getMessage());
+      }
+
+      Protocol.endFrame(out, start);
+    }
+
+    private long execute(byte opcode)
+    {
+      switch (opcode)
+      {
+        case Protocol.INITIALIZE:
+        {
+          Pin pin = readPin();
+          byte argument = in.get();
+
+          acquire(this, PinGroup.fromPins(pin), Protocol.toDirection(argument),
+              Protocol.toActiveLow(argument));
+          return 0;
+        }
+        case Protocol.SET_VALUE:
+        {
+          Pin pin = readOwnPin();
+
+          beagle.setPinValue(pin, Protocol.toValue(in.get()));
+          return 0;
+        }
+        case Protocol.GET_VALUE:
+          return beagle.getPinValue(readOwnPin()) == PinValue.HIGH ? 1 : 0;
+        case Protocol.CLOSE:
+          release(this, readOwnPin());
+          return 0;
+        case Protocol.INITIALIZE_PINS:
+        {
+          byte argument = in.get();
+          acquire(this, readPins(false), Protocol.toDirection(argument),
+              Protocol.toActiveLow(argument));
+          return 0;
+        }
+        case Protocol.READ_PINS:
+          in.get();
+          return beagle.readPins(readPins(true));
+        case Protocol.WRITE_BANKS:
+          Protocol.getBanks(in, banks);
+
+          for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+          {
+            if ((banks.getMask(bank) & ~pins.getMask(bank)) != 0)
+            {
+              throw new BeagleIOException("Pins " + banks
+                  + " were not all initialized by this client", null);
+            }
+          }
+
+          beagle.writeBanks(banks);
+          return 0;
+        case Protocol.SYNC:
+          return 0;
+        case Protocol.SUBSCRIBE:
+        {
+          in.get();
+          PinGroup group = readPins(true);
+          long word = 0;
+
+          if (group.size() > PinGroup.MAX_WORD_SIZE)
+          {
+            throw new IllegalArgumentException("A word can hold " + PinGroup.MAX_WORD_SIZE
+                + " Pins but the group contains " + group.size());
+          }
+
+          for (int i = 0; i < group.size(); i++)
+          {
+            if (subscribe(this, group.getPins().get(i)) == PinValue.HIGH)
+            {
+              word |= 1L << i;
+            }
+          }
+
+          return word;
+        }
+        default:
+          throw new IllegalArgumentException("Unknown opcode " + opcode);
+      }
+    }
+
+    private Pin readPin()
+    {
+      int kernelNumber = in.get(in.position()) & 0xFF;
+      Pin pin = Protocol.getPin(in);
+
+      if (pin == null)
+      {
+        throw new IllegalArgumentException("Unknown Pin with kernel number " + kernelNumber);
+      }
+
+      return pin;
+    }
+
+    private Pin readOwnPin()
+    {
+      Pin pin = readPin();
+
+      if (!pins.contains(pin))
+      {
+        throw new BeagleIOException("Pin " + pin + " was not initialized by this client", null);
+      }
+
+      return pin;
+    }
+
+    private PinGroup readPins(boolean own)
+    {
+      Pin[] group = new Pin[in.get() & 0xFF];
+
+      for (int i = 0; i < group.length; i++)
+      {
+        group[i] = own ? readOwnPin() : readPin();
+      }
+
+      return PinGroup.fromPins(group);
+    }
+
+    /**
+     * Sends as much of the responses as possible. Reading stops until all of them were sent.
+     */
+    private void write() throws IOException
+    {
+      out.flip();
+      channel.write(out);
+      out.compact();
+
+      key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+  }
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.remote;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * The binary protocol spoken between a {@link RemoteBeagle} and the Beagle that controls the Pins.
+ * 
+ * <p>
+ * All numbers are big endian. Each frame starts with its length, not including the length itself,
+ * followed by a correlation id and the opcode of the request or the status of the response:
+ * </p>
+ * 
+ * <pre>
+ * request:  int length | int id | byte opcode | payload
+ * response: int length | int id | byte status | long result  (STATUS_OK)
+ *                                             | short length | UTF-8 message  (STATUS_ERROR)
+ * event:    int length | 0      | STATUS_EVENT | long age | banks | short changes per Pin
+ * </pre>
+ * 
+ * <p>
+ * Pins are sent as their kernel numbers. Requests for a single Pin carry the Pin and one argument
+ * byte. Requests for a group carry the argument, the number of Pins and the Pins. A
+ * {@link #WRITE_BANKS} request carries the mask and the bits of each bank.
+ * </p>
+ * 
+ * <p>
+ * The responses are sent in the order of the requests. So the client does not need to wait for a
+ * response before it sends the next request, and a response to a read proves that all writes sent
+ * before it were executed.
+ * </p>
+ * 
+ * <p>
+ * After a {@link #SUBSCRIBE} the server pushes events for the changes of the Pins. An event
+ * carries the Pins that changed as mask and their actual values as bits of each bank, followed by
+ * the number of changes of each of these Pins in the order of their kernel numbers. Changes that
+ * happen faster than the client reads the events are merged into one event. The age is the time
+ * since the latest change in nanoseconds, so the clocks of the hosts do not need to match.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public final class Protocol
+{
+  public static final int DEFAULT_PORT = 7420;
+
+  /**
+   * The number of bytes before the payload, including the length.
+   */
+  public static final int HEADER_SIZE = 9;
+
+  /**
+   * The maximum length of a frame, including the length. Large enough for a group with all Pins.
+   */
+  public static final int MAX_FRAME_SIZE = 256;
+
+  /**
+   * Pin, direction and active low (argument = direction ordinal &lt;&lt; 1 | active low).
+   */
+  public static final byte INITIALIZE = 1;
+  /**
+   * Pin and value (argument = 1 for HIGH).
+   */
+  public static final byte SET_VALUE = 2;
+  /**
+   * Pin. The result is 1 for HIGH.
+   */
+  public static final byte GET_VALUE = 3;
+  /**
+   * Pin.
+   */
+  public static final byte CLOSE = 4;
+  /**
+   * Group, direction and active low like {@link #INITIALIZE}.
+   */
+  public static final byte INITIALIZE_PINS = 5;
+  /**
+   * Group. The result is the word read.
+   */
+  public static final byte READ_PINS = 6;
+  /**
+   * Mask and bits of all banks.
+   */
+  public static final byte WRITE_BANKS = 7;
+  /**
+   * No payload. Answered when all requests sent before it were executed.
+   */
+  public static final byte SYNC = 8;
+  /**
+   * Group. Starts the events for the Pins. The result is the word with their actual values.
+   */
+  public static final byte SUBSCRIBE = 9;
+
+  public static final byte STATUS_OK = 0;
+  public static final byte STATUS_ERROR = 1;
+  public static final byte STATUS_EVENT = 2;
+
+  /**
+   * The correlation id of events. Requests never use it.
+   */
+  public static final int EVENT_ID = 0;
+
+  /**
+   * The maximum number of changes sent for a Pin in a single event. Larger numbers are cut, keeping
+   * whether the number is odd or even.
+   */
+  public static final int MAX_EVENT_CHANGES = 1024;
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  private Protocol()
+  {
+
+  }
+
+  /**
+   * Writes the header of a frame. The length is written by {@link #endFrame(ByteBuffer, int)}.
+   * 
+   * @param buffer the buffer to write to
+   * @param id the correlation id
+   * @param code the opcode or status
+   * @return the position of the frame in the buffer
+   */
+  public static int beginFrame(ByteBuffer buffer, int id, byte code)
+  {
+    int start = buffer.position();
+
+    buffer.putInt(0).putInt(id).put(code);
+
+    return start;
+  }
+
+  /**
+   * Writes the length of the frame that starts at the position.
+   * 
+   * @param buffer the buffer the frame was written to
+   * @param start the position returned by {@link #beginFrame(ByteBuffer, int, byte)}
+   */
+  public static void endFrame(ByteBuffer buffer, int start)
+  {
+    buffer.putInt(start, buffer.position() - start - 4);
+  }
+
+  /**
+   * @param buffer the buffer with the received bytes, ready for reading
+   * @return true if the buffer contains a complete frame at its position
+   */
+  public static boolean hasFrame(ByteBuffer buffer)
+  {
+    return buffer.remaining() >= 4
+        && buffer.remaining() >= 4 + buffer.getInt(buffer.position());
+  }
+
+  public static void putPin(ByteBuffer buffer, Pin pin)
+  {
+    buffer.put(pin.getKernelNumber().byteValue());
+  }
+
+  public static Pin getPin(ByteBuffer buffer)
+  {
+    return Pin.forKernelNumber(buffer.get() & 0xFF);
+  }
+
+  public static void putPins(ByteBuffer buffer, PinGroup pins)
+  {
+    buffer.put((byte) pins.size());
+
+    for (Pin pin : pins.getPins())
+    {
+      putPin(buffer, pin);
+    }
+  }
+
+  public static PinGroup getPins(ByteBuffer buffer)
+  {
+    Pin[] pins = new Pin[buffer.get() & 0xFF];
+
+    for (int i = 0; i < pins.length; i++)
+    {
+      pins[i] = getPin(buffer);
+    }
+
+    return PinGroup.fromPins(pins);
+  }
+
+  public static void putBanks(ByteBuffer buffer, BankMask banks)
+  {
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      buffer.putInt(banks.getMask(bank)).putInt(banks.getBits(bank));
+    }
+  }
+
+  /**
+   * @param buffer the buffer to read from
+   * @param banks the mask to fill. It is cleared first.
+   * @return the mask
+   */
+  public static BankMask getBanks(ByteBuffer buffer, BankMask banks)
+  {
+    banks.clear();
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = buffer.getInt();
+      int bits = buffer.getInt();
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        banks.set(Pin.forKernelNumber(bank * 32 + bit),
+            (bits & (1 << bit)) != 0 ? PinValue.HIGH : PinValue.LOW);
+      }
+    }
+
+    return banks;
+  }
+
+  public static byte toArgument(Direction direction, boolean activeLow)
+  {
+    return (byte) (direction.ordinal() << 1 | (activeLow ? 1 : 0));
+  }
+
+  public static Direction toDirection(byte argument)
+  {
+    return DIRECTIONS[argument >> 1];
+  }
+
+  public static boolean toActiveLow(byte argument)
+  {
+    return (argument & 1) != 0;
+  }
+
+  public static byte toArgument(PinValue value)
+  {
+    return (byte) (value == PinValue.HIGH ? 1 : 0);
+  }
+
+  public static PinValue toValue(long argument)
+  {
+    return argument != 0 ? PinValue.HIGH : PinValue.LOW;
+  }
+
+  /**
+   * Writes an error message, shortened if it does not fit into a frame.
+   * 
+   * @param buffer the buffer to write to
+   * @param message the message
+   */
+  public static void putMessage(ByteBuffer buffer, String message)
+  {
+    byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+    int length = Math.min(bytes.length, MAX_FRAME_SIZE - HEADER_SIZE - 2);
+
+    buffer.putShort((short) length).put(bytes, 0, length);
+  }
+
+  public static String getMessage(ByteBuffer buffer)
+  {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -13,28 +13,174 @@
  */
 package io.github.furti.beagleio.gpio.remote;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.furti.beagleio.BankMask;
 import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
 import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
 import io.github.furti.beagleio.gpio.AbstractBeagle;
 import io.github.furti.beagleio.gpio.PinManager;
 
 /**
+ * A Beagle that sends all operations over the network to a Beagle on another host, which is served
+ * by a {@link BeagleServer}.
+ * 
+ * <p>
+ * The operations are sent with the binary {@link Protocol} over a single TCP connection. Writes do
+ * not wait for their response, so many of them can be on their way at the same time. Operations on
+ * a {@link PinGroup} are sent as a single request. If a write fails on the remote Beagle, the error
+ * is thrown by the next operation. Use {@link #sync()} to wait until all writes were executed.
+ * </p>
+ * 
+ * <p>
+ * Polled Pins are not read over and over again. The remote Beagle pushes their changes, so reading
+ * a {@link io.github.furti.beagleio.PollValue} is a read from memory. Use
+ * {@link #subscribe(PinGroup)} to subscribe to several Pins with a single request.
+ * </p>
+ * 
+ * <p>
+ * The address is read from the system properties <b>beagleio.remote.host</b> (default localhost)
+ * and <b>beagleio.remote.port</b> (default {@value Protocol#DEFAULT_PORT}). The time to wait for a
+ * response is read from <b>beagleio.remote.timeout</b> in milliseconds. The connection is opened
+ * when the first Pin is initialized.
+ * </p>
+ * 
  * @author Daniel
  *
  */
 public class RemoteBeagle extends AbstractBeagle
 {
+  public static final String HOST_PROPERTY = "beagleio.remote.host";
+  public static final String PORT_PROPERTY = "beagleio.remote.port";
+  public static final String TIMEOUT_PROPERTY = "beagleio.remote.timeout";
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see io.github.furti.beagleio.Beagle#release()
+  private static final String DEFAULT_HOST = "localhost";
+  private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+  private InetSocketAddress address;
+  private long timeoutMillis;
+  private volatile RemoteConnection connection;
+
+  public RemoteBeagle()
+  {
+    this(new InetSocketAddress(System.getProperty(HOST_PROPERTY, DEFAULT_HOST),
+        Integer.getInteger(PORT_PROPERTY, Protocol.DEFAULT_PORT)),
+        Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MILLIS));
+  }
+
+  /**
+   * @param address the address of the remote Beagle
+   * @param timeoutMillis the time to wait for the connection and for each response
+   */
+  public RemoteBeagle(InetSocketAddress address, long timeoutMillis)
+  {
+    this.address = address;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * The Pin is initialized on the remote Beagle first. So it is not used here if that fails.
    */
   @Override
-  public void release() throws BeagleIOException
+  public void initializePin(Pin pin, Direction direction, boolean activeLow)
+      throws BeagleIOException
+  {
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      RemoteConnection actualConnection = getConnection();
+
+      actualConnection.await(actualConnection.send(Protocol.INITIALIZE, pin,
+          Protocol.toArgument(direction, activeLow), true));
+
+      super.initializePin(pin, direction, activeLow);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void initializePins(PinGroup pins, Direction direction)
+  {
+    initializePins(pins, direction, false);
+  }
+
+  /**
+   * All Pins of the group are initialized on the remote Beagle with a single request.
+   */
+  @Override
+  public void initializePins(PinGroup pins, Direction direction, boolean activeLow)
+  {
+    PinGroup sorted = pins.toBankMask(PinValue.LOW).toPinGroup();
+
+    for (Pin pin : sorted.getPins())
+    {
+      getLock(pin).lock();
+    }
+
+    try
+    {
+      RemoteConnection actualConnection = getConnection();
+
+      actualConnection.await(actualConnection.send(Protocol.INITIALIZE_PINS, pins,
+          Protocol.toArgument(direction, activeLow), true));
+
+      for (Pin pin : sorted.getPins())
+      {
+        super.initializePin(pin, direction, activeLow);
+      }
+    } finally
+    {
+      for (Pin pin : sorted.getPins())
+      {
+        getLock(pin).unlock();
+      }
+    }
+  }
+
+  /**
+   * Subscribes to the changes of all Pins in the group with a single request and starts polling
+   * them. The {@link io.github.furti.beagleio.PollValue}s returned by {@link #poll(Pin)} are kept
+   * up to date by the remote Beagle from now on.
+   * 
+   * @param pins the initialized Pins. Must not contain more than {@link PinGroup#MAX_WORD_SIZE}
+   *        Pins.
+   * @throws BeagleIOException if a Pin is not initialized.
+   */
+  public void subscribe(PinGroup pins) throws BeagleIOException
   {
-    // TODO Auto-generated method stub
+    getConnection().subscribe(pins);
 
+    for (Pin pin : pins.getPins())
+    {
+      poll(pin);
+    }
+  }
+
+  /**
+   * Waits until all operations sent so far were executed by the remote Beagle.
+   * 
+   * @throws BeagleIOException if one of them failed.
+   */
+  public void sync() throws BeagleIOException
+  {
+    getConnection().sync();
+  }
+
+  /**
+   * @return the address of the remote Beagle.
+   */
+  public InetSocketAddress getAddress()
+  {
+    return address;
   }
 
   /*
@@ -46,18 +192,77 @@ public class RemoteBeagle extends AbstractBeagle
   @Override
   protected PinManager createPinManager(Pin pin)
   {
-    // TODO Auto-generated method stub
-    return null;
+    return new RemotePinManager(pin, getConnection());
   }
 
-  /* (non-Javadoc)
-   * @see io.github.furti.beagleio.gpio.AbstractBeagle#doRelease()
+  /**
+   * All Pins are sent in a single request.
    */
   @Override
-  protected void doRelease()
+  protected void doWriteBanks(BankMask banks)
   {
-    // TODO Auto-generated method stub
-    
+    getConnection().send(banks);
   }
 
+  /**
+   * All Pins are read with a single request.
+   */
+  @Override
+  protected long doReadPins(PinGroup pins)
+  {
+    RemoteConnection actualConnection = getConnection();
+
+    return actualConnection.await(actualConnection.send(Protocol.READ_PINS, pins, (byte) 0, true));
+  }
+
+  /**
+   * Waits until the Pins are closed on the remote Beagle before the connection is closed.
+   */
+  @Override
+  protected void doRelease() throws Exception
+  {
+    RemoteConnection actualConnection = connection;
+
+    if (actualConnection != null)
+    {
+      try
+      {
+        actualConnection.sync();
+      } finally
+      {
+        actualConnection.close();
+      }
+    }
+  }
+
+  /**
+   * @return the connection to the remote Beagle. It is opened on the first call.
+   */
+  private RemoteConnection getConnection()
+  {
+    RemoteConnection actualConnection = connection;
+
+    if (actualConnection == null)
+    {
+      synchronized (this)
+      {
+        actualConnection = connection;
+
+        if (actualConnection == null)
+        {
+          try
+          {
+            actualConnection = new RemoteConnection(address, timeoutMillis);
+          } catch (IOException e)
+          {
+            throw new BeagleIOException("Error connecting to " + address, e);
+          }
+
+          connection = actualConnection;
+        }
+      }
+    }
+
+    return actualConnection;
+  }
 }
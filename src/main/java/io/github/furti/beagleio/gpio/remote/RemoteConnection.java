@@ -0,0 +1,602 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * A connection to a remote Beagle that pipelines the requests.
+ * 
+ * <p>
+ * Requests are written to a non blocking {@link SocketChannel} as soon as they are sent. Only
+ * requests that return a result wait for their response. A reader thread matches the responses to
+ * the waiting requests by their correlation id. If a request that nobody waits for fails, the
+ * error is thrown by the next request that is sent.
+ * </p>
+ * 
+ * <p>
+ * If a request can not be sent completely or a frame with an invalid length is received, the stream
+ * can not be trusted any more. The connection is closed and all waiting requests fail.
+ * </p>
+ * 
+ * <p>
+ * The reader thread also applies the events pushed for subscribed Pins to their
+ * {@link DefaultPollValue}s. So reading a subscribed value never touches the network.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+class RemoteConnection implements Closeable
+{
+  private static final int BUFFER_SIZE = Protocol.MAX_FRAME_SIZE * 16;
+
+  private InetSocketAddress address;
+  private long timeoutMillis;
+  private SocketChannel channel;
+  private Selector readSelector;
+  private Selector writeSelector;
+  private Thread reader;
+  private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private Map<Integer, CompletableFuture<Long>> pending = new ConcurrentHashMap<>();
+  private AtomicReference<BeagleIOException> deferredError = new AtomicReference<>();
+  private Map<Integer, PinGroup> pendingSubscriptions = new ConcurrentHashMap<>();
+  private AtomicReferenceArray<DefaultPollValue> subscriptions =
+      new AtomicReferenceArray<>(Pin.values().length);
+  private int nextId;
+  private volatile boolean open;
+
+  /**
+   * Connects to the remote Beagle.
+   * 
+   * @param address the address of the remote Beagle
+   * @param timeoutMillis the time to wait for the connection and for each response
+   * @throws IOException if the connection can not be established
+   */
+  public RemoteConnection(InetSocketAddress address, long timeoutMillis) throws IOException
+  {
+    this.address = address;
+    this.timeoutMillis = timeoutMillis;
+
+    channel = SocketChannel.open();
+
+    try
+    {
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.socket().connect(address, (int) timeoutMillis);
+      channel.configureBlocking(false);
+
+      readSelector = Selector.open();
+      writeSelector = Selector.open();
+      channel.register(readSelector, SelectionKey.OP_READ);
+      channel.register(writeSelector, SelectionKey.OP_WRITE);
+    } catch (IOException e)
+    {
+      channel.close();
+      throw e;
+    }
+
+    open = true;
+    reader = new Thread(this::read, "beagleio-remote-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Sends a request for a single Pin.
+   * 
+   * @param opcode the opcode of the request
+   * @param pin the Pin
+   * @param argument the argument for the request
+   * @param reply true to get the response
+   * @return the future response, or null if reply was false.
+   */
+  public synchronized CompletableFuture<Long> send(byte opcode, Pin pin, byte argument,
+      boolean reply)
+  {
+    CompletableFuture<Long> response = begin(reply);
+    int start = Protocol.beginFrame(out, nextId, opcode);
+
+    Protocol.putPin(out, pin);
+    out.put(argument);
+
+    end(start);
+
+    return response;
+  }
+
+  /**
+   * Sends a request for a group of Pins.
+   * 
+   * @param opcode the opcode of the request
+   * @param pins the Pins
+   * @param argument the argument for the request
+   * @param reply true to get the response
+   * @return the future response, or null if reply was false.
+   */
+  public synchronized CompletableFuture<Long> send(byte opcode, PinGroup pins, byte argument,
+      boolean reply)
+  {
+    CompletableFuture<Long> response = begin(reply);
+    int start = Protocol.beginFrame(out, nextId, opcode);
+
+    out.put(argument);
+    Protocol.putPins(out, pins);
+
+    end(start);
+
+    return response;
+  }
+
+  /**
+   * Sends the values of all Pins in the mask in a single request. Nobody waits for the response.
+   * 
+   * @param banks the Pins and values to write
+   */
+  public synchronized void send(BankMask banks)
+  {
+    begin(false);
+    int start = Protocol.beginFrame(out, nextId, Protocol.WRITE_BANKS);
+
+    Protocol.putBanks(out, banks);
+
+    end(start);
+  }
+
+  /**
+   * The values are registered by the reader thread when the response arrives, before the events
+   * that follow it are applied.
+   */
+  private synchronized CompletableFuture<Long> sendSubscribe(PinGroup pins)
+  {
+    CompletableFuture<Long> response = begin(true);
+    pendingSubscriptions.put(nextId, pins);
+    int start = Protocol.beginFrame(out, nextId, Protocol.SUBSCRIBE);
+
+    out.put((byte) 0);
+    Protocol.putPins(out, pins);
+
+    end(start);
+
+    return response;
+  }
+
+  /**
+   * Sends a request without payload.
+   * 
+   * @param opcode the opcode of the request
+   * @return the future response
+   */
+  public synchronized CompletableFuture<Long> send(byte opcode)
+  {
+    CompletableFuture<Long> response = begin(true);
+
+    end(Protocol.beginFrame(out, nextId, opcode));
+
+    return response;
+  }
+
+  /**
+   * Subscribes to the changes of the Pins and waits until the subscription is active.
+   * 
+   * @param pins the Pins. Must not contain more than {@link PinGroup#MAX_WORD_SIZE} Pins.
+   * @throws BeagleIOException if the subscription failed
+   */
+  public void subscribe(PinGroup pins) throws BeagleIOException
+  {
+    await(sendSubscribe(pins));
+  }
+
+  /**
+   * @param pin the Pin
+   * @return the value kept up to date by the events of the Pin, or null if the Pin is not
+   *         subscribed.
+   */
+  public DefaultPollValue getSubscription(Pin pin)
+  {
+    return subscriptions.get(pin.ordinal());
+  }
+
+  /**
+   * Stops applying the events of the Pin. The server stops sending them when the Pin is closed.
+   * 
+   * @param pin the Pin
+   */
+  public void unsubscribe(Pin pin)
+  {
+    subscriptions.set(pin.ordinal(), null);
+  }
+
+  /**
+   * Waits for the response.
+   * 
+   * @param response the future returned when the request was sent
+   * @return the result of the request
+   * @throws BeagleIOException if the request failed or no response arrived in time
+   */
+  public long await(CompletableFuture<Long> response) throws BeagleIOException
+  {
+    try
+    {
+      return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e)
+    {
+      throw new BeagleIOException(e.getCause().getMessage(), e.getCause());
+    } catch (TimeoutException e)
+    {
+      forget(response);
+
+      throw new BeagleIOException("No response from " + address + " within " + timeoutMillis
+          + " milliseconds", e);
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new BeagleIOException("Interrupted while waiting for " + address, e);
+    }
+  }
+
+  /**
+   * Waits until all requests sent so far were executed.
+   * 
+   * @throws BeagleIOException if one of them failed
+   */
+  public void sync() throws BeagleIOException
+  {
+    await(send(Protocol.SYNC));
+
+    // The responses arrive in order, so the errors of all earlier requests are known now
+    throwDeferredError();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    open = false;
+
+    try
+    {
+      channel.close();
+      readSelector.wakeup();
+
+      try
+      {
+        reader.join(timeoutMillis);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    } finally
+    {
+      readSelector.close();
+      writeSelector.close();
+      failPending(new BeagleIOException("Connection to " + address + " was closed", null));
+    }
+  }
+
+  /**
+   * Throws the error of an earlier request and registers the response of the next one.
+   */
+  private CompletableFuture<Long> begin(boolean reply)
+  {
+    if (!open)
+    {
+      throw new BeagleIOException("Connection to " + address + " is closed", null);
+    }
+
+    throwDeferredError();
+
+    nextId++;
+
+    if (nextId == Protocol.EVENT_ID)
+    {
+      nextId++;
+    }
+
+    if (!reply)
+    {
+      return null;
+    }
+
+    // Registered before the request is written, the response could arrive at once
+    CompletableFuture<Long> response = new CompletableFuture<>();
+    pending.put(nextId, response);
+
+    return response;
+  }
+
+  /**
+   * Completes the frame and writes it to the channel. If the frame can not be written completely,
+   * the server would read the next request after a partial frame. So the connection is closed.
+   */
+  private void end(int start)
+  {
+    Protocol.endFrame(out, start);
+    out.flip();
+
+    try
+    {
+      while (out.hasRemaining())
+      {
+        if (channel.write(out) == 0)
+        {
+          // The send buffer of the socket is full
+          if (writeSelector.select(timeoutMillis) == 0)
+          {
+            throw new SocketTimeoutException("Could not send within " + timeoutMillis
+                + " milliseconds");
+          }
+
+          writeSelector.selectedKeys().clear();
+        }
+      }
+    } catch (IOException e)
+    {
+      BeagleIOException error = new BeagleIOException("Error sending to " + address, e);
+
+      drop(error);
+      throw error;
+    } finally
+    {
+      out.clear();
+    }
+  }
+
+  /**
+   * Closes the channel after the stream got out of sync and fails all waiting requests.
+   */
+  private void drop(BeagleIOException error)
+  {
+    open = false;
+
+    try
+    {
+      channel.close();
+    } catch (IOException e)
+    {
+      error.addSuppressed(e);
+    }
+
+    readSelector.wakeup();
+    failPending(error);
+  }
+
+  /**
+   * Reads the responses until the connection is closed.
+   */
+  private void read()
+  {
+    IOException failure = null;
+
+    try
+    {
+      while (open)
+      {
+        readSelector.select();
+        readSelector.selectedKeys().clear();
+
+        if (channel.read(in) < 0)
+        {
+          break;
+        }
+
+        in.flip();
+
+        while (Protocol.hasFrame(in))
+        {
+          receive();
+        }
+
+        // A frame that can never fit into the buffer
+        if (in.remaining() >= 4 && in.getInt(in.position()) > Protocol.MAX_FRAME_SIZE - 4)
+        {
+          throw new IOException("Invalid frame length " + in.getInt(in.position()));
+        }
+
+        in.compact();
+      }
+    } catch (IOException e)
+    {
+      // The connection was closed or the stream is corrupt
+      failure = e;
+    } finally
+    {
+      if (open)
+      {
+        drop(new BeagleIOException("Connection to " + address + " was lost", failure));
+      }
+    }
+  }
+
+  private void receive() throws IOException
+  {
+    int length = in.getInt();
+
+    if (length < Protocol.HEADER_SIZE - 4 || length > Protocol.MAX_FRAME_SIZE - 4)
+    {
+      throw new IOException("Invalid frame length " + length);
+    }
+
+    int end = in.position() + length;
+    int id = in.getInt();
+    byte status = in.get();
+
+    if (status == Protocol.STATUS_EVENT)
+    {
+      receiveEvent();
+      in.position(end);
+      return;
+    }
+
+    CompletableFuture<Long> response = pending.remove(id);
+    PinGroup subscription = pendingSubscriptions.remove(id);
+
+    if (status == Protocol.STATUS_OK)
+    {
+      long result = in.getLong();
+
+      if (subscription != null)
+      {
+        subscribed(subscription, result);
+      }
+
+      if (response != null)
+      {
+        response.complete(result);
+      }
+    } else
+    {
+      BeagleIOException error = new BeagleIOException(Protocol.getMessage(in), null);
+
+      if (response != null)
+      {
+        response.completeExceptionally(error);
+      } else
+      {
+        deferredError.compareAndSet(null, error);
+      }
+    }
+
+    in.position(end);
+  }
+
+  /**
+   * Registers the values of the subscribed Pins. A Pin that was subscribed before keeps its value,
+   * which is updated to the actual one.
+   */
+  private void subscribed(PinGroup pins, long word)
+  {
+    for (int i = 0; i < pins.size(); i++)
+    {
+      Pin pin = pins.getPins().get(i);
+      PinValue value = (word & (1L << i)) != 0 ? PinValue.HIGH : PinValue.LOW;
+      DefaultPollValue pollValue = subscriptions.get(pin.ordinal());
+
+      if (pollValue == null)
+      {
+        subscriptions.set(pin.ordinal(), new DefaultPollValue(value));
+      } else
+      {
+        pollValue.setValue(value);
+      }
+    }
+  }
+
+  /**
+   * Applies the changes of an event. If a Pin changed several times, the values in between are
+   * replayed, so the sequence of its value counts all changes.
+   */
+  private void receiveEvent()
+  {
+    long timestamp = System.nanoTime() - in.getLong();
+    int masksPosition = in.position();
+    int changesPosition = masksPosition + BankMask.BANK_COUNT * 8;
+
+    for (int bank = 0; bank < BankMask.BANK_COUNT; bank++)
+    {
+      int mask = in.getInt(masksPosition + bank * 8);
+      int bits = in.getInt(masksPosition + bank * 8 + 4);
+
+      while (mask != 0)
+      {
+        int bit = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        int changes = in.getShort(changesPosition);
+        changesPosition += 2;
+
+        Pin pin = Pin.forKernelNumber(bank * 32 + bit);
+        DefaultPollValue pollValue = pin == null ? null : subscriptions.get(pin.ordinal());
+
+        if (pollValue != null)
+        {
+          PinValue value = (bits & (1 << bit)) != 0 ? PinValue.HIGH : PinValue.LOW;
+
+          for (int change = changes - 1; change >= 0; change--)
+          {
+            pollValue.setValue(change % 2 == 0 ? value : value.opposite(), timestamp);
+          }
+        }
+      }
+    }
+  }
+
+  private void throwDeferredError()
+  {
+    BeagleIOException error = deferredError.getAndSet(null);
+
+    if (error != null)
+    {
+      throw new BeagleIOException("An earlier request failed: " + error.getMessage(), error);
+    }
+  }
+
+  /**
+   * Stops waiting for a response that timed out, so its future does not stay in the map.
+   */
+  private void forget(CompletableFuture<Long> response)
+  {
+    Iterator<Map.Entry<Integer, CompletableFuture<Long>>> iterator =
+        pending.entrySet().iterator();
+
+    while (iterator.hasNext())
+    {
+      Map.Entry<Integer, CompletableFuture<Long>> entry = iterator.next();
+
+      if (entry.getValue() == response)
+      {
+        pendingSubscriptions.remove(entry.getKey());
+        iterator.remove();
+      }
+    }
+  }
+
+  private void failPending(BeagleIOException error)
+  {
+    pendingSubscriptions.clear();
+
+    Iterator<CompletableFuture<Long>> iterator = pending.values().iterator();
+
+    while (iterator.hasNext())
+    {
+      CompletableFuture<Long> response = iterator.next();
+      iterator.remove();
+      response.completeExceptionally(error);
+    }
+  }
+}
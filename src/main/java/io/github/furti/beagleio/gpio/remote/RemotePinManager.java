@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.remote;
+
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.AbstractPinManager;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * Controls a Pin of a remote Beagle.
+ * 
+ * <p>
+ * Values are sent without waiting for the response. Reading a value waits for the response, which
+ * also means that all values sent before were written.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class RemotePinManager extends AbstractPinManager
+{
+  private Pin pin;
+  private RemoteConnection connection;
+
+  /**
+   * @param pin the Pin to control
+   * @param connection the connection to the remote Beagle
+   */
+  RemotePinManager(Pin pin, RemoteConnection connection)
+  {
+    this.pin = pin;
+    this.connection = connection;
+  }
+
+  /**
+   * The remote Beagle sets the direction when the Pin is initialized.
+   */
+  @Override
+  protected void doSetDirection(Direction direction)
+  {
+  }
+
+  /**
+   * The remote Beagle sets active low when the Pin is initialized.
+   */
+  @Override
+  protected void doSetActiveLow(boolean activeLow)
+  {
+  }
+
+  @Override
+  protected void doSetValue(PinValue value)
+  {
+    connection.send(Protocol.SET_VALUE, pin, Protocol.toArgument(value), false);
+  }
+
+  @Override
+  public PinValue getValue()
+  {
+    return Protocol
+        .toValue(connection.await(connection.send(Protocol.GET_VALUE, pin, (byte) 0, true)));
+  }
+
+  /**
+   * Subscribes to the changes of the Pin, unless it was subscribed with a group before. The remote
+   * Beagle pushes the changes, so the value is read from memory.
+   */
+  @Override
+  public PollValue poll()
+  {
+    DefaultPollValue pollValue = connection.getSubscription(pin);
+
+    if (pollValue == null)
+    {
+      connection.subscribe(PinGroup.fromPins(pin));
+      pollValue = connection.getSubscription(pin);
+    }
+
+    return pollValue;
+  }
+
+  /**
+   * Closing the Pin ends the subscription on the remote Beagle too.
+   */
+  @Override
+  protected void doRelease()
+  {
+    connection.unsubscribe(pin);
+    connection.send(Protocol.CLOSE, pin, (byte) 0, false);
+  }
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.stimulus;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.util.PreciseWait;
+
+/**
+ * Drives the inputs of a simulated Beagle with {@link Waveform}s to load test the code that listens
+ * to them.
+ * 
+ * <p>
+ * A single thread drives all inputs. It waits for the next edge of all waveforms with
+ * {@link PreciseWait} and drives it with the time it was scheduled for as timestamp. So the
+ * timestamps are exact even if the thread is late. If the thread falls behind, the late edges are
+ * driven back to back until it caught up. The lateness is recorded.
+ * </p>
+ * 
+ * <p>
+ * Each input is a {@link Channel} that counts the driven edges. To find out how many of them
+ * reached the application, a counter from {@link Channel#countDeliveries()} can be registered at a
+ * {@link io.github.furti.beagleio.PinListener}.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class StimulusEngine implements Closeable
+{
+  private StimulusTarget target;
+  private List<Channel> channels = new ArrayList<>();
+  private Thread thread;
+  private volatile boolean running;
+  private CountDownLatch finished = new CountDownLatch(1);
+  private volatile RuntimeException failure;
+  private volatile long startTime;
+  private volatile long maxLatenessNanos;
+  private volatile long totalLatenessNanos;
+  private volatile long drivenEdges;
+
+  /**
+   * @param target the Beagle to drive the inputs of
+   */
+  public StimulusEngine(StimulusTarget target)
+  {
+    this.target = target;
+  }
+
+  /**
+   * Adds an input. All inputs must be added before the engine is started.
+   * 
+   * @param pin the input. Must be initialized as {@link io.github.furti.beagleio.Direction#IN}.
+   * @param waveform the edges to drive
+   * @return the channel that counts the edges of the input
+   */
+  public synchronized Channel add(Pin pin, Waveform waveform)
+  {
+    if (thread != null)
+    {
+      throw new IllegalStateException("The engine is already started");
+    }
+
+    Channel channel = new Channel(pin, waveform);
+    channels.add(channel);
+    return channel;
+  }
+
+  /**
+   * @return the channels in the order they were added.
+   */
+  public List<Channel> getChannels()
+  {
+    return Collections.unmodifiableList(channels);
+  }
+
+  /**
+   * Drives the initial levels of all inputs and starts driving the edges.
+   */
+  public synchronized void start()
+  {
+    if (thread != null)
+    {
+      throw new IllegalStateException("The engine is already started");
+    }
+
+    long now = System.nanoTime();
+
+    for (Channel channel : channels)
+    {
+      target.drive(channel.pin, channel.level, now);
+    }
+
+    startTime = now;
+    running = true;
+    thread = new Thread(this::run, "beagleio-stimulus");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Waits until all waveforms ended.
+   * 
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return true if all waveforms ended, false if the timeout elapsed before.
+   * @throws BeagleIOException if an input could not be driven.
+   * @throws InterruptedException if the thread was interrupted while waiting.
+   */
+  public boolean await(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    boolean done = finished.await(timeout, unit);
+
+    if (failure != null)
+    {
+      throw new BeagleIOException("Error driving the inputs", failure);
+    }
+
+    return done;
+  }
+
+  /**
+   * Stops driving the inputs. The inputs keep their last level.
+   */
+  @Override
+  public void close()
+  {
+    running = false;
+
+    Thread actualThread = thread;
+
+    if (actualThread != null && actualThread != Thread.currentThread())
+    {
+      try
+      {
+        actualThread.join();
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return the time the engine was started, as returned by {@link System#nanoTime()}. The times
+   *         of the waveforms are relative to it.
+   */
+  public long getStartTime()
+  {
+    return startTime;
+  }
+
+  /**
+   * @return the number of edges driven on all inputs.
+   */
+  public long getDrivenEdges()
+  {
+    return drivenEdges;
+  }
+
+  /**
+   * @return the longest time an edge was driven after it was scheduled, in nanoseconds.
+   */
+  public long getMaxLatenessNanos()
+  {
+    return maxLatenessNanos;
+  }
+
+  /**
+   * @return the average time the edges were driven after they were scheduled, in nanoseconds.
+   */
+  public long getAverageLatenessNanos()
+  {
+    long edges = drivenEdges;
+
+    return edges == 0 ? 0 : totalLatenessNanos / edges;
+  }
+
+  /**
+   * Drives the earliest edge of all channels until all waveforms ended. Only this thread writes the
+   * statistics, so the plain increments of the volatile fields are safe.
+   */
+  private void run()
+  {
+    Channel[] actualChannels = channels.toArray(new Channel[channels.size()]);
+
+    try
+    {
+      for (Channel channel : actualChannels)
+      {
+        channel.next = channel.waveform.nextEdge();
+      }
+
+      while (running)
+      {
+        Channel channel = earliest(actualChannels);
+
+        if (channel == null)
+        {
+          break;
+        }
+
+        long deadline = startTime + channel.next;
+        long now = System.nanoTime();
+
+        if (deadline - now > 0)
+        {
+          now = PreciseWait.until(deadline);
+        }
+
+        channel.level = channel.level.opposite();
+        target.drive(channel.pin, channel.level, deadline);
+
+        long lateness = now - deadline;
+
+        if (lateness > maxLatenessNanos)
+        {
+          maxLatenessNanos = lateness;
+        }
+
+        totalLatenessNanos += lateness;
+        drivenEdges++;
+        channel.drivenEdges++;
+
+        channel.next = channel.waveform.nextEdge();
+      }
+    } catch (RuntimeException e)
+    {
+      failure = e;
+    } finally
+    {
+      running = false;
+      finished.countDown();
+    }
+  }
+
+  private static Channel earliest(Channel[] channels)
+  {
+    Channel earliest = null;
+
+    for (Channel channel : channels)
+    {
+      if (channel.next != Waveform.END && (earliest == null || channel.next < earliest.next))
+      {
+        earliest = channel;
+      }
+    }
+
+    return earliest;
+  }
+
+  /**
+   * An input driven by the engine.
+   * 
+   * @author Daniel
+   *
+   */
+  public static class Channel
+  {
+    private Pin pin;
+    private Waveform waveform;
+    private PinValue level;
+    private long next;
+    private volatile long drivenEdges;
+    private volatile long deliveredEdges;
+
+    private Channel(Pin pin, Waveform waveform)
+    {
+      this.pin = pin;
+      this.waveform = waveform;
+      this.level = waveform.getInitialLevel();
+    }
+
+    public Pin getPin()
+    {
+      return pin;
+    }
+
+    /**
+     * @return the number of edges driven on the input.
+     */
+    public long getDrivenEdges()
+    {
+      return drivenEdges;
+    }
+
+    /**
+     * @return the number of edges counted by the counter of {@link #countDeliveries()}.
+     */
+    public long getDeliveredEdges()
+    {
+      return deliveredEdges;
+    }
+
+    /**
+     * @return the number of driven edges that did not reach the counter of
+     *         {@link #countDeliveries()}. The edges that are on their way count as dropped too, so
+     *         the number is only final when the application caught up with the stimulus.
+     */
+    public long getDroppedEdges()
+    {
+      return drivenEdges - deliveredEdges;
+    }
+
+    /**
+     * Creates a counter for the edges that reach the application. Register it with
+     * {@link io.github.furti.beagleio.PinListener#onChange(Consumer)} before the engine is started.
+     * The first value the counter receives is the initial value of the Pin and is not counted.
+     * After that each value that differs from the one before is an edge. The counter must only be
+     * used by one thread.
+     * 
+     * @return the counter
+     */
+    public Consumer<PinValue> countDeliveries()
+    {
+      return new Consumer<PinValue>()
+      {
+        private PinValue lastValue;
+
+        @Override
+        public void accept(PinValue value)
+        {
+          if (lastValue != null && value != lastValue)
+          {
+            deliveredEdges++;
+          }
+
+          lastValue = value;
+        }
+      };
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Channel [" + pin + ", driven=" + drivenEdges + ", delivered=" + deliveredEdges + "]";
+    }
+  }
+}
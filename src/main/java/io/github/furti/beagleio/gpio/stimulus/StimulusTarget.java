@@ -0,0 +1,40 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.stimulus;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * A simulated Beagle whose inputs can be driven from outside, like the hardware connected to a real
+ * BeagleBone would do.
+ * 
+ * @author Daniel
+ *
+ */
+public interface StimulusTarget
+{
+  /**
+   * Sets the level of an input.
+   * 
+   * @param pin the input
+   * @param level the electrical level of the Pin
+   * @param timestamp the time of the change in nanoseconds, as returned by {@link System#nanoTime()}.
+   *        Implementations that detect changes on their own may use the time of the detection
+   *        instead.
+   * @throws BeagleIOException if the Pin is not initialized or is not an input.
+   */
+  void drive(Pin pin, PinValue level, long timestamp) throws BeagleIOException;
+}
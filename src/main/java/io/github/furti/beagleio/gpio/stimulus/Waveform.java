@@ -0,0 +1,47 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.stimulus;
+
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * The edges a {@link StimulusEngine} drives on an input. Each edge toggles the level of the input,
+ * starting with the initial level.
+ * 
+ * <p>
+ * A Waveform is read like an iterator, so each instance can only be used for one input. See
+ * {@link Waveforms} for the available waveforms.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public interface Waveform
+{
+  /**
+   * Returned by {@link #nextEdge()} when there are no more edges.
+   */
+  long END = -1;
+
+  /**
+   * @return the level of the input before the first edge.
+   */
+  PinValue getInitialLevel();
+
+  /**
+   * @return the time of the next edge in nanoseconds since the start of the stimulus, or
+   *         {@link #END}. The times must not decrease.
+   */
+  long nextEdge();
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.stimulus;
+
+import java.util.Random;
+
+import io.github.furti.beagleio.PinValue;
+
+/**
+ * Factory for the common {@link Waveform}s.
+ * 
+ * @author Daniel
+ *
+ */
+public final class Waveforms
+{
+  private Waveforms()
+  {
+
+  }
+
+  /**
+   * A square wave with a duty cycle of 50% that starts {@link PinValue#LOW}.
+   * 
+   * @param periodNanos the time of a full period. Each edge follows half a period after the former.
+   * @param edges the number of edges, {@link Long#MAX_VALUE} for a wave that never ends.
+   * @return the waveform
+   */
+  public static Waveform squareWave(long periodNanos, long edges)
+  {
+    if (periodNanos < 2)
+    {
+      throw new IllegalArgumentException("The period must be at least 2 nanoseconds");
+    }
+
+    long halfPeriod = periodNanos / 2;
+
+    return new Waveform()
+    {
+      private long count;
+
+      @Override
+      public PinValue getInitialLevel()
+      {
+        return PinValue.LOW;
+      }
+
+      @Override
+      public long nextEdge()
+      {
+        return count < edges ? ++count * halfPeriod : END;
+      }
+    };
+  }
+
+  /**
+   * Bursts of edges with random spacing, separated by quiet gaps. Each burst contains an even
+   * number of edges, so the input is {@link PinValue#LOW} between the bursts.
+   * 
+   * @param random the source of randomness. Use a seeded one for repeatable stimuli.
+   * @param bursts the number of bursts
+   * @param maxEdgesPerBurst the maximum number of edges in a burst
+   * @param maxSpacingNanos the maximum time between two edges of a burst
+   * @param gapNanos the time between two bursts
+   * @return the waveform
+   */
+  public static Waveform randomBursts(Random random, int bursts, int maxEdgesPerBurst,
+      long maxSpacingNanos, long gapNanos)
+  {
+    if (maxEdgesPerBurst < 2 || maxSpacingNanos < 1)
+    {
+      throw new IllegalArgumentException(
+          "A burst needs at least 2 edges and a spacing of at least 1 nanosecond");
+    }
+
+    return new Waveform()
+    {
+      private int burst;
+      private int remaining;
+      private long time;
+
+      @Override
+      public PinValue getInitialLevel()
+      {
+        return PinValue.LOW;
+      }
+
+      @Override
+      public long nextEdge()
+      {
+        if (remaining == 0)
+        {
+          if (burst == bursts)
+          {
+            return END;
+          }
+
+          burst++;
+          remaining = 2 * (1 + random.nextInt(maxEdgesPerBurst / 2));
+          time += gapNanos;
+        } else
+        {
+          time += 1 + (long) (random.nextDouble() * maxSpacingNanos);
+        }
+
+        remaining--;
+        return time;
+      }
+    };
+  }
+
+  /**
+   * A button that is pressed and released. The contacts bounce on every press and release before
+   * they settle, so each press produces 2 + 4 * bounces edges.
+   * 
+   * @param random the source of randomness. Use a seeded one for repeatable stimuli.
+   * @param presses the number of presses
+   * @param bounces the number of times the contacts bounce back on each press and release
+   * @param maxBounceNanos the maximum time between two edges of a bounce
+   * @param holdNanos the time the button stays pressed or released after the contacts settled
+   * @return the waveform
+   */
+  public static Waveform bounce(Random random, int presses, int bounces, long maxBounceNanos,
+      long holdNanos)
+  {
+    if (maxBounceNanos < 1)
+    {
+      throw new IllegalArgumentException("The bounce time must be at least 1 nanosecond");
+    }
+
+    int edgesPerTransition = 1 + 2 * bounces;
+
+    return new Waveform()
+    {
+      private long transitions;
+      private int edge;
+      private long time;
+
+      @Override
+      public PinValue getInitialLevel()
+      {
+        return PinValue.LOW;
+      }
+
+      @Override
+      public long nextEdge()
+      {
+        if (edge == 0)
+        {
+          if (transitions == 2L * presses)
+          {
+            return END;
+          }
+
+          transitions++;
+          time += holdNanos;
+        } else
+        {
+          time += 1 + (long) (random.nextDouble() * maxBounceNanos);
+        }
+
+        edge = (edge + 1) % edgesPerTransition;
+        return time;
+      }
+    };
+  }
+
+  /**
+   * Replays a recorded trace, e.g. the timestamps read with a
+   * {@link io.github.furti.beagleio.PinEventCursor} relative to the first one.
+   * 
+   * @param initialLevel the level before the first edge
+   * @param edgeNanos the times of the edges since the start of the trace. Must not decrease.
+   * @return the waveform
+   */
+  public static Waveform trace(PinValue initialLevel, long... edgeNanos)
+  {
+    for (int i = 1; i < edgeNanos.length; i++)
+    {
+      if (edgeNanos[i] < edgeNanos[i - 1])
+      {
+        throw new IllegalArgumentException("The times of the edges must not decrease");
+      }
+    }
+
+    long[] edges = edgeNanos.clone();
+
+    return new Waveform()
+    {
+      private int index;
+
+      @Override
+      public PinValue getInitialLevel()
+      {
+        return initialLevel;
+      }
+
+      @Override
+      public long nextEdge()
+      {
+        return index < edges.length ? edges[index++] : END;
+      }
+    };
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.temporary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.file.FileSystemPinManager;
+
+/**
+ * Stands in for the kernel on the temporary filesystem.
+ *
+ * <p>
+ * The kernel wakes up processes waiting on a value file when an edge occurs. Regular files can not
+ * do that. So the notifier watches the Pin directories and writes a byte to a {@link Pipe} every
+ * time a value file is modified. The source of the pipe can be waited on like the value file of a
+ * real GPIO Pin.
+ * </p>
+ *
+ * @author Daniel
+ *
+ */
+public class TemporaryEdgeNotifier implements Closeable
+{
+  private WatchService watcher;
+  private Map<WatchKey, Pipe> pipes = new ConcurrentHashMap<>();
+  private ByteBuffer signal = ByteBuffer.allocateDirect(1);
+  private Thread thread;
+
+  /**
+   * @param watcher the watcher used to detect modifications in the Pin directories.
+   */
+  public TemporaryEdgeNotifier(WatchService watcher)
+  {
+    this.watcher = watcher;
+  }
+
+  /**
+   * Starts watching the value file in the Pin directory.
+   *
+   * @param pinDirectory the directory of the Pin.
+   * @return the channel that becomes readable when the value file is modified.
+   */
+  public synchronized Pipe.SourceChannel register(Path pinDirectory)
+  {
+    try
+    {
+      Pipe pipe = Pipe.open();
+      pipe.sink().configureBlocking(false);
+      WatchKey key = pinDirectory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
+      pipes.put(key, pipe);
+
+      if (thread == null)
+      {
+        thread = new Thread(this::run, "beagleio-temporary-edges");
+        thread.setDaemon(true);
+        thread.start();
+      }
+
+      return pipe.source();
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error watching directory " + pinDirectory, e);
+    }
+  }
+
+  /**
+   * Stops watching the Pin directory and closes the pipe.
+   *
+   * @param source the channel returned by {@link #register(Path)}.
+   */
+  public void unregister(Pipe.SourceChannel source) throws IOException
+  {
+    for (Map.Entry<WatchKey, Pipe> entry : pipes.entrySet())
+    {
+      if (entry.getValue().source() == source)
+      {
+        entry.getKey().cancel();
+        pipes.remove(entry.getKey());
+
+        entry.getValue().sink().close();
+        source.close();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    for (Pipe pipe : pipes.values())
+    {
+      pipe.sink().close();
+      pipe.source().close();
+    }
+
+    pipes.clear();
+  }
+
+  private void run()
+  {
+    try
+    {
+      while (true)
+      {
+        WatchKey key = watcher.take();
+
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+          if (FileSystemPinManager.VALUE_FILE.equals(String.valueOf(event.context())))
+          {
+            signal(pipes.get(key));
+            break;
+          }
+        }
+
+        key.reset();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e)
+    {
+      // The Beagle was released
+    }
+  }
+
+  private void signal(Pipe pipe)
+  {
+    if (pipe == null)
+    {
+      return;
+    }
+
+    signal.clear();
+    signal.put((byte) 1).flip();
+
+    try
+    {
+      // If the pipe is full the edge is pending anyway, so the byte can be dropped
+      pipe.sink().write(signal);
+    } catch (IOException e)
+    {
+      // The pipe was closed because the Pin was released
+    }
+  }
+}
@@ -14,16 +14,19 @@
 package io.github.furti.beagleio.gpio.temporary;
 
 import java.io.IOException;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.WatchService;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ScheduledExecutorService;
 
 import io.github.furti.beagleio.BeagleIOException;
 import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+import io.github.furti.beagleio.gpio.file.AttributeFile;
+import io.github.furti.beagleio.gpio.file.EdgeEngine;
 import io.github.furti.beagleio.gpio.file.FileSystemPinManager;
 import io.github.furti.beagleio.gpio.util.FileUtils;
 
@@ -34,10 +37,14 @@ import io.github.furti.beagleio.gpio.util.FileUtils;
 public class TemporaryFilePinManager extends FileSystemPinManager
 {
 
-  public TemporaryFilePinManager(Pin pin, Path baseDirectory, ScheduledExecutorService executor,
-      WatchService watcher)
+  private TemporaryEdgeNotifier edgeNotifier;
+
+  public TemporaryFilePinManager(Pin pin, Path baseDirectory, PollDispatcher pollDispatcher,
+      EdgeEngine edgeEngine, TemporaryEdgeNotifier edgeNotifier)
   {
-    super(pin, baseDirectory, executor, watcher);
+    super(pin, baseDirectory, pollDispatcher, edgeEngine);
+
+    this.edgeNotifier = edgeNotifier;
   }
 
   /**
@@ -63,7 +70,7 @@ public class TemporaryFilePinManager extends FileSystemPinManager
       createIfNotExists(pinDirectory, UEVENT_FILE);
 
       // Initialize the value with LOW
-      writeToFile(createIfNotExists(pinDirectory, VALUE_FILE), "0");
+      AttributeFile.write(createIfNotExists(pinDirectory, VALUE_FILE), "0");
 
       return pinDirectory;
     } catch (IOException e)
@@ -98,6 +105,32 @@ public class TemporaryFilePinManager extends FileSystemPinManager
     }
   }
 
+  /**
+   * There is no kernel that signals edges on the temporary files. So the {@link TemporaryEdgeNotifier}
+   * stands in and provides a pipe that is written to when the value file is modified.
+   */
+  @Override
+  protected SelectableChannel openEdgeChannel() throws IOException
+  {
+    return edgeNotifier.register(getPinDirectory());
+  }
+
+  @Override
+  protected void closeEdgeChannel(SelectableChannel channel) throws IOException
+  {
+    edgeNotifier.unregister((Pipe.SourceChannel) channel);
+  }
+
+  /**
+   * The files in the temporary directory are regular files. So they must be truncated when a
+   * shorter value is written.
+   */
+  @Override
+  protected boolean isTruncateOnWrite()
+  {
+    return true;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -14,14 +14,22 @@
 package io.github.furti.beagleio.gpio.temporary;
 
 import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchService;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
 import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
 import io.github.furti.beagleio.gpio.PinManager;
 import io.github.furti.beagleio.gpio.file.FileSystemBeagle;
+import io.github.furti.beagleio.gpio.file.FileSystemPinManager;
+import io.github.furti.beagleio.gpio.stimulus.StimulusTarget;
 import io.github.furti.beagleio.gpio.util.FileUtils;
 
 /**
@@ -29,11 +37,18 @@ import io.github.furti.beagleio.gpio.util.FileUtils;
  * the GPIO Filesystem on the BeagleBone Black. This can be used on development Machines without a
  * GPIO System to thest the functionality of the application.
  * 
+ * <p>
+ * Inputs can be driven by a {@link io.github.furti.beagleio.gpio.stimulus.StimulusEngine}. Each edge
+ * is a write to a file, so the rate is limited to what the filesystem can handle.
+ * </p>
+ * 
  * @author Daniel
  *
  */
-public class TemporaryFilesystemBeagle extends FileSystemBeagle
+public class TemporaryFilesystemBeagle extends FileSystemBeagle implements StimulusTarget
 {
+  private WatchService watcher;
+  private TemporaryEdgeNotifier edgeNotifier;
 
   /**
    * @throws IOException If an exception occurs initializing the beagle
@@ -41,6 +56,9 @@ public class TemporaryFilesystemBeagle extends FileSystemBeagle
   public TemporaryFilesystemBeagle() throws IOException
   {
     super();
+
+    watcher = FileSystems.getDefault().newWatchService();
+    edgeNotifier = new TemporaryEdgeNotifier(watcher);
   }
 
   @Override
@@ -57,6 +75,8 @@ public class TemporaryFilesystemBeagle extends FileSystemBeagle
   {
     try
     {
+      edgeNotifier.close();
+      watcher.close();
       FileUtils.deleteDirectory(getBaseDirectory());
     } catch (IOException e)
     {
@@ -65,6 +85,50 @@ public class TemporaryFilesystemBeagle extends FileSystemBeagle
     super.doRelease();
   }
 
+  /**
+   * Writes the value file like the kernel does when the level of an input changes. The timestamp is
+   * ignored, the change is timestamped when the Pin is polled.
+   */
+  @Override
+  public void drive(Pin pin, PinValue level, long timestamp) throws BeagleIOException
+  {
+    Path pinDirectory = getBaseDirectory().resolve(pin.toString());
+    ReentrantLock lock = getLock(pin);
+    lock.lock();
+
+    try
+    {
+      if (!Files.exists(pinDirectory))
+      {
+        throw new BeagleIOException("Pin " + pin + " is not initialized", null);
+      }
+
+      String direction =
+          new String(Files.readAllBytes(pinDirectory.resolve(FileSystemPinManager.DIRECTION_FILE)),
+              "US-ASCII").trim();
+
+      if (!Direction.IN.getValue().equals(direction))
+      {
+        throw new BeagleIOException("Pin " + pin + " is an output. It can not be driven from outside",
+            null);
+      }
+
+      byte[] activeLow =
+          Files.readAllBytes(pinDirectory.resolve(FileSystemPinManager.ACTIVE_LOW_FILE));
+      boolean high = (level == PinValue.HIGH) != (activeLow.length > 0 && activeLow[0] == '1');
+
+      Files.write(pinDirectory.resolve(FileSystemPinManager.VALUE_FILE),
+          new byte[] {(byte) (high ? '1' : '0')}, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e)
+    {
+      throw new BeagleIOException("Error driving Pin " + pin, e);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -74,6 +138,7 @@ public class TemporaryFilesystemBeagle extends FileSystemBeagle
   @Override
   protected PinManager createPinManager(Pin pin)
   {
-    return new TemporaryFilePinManager(pin, getBaseDirectory(), getExecutor(), getWatcher());
+    return new TemporaryFilePinManager(pin, getBaseDirectory(), getPollDispatcher(),
+        getEdgeEngine(), edgeNotifier);
   }
 }
@@ -44,6 +44,38 @@ public final class BeagleAssert
     }
   }
 
+  /**
+   * If the object is not null a {@link BeagleIOException} will thrown. Unlike the varargs variant no
+   * array is allocated for the argument, so it can be used on hot paths.
+   * 
+   * @param o object to check
+   * @param message for the exception
+   * @param argument for the message
+   */
+  public static void isNull(Object o, String message, Object argument)
+  {
+    if (o != null)
+    {
+      doThrow(message, new Object[] {argument});
+    }
+  }
+
+  /**
+   * If the object is null a {@link BeagleIOException} will be thrown. Unlike the varargs variant no
+   * array is allocated for the argument, so it can be used on hot paths.
+   * 
+   * @param o object to check
+   * @param message for the exception
+   * @param argument for the message
+   */
+  public static void isNotNull(Object o, String message, Object argument)
+  {
+    if (o == null)
+    {
+      doThrow(message, new Object[] {argument});
+    }
+  }
+
   /**
    * If the object is null a {@link BeagleIOException} will be thrown.
    * 
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Loads the native part of beagleio. It contains the few system calls that can not be made from
+ * Java, like waiting for POLLPRI on a value file.
+ * 
+ * <p>
+ * The library is loaded from the path in the system property <b>beagleio.native.library</b> if it
+ * is set. Otherwise it is extracted from the classpath, where the <code>native</code> profile of the
+ * build puts it, or loaded from the <code>java.library.path</code>. If it can not be loaded, the
+ * features that need it are not available and the Beagles fall back to pure Java.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public final class NativeLibrary
+{
+  public static final String LIBRARY_PROPERTY = "beagleio.native.library";
+
+  private static final String LIBRARY_NAME = "beagleio";
+
+  private static Boolean available;
+  private static Throwable loadFailure;
+
+  private NativeLibrary()
+  {
+
+  }
+
+  /**
+   * Loads the library on the first call.
+   * 
+   * @return true if the library is loaded.
+   */
+  public static synchronized boolean isAvailable()
+  {
+    if (available == null)
+    {
+      available = load();
+    }
+
+    return available;
+  }
+
+  /**
+   * @return the reason why the library could not be loaded, or null if it was loaded or not tried
+   *         yet.
+   */
+  public static synchronized Throwable getLoadFailure()
+  {
+    return loadFailure;
+  }
+
+  private static boolean load()
+  {
+    if (!"Linux".equals(System.getProperty("os.name")))
+    {
+      loadFailure = new UnsupportedOperationException("The native library is only built for Linux");
+      return false;
+    }
+
+    try
+    {
+      String path = System.getProperty(LIBRARY_PROPERTY);
+
+      if (path != null)
+      {
+        System.load(path);
+        return true;
+      }
+
+      String resource =
+          "/native/linux-" + System.getProperty("os.arch") + "/lib" + LIBRARY_NAME + ".so";
+
+      try (InputStream in = NativeLibrary.class.getResourceAsStream(resource))
+      {
+        if (in != null)
+        {
+          Path library = Files.createTempFile("lib" + LIBRARY_NAME, ".so");
+          library.toFile().deleteOnExit();
+          Files.copy(in, library, StandardCopyOption.REPLACE_EXISTING);
+
+          System.load(library.toString());
+          return true;
+        }
+      }
+
+      System.loadLibrary(LIBRARY_NAME);
+      return true;
+    } catch (IOException | UnsatisfiedLinkError | SecurityException e)
+    {
+      loadFailure = e;
+      return false;
+    }
+  }
+}
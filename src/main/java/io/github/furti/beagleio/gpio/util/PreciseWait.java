@@ -0,0 +1,78 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.gpio.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits until a deadline with a resolution of a few microseconds.
+ * 
+ * <p>
+ * Parking a thread is cheap but the thread may wake up tens of microseconds too late. Spinning is
+ * exact but keeps the CPU busy. So the thread is parked until shortly before the deadline and spins
+ * for the rest of the time.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public final class PreciseWait
+{
+  /**
+   * The time before the deadline where we stop parking and start spinning.
+   */
+  public static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private PreciseWait()
+  {
+
+  }
+
+  /**
+   * Waits until the deadline with the default spin time.
+   * 
+   * @param deadline the deadline as returned by {@link System#nanoTime()}
+   * @return the time {@link System#nanoTime()} returned when the deadline was reached.
+   */
+  public static long until(long deadline)
+  {
+    return until(deadline, DEFAULT_SPIN_NANOS);
+  }
+
+  /**
+   * Waits until the deadline.
+   * 
+   * @param deadline the deadline as returned by {@link System#nanoTime()}
+   * @param spinNanos the time before the deadline where the thread starts spinning.
+   * @return the time {@link System#nanoTime()} returned when the deadline was reached.
+   */
+  public static long until(long deadline, long spinNanos)
+  {
+    long now = System.nanoTime();
+
+    while (deadline - now > spinNanos)
+    {
+      LockSupport.parkNanos(deadline - now - spinNanos);
+      now = System.nanoTime();
+    }
+
+    while (deadline - now > 0)
+    {
+      now = System.nanoTime();
+    }
+
+    return now;
+  }
+}
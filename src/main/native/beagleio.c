@@ -0,0 +1,644 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+/*
+ * The native part of beagleio. It contains only the few system calls that can not be made from
+ * Java. Everything else is done on the Java side.
+ */
+
+#include <errno.h>
+#include <fcntl.h>
+#include <stdio.h>
+#include <string.h>
+#include <unistd.h>
+#include <stdint.h>
+#include <poll.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+#include <sys/ioctl.h>
+#include <sys/mman.h>
+
+#include <linux/gpio.h>
+
+#include <jni.h>
+
+#define MAX_EVENTS 64
+#define MAX_LINE_EVENTS 16
+#define LINE_EVENT_FIELDS 4
+
+static void throwIOException(JNIEnv *env, const char *operation)
+{
+  char message[256];
+  jclass exceptionClass = (*env)->FindClass(env, "java/io/IOException");
+
+  snprintf(message, sizeof(message), "%s: %s", operation, strerror(errno));
+
+  if (exceptionClass != NULL)
+  {
+    (*env)->ThrowNew(env, exceptionClass, message);
+  }
+}
+
+/*
+ * Reads the attribute from the start. The kernel signals POLLPRI until the value file was read
+ * after the last edge.
+ */
+static void clearAttribute(int fd)
+{
+  char buffer[16];
+
+  lseek(fd, 0, SEEK_SET);
+
+  while (read(fd, buffer, sizeof(buffer)) > 0)
+  {
+  }
+}
+
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_create(JNIEnv *env,
+    jclass type)
+{
+  int epfd = epoll_create1(EPOLL_CLOEXEC);
+
+  if (epfd < 0)
+  {
+    throwIOException(env, "epoll_create1");
+  }
+
+  return epfd;
+}
+
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_open(JNIEnv *env,
+    jclass type, jstring path)
+{
+  const char *nativePath = (*env)->GetStringUTFChars(env, path, NULL);
+  int fd;
+
+  if (nativePath == NULL)
+  {
+    return -1;
+  }
+
+  fd = open(nativePath, O_RDONLY | O_NONBLOCK | O_CLOEXEC);
+  (*env)->ReleaseStringUTFChars(env, path, nativePath);
+
+  if (fd < 0)
+  {
+    throwIOException(env, "open");
+    return -1;
+  }
+
+  clearAttribute(fd);
+
+  return fd;
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_add(JNIEnv *env,
+    jclass type, jint epfd, jint fd)
+{
+  struct epoll_event event;
+
+  memset(&event, 0, sizeof(event));
+  event.events = EPOLLPRI | EPOLLERR;
+  event.data.fd = fd;
+
+  if (epoll_ctl(epfd, EPOLL_CTL_ADD, fd, &event) < 0)
+  {
+    throwIOException(env, "epoll_ctl");
+  }
+}
+
+/*
+ * Creates an eventfd that becomes readable when wakeup is called, and adds it to the epoll instance.
+ * It lets epoll_wait block without a timeout and still end when the notifier is closed.
+ */
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_createWakeup(JNIEnv *env,
+    jclass type, jint epfd)
+{
+  struct epoll_event event;
+  int fd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+
+  if (fd < 0)
+  {
+    throwIOException(env, "eventfd");
+    return -1;
+  }
+
+  memset(&event, 0, sizeof(event));
+  event.events = EPOLLIN;
+  event.data.fd = fd;
+
+  if (epoll_ctl(epfd, EPOLL_CTL_ADD, fd, &event) < 0)
+  {
+    throwIOException(env, "epoll_ctl");
+    close(fd);
+    return -1;
+  }
+
+  return fd;
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_wakeup(JNIEnv *env,
+    jclass type, jint fd)
+{
+  uint64_t value = 1;
+
+  if (write(fd, &value, sizeof(value)) < 0 && errno != EAGAIN)
+  {
+    throwIOException(env, "write");
+  }
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_remove(JNIEnv *env,
+    jclass type, jint epfd, jint fd)
+{
+  struct epoll_event event;
+
+  memset(&event, 0, sizeof(event));
+
+  if (epoll_ctl(epfd, EPOLL_CTL_DEL, fd, &event) < 0)
+  {
+    throwIOException(env, "epoll_ctl");
+  }
+}
+
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_await(JNIEnv *env,
+    jclass type, jint epfd, jintArray ready, jint timeoutMillis)
+{
+  struct epoll_event events[MAX_EVENTS];
+  jint fds[MAX_EVENTS];
+  jsize length = (*env)->GetArrayLength(env, ready);
+  int count;
+  int i;
+
+  if (length > MAX_EVENTS)
+  {
+    length = MAX_EVENTS;
+  }
+
+  count = epoll_wait(epfd, events, length, timeoutMillis);
+
+  if (count < 0)
+  {
+    if (errno == EINTR)
+    {
+      return 0;
+    }
+
+    throwIOException(env, "epoll_wait");
+    return 0;
+  }
+
+  for (i = 0; i < count; i++)
+  {
+    fds[i] = events[i].data.fd;
+  }
+
+  (*env)->SetIntArrayRegion(env, ready, 0, count, fds);
+
+  return count;
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_clear(JNIEnv *env,
+    jclass type, jint fd)
+{
+  clearAttribute(fd);
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_local_Epoll_close(JNIEnv *env,
+    jclass type, jint fd)
+{
+  if (close(fd) < 0)
+  {
+    throwIOException(env, "close");
+  }
+}
+
+/*
+ * Maps a region of a device like /dev/mem. FileChannel.map can not be used, because it tries to
+ * grow the file to the size of the region and a character device always has the size 0.
+ */
+JNIEXPORT jobject JNICALL Java_io_github_furti_beagleio_gpio_mmap_Mmap_map(JNIEnv *env,
+    jclass type, jstring path, jlong offset, jint size)
+{
+  const char *nativePath = (*env)->GetStringUTFChars(env, path, NULL);
+  void *address;
+  jobject buffer;
+  int fd;
+
+  if (nativePath == NULL)
+  {
+    return NULL;
+  }
+
+  fd = open(nativePath, O_RDWR | O_SYNC | O_CLOEXEC);
+  (*env)->ReleaseStringUTFChars(env, path, nativePath);
+
+  if (fd < 0)
+  {
+    throwIOException(env, "open");
+    return NULL;
+  }
+
+  address = mmap(NULL, (size_t) size, PROT_READ | PROT_WRITE, MAP_SHARED, fd, (off_t) offset);
+
+  if (address == MAP_FAILED)
+  {
+    throwIOException(env, "mmap");
+    close(fd);
+    return NULL;
+  }
+
+  /* The mapping stays valid after the descriptor is closed */
+  close(fd);
+
+  buffer = (*env)->NewDirectByteBuffer(env, address, size);
+
+  if (buffer == NULL)
+  {
+    munmap(address, (size_t) size);
+  }
+
+  return buffer;
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_mmap_Mmap_unmap(JNIEnv *env,
+    jclass type, jobject buffer)
+{
+  void *address = (*env)->GetDirectBufferAddress(env, buffer);
+  jlong size = (*env)->GetDirectBufferCapacity(env, buffer);
+
+  if (address == NULL || size < 0)
+  {
+    errno = EINVAL;
+    throwIOException(env, "munmap");
+    return;
+  }
+
+  if (munmap(address, (size_t) size) < 0)
+  {
+    throwIOException(env, "munmap");
+  }
+}
+
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_open(JNIEnv *env,
+    jclass type, jstring path)
+{
+  const char *nativePath = (*env)->GetStringUTFChars(env, path, NULL);
+  int fd;
+
+  if (nativePath == NULL)
+  {
+    return -1;
+  }
+
+  fd = open(nativePath, O_RDWR | O_CLOEXEC);
+  (*env)->ReleaseStringUTFChars(env, path, nativePath);
+
+  if (fd < 0)
+  {
+    throwIOException(env, "open");
+  }
+
+  return fd;
+}
+
+JNIEXPORT jstring JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_getName(JNIEnv *env,
+    jclass type, jint fd)
+{
+  struct gpiochip_info info;
+
+  memset(&info, 0, sizeof(info));
+
+  if (ioctl(fd, GPIO_GET_CHIPINFO_IOCTL, &info) < 0)
+  {
+    throwIOException(env, "GPIO_GET_CHIPINFO_IOCTL");
+    return NULL;
+  }
+
+  info.name[sizeof(info.name) - 1] = '\0';
+
+  return (*env)->NewStringUTF(env, info.name);
+}
+
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_getLineCount(
+    JNIEnv *env, jclass type, jint fd)
+{
+  struct gpiochip_info info;
+
+  memset(&info, 0, sizeof(info));
+
+  if (ioctl(fd, GPIO_GET_CHIPINFO_IOCTL, &info) < 0)
+  {
+    throwIOException(env, "GPIO_GET_CHIPINFO_IOCTL");
+    return 0;
+  }
+
+  return (jint) info.lines;
+}
+
+/*
+ * Requests the lines as inputs. The descriptor of the request is made non blocking, so reading the
+ * events returns when no event is pending.
+ */
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_requestLines(
+    JNIEnv *env, jclass type, jint fd, jintArray offsets, jstring consumer)
+{
+  struct gpio_v2_line_request request;
+  jsize count = (*env)->GetArrayLength(env, offsets);
+  jint lineOffsets[GPIO_V2_LINES_MAX];
+  const char *nativeConsumer;
+  int flags;
+  int i;
+
+  if (count < 1 || count > GPIO_V2_LINES_MAX)
+  {
+    errno = EINVAL;
+    throwIOException(env, "GPIO_V2_GET_LINE_IOCTL");
+    return -1;
+  }
+
+  memset(&request, 0, sizeof(request));
+  (*env)->GetIntArrayRegion(env, offsets, 0, count, lineOffsets);
+
+  for (i = 0; i < count; i++)
+  {
+    request.offsets[i] = (__u32) lineOffsets[i];
+  }
+
+  nativeConsumer = (*env)->GetStringUTFChars(env, consumer, NULL);
+
+  if (nativeConsumer == NULL)
+  {
+    return -1;
+  }
+
+  strncpy(request.consumer, nativeConsumer, sizeof(request.consumer) - 1);
+  (*env)->ReleaseStringUTFChars(env, consumer, nativeConsumer);
+
+  request.num_lines = (__u32) count;
+  request.config.flags = GPIO_V2_LINE_FLAG_INPUT;
+
+  if (ioctl(fd, GPIO_V2_GET_LINE_IOCTL, &request) < 0)
+  {
+    throwIOException(env, "GPIO_V2_GET_LINE_IOCTL");
+    return -1;
+  }
+
+  flags = fcntl(request.fd, F_GETFL);
+
+  if (flags < 0 || fcntl(request.fd, F_SETFL, flags | O_NONBLOCK) < 0)
+  {
+    throwIOException(env, "fcntl");
+    close(request.fd);
+    return -1;
+  }
+
+  return request.fd;
+}
+
+/*
+ * The kernel replaces the configuration of all lines of the request. The flags of the first line
+ * become the default and each other combination of flags gets an attribute. The output values are
+ * one more attribute.
+ */
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_setConfig(JNIEnv *env,
+    jclass type, jint fd, jlongArray lineFlags, jlong outputMask, jlong outputValues)
+{
+  struct gpio_v2_line_config config;
+  jsize count = (*env)->GetArrayLength(env, lineFlags);
+  jlong flags[GPIO_V2_LINES_MAX];
+  __u32 attrs = 0;
+  __u32 attr;
+  int i;
+
+  if (count < 1 || count > GPIO_V2_LINES_MAX)
+  {
+    errno = EINVAL;
+    throwIOException(env, "GPIO_V2_LINE_SET_CONFIG_IOCTL");
+    return;
+  }
+
+  memset(&config, 0, sizeof(config));
+  (*env)->GetLongArrayRegion(env, lineFlags, 0, count, flags);
+
+  config.flags = (__u64) flags[0];
+
+  for (i = 1; i < count; i++)
+  {
+    if ((__u64) flags[i] == config.flags)
+    {
+      continue;
+    }
+
+    for (attr = 0; attr < attrs; attr++)
+    {
+      if (config.attrs[attr].attr.flags == (__u64) flags[i])
+      {
+        break;
+      }
+    }
+
+    if (attr == attrs)
+    {
+      /* One attribute is left for the output values */
+      if (attrs == GPIO_V2_LINE_NUM_ATTRS_MAX - 1)
+      {
+        errno = E2BIG;
+        throwIOException(env, "GPIO_V2_LINE_SET_CONFIG_IOCTL");
+        return;
+      }
+
+      config.attrs[attr].attr.id = GPIO_V2_LINE_ATTR_ID_FLAGS;
+      config.attrs[attr].attr.flags = (__u64) flags[i];
+      attrs++;
+    }
+
+    config.attrs[attr].mask |= 1ULL << i;
+  }
+
+  if (outputMask != 0)
+  {
+    config.attrs[attrs].attr.id = GPIO_V2_LINE_ATTR_ID_OUTPUT_VALUES;
+    config.attrs[attrs].attr.values = (__u64) outputValues;
+    config.attrs[attrs].mask = (__u64) outputMask;
+    attrs++;
+  }
+
+  config.num_attrs = attrs;
+
+  if (ioctl(fd, GPIO_V2_LINE_SET_CONFIG_IOCTL, &config) < 0)
+  {
+    throwIOException(env, "GPIO_V2_LINE_SET_CONFIG_IOCTL");
+  }
+}
+
+JNIEXPORT jlong JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_getValues(JNIEnv *env,
+    jclass type, jint fd, jlong mask)
+{
+  struct gpio_v2_line_values values;
+
+  values.bits = 0;
+  values.mask = (__u64) mask;
+
+  if (ioctl(fd, GPIO_V2_LINE_GET_VALUES_IOCTL, &values) < 0)
+  {
+    throwIOException(env, "GPIO_V2_LINE_GET_VALUES_IOCTL");
+    return 0;
+  }
+
+  return (jlong) (values.bits & values.mask);
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_setValues(JNIEnv *env,
+    jclass type, jint fd, jlong mask, jlong bits)
+{
+  struct gpio_v2_line_values values;
+
+  values.bits = (__u64) bits;
+  values.mask = (__u64) mask;
+
+  if (ioctl(fd, GPIO_V2_LINE_SET_VALUES_IOCTL, &values) < 0)
+  {
+    throwIOException(env, "GPIO_V2_LINE_SET_VALUES_IOCTL");
+  }
+}
+
+/*
+ * Reads the pending events of the request. Each event is stored as offset, rising (1 or 0),
+ * timestamp and line sequence number in the array.
+ */
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_readEvents(JNIEnv *env,
+    jclass type, jint fd, jlongArray target)
+{
+  struct gpio_v2_line_event events[MAX_LINE_EVENTS];
+  jlong fields[MAX_LINE_EVENTS * LINE_EVENT_FIELDS];
+  jsize capacity = (*env)->GetArrayLength(env, target) / LINE_EVENT_FIELDS;
+  ssize_t size;
+  int count;
+  int i;
+
+  if (capacity > MAX_LINE_EVENTS)
+  {
+    capacity = MAX_LINE_EVENTS;
+  }
+
+  if (capacity == 0)
+  {
+    return 0;
+  }
+
+  size = read(fd, events, capacity * sizeof(events[0]));
+
+  if (size < 0)
+  {
+    if (errno == EAGAIN || errno == EINTR)
+    {
+      return 0;
+    }
+
+    throwIOException(env, "read");
+    return 0;
+  }
+
+  count = (int) (size / sizeof(events[0]));
+
+  for (i = 0; i < count; i++)
+  {
+    fields[i * LINE_EVENT_FIELDS] = events[i].offset;
+    fields[i * LINE_EVENT_FIELDS + 1] = events[i].id == GPIO_V2_LINE_EVENT_RISING_EDGE;
+    fields[i * LINE_EVENT_FIELDS + 2] = (jlong) events[i].timestamp_ns;
+    fields[i * LINE_EVENT_FIELDS + 3] = events[i].line_seqno;
+  }
+
+  (*env)->SetLongArrayRegion(env, target, 0, count * LINE_EVENT_FIELDS, fields);
+
+  return count;
+}
+
+JNIEXPORT jint JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_createWakeup(
+    JNIEnv *env, jclass type)
+{
+  int fd = eventfd(0, EFD_NONBLOCK | EFD_CLOEXEC);
+
+  if (fd < 0)
+  {
+    throwIOException(env, "eventfd");
+  }
+
+  return fd;
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_wakeup(JNIEnv *env,
+    jclass type, jint fd)
+{
+  uint64_t value = 1;
+
+  if (write(fd, &value, sizeof(value)) < 0 && errno != EAGAIN)
+  {
+    throwIOException(env, "write");
+  }
+}
+
+/*
+ * Blocks until events are pending on the request or the eventfd was woken up.
+ */
+JNIEXPORT jboolean JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_await(JNIEnv *env,
+    jclass type, jint fd, jint wakeupFd)
+{
+  struct pollfd fds[2];
+  uint64_t value;
+
+  fds[0].fd = fd;
+  fds[0].events = POLLIN;
+  fds[0].revents = 0;
+  fds[1].fd = wakeupFd;
+  fds[1].events = POLLIN;
+  fds[1].revents = 0;
+
+  if (poll(fds, 2, -1) < 0)
+  {
+    if (errno == EINTR)
+    {
+      return JNI_FALSE;
+    }
+
+    throwIOException(env, "poll");
+    return JNI_FALSE;
+  }
+
+  if (fds[1].revents & POLLIN)
+  {
+    while (read(wakeupFd, &value, sizeof(value)) > 0)
+    {
+    }
+  }
+
+  if (fds[0].revents & (POLLERR | POLLHUP | POLLNVAL))
+  {
+    errno = fds[0].revents & POLLNVAL ? EBADF : EIO;
+    throwIOException(env, "poll");
+    return JNI_FALSE;
+  }
+
+  return (fds[0].revents & POLLIN) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_io_github_furti_beagleio_gpio_chardev_GpioV2_close(JNIEnv *env,
+    jclass type, jint fd)
+{
+  if (close(fd) < 0)
+  {
+    throwIOException(env, "close");
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel
+ *
+ */
+public class AbstractBeagleConcurrencyTest
+{
+  private static final int THREADS = 8;
+  private static final int WRITES = 5000;
+
+  @Test(timeOut = 30000)
+  public void differentPinsFromSeveralThreads() throws InterruptedException
+  {
+    CountingBeagle beagle = new CountingBeagle(0);
+    Pin[] pins = new Pin[THREADS];
+
+    for (int i = 0; i < THREADS; i++)
+    {
+      pins[i] = Pin.values()[i];
+      beagle.initializePin(pins[i], Direction.OUT);
+    }
+
+    runConcurrently(index -> {
+      for (int i = 0; i < WRITES; i++)
+      {
+        beagle.setPinValue(pins[index], i % 2 == 0 ? PinValue.HIGH : PinValue.LOW);
+      }
+    });
+
+    for (Pin pin : pins)
+    {
+      assertThat(beagle.getWrites(pin), equalTo((long) WRITES));
+    }
+
+    assertThat(beagle.getOverlaps(), equalTo(0));
+  }
+
+  @Test(timeOut = 30000)
+  public void samePinSerialized() throws InterruptedException
+  {
+    CountingBeagle beagle = new CountingBeagle(100);
+    PinGroup group = PinGroup.fromPins(Pin.P8_03, Pin.P8_04);
+
+    beagle.initializePins(group, Direction.OUT);
+    beagle.setCached(Pin.P8_03, false);
+    beagle.setCached(Pin.P8_04, false);
+
+    runConcurrently(index -> {
+      for (int i = 0; i < WRITES; i++)
+      {
+        if (index % 2 == 0)
+        {
+          beagle.setPinValue(Pin.P8_03, PinValue.HIGH);
+        } else
+        {
+          beagle.writePins(group, i);
+        }
+      }
+    });
+
+    assertThat(beagle.getWrites(Pin.P8_03), equalTo((long) THREADS * WRITES));
+    assertThat(beagle.getOverlaps(), equalTo(0));
+  }
+
+  @Test(timeOut = 30000)
+  public void pinInitializedOnlyOnce() throws InterruptedException
+  {
+    CountingBeagle beagle = new CountingBeagle(0);
+    List<Throwable> failures = new ArrayList<>();
+
+    runConcurrently(index -> {
+      try
+      {
+        beagle.initializePin(Pin.P8_03, Direction.OUT);
+      } catch (BeagleIOException e)
+      {
+        synchronized (failures)
+        {
+          failures.add(e);
+        }
+      }
+    });
+
+    assertThat(failures.size(), equalTo(THREADS - 1));
+  }
+
+  /**
+   * Starts all threads at the same time and waits until they finished.
+   */
+  private void runConcurrently(Worker worker) throws InterruptedException
+  {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    List<Throwable> errors = new ArrayList<>();
+
+    for (int i = 0; i < THREADS; i++)
+    {
+      int index = i;
+      Thread thread = new Thread(() -> {
+        try
+        {
+          start.await();
+          worker.work(index);
+        } catch (Throwable e)
+        {
+          synchronized (errors)
+          {
+            errors.add(e);
+          }
+        }
+      });
+
+      thread.start();
+      threads.add(thread);
+    }
+
+    start.countDown();
+
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    assertThat(errors.toString(), errors.isEmpty(), equalTo(true));
+  }
+
+  /**
+   * @author Daniel
+   *
+   */
+  private interface Worker
+  {
+    void work(int index);
+  }
+}
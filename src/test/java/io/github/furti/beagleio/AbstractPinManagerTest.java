@@ -0,0 +1,167 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.AbstractPinManager;
+
+/**
+ * @author Daniel
+ *
+ */
+public class AbstractPinManagerTest
+{
+
+  @Test
+  public void valuesCoalesced()
+  {
+    RecordingPinManager pinManager = new RecordingPinManager();
+
+    pinManager
+        .setValue(PinValue.HIGH)
+        .setValue(PinValue.LOW)
+        .setValue(PinValue.HIGH)
+        .performOutstandingOperations();
+
+    assertThat(pinManager.operations, equalTo(Arrays.asList("value HIGH")));
+  }
+
+  @Test
+  public void valueFoldedIntoDirection()
+  {
+    RecordingPinManager pinManager = new RecordingPinManager();
+
+    pinManager
+        .setDirection(Direction.OUT)
+        .setValue(PinValue.HIGH)
+        .performOutstandingOperations();
+
+    assertThat(pinManager.operations, equalTo(Arrays.asList("direction OUT_HIGH")));
+  }
+
+  @Test
+  public void foldedValueInvertedForActiveLow()
+  {
+    RecordingPinManager pinManager = new RecordingPinManager();
+
+    pinManager
+        .setActiveLow(true)
+        .setDirection(Direction.OUT)
+        .setValue(PinValue.HIGH)
+        .performOutstandingOperations();
+
+    assertThat(pinManager.operations,
+        equalTo(Arrays.asList("activeLow true", "direction OUT_LOW")));
+  }
+
+  @Test
+  public void onlyAdjacentOperationsCoalesced()
+  {
+    RecordingPinManager pinManager = new RecordingPinManager();
+
+    pinManager
+        .setDirection(Direction.IN)
+        .setDirection(Direction.OUT_LOW)
+        .setActiveLow(false)
+        .setActiveLow(true)
+        .setValue(PinValue.LOW)
+        .release()
+        .performOutstandingOperations();
+
+    assertThat(pinManager.operations, equalTo(Arrays.asList("direction OUT_LOW",
+        "activeLow true", "value LOW", "release")));
+  }
+
+  @Test
+  public void failedOperationStaysQueued()
+  {
+    RecordingPinManager pinManager = new RecordingPinManager();
+    pinManager.failures = 1;
+
+    pinManager
+        .setActiveLow(true)
+        .setValue(PinValue.HIGH);
+
+    try
+    {
+      pinManager.performOutstandingOperations();
+    } catch (BeagleIOException e)
+    {
+      // expected
+    }
+
+    pinManager.performOutstandingOperations();
+
+    assertThat(pinManager.operations, equalTo(Arrays.asList("activeLow true", "value HIGH")));
+  }
+
+  /**
+   * Records the operations that are performed.
+   */
+  private static class RecordingPinManager extends AbstractPinManager
+  {
+    private List<String> operations = new ArrayList<>();
+    private int failures;
+
+    @Override
+    public PinValue getValue()
+    {
+      return PinValue.LOW;
+    }
+
+    @Override
+    public PollValue poll()
+    {
+      return null;
+    }
+
+    @Override
+    protected void doSetDirection(Direction direction)
+    {
+      operations.add("direction " + direction);
+    }
+
+    @Override
+    protected void doSetActiveLow(boolean activeLow)
+    {
+      operations.add("activeLow " + activeLow);
+    }
+
+    @Override
+    protected void doSetValue(PinValue value)
+    {
+      if (failures > 0)
+      {
+        failures--;
+        throw new BeagleIOException("Value could not be written", null);
+      }
+
+      operations.add("value " + value);
+    }
+
+    @Override
+    protected void doRelease()
+    {
+      operations.add("release");
+    }
+  }
+}
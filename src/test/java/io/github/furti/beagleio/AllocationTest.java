@@ -0,0 +1,118 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.bitbang.BitBangSequence;
+
+/**
+ * Checks that writing values in steady state does not allocate.
+ * 
+ * @author Daniel
+ *
+ */
+public class AllocationTest
+{
+  private static final int WARMUP = 20000;
+  private static final int WRITES = 10000;
+  private static final int STEPS = 100;
+
+  @Test
+  public void setPinValueDoesNotAllocate()
+  {
+    com.sun.management.ThreadMXBean threadBean = getThreadBean();
+    long threadId = Thread.currentThread().getId();
+    CountingBeagle beagle = new CountingBeagle(0);
+
+    beagle.initializePin(Pin.P8_03, Direction.OUT);
+    write(beagle, WARMUP);
+
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    write(beagle, WRITES);
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    // Reading the counter itself may allocate a few bytes, but never one object per write
+    assertThat("Allocated " + allocated + " bytes", allocated < WRITES, equalTo(true));
+  }
+
+  /**
+   * The clock toggles while the data line holds, like in most steps of a transfer. So the unchanged
+   * data line is removed from each written pattern.
+   */
+  @Test
+  public void bitBangSequenceDoesNotAllocate()
+  {
+    com.sun.management.ThreadMXBean threadBean = getThreadBean();
+    long threadId = Thread.currentThread().getId();
+    CountingBeagle beagle = new CountingBeagle(0);
+    PinGroup outputs = PinGroup.fromPins(Pin.P8_03, Pin.P8_04);
+
+    beagle.initializePins(outputs, Direction.OUT);
+
+    BitBangSequence sequence = new BitBangSequence(beagle, outputs, null);
+    int clockLow = sequence
+        .addPattern(new BankMask().set(Pin.P8_03, PinValue.LOW).set(Pin.P8_04, PinValue.HIGH));
+    int clockHigh = sequence
+        .addPattern(new BankMask().set(Pin.P8_03, PinValue.HIGH).set(Pin.P8_04, PinValue.HIGH));
+
+    for (int i = 0; i < STEPS; i++)
+    {
+      sequence.add((i & 1) == 0 ? clockHigh : clockLow, 0);
+    }
+
+    execute(sequence, WARMUP / STEPS);
+
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    execute(sequence, WRITES / STEPS);
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat(beagle.getSkippedWrites() > 0, equalTo(true));
+    assertThat("Allocated " + allocated + " bytes", allocated < WRITES, equalTo(true));
+  }
+
+  private com.sun.management.ThreadMXBean getThreadBean()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+    {
+      throw new SkipException("Allocations can not be measured on this JVM");
+    }
+
+    return (com.sun.management.ThreadMXBean) bean;
+  }
+
+  private void execute(BitBangSequence sequence, int executions)
+  {
+    for (int i = 0; i < executions; i++)
+    {
+      sequence.execute();
+    }
+  }
+
+  private void write(CountingBeagle beagle, int writes)
+  {
+    for (int i = 0; i < writes; i++)
+    {
+      beagle.setPinValue(Pin.P8_03, (i & 1) == 0 ? PinValue.HIGH : PinValue.LOW);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel
+ *
+ */
+public class BatchTest
+{
+
+  @Test
+  public void operationsMerged()
+  {
+    RecordingBeagle beagle = new RecordingBeagle();
+
+    beagle.batch()
+        .initializePin(Pin.P8_03, Direction.OUT)
+        .initializePin(Pin.P8_05, Direction.IN)
+        .initializePin(Pin.P8_04, Direction.OUT)
+        .setPinValue(Pin.P8_03, PinValue.HIGH)
+        .setPinValue(Pin.P8_04, PinValue.HIGH)
+        .setPinValue(Pin.P8_03, PinValue.LOW)
+        .closePin(Pin.P8_05)
+        .commit();
+
+    assertThat(beagle.calls, equalTo(Arrays.asList(
+        "initialize [P8_05] IN false",
+        "initialize [P8_03, P8_04] OUT false",
+        "write",
+        "close [P8_05]")));
+
+    assertThat(beagle.written.getMask(1),
+        equalTo(Pin.P8_03.getBankMask() | Pin.P8_04.getBankMask()));
+    assertThat(beagle.written.getBits(1), equalTo(Pin.P8_04.getBankMask()));
+  }
+
+  @Test
+  public void orderOfPinKept()
+  {
+    RecordingBeagle beagle = new RecordingBeagle();
+
+    beagle.batch()
+        .initializePin(Pin.P8_03, Direction.OUT)
+        .closePin(Pin.P8_03)
+        .initializePin(Pin.P8_03, Direction.IN, true)
+        .commit();
+
+    assertThat(beagle.calls, equalTo(Arrays.asList(
+        "initialize [P8_03] OUT false",
+        "close [P8_03]",
+        "initialize [P8_03] IN true")));
+  }
+
+  @Test
+  public void emptyAfterCommit()
+  {
+    RecordingBeagle beagle = new RecordingBeagle();
+    Batch batch = beagle.batch();
+
+    assertTrue(batch.isEmpty());
+
+    batch.setPinValue(Pin.P8_03, PinValue.HIGH);
+    beagle.fail = true;
+
+    try
+    {
+      batch.commit();
+    } catch (BeagleIOException e)
+    {
+      // Expected
+    }
+
+    assertTrue(batch.isEmpty());
+
+    beagle.fail = false;
+    batch.commit();
+
+    assertThat(beagle.calls.size(), equalTo(0));
+  }
+
+  /**
+   * Records the calls made by the batch.
+   * 
+   * @author Daniel
+   *
+   */
+  private static class RecordingBeagle implements Beagle
+  {
+    private List<String> calls = new ArrayList<>();
+    private BankMask written;
+    private boolean fail;
+
+    @Override
+    public void initializePin(Pin pin, Direction direction, boolean activeLow)
+    {
+      calls.add("initialize [" + pin + "] " + direction + " " + activeLow);
+    }
+
+    @Override
+    public void initializePins(PinGroup pins, Direction direction, boolean activeLow)
+    {
+      calls.add("initialize " + pins.getPins() + " " + direction + " " + activeLow);
+    }
+
+    @Override
+    public void setPinValue(Pin pin, PinValue value)
+    {
+      calls.add("set " + pin + " " + value);
+    }
+
+    @Override
+    public void writeBanks(BankMask banks)
+    {
+      if (fail)
+      {
+        throw new BeagleIOException("Write failed", null);
+      }
+
+      calls.add("write");
+      written = banks.copy();
+    }
+
+    @Override
+    public PinValue getPinValue(Pin pin)
+    {
+      return PinValue.LOW;
+    }
+
+    @Override
+    public PollValue poll(Pin pin)
+    {
+      return null;
+    }
+
+    @Override
+    public void closePin(Pin pin)
+    {
+      calls.add("close [" + pin + "]");
+    }
+
+    @Override
+    public void closePins(PinGroup pins)
+    {
+      calls.add("close " + pins.getPins());
+    }
+
+    @Override
+    public void release()
+    {
+    }
+  }
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * @author Daniel
+ *
+ */
+public class BeagleApplicationTest
+{
+
+  @Test(timeOut = 5000)
+  public void eventDrivenLoopSleepsUntilChange() throws InterruptedException
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW);
+    EventDrivenApplication application = new EventDrivenApplication(pollValue);
+
+    Thread thread = new Thread(() -> application.start(new String[0]));
+    thread.start();
+
+    // Give the loop some time to park. It must not spin in the meantime.
+    Thread.sleep(100);
+    assertThat("Iterations while idle", application.iterations, equalTo(1));
+
+    pollValue.setValue(PinValue.HIGH);
+    pollValue.setValue(PinValue.LOW);
+
+    thread.join();
+
+    assertThat(application.values,
+        equalTo(Arrays.asList(PinValue.LOW, PinValue.HIGH, PinValue.LOW)));
+  }
+
+  @Test(timeOut = 5000)
+  public void eventDrivenLoopWakesUpOnTimer()
+  {
+    TimerApplication application = new TimerApplication();
+
+    application.start(new String[0]);
+
+    assertThat(application.iterations, equalTo(3));
+  }
+
+  @Test(timeOut = 5000)
+  public void scanCycleUsesProcessImage()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW);
+    ScanCycleApplication application = new ScanCycleApplication(pollValue, 0);
+
+    long start = System.nanoTime();
+    application.start(new String[0]);
+    long duration = System.nanoTime() - start;
+
+    // The input changed in the first cycle but the image must stay the same until the next cycle
+    assertThat(application.inputs,
+        equalTo(Arrays.asList(PinValue.LOW, PinValue.HIGH, PinValue.LOW, PinValue.HIGH)));
+    assertThat("Outputs written during the cycle", application.writesDuringRun, equalTo(0));
+    assertThat(application.outputs,
+        equalTo(Arrays.asList(PinValue.HIGH, PinValue.LOW, PinValue.HIGH, PinValue.LOW)));
+
+    CycleStatistics statistics = application.getCycleStatistics();
+
+    assertThat(statistics.getCycleCount(), equalTo(4L));
+    assertTrue("Duration of 4 cycles", duration >= 3 * statistics.getPeriodNanos());
+  }
+
+  @Test(timeOut = 5000)
+  public void scanCycleCountsOverruns()
+  {
+    ScanCycleApplication application =
+        new ScanCycleApplication(new DefaultPollValue(PinValue.LOW), 5);
+
+    application.start(new String[0]);
+
+    CycleStatistics statistics = application.getCycleStatistics();
+
+    assertThat(statistics.getOverrunCount(), equalTo(4L));
+    assertTrue("Longest cycle",
+        statistics.getMaxCycleNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+  }
+
+  @Test(timeOut = 5000)
+  public void scanCycleForwardsCacheControl()
+  {
+    CacheControlApplication application = new CacheControlApplication();
+
+    application.start(new String[0]);
+
+    assertThat(application.calls, equalTo(Arrays.asList("setCached P8_04 false", "refresh P8_04")));
+  }
+
+  /**
+   * Toggles the input and mirrors it to an output for 4 cycles.
+   */
+  private static class ScanCycleApplication extends BeagleApplication
+  {
+    private DefaultPollValue pollValue;
+    private long sleepMillis;
+    private List<PinValue> inputs = new ArrayList<>();
+    private List<PinValue> outputs = new ArrayList<>();
+    private int writesDuringRun;
+
+    public ScanCycleApplication(DefaultPollValue pollValue, long sleepMillis)
+    {
+      this.pollValue = pollValue;
+      this.sleepMillis = sleepMillis;
+    }
+
+    @Override
+    protected Beagle setupBeagle()
+    {
+      return new PollingBeagle(pollValue)
+      {
+        @Override
+        public void setPinValue(Pin pin, PinValue value)
+        {
+          outputs.add(value);
+        }
+      };
+    }
+
+    @Override
+    protected LoopMode getLoopMode()
+    {
+      return LoopMode.SCAN_CYCLE;
+    }
+
+    @Override
+    protected long getCyclePeriodNanos()
+    {
+      return TimeUnit.MILLISECONDS.toNanos(2);
+    }
+
+    @Override
+    protected void initialize(Beagle beagle)
+    {
+      listen(Pin.P8_03);
+    }
+
+    @Override
+    protected boolean run(Beagle beagle)
+    {
+      PinValue input = beagle.getPinValue(Pin.P8_03);
+      inputs.add(input);
+
+      pollValue.setValue(input.opposite());
+
+      if (beagle.getPinValue(Pin.P8_03) != input)
+      {
+        throw new AssertionError("Input changed during the cycle");
+      }
+
+      int writes = outputs.size();
+      beagle.setPinValue(Pin.P8_04, input.opposite());
+      writesDuringRun += outputs.size() - writes;
+
+      if (sleepMillis > 0)
+      {
+        try
+        {
+          Thread.sleep(sleepMillis);
+        } catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      return inputs.size() < 4;
+    }
+
+    @Override
+    protected void cleanup(Beagle beagle)
+    {
+    }
+  }
+
+  /**
+   * Turns off the cache of a Pin in its only cycle.
+   */
+  private static class CacheControlApplication extends BeagleApplication
+  {
+    private List<String> calls = new ArrayList<>();
+
+    @Override
+    protected Beagle setupBeagle()
+    {
+      return new PollingBeagle(new DefaultPollValue(PinValue.LOW))
+      {
+        @Override
+        public void setCached(Pin pin, boolean cached)
+        {
+          calls.add("setCached " + pin + " " + cached);
+        }
+
+        @Override
+        public void refresh(Pin pin)
+        {
+          calls.add("refresh " + pin);
+        }
+      };
+    }
+
+    @Override
+    protected LoopMode getLoopMode()
+    {
+      return LoopMode.SCAN_CYCLE;
+    }
+
+    @Override
+    protected void initialize(Beagle beagle)
+    {
+    }
+
+    @Override
+    protected boolean run(Beagle beagle)
+    {
+      beagle.setCached(Pin.P8_04, false);
+      beagle.refresh(Pin.P8_04);
+
+      return false;
+    }
+
+    @Override
+    protected void cleanup(Beagle beagle)
+    {
+    }
+  }
+
+  /**
+   * Stops after the Pin changed twice.
+   */
+  private static class EventDrivenApplication extends BeagleApplication
+  {
+    private PollValue pollValue;
+    private List<PinValue> values = new ArrayList<>();
+    private volatile int iterations;
+
+    public EventDrivenApplication(PollValue pollValue)
+    {
+      this.pollValue = pollValue;
+    }
+
+    @Override
+    protected Beagle setupBeagle()
+    {
+      return new PollingBeagle(pollValue);
+    }
+
+    @Override
+    protected LoopMode getLoopMode()
+    {
+      return LoopMode.EVENT_DRIVEN;
+    }
+
+    @Override
+    protected void initialize(Beagle beagle)
+    {
+      listen(Pin.P8_03).onChange(values::add);
+    }
+
+    @Override
+    protected boolean run(Beagle beagle)
+    {
+      iterations++;
+
+      return values.size() < 3;
+    }
+
+    @Override
+    protected void cleanup(Beagle beagle)
+    {
+    }
+  }
+
+  /**
+   * Stops after the timer woke it up twice.
+   */
+  private static class TimerApplication extends BeagleApplication
+  {
+    private int iterations;
+
+    @Override
+    protected Beagle setupBeagle()
+    {
+      return new PollingBeagle(new DefaultPollValue(PinValue.LOW));
+    }
+
+    @Override
+    protected LoopMode getLoopMode()
+    {
+      return LoopMode.EVENT_DRIVEN;
+    }
+
+    @Override
+    protected void initialize(Beagle beagle)
+    {
+    }
+
+    @Override
+    protected boolean run(Beagle beagle)
+    {
+      iterations++;
+      wakeUpAfter(10, TimeUnit.MILLISECONDS);
+
+      return iterations < 3;
+    }
+
+    @Override
+    protected void cleanup(Beagle beagle)
+    {
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel
+ *
+ */
+public class ChangeWatcherTest
+{
+
+  @Test
+  public void changesRecordedWithoutSequence() throws InterruptedException
+  {
+    PinValue[] value = {PinValue.LOW};
+    PollValue pollValue = () -> value[0];
+    PinEventCursor cursor = pollValue.events();
+    PinEvent event = new PinEvent();
+
+    value[0] = PinValue.HIGH;
+    assertTrue("First change", await(cursor, event));
+    assertThat(event.getValue(), equalTo(PinValue.HIGH));
+    assertThat(event.getSequence(), equalTo(1L));
+
+    value[0] = PinValue.LOW;
+    assertTrue("Second change", await(cursor, event));
+    assertThat(event.getValue(), equalTo(PinValue.LOW));
+    assertThat(event.getSequence(), equalTo(2L));
+  }
+
+  @Test
+  public void missedChangesReplayed() throws InterruptedException
+  {
+    CountingPollValue pollValue = new CountingPollValue();
+    PinEventCursor cursor = pollValue.events();
+    PinEvent event = new PinEvent();
+
+    // LOW -> HIGH -> LOW -> HIGH between two sweeps
+    pollValue.change(PinValue.HIGH, 3);
+
+    assertTrue(await(cursor, event));
+    assertThat(event.getValue(), equalTo(PinValue.HIGH));
+    assertTrue(await(cursor, event));
+    assertThat(event.getValue(), equalTo(PinValue.LOW));
+    assertTrue(await(cursor, event));
+    assertThat(event.getValue(), equalTo(PinValue.HIGH));
+    assertThat(event.getSequence(), equalTo(3L));
+  }
+
+  @Test
+  public void listenerNotifiedWithoutSupport() throws InterruptedException
+  {
+    PinValue[] value = {PinValue.LOW};
+    PollValue pollValue = () -> value[0];
+    Semaphore changes = new Semaphore(0);
+    Runnable listener = changes::release;
+
+    pollValue.addChangeListener(listener);
+
+    value[0] = PinValue.HIGH;
+    assertTrue("Notified", changes.tryAcquire(1, TimeUnit.SECONDS));
+
+    pollValue.removeChangeListener(listener);
+
+    value[0] = PinValue.LOW;
+    assertThat("Removed", changes.tryAcquire(100, TimeUnit.MILLISECONDS), equalTo(false));
+  }
+
+  private boolean await(PinEventCursor cursor, PinEvent event) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 1000;
+
+    while (!cursor.next(event))
+    {
+      if (System.currentTimeMillis() > deadline)
+      {
+        return false;
+      }
+
+      Thread.sleep(1);
+    }
+
+    return true;
+  }
+
+  /**
+   * Counts the changes, but does not record them.
+   */
+  private static class CountingPollValue implements PollValue
+  {
+    private PinValue value = PinValue.LOW;
+    private long sequence;
+
+    @Override
+    public synchronized PinValue getValue()
+    {
+      return value;
+    }
+
+    @Override
+    public synchronized long getSequence()
+    {
+      return sequence;
+    }
+
+    @Override
+    public synchronized PinEvent read(PinEvent event)
+    {
+      return event.set(value, sequence, 0);
+    }
+
+    synchronized void change(PinValue newValue, long changes)
+    {
+      value = newValue;
+      sequence += changes;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.github.furti.beagleio.gpio.AbstractBeagle;
+import io.github.furti.beagleio.gpio.AbstractPinManager;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.PinManager;
+
+/**
+ * A Beagle without hardware that counts the values written to each Pin. It fails if two threads
+ * operate on the same Pin at the same time.
+ * 
+ * @author Daniel
+ *
+ */
+public class CountingBeagle extends AbstractBeagle
+{
+  private AtomicLongArray writes = new AtomicLongArray(Pin.values().length);
+  private AtomicInteger overlaps = new AtomicInteger();
+  private int workNanos;
+
+  /**
+   * @param workNanos the time each write takes, to simulate the I/O of a real Beagle.
+   */
+  public CountingBeagle(int workNanos)
+  {
+    this.workNanos = workNanos;
+  }
+
+  /**
+   * @return the number of values written to the Pin.
+   */
+  public long getWrites(Pin pin)
+  {
+    return writes.get(pin.ordinal());
+  }
+
+  /**
+   * @return the number of times two threads operated on the same Pin at once.
+   */
+  public int getOverlaps()
+  {
+    return overlaps.get();
+  }
+
+  @Override
+  protected PinManager createPinManager(Pin pin)
+  {
+    return new CountingPinManager(pin);
+  }
+
+  @Override
+  protected void doRelease()
+  {
+  }
+
+  /**
+   * @author Daniel
+   *
+   */
+  private class CountingPinManager extends AbstractPinManager
+  {
+    private Pin pin;
+    private AtomicInteger active = new AtomicInteger();
+    private PinValue value = PinValue.LOW;
+
+    public CountingPinManager(Pin pin)
+    {
+      this.pin = pin;
+    }
+
+    @Override
+    public PinValue getValue()
+    {
+      return value;
+    }
+
+    @Override
+    public PollValue poll()
+    {
+      return new DefaultPollValue(value);
+    }
+
+    @Override
+    protected void doSetDirection(Direction direction)
+    {
+    }
+
+    @Override
+    protected void doSetActiveLow(boolean activeLow)
+    {
+    }
+
+    @Override
+    protected void doSetValue(PinValue value)
+    {
+      if (active.incrementAndGet() != 1)
+      {
+        overlaps.incrementAndGet();
+      }
+
+      long end = System.nanoTime() + workNanos;
+
+      while (System.nanoTime() < end)
+      {
+        // Simulate the time the hardware needs
+      }
+
+      this.value = value;
+      writes.incrementAndGet(pin.ordinal());
+      active.decrementAndGet();
+    }
+
+    @Override
+    protected void doRelease()
+    {
+    }
+  }
+}
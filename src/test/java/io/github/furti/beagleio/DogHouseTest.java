@@ -6,7 +6,9 @@ import static org.junit.Assert.assertThat;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import io.github.furti.beagleio.gpio.chardev.CharacterDeviceBeagle;
 import io.github.furti.beagleio.gpio.local.LocalBeagle;
+import io.github.furti.beagleio.gpio.mmap.MemoryMappedBeagle;
 import io.github.furti.beagleio.gpio.remote.RemoteBeagle;
 import io.github.furti.beagleio.gpio.temporary.TemporaryFilesystemBeagle;
 
@@ -74,6 +76,8 @@ public class DogHouseTest
         {null, LocalBeagle.class},
         {"temporary", TemporaryFilesystemBeagle.class},
         {"local", LocalBeagle.class},
+        {"mmap", MemoryMappedBeagle.class},
+        {"chardev", CharacterDeviceBeagle.class},
         {"remote", RemoteBeagle.class},
         {"io.github.furti.beagleio.SomeTestBeagle", SomeTestBeagle.class}
     };
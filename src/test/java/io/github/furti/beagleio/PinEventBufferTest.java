@@ -0,0 +1,95 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * @author Daniel
+ *
+ */
+public class PinEventBufferTest
+{
+
+  @Test
+  public void everyChangeRead()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW, 8);
+    PinEventCursor cursor = pollValue.events();
+    PinEvent event = new PinEvent();
+
+    pollValue.setValue(PinValue.HIGH, 10);
+    pollValue.setValue(PinValue.LOW, 20);
+    pollValue.setValue(PinValue.HIGH, 30);
+
+    assertEvent(cursor, event, PinValue.HIGH, 1, 10);
+    assertEvent(cursor, event, PinValue.LOW, 2, 20);
+    assertEvent(cursor, event, PinValue.HIGH, 3, 30);
+    assertThat("No more events", cursor.next(event), equalTo(false));
+    assertThat(cursor.getOverrunCount(), equalTo(0L));
+  }
+
+  @Test
+  public void cursorsAreIndependent()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW, 8);
+    PinEventCursor first = pollValue.events();
+    PinEvent event = new PinEvent();
+
+    pollValue.setValue(PinValue.HIGH, 10);
+
+    PinEventCursor second = pollValue.events();
+
+    pollValue.setValue(PinValue.LOW, 20);
+
+    assertEvent(first, event, PinValue.HIGH, 1, 10);
+    assertEvent(first, event, PinValue.LOW, 2, 20);
+    assertEvent(second, event, PinValue.LOW, 2, 20);
+    assertThat("No more events", second.next(event), equalTo(false));
+  }
+
+  @Test
+  public void overrunDetected()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW, 4);
+    PinEventCursor cursor = pollValue.events();
+    PinEvent event = new PinEvent();
+
+    for (int i = 1; i <= 10; i++)
+    {
+      pollValue.setValue(i % 2 == 0 ? PinValue.LOW : PinValue.HIGH, i);
+    }
+
+    assertEvent(cursor, event, PinValue.HIGH, 7, 7);
+    assertThat(cursor.getOverrunCount(), equalTo(6L));
+    assertEvent(cursor, event, PinValue.LOW, 8, 8);
+    assertEvent(cursor, event, PinValue.HIGH, 9, 9);
+    assertEvent(cursor, event, PinValue.LOW, 10, 10);
+    assertThat("No more events", cursor.next(event), equalTo(false));
+  }
+
+  private void assertEvent(PinEventCursor cursor, PinEvent event, PinValue value, long sequence,
+      long timestamp)
+  {
+    assertThat("Event available", cursor.next(event), equalTo(true));
+    assertThat(event.getValue(), equalTo(value));
+    assertThat(event.getSequence(), equalTo(sequence));
+    assertThat(event.getTimestamp(), equalTo(timestamp));
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * @author Daniel
+ *
+ */
+public class PinGroupTest
+{
+
+  @Test
+  public void wordMappedToBanks()
+  {
+    BankMask banks =
+        PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P9_22, Pin.P9_25).toBankMask(0b1101);
+
+    assertThat(banks.getMask(0), equalTo(1 << 2));
+    assertThat(banks.getHighMask(0), equalTo(1 << 2));
+    assertThat(banks.getMask(1), equalTo(1 << 6 | 1 << 7));
+    assertThat(banks.getHighMask(1), equalTo(1 << 6));
+    assertThat(banks.getLowMask(1), equalTo(1 << 7));
+    assertThat(banks.getMask(2), equalTo(0));
+    assertThat(banks.getHighMask(3), equalTo(1 << 21));
+  }
+
+  @Test
+  public void pinsWrittenInBankOrder()
+  {
+    RecordingBeagle beagle = new RecordingBeagle();
+
+    beagle.writePins(PinGroup.fromPins(Pin.P9_25, Pin.P8_04, Pin.P8_03, Pin.P9_22), 0b0110);
+
+    assertThat(beagle.writes, equalTo(Arrays.asList("P9_22=LOW", "P8_03=HIGH", "P8_04=HIGH",
+        "P9_25=LOW")));
+  }
+
+  @Test
+  public void pinsReadAsWord()
+  {
+    RecordingBeagle beagle = new RecordingBeagle();
+
+    assertThat(beagle.readPins(PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P8_05)),
+        equalTo(0b111L));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void groupTooLargeForWord()
+  {
+    PinGroup.fromPins(Pin.values()).toBankMask(0L);
+  }
+
+  /**
+   * Records all writes and reads every Pin as HIGH.
+   */
+  private static class RecordingBeagle extends PollingBeagle
+  {
+    private List<String> writes = new ArrayList<>();
+
+    public RecordingBeagle()
+    {
+      super(new DefaultPollValue(PinValue.HIGH));
+    }
+
+    @Override
+    public void setPinValue(Pin pin, PinValue value)
+    {
+      writes.add(pin + "=" + value);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+
+/**
+ * @author Daniel
+ *
+ */
+public class PinListenerTest
+{
+
+  @Test
+  public void missedPulseReplayed()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.HIGH);
+    List<PinValue> values = new ArrayList<>();
+    PinListener listener = new PinListener(Pin.P8_03, new PollingBeagle(pollValue));
+    listener.onChange(values::add);
+
+    listener.execute();
+
+    // HIGH -> LOW -> HIGH between two executions
+    pollValue.setValue(PinValue.LOW);
+    pollValue.setValue(PinValue.HIGH);
+    listener.execute();
+
+    assertThat(values, equalTo(Arrays.asList(PinValue.HIGH, PinValue.LOW, PinValue.HIGH)));
+  }
+
+  @Test
+  public void noCallbackWithoutChange()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW);
+    List<PinValue> values = new ArrayList<>();
+    PinListener listener = new PinListener(Pin.P8_03, new PollingBeagle(pollValue));
+    listener.onChange(values::add);
+
+    listener.execute();
+    pollValue.setValue(PinValue.LOW);
+    listener.execute();
+
+    assertThat(values, equalTo(Arrays.asList(PinValue.LOW)));
+    assertThat(pollValue.getSequence(), equalTo(0L));
+  }
+
+  @Test
+  public void changeDetectedWithoutSequence()
+  {
+    PinValue[] value = {PinValue.LOW};
+    List<PinValue> values = new ArrayList<>();
+    PinListener listener = new PinListener(Pin.P8_03, new PollingBeagle(() -> value[0]));
+    listener.onChange(values::add);
+
+    listener.execute();
+    value[0] = PinValue.HIGH;
+
+    assertThat(listener.isChanged(), equalTo(true));
+    listener.execute();
+    assertThat(listener.isChanged(), equalTo(false));
+    listener.execute();
+
+    assertThat(values, equalTo(Arrays.asList(PinValue.LOW, PinValue.HIGH)));
+  }
+
+  @Test
+  public void eventIsConsistent()
+  {
+    DefaultPollValue pollValue = new DefaultPollValue(PinValue.LOW);
+
+    pollValue.setValue(PinValue.HIGH, 42);
+
+    PinEvent event = pollValue.read(new PinEvent());
+
+    assertThat(event.getValue(), equalTo(PinValue.HIGH));
+    assertThat(event.getSequence(), equalTo(1L));
+    assertThat(event.getTimestamp(), equalTo(42L));
+  }
+}
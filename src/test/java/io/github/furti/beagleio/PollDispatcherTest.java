@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.PollDispatcher;
+
+/**
+ * @author Daniel
+ *
+ */
+public class PollDispatcherTest
+{
+  private ScheduledExecutorService executor;
+  private PollDispatcher dispatcher;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newSingleThreadScheduledExecutor();
+    dispatcher = new PollDispatcher(executor, 1, TimeUnit.MILLISECONDS);
+  }
+
+  @AfterMethod
+  public void cleanup()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void allTargetsReadInEachSweep() throws InterruptedException
+  {
+    AtomicInteger[] reads = new AtomicInteger[40];
+
+    for (int i = 0; i < reads.length; i++)
+    {
+      AtomicInteger targetReads = new AtomicInteger();
+      reads[i] = targetReads;
+
+      dispatcher.add(targetReads::incrementAndGet);
+    }
+
+    Thread.sleep(100);
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+
+    long sweeps = dispatcher.getSweepCount();
+
+    assertThat("Sweeps executed", sweeps > 0, equalTo(true));
+    assertThat("Sweep duration recorded", dispatcher.getMaxSweepNanos() > 0, equalTo(true));
+
+    for (AtomicInteger targetReads : reads)
+    {
+      assertThat("Target read", targetReads.get() > 0, equalTo(true));
+      assertThat("Target read at most once per sweep", targetReads.get() <= sweeps, equalTo(true));
+    }
+  }
+
+  @Test
+  public void sweepsStopWhenLastTargetRemoved() throws InterruptedException
+  {
+    Runnable target = () -> {
+    };
+
+    dispatcher.add(target);
+    Thread.sleep(20);
+    dispatcher.remove(target);
+
+    // Let a sweep that was already running finish
+    Thread.sleep(5);
+    long sweeps = dispatcher.getSweepCount();
+    Thread.sleep(20);
+
+    assertThat(dispatcher.getTargetCount(), equalTo(0));
+    assertThat(dispatcher.getSweepCount(), equalTo(sweeps));
+  }
+
+  @Test
+  public void failingTargetDoesNotStopSweeps() throws InterruptedException
+  {
+    AtomicInteger reads = new AtomicInteger();
+
+    dispatcher.add(() -> {
+      throw new IllegalStateException("Broken target");
+    });
+    dispatcher.add(reads::incrementAndGet);
+
+    long deadline = System.currentTimeMillis() + 5000;
+
+    while (reads.get() < 5 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(5);
+    }
+
+    assertThat("Other target still read", reads.get() >= 5, equalTo(true));
+    assertThat(dispatcher.getFailureCount() > 0, equalTo(true));
+    assertThat(dispatcher.getLastFailure().getMessage(), equalTo("Broken target"));
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+/**
+ * A Beagle that only supports polling a single value.
+ * 
+ * @author Daniel
+ *
+ */
+public class PollingBeagle implements Beagle
+{
+  private PollValue pollValue;
+
+  public PollingBeagle(PollValue pollValue)
+  {
+    this.pollValue = pollValue;
+  }
+
+  @Override
+  public void initializePin(Pin pin, Direction direction, boolean activeLow)
+  {
+  }
+
+  @Override
+  public void setPinValue(Pin pin, PinValue value)
+  {
+  }
+
+  @Override
+  public PinValue getPinValue(Pin pin)
+  {
+    return pollValue.getValue();
+  }
+
+  @Override
+  public PollValue poll(Pin pin)
+  {
+    return pollValue;
+  }
+
+  @Override
+  public void closePin(Pin pin)
+  {
+  }
+
+  @Override
+  public void release()
+  {
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how the throughput of {@link io.github.furti.beagleio.gpio.AbstractBeagle} scales when
+ * each thread writes a Pin of its own. Each write takes about 1 microsecond like a write to the
+ * sysfs. Run it with:
+ * 
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.furti.beagleio.ThroughputBenchmark
+ * </pre>
+ * 
+ * <p>
+ * The number of threads is limited to the available processors, so the scaling can only be seen on
+ * a machine with several cores. So far it was only run on a single core, so only the single thread
+ * baseline (about 790k writes/s) is known and the scaling is not verified yet.
+ * </p>
+ * 
+ * @author Daniel
+ *
+ */
+public class ThroughputBenchmark
+{
+  private static final int WORK_NANOS = 1000;
+  private static final long WARMUP_MILLIS = 1000;
+  private static final long MEASURE_MILLIS = 2000;
+
+  public static void main(String[] args) throws InterruptedException
+  {
+    int maxThreads = Math.min(Runtime.getRuntime().availableProcessors(), Pin.values().length);
+    double single = 0;
+
+    if (maxThreads < 2)
+    {
+      System.out.println("Only one processor available, the scaling can not be measured.");
+    }
+
+    System.out.println("threads  writes/s     scaling");
+
+    for (int threads = 1; threads <= maxThreads; threads *= 2)
+    {
+      double throughput = measure(threads);
+
+      if (threads == 1)
+      {
+        single = throughput;
+      }
+
+      System.out.printf("%7d  %11.0f  %6.2f%n", threads, throughput, throughput / single);
+    }
+  }
+
+  /**
+   * @return the writes per second of all threads together.
+   */
+  private static double measure(int threads) throws InterruptedException
+  {
+    CountingBeagle beagle = new CountingBeagle(WORK_NANOS);
+    AtomicLong writes = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    long[] phase = {Long.MAX_VALUE, Long.MAX_VALUE};
+
+    for (int i = 0; i < threads; i++)
+    {
+      Pin pin = Pin.values()[i];
+      beagle.initializePin(pin, Direction.OUT);
+
+      workers[i] = new Thread(() -> {
+        try
+        {
+          start.await();
+        } catch (InterruptedException e)
+        {
+          return;
+        }
+
+        long count = 0;
+        long measureStart = phase[0];
+        long measureEnd = phase[1];
+
+        while (System.nanoTime() < measureEnd)
+        {
+          beagle.setPinValue(pin, (count & 1) == 0 ? PinValue.HIGH : PinValue.LOW);
+
+          if (System.nanoTime() >= measureStart)
+          {
+            count++;
+          }
+        }
+
+        writes.addAndGet(count);
+      });
+
+      workers[i].start();
+    }
+
+    phase[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+    phase[1] = phase[0] + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+    start.countDown();
+
+    for (Thread worker : workers)
+    {
+      worker.join();
+    }
+
+    beagle.release();
+
+    return writes.get() * 1000.0 / MEASURE_MILLIS;
+  }
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.bitbang;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.bitbang.I2cMaster;
+import io.github.furti.beagleio.gpio.bitbang.OneWireMaster;
+import io.github.furti.beagleio.gpio.bitbang.SpiMaster;
+import io.github.furti.beagleio.gpio.memory.InMemoryBeagle;
+import io.github.furti.beagleio.gpio.mmap.GpioRegisters;
+import io.github.furti.beagleio.gpio.mmap.MemoryMappedBeagle;
+
+/**
+ * Runs the protocols against simulated devices on an {@link InMemoryBeagle}. The devices react to
+ * every write of the master, so the inputs are up to date when they are sampled.
+ * 
+ * @author Daniel
+ *
+ */
+public class BitBangTest
+{
+  private static final Pin SCLK = Pin.P8_03;
+  private static final Pin MOSI = Pin.P8_04;
+  private static final Pin MISO = Pin.P8_05;
+  private static final Pin CS = Pin.P8_06;
+  private static final int DEVICE_ADDRESS = 0x50;
+
+  @Test
+  public void spiLoopback()
+  {
+    SpiLoopbackBeagle beagle = new SpiLoopbackBeagle();
+
+    try
+    {
+      beagle.initializePins(PinGroup.fromPins(SCLK, MOSI, CS), Direction.OUT);
+      beagle.initializePin(MISO, Direction.IN);
+
+      SpiMaster spi = new SpiMaster(beagle, SCLK, MOSI, MISO, CS, 1000000);
+      byte[] tx = {(byte) 0xA5, 0x01, (byte) 0xFF, 0x00, 0x7E};
+      byte[] rx = new byte[tx.length];
+
+      spi.transfer(tx, rx);
+
+      assertThat(rx, equalTo(tx));
+      assertThat("Rising clock edges", beagle.risingEdges, equalTo(tx.length * 8));
+      assertThat("Deselected", beagle.getPinValue(CS), equalTo(PinValue.HIGH));
+      assertThat("Clock idle", beagle.getPinValue(SCLK), equalTo(PinValue.LOW));
+      assertThat(spi.getSequence().isRegisterMapped(), equalTo(false));
+    } finally
+    {
+      beagle.release();
+    }
+  }
+
+  @Test
+  public void spiRegisterMapped() throws IOException
+  {
+    long[] bankAddresses = {0, GpioRegisters.BANK_SIZE, 2 * GpioRegisters.BANK_SIZE,
+        3 * GpioRegisters.BANK_SIZE};
+    Path registerFile = Files.createTempFile("beagleio", ".registers");
+
+    try (FileChannel channel = FileChannel.open(registerFile, StandardOpenOption.WRITE))
+    {
+      channel.write(ByteBuffer.allocate(bankAddresses.length * GpioRegisters.BANK_SIZE));
+    }
+
+    MemoryMappedBeagle beagle = new MemoryMappedBeagle(registerFile, bankAddresses);
+
+    try
+    {
+      beagle.initializePins(PinGroup.fromPins(SCLK, MOSI, CS), Direction.OUT);
+      beagle.initializePin(MISO, Direction.IN);
+
+      SpiMaster spi = new SpiMaster(beagle, SCLK, MOSI, MISO, CS, 1000000);
+      byte[] rx = new byte[2];
+
+      assertThat(spi.getSequence().isRegisterMapped(), equalTo(true));
+
+      beagle.getRegisters().write(MISO.getBank(), GpioRegisters.DATAIN, MISO.getBankMask());
+      spi.transfer(new byte[] {1, 2}, rx);
+      assertThat(rx, equalTo(new byte[] {(byte) 0xFF, (byte) 0xFF}));
+
+      beagle.getRegisters().write(MISO.getBank(), GpioRegisters.DATAIN, 0);
+      spi.transfer(new byte[] {1, 2}, rx);
+      assertThat(rx, equalTo(new byte[] {0, 0}));
+
+      ByteBuffer register = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+      try (FileChannel channel = FileChannel.open(registerFile, StandardOpenOption.READ))
+      {
+        channel.read(register, bankAddresses[CS.getBank()] + GpioRegisters.DATAOUT);
+      }
+
+      int outputs = SCLK.getBankMask() | MOSI.getBankMask() | CS.getBankMask();
+
+      assertThat("Deselected at the end", register.getInt(0) & outputs, equalTo(CS.getBankMask()));
+    } finally
+    {
+      beagle.release();
+      Files.delete(registerFile);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void foreignPinRejected()
+  {
+    InMemoryBeagle beagle = new InMemoryBeagle();
+
+    try
+    {
+      beagle.initializePins(PinGroup.fromPins(SCLK, MOSI, CS), Direction.OUT);
+
+      new SpiMaster(beagle, SCLK, MOSI, null, CS, 1000000).getSequence()
+          .addPattern(new BankMask().set(MISO, PinValue.HIGH));
+    } finally
+    {
+      beagle.release();
+    }
+  }
+
+  @Test
+  public void i2cWriteRead()
+  {
+    I2cDeviceBeagle beagle = new I2cDeviceBeagle();
+
+    try
+    {
+      beagle.initializePins(PinGroup.fromPins(SCLK, MOSI), Direction.OUT_HIGH);
+      beagle.initializePin(MISO, Direction.IN);
+      beagle.drive(MISO, PinValue.HIGH);
+
+      I2cMaster i2c = new I2cMaster(beagle, SCLK, MOSI, MISO, 400000);
+      byte[] rx = new byte[3];
+
+      i2c.write(DEVICE_ADDRESS, new byte[] {0x12, (byte) 0x80, 0x7F});
+      assertThat(beagle.memory[0], equalTo((byte) 0x12));
+      assertThat(beagle.memory[2], equalTo((byte) 0x7F));
+
+      i2c.read(DEVICE_ADDRESS, rx);
+      assertThat(rx, equalTo(new byte[] {0x12, (byte) 0x80, 0x7F}));
+
+      i2c.writeRead(DEVICE_ADDRESS, new byte[] {0x33}, rx);
+      assertThat(rx, equalTo(new byte[] {0x33, (byte) 0x80, 0x7F}));
+      assertThat("Bus released", beagle.getPinValue(MOSI), equalTo(PinValue.HIGH));
+
+      try
+      {
+        i2c.write(DEVICE_ADDRESS + 1, new byte[] {1});
+        fail("Unknown device should not acknowledge");
+      } catch (BeagleIOException e)
+      {
+        assertTrue(e.getMessage(), e.getMessage().contains("0x51"));
+      }
+    } finally
+    {
+      beagle.release();
+    }
+  }
+
+  @Test
+  public void oneWireTransaction()
+  {
+    OneWireDeviceBeagle beagle = new OneWireDeviceBeagle();
+
+    try
+    {
+      beagle.initializePin(MOSI, Direction.OUT_HIGH);
+      beagle.initializePin(MISO, Direction.IN);
+      beagle.drive(MISO, PinValue.HIGH);
+
+      OneWireMaster oneWire = new OneWireMaster(beagle, MOSI, MISO);
+
+      assertThat("No device", oneWire.reset(), equalTo(false));
+
+      beagle.present = true;
+      beagle.expectReset = true;
+      assertThat("Presence", oneWire.reset(), equalTo(true));
+
+      // The device answers the write slots too, but the master does not look at them
+      beagle.answer = 0xBEEF0000L;
+      byte[] rx = new byte[2];
+      beagle.expectReset = true;
+      oneWire.transaction(new byte[] {(byte) 0xCC, 0x44}, rx);
+
+      assertThat(rx, equalTo(new byte[] {(byte) 0xEF, (byte) 0xBE}));
+      assertThat("Time slots", beagle.slots, equalTo(32));
+    } finally
+    {
+      beagle.release();
+    }
+  }
+
+  /**
+   * Connects MISO to MOSI.
+   */
+  private static class SpiLoopbackBeagle extends InMemoryBeagle
+  {
+    private PinValue clock = PinValue.LOW;
+    private int risingEdges;
+
+    @Override
+    public void writeBanks(BankMask banks)
+    {
+      super.writeBanks(banks);
+
+      PinValue newClock = getPinValue(SCLK);
+
+      if (clock == PinValue.LOW && newClock == PinValue.HIGH && getPinValue(CS) == PinValue.LOW)
+      {
+        risingEdges++;
+      }
+
+      clock = newClock;
+      drive(MISO, getPinValue(MOSI));
+    }
+  }
+
+  /**
+   * A device that stores the bytes written to it and returns them when it is read. SCLK is SCL, MOSI
+   * drives SDA and MISO reads SDA.
+   */
+  private static class I2cDeviceBeagle extends InMemoryBeagle
+  {
+    private static final int IDLE = 0;
+    private static final int RECEIVE = 1;
+    private static final int SEND = 2;
+
+    private byte[] memory = new byte[16];
+    private boolean scl = true;
+    private boolean sda = true;
+    private boolean hold;
+    private int state = IDLE;
+    private boolean addressed;
+    private boolean reading;
+    private int bits;
+    private int shift;
+    private int index;
+    private boolean masterAck;
+
+    @Override
+    public void writeBanks(BankMask banks)
+    {
+      super.writeBanks(banks);
+
+      boolean newScl = getPinValue(SCLK) == PinValue.HIGH;
+      boolean newSda = getPinValue(MOSI) == PinValue.HIGH;
+
+      if (scl && newScl && sda != newSda)
+      {
+        // Start or stop condition
+        state = newSda ? IDLE : RECEIVE;
+        addressed = false;
+        bits = 0;
+        shift = 0;
+        index = 0;
+        hold = false;
+      } else if (!scl && newScl)
+      {
+        if (state == RECEIVE && bits < 8)
+        {
+          shift = (shift << 1) | (newSda ? 1 : 0);
+          bits++;
+        } else if (state == SEND && bits == 9)
+        {
+          masterAck = !newSda;
+        }
+      } else if (scl && !newScl)
+      {
+        clockFallen();
+      }
+
+      scl = newScl;
+      sda = newSda;
+      drive(MISO, sda && !hold ? PinValue.HIGH : PinValue.LOW);
+    }
+
+    private void clockFallen()
+    {
+      if (state == RECEIVE && bits == 8)
+      {
+        if (!addressed)
+        {
+          addressed = (shift >> 1) == DEVICE_ADDRESS;
+          reading = (shift & 1) == 1;
+          state = addressed ? RECEIVE : IDLE;
+        } else
+        {
+          memory[index++] = (byte) shift;
+        }
+
+        hold = state == RECEIVE;
+        bits = 9;
+      } else if (state == RECEIVE && bits == 9)
+      {
+        hold = false;
+        bits = 0;
+        shift = 0;
+
+        if (reading)
+        {
+          state = SEND;
+          sendByte();
+        }
+      } else if (state == SEND && bits < 8)
+      {
+        hold = (memory[index - 1] & (0x80 >> bits)) == 0;
+        bits++;
+      } else if (state == SEND && bits == 8)
+      {
+        hold = false;
+        bits = 9;
+      } else if (state == SEND && bits == 9)
+      {
+        if (masterAck)
+        {
+          sendByte();
+        } else
+        {
+          state = IDLE;
+        }
+      }
+    }
+
+    private void sendByte()
+    {
+      hold = (memory[index++] & 0x80) == 0;
+      bits = 1;
+    }
+  }
+
+  /**
+   * A device that answers every time slot with the next bit of the answer. MOSI drives the line and
+   * MISO reads it. The timing of the low pulses depends on the scheduler, so the test tells the
+   * device which pulse is a reset instead of measuring it.
+   */
+  private static class OneWireDeviceBeagle extends InMemoryBeagle
+  {
+    private boolean present;
+    private boolean expectReset;
+    private long answer;
+    private boolean low;
+    private int slots;
+
+    @Override
+    public void writeBanks(BankMask banks)
+    {
+      super.writeBanks(banks);
+
+      boolean newLow = getPinValue(MOSI) == PinValue.LOW;
+      PinValue line = newLow ? PinValue.LOW : PinValue.HIGH;
+
+      if (low && !newLow && present)
+      {
+        if (expectReset)
+        {
+          expectReset = false;
+          slots = 0;
+          line = PinValue.LOW;
+        } else
+        {
+          line = (answer & (1L << slots)) != 0 ? PinValue.HIGH : PinValue.LOW;
+          slots++;
+        }
+      }
+
+      low = newLow;
+      drive(MISO, line);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.chardev;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.chardev.CharacterDeviceBeagle;
+import io.github.furti.beagleio.gpio.chardev.LineRequest;
+
+/**
+ * @author Daniel
+ *
+ */
+public class CharacterDeviceBeagleTest
+{
+  // P8_03 and P8_04 are lines 6 and 7 of chip 1, P9_22 is line 2 of chip 0
+  private static final PinGroup PINS = PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P9_22);
+  private static final int ACCESSES = 10000;
+
+  private FakeGpioChip[] chips;
+  private CharacterDeviceBeagle beagle;
+
+  @BeforeMethod
+  public void setup() throws IOException
+  {
+    chips = new FakeGpioChip[4];
+
+    for (int i = 0; i < chips.length; i++)
+    {
+      chips[i] = new FakeGpioChip("gpiochip" + i);
+    }
+
+    beagle = new CharacterDeviceBeagle(chip -> chips[chip]);
+  }
+
+  @AfterMethod
+  public void release()
+  {
+    beagle.release();
+  }
+
+  @Test
+  public void groupRequestedOncePerChip()
+  {
+    beagle.initializePins(PINS, Direction.OUT);
+
+    assertThat(chips[0].getRequestCount(), equalTo(1));
+    assertThat(chips[1].getRequestCount(), equalTo(1));
+    assertThat(chips[1].getFlags(6), equalTo(LineRequest.FLAG_OUTPUT));
+  }
+
+  @Test
+  public void groupWrittenWithOneIoctlPerRequest()
+  {
+    beagle.initializePins(PINS, Direction.OUT);
+
+    int ioctls = chips[0].getIoctlCount() + chips[1].getIoctlCount();
+    beagle.writePins(PINS, 0b101);
+
+    assertThat(chips[0].getIoctlCount() + chips[1].getIoctlCount() - ioctls, equalTo(2));
+    assertThat(chips[1].getLevel(6), equalTo(true));
+    assertThat(chips[1].getLevel(7), equalTo(false));
+    assertThat(chips[0].getLevel(2), equalTo(true));
+  }
+
+  @Test
+  public void groupReadWithOneIoctlPerRequest()
+  {
+    beagle.initializePins(PINS, Direction.IN);
+    chips[1].drive(7, true);
+    chips[0].drive(2, true);
+
+    int ioctls = chips[0].getIoctlCount() + chips[1].getIoctlCount();
+
+    assertThat(beagle.readPins(PINS), equalTo(0b110L));
+    assertThat(chips[0].getIoctlCount() + chips[1].getIoctlCount() - ioctls, equalTo(2));
+  }
+
+  @Test
+  public void groupAccessDoesNotAllocate()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+    {
+      throw new SkipException("Allocations can not be measured on this JVM");
+    }
+
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+    BankMask[] words = new BankMask[1 << PINS.size()];
+
+    for (int i = 0; i < words.length; i++)
+    {
+      words[i] = PINS.toBankMask(i);
+    }
+
+    beagle.initializePins(PINS, Direction.OUT);
+
+    for (int i = 0; i < ACCESSES; i++)
+    {
+      beagle.writeBanks(words[i % words.length]);
+      beagle.readPins(PINS);
+    }
+
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+
+    for (int i = 0; i < ACCESSES; i++)
+    {
+      beagle.writeBanks(words[i % words.length]);
+      beagle.readPins(PINS);
+    }
+
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat("Allocated " + allocated + " bytes", allocated < ACCESSES, equalTo(true));
+    assertThat(beagle.readPins(PINS), equalTo((long) ((ACCESSES - 1) % words.length)));
+  }
+
+  @Test
+  public void activeLowAppliedByKernel()
+  {
+    beagle.initializePin(Pin.P9_22, Direction.OUT, true);
+
+    beagle.setPinValue(Pin.P9_22, PinValue.HIGH);
+    assertThat(chips[0].getLevel(2), equalTo(false));
+    assertThat(beagle.getPinValue(Pin.P9_22), equalTo(PinValue.HIGH));
+  }
+
+  @Test(timeOut = 5000)
+  public void edgesReadFromEvents() throws InterruptedException
+  {
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    PollValue pollValue = beagle.poll(Pin.P8_03);
+    assertThat(chips[1].getFlags(6), equalTo(LineRequest.FLAG_INPUT
+        | LineRequest.FLAG_EDGE_RISING | LineRequest.FLAG_EDGE_FALLING));
+
+    long before = System.nanoTime();
+    chips[1].drive(6, true);
+
+    while (pollValue.getValue() != PinValue.HIGH)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat("Kernel timestamp used", pollValue.getTimestamp() >= before
+        && pollValue.getTimestamp() <= System.nanoTime(), equalTo(true));
+    assertThat("Nothing polled", beagle.getPollDispatcher().getTargetCount(), equalTo(0));
+  }
+
+  @Test(timeOut = 5000)
+  public void edgesReadOnThreadOfRequest() throws InterruptedException
+  {
+    chips[1].useWatchThread();
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    PollValue pollValue = beagle.poll(Pin.P8_03);
+    chips[1].drive(6, true);
+
+    while (pollValue.getValue() != PinValue.HIGH)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat("Nothing polled", beagle.getPollDispatcher().getTargetCount(), equalTo(0));
+  }
+
+  @Test(timeOut = 5000)
+  public void linesPolledWhenEventsFail() throws InterruptedException
+  {
+    chips[1].failEvents();
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    PollValue pollValue = beagle.poll(Pin.P8_03);
+    chips[1].drive(6, true);
+
+    while (pollValue.getValue() != PinValue.HIGH)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat("Line polled", beagle.getPollDispatcher().getTargetCount(), equalTo(1));
+
+    chips[1].drive(6, false);
+
+    while (pollValue.getValue() != PinValue.LOW)
+    {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void linesReleasedWithLastPin()
+  {
+    beagle.initializePins(PINS, Direction.IN);
+
+    beagle.closePin(Pin.P8_03);
+    assertThat("Line still requested", chips[1].isRequested(6), equalTo(true));
+
+    beagle.closePin(Pin.P8_04);
+    assertThat("Line released", chips[1].isRequested(6), equalTo(false));
+
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+    assertThat(chips[1].isRequested(6), equalTo(true));
+  }
+
+  @Test
+  public void closedPinReusesOpenRequest()
+  {
+    beagle.initializePins(PINS, Direction.IN);
+
+    beagle.closePin(Pin.P8_03);
+    beagle.initializePin(Pin.P8_03, Direction.OUT);
+
+    assertThat("No second request for a busy line", chips[1].getRequestCount(), equalTo(1));
+    assertThat(chips[1].getFlags(6), equalTo(LineRequest.FLAG_OUTPUT));
+
+    beagle.closePin(Pin.P8_03);
+    beagle.closePin(Pin.P8_04);
+    assertThat("Line released", chips[1].isRequested(6), equalTo(false));
+  }
+
+  @Test
+  public void linesReleasedWhenGroupFails()
+  {
+    chips[1].rejectConfiguration(7);
+
+    try
+    {
+      beagle.initializePins(PINS, Direction.OUT);
+      fail("Configuration of P8_04 should fail");
+    } catch (BeagleIOException e)
+    {
+      // expected
+    }
+
+    assertThat("Unused request closed", chips[0].isRequested(2), equalTo(false));
+    assertThat("Still used by P8_03", chips[1].isRequested(6), equalTo(true));
+
+    beagle.closePin(Pin.P8_03);
+    assertThat("Request closed with the last Pin", chips[1].isRequested(7), equalTo(false));
+  }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.chardev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.chardev.GpioChip;
+import io.github.furti.beagleio.gpio.chardev.LineEvent;
+import io.github.furti.beagleio.gpio.chardev.LineRequest;
+
+/**
+ * A chip that behaves like the gpio v2 uAPI without a kernel. Each call that would be an ioctl is
+ * counted.
+ * 
+ * @author Daniel
+ *
+ */
+public class FakeGpioChip implements GpioChip
+{
+  private static final int LINES = 32;
+
+  private String name;
+  private int levels;
+  private long[] flags = new long[LINES];
+  private FakeLineRequest[] owners = new FakeLineRequest[LINES];
+  private volatile int ioctlCount;
+  private int requestCount;
+  private int rejectedLines;
+  private volatile boolean watchThread;
+  private volatile boolean failEvents;
+
+  public FakeGpioChip(String name)
+  {
+    this.name = name;
+  }
+
+  @Override
+  public String getName()
+  {
+    return name;
+  }
+
+  @Override
+  public int getLineCount()
+  {
+    return LINES;
+  }
+
+  @Override
+  public synchronized LineRequest requestLines(int[] offsets, String consumer)
+  {
+    FakeLineRequest request = new FakeLineRequest(offsets);
+
+    for (int offset : offsets)
+    {
+      if (owners[offset] != null)
+      {
+        throw new BeagleIOException("Line " + offset + " of " + name + " is busy", null);
+      }
+    }
+
+    for (int offset : offsets)
+    {
+      owners[offset] = request;
+      flags[offset] = LineRequest.FLAG_INPUT;
+    }
+
+    ioctlCount++;
+    requestCount++;
+
+    return request;
+  }
+
+  /**
+   * Changes the level of the line like an external signal would.
+   */
+  public synchronized void drive(int offset, boolean high)
+  {
+    int mask = 1 << offset;
+    boolean actual = (levels & mask) != 0;
+
+    if (actual == high)
+    {
+      return;
+    }
+
+    levels = high ? levels | mask : levels & ~mask;
+
+    FakeLineRequest owner = owners[offset];
+    boolean logical = high != isActiveLow(offset);
+    long edge = logical ? LineRequest.FLAG_EDGE_RISING : LineRequest.FLAG_EDGE_FALLING;
+
+    if (owner != null && (flags[offset] & edge) != 0)
+    {
+      owner.signal(offset, logical);
+    }
+  }
+
+  /**
+   * @return the physical level of the line.
+   */
+  public synchronized boolean getLevel(int offset)
+  {
+    return (levels & (1 << offset)) != 0;
+  }
+
+  /**
+   * Makes every configuration of the line fail, like the kernel rejecting invalid flags.
+   */
+  public synchronized void rejectConfiguration(int offset)
+  {
+    rejectedLines |= 1 << offset;
+  }
+
+  /**
+   * Makes the requests wait for their events on a thread like a native request, instead of
+   * providing an event channel.
+   */
+  public void useWatchThread()
+  {
+    watchThread = true;
+  }
+
+  /**
+   * Makes reading the events fail, like a request whose descriptor broke.
+   */
+  public void failEvents()
+  {
+    failEvents = true;
+  }
+
+  public synchronized long getFlags(int offset)
+  {
+    return flags[offset];
+  }
+
+  public synchronized boolean isRequested(int offset)
+  {
+    return owners[offset] != null;
+  }
+
+  public int getIoctlCount()
+  {
+    return ioctlCount;
+  }
+
+  public synchronized int getRequestCount()
+  {
+    return requestCount;
+  }
+
+  @Override
+  public void close()
+  {
+  }
+
+  private boolean isActiveLow(int offset)
+  {
+    return (flags[offset] & LineRequest.FLAG_ACTIVE_LOW) != 0;
+  }
+
+  private void setLogical(int offset, boolean high)
+  {
+    int mask = 1 << offset;
+
+    levels = high != isActiveLow(offset) ? levels | mask : levels & ~mask;
+  }
+
+  /**
+   * @author Daniel
+   *
+   */
+  private class FakeLineRequest implements LineRequest
+  {
+    private int[] offsets;
+    private Pipe pipe;
+    private Queue<long[]> events = new ConcurrentLinkedQueue<>();
+    private long lineSequence;
+
+    FakeLineRequest(int[] offsets)
+    {
+      this.offsets = offsets.clone();
+
+      try
+      {
+        pipe = Pipe.open();
+        pipe.sink().configureBlocking(false);
+      } catch (IOException e)
+      {
+        throw new BeagleIOException("Error opening pipe", e);
+      }
+    }
+
+    @Override
+    public int[] getOffsets()
+    {
+      return offsets.clone();
+    }
+
+    @Override
+    public void configure(long mask, long lineFlags, long values)
+    {
+      synchronized (FakeGpioChip.this)
+      {
+        ioctlCount++;
+
+        for (int i = 0; i < offsets.length; i++)
+        {
+          if ((mask & (1L << i)) != 0 && (rejectedLines & (1 << offsets[i])) != 0)
+          {
+            throw new BeagleIOException("Configuration of line " + offsets[i] + " rejected", null);
+          }
+        }
+
+        for (int i = 0; i < offsets.length; i++)
+        {
+          if ((mask & (1L << i)) != 0)
+          {
+            flags[offsets[i]] = lineFlags;
+
+            if ((lineFlags & FLAG_OUTPUT) != 0)
+            {
+              setLogical(offsets[i], (values & (1L << i)) != 0);
+            }
+          }
+        }
+      }
+    }
+
+    @Override
+    public long getValues(long mask)
+    {
+      synchronized (FakeGpioChip.this)
+      {
+        ioctlCount++;
+
+        long values = 0;
+
+        for (int i = 0; i < offsets.length; i++)
+        {
+          if ((mask & (1L << i)) != 0 && getLevel(offsets[i]) != isActiveLow(offsets[i]))
+          {
+            values |= 1L << i;
+          }
+        }
+
+        return values;
+      }
+    }
+
+    @Override
+    public void setValues(long mask, long bits)
+    {
+      synchronized (FakeGpioChip.this)
+      {
+        ioctlCount++;
+
+        for (int i = 0; i < offsets.length; i++)
+        {
+          if ((mask & (1L << i)) != 0)
+          {
+            if ((flags[offsets[i]] & FLAG_OUTPUT) == 0)
+            {
+              throw new BeagleIOException("Line " + offsets[i] + " is not an output", null);
+            }
+
+            setLogical(offsets[i], (bits & (1L << i)) != 0);
+          }
+        }
+      }
+    }
+
+    @Override
+    public SelectableChannel getEventChannel()
+    {
+      return watchThread ? null : pipe.source();
+    }
+
+    @Override
+    public Closeable watchEvents(Runnable onEvents, Runnable onFailure)
+    {
+      if (!watchThread)
+      {
+        return null;
+      }
+
+      Thread thread = new Thread(() -> {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+
+        try
+        {
+          while (pipe.source().read(buffer) > 0)
+          {
+            buffer.clear();
+            onEvents.run();
+          }
+        } catch (BeagleIOException e)
+        {
+          // Stops waiting like a native request
+        } catch (IOException e)
+        {
+          // The request was closed
+        }
+      }, "fake-line-events");
+      thread.setDaemon(true);
+      thread.start();
+
+      return () -> {
+        pipe.source().close();
+      };
+    }
+
+    @Override
+    public int readEvents(LineEvent[] target)
+    {
+      if (failEvents)
+      {
+        throw new BeagleIOException("Error reading the events", null);
+      }
+
+      int count = 0;
+      long[] event;
+
+      while (count < target.length && (event = events.poll()) != null)
+      {
+        target[count++].set((int) event[0], event[1] != 0, event[2], event[3]);
+      }
+
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      synchronized (FakeGpioChip.this)
+      {
+        for (int offset : offsets)
+        {
+          owners[offset] = null;
+          flags[offset] = 0;
+        }
+      }
+
+      pipe.sink().close();
+      pipe.source().close();
+    }
+
+    private void signal(int offset, boolean rising)
+    {
+      events.add(new long[] {offset, rising ? 1 : 0, System.nanoTime(), ++lineSequence});
+
+      try
+      {
+        pipe.sink().write(ByteBuffer.wrap(new byte[] {1}));
+      } catch (IOException e)
+      {
+        throw new BeagleIOException("Error signaling event", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.chardev;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.testng.SkipException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.chardev.GpioChip;
+import io.github.furti.beagleio.gpio.chardev.NativeGpioChipProvider;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * There is no GPIO chip outside of a BeagleBone, so only the errors of the ioctls are tested unless
+ * /dev/gpiochip0 exists.
+ * 
+ * @author Daniel
+ *
+ */
+public class NativeGpioChipProviderTest
+{
+
+  @BeforeMethod
+  public void checkSupport()
+  {
+    if (!NativeGpioChipProvider.isSupported())
+    {
+      throw new SkipException("Native library not available: " + NativeLibrary.getLoadFailure());
+    }
+  }
+
+  @Test
+  public void missingChipRejected() throws IOException
+  {
+    Path devices = Files.createTempDirectory("beagleio-dev");
+
+    try
+    {
+      new NativeGpioChipProvider(devices).open(0);
+      fail("There is no chip to open");
+    } catch (BeagleIOException e)
+    {
+      assertThat(e.getMessage(), containsString("gpiochip0"));
+    } finally
+    {
+      Files.delete(devices);
+    }
+  }
+
+  @Test
+  public void otherDeviceRejected() throws IOException
+  {
+    Path devices = Files.createTempDirectory("beagleio-dev");
+    Path chip = Files.createSymbolicLink(devices.resolve("gpiochip0"), Paths.get("/dev/null"));
+
+    try
+    {
+      new NativeGpioChipProvider(devices).open(0);
+      fail("/dev/null answers no GPIO ioctl");
+    } catch (BeagleIOException e)
+    {
+      assertThat(e.getMessage(), containsString("is no GPIO chip"));
+    } finally
+    {
+      Files.delete(chip);
+      Files.delete(devices);
+    }
+  }
+
+  @Test
+  public void chipOpened() throws IOException
+  {
+    if (!Files.exists(Paths.get("/dev/gpiochip0")))
+    {
+      throw new SkipException("No GPIO chip on this system");
+    }
+
+    try (GpioChip chip = new NativeGpioChipProvider().open(0))
+    {
+      assertThat("Lines reported", chip.getLineCount() > 0, equalTo(true));
+      assertThat("Name reported", chip.getName().isEmpty(), equalTo(false));
+    }
+  }
+}
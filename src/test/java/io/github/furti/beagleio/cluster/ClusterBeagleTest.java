@@ -0,0 +1,172 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.cluster;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.CountingBeagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.cluster.ClusterBeagle;
+
+/**
+ * @author Daniel
+ *
+ */
+public class ClusterBeagleTest
+{
+  private static final long BOARD_LATENCY_MILLIS = 200;
+
+  private CountingBeagle first;
+  private CountingBeagle second;
+  private ClusterBeagle cluster;
+
+  @BeforeMethod
+  public void setup()
+  {
+    first = new SlowBeagle();
+    second = new SlowBeagle();
+    cluster = new ClusterBeagle().addBoard("first", first).addBoard("second", second)
+        .route(Pin.P8_03, "first").route(Pin.P8_04, "second", Pin.P8_03)
+        .route(Pin.P8_05, "first");
+  }
+
+  @AfterMethod
+  public void cleanup()
+  {
+    cluster.release();
+  }
+
+  @Test
+  public void pinsRouted()
+  {
+    cluster.initializePin(Pin.P8_03, Direction.OUT);
+    cluster.initializePin(Pin.P8_04, Direction.OUT);
+
+    cluster.setPinValue(Pin.P8_04, PinValue.HIGH);
+
+    assertThat(second.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+    assertThat(first.getPinValue(Pin.P8_03), equalTo(PinValue.LOW));
+    assertThat(cluster.getPinValue(Pin.P8_04), equalTo(PinValue.HIGH));
+  }
+
+  @Test
+  public void groupSplitAndMerged()
+  {
+    PinGroup group = PinGroup.fromPins(Pin.P8_04, Pin.P8_03, Pin.P8_05);
+
+    cluster.initializePins(group, Direction.OUT);
+    cluster.writePins(group, 0b101);
+
+    assertThat(second.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+    assertThat(first.getPinValue(Pin.P8_03), equalTo(PinValue.LOW));
+    assertThat(first.getPinValue(Pin.P8_05), equalTo(PinValue.HIGH));
+    assertThat(cluster.readPins(group), equalTo(0b101L));
+  }
+
+  @Test
+  public void groupWriteTakesSlowestBoard()
+  {
+    PinGroup group = PinGroup.fromPins(Pin.P8_03, Pin.P8_04);
+
+    cluster.initializePins(group, Direction.OUT);
+
+    long start = System.nanoTime();
+    cluster.setPinsValue(group, PinValue.HIGH);
+    long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("Boards should be written in parallel, took " + duration + "ms",
+        duration < 2 * BOARD_LATENCY_MILLIS);
+    assertThat(first.getWrites(Pin.P8_03), equalTo(1L));
+    assertThat(second.getWrites(Pin.P8_03), equalTo(1L));
+
+    for (ClusterBeagle.Board board : cluster.getBoards())
+    {
+      assertTrue(board.getLastLatencyNanos() >= TimeUnit.MILLISECONDS
+          .toNanos(BOARD_LATENCY_MILLIS));
+    }
+  }
+
+  @Test
+  public void boardFailuresReported()
+  {
+    cluster.initializePin(Pin.P8_03, Direction.OUT);
+
+    try
+    {
+      // The Pin of the second board was not initialized
+      cluster.writeBanks(new BankMask().set(Pin.P8_03, PinValue.HIGH).set(Pin.P8_04,
+          PinValue.HIGH));
+      fail("The write should fail on the second board");
+    } catch (BeagleIOException e)
+    {
+      assertThat(e.getMessage(), containsString("second"));
+      assertThat(e.getSuppressed().length, equalTo(1));
+    }
+
+    assertThat(first.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+    assertThat(cluster.getBoard("first").getFailures(), equalTo(0L));
+    assertThat(cluster.getBoard("second").getFailures(), equalTo(1L));
+    assertThat(cluster.getBoard("second").getLastFailure(), notNullValue());
+  }
+
+  @Test(expectedExceptions = BeagleIOException.class)
+  public void unroutedPinRejected()
+  {
+    cluster.initializePin(Pin.P9_12, Direction.OUT);
+  }
+
+  /**
+   * A board that needs some time for each group write, like a board at the other end of a network.
+   * 
+   * @author Daniel
+   *
+   */
+  private static class SlowBeagle extends CountingBeagle
+  {
+    public SlowBeagle()
+    {
+      super(0);
+    }
+
+    @Override
+    public void writeBanks(BankMask banks)
+    {
+      try
+      {
+        Thread.sleep(BOARD_LATENCY_MILLIS);
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+
+      super.writeBanks(banks);
+    }
+  }
+}
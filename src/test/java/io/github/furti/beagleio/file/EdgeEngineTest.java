@@ -0,0 +1,217 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.file;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.PollDispatcher;
+import io.github.furti.beagleio.gpio.file.EdgeEngine;
+
+/**
+ * @author Daniel
+ *
+ */
+public class EdgeEngineTest
+{
+  private EdgeEngine engine;
+
+  @BeforeMethod
+  public void setup() throws IOException
+  {
+    engine = new EdgeEngine();
+  }
+
+  @AfterMethod
+  public void cleanup() throws IOException
+  {
+    engine.close();
+  }
+
+  @Test
+  public void callbackExecutedOnEdge() throws IOException, InterruptedException
+  {
+    Pipe pipe = Pipe.open();
+    Semaphore edges = new Semaphore(0);
+
+    engine.register(pipe.source(), edges::release);
+
+    signal(pipe);
+    assertThat("First edge", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+
+    signal(pipe);
+    assertThat("Second edge", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+  }
+
+  @Test
+  public void multipleChannelsWithOneEngine() throws IOException, InterruptedException
+  {
+    Pipe first = Pipe.open();
+    Pipe second = Pipe.open();
+    Semaphore firstEdges = new Semaphore(0);
+    Semaphore secondEdges = new Semaphore(0);
+
+    engine.register(first.source(), firstEdges::release);
+    engine.register(second.source(), secondEdges::release);
+
+    signal(second);
+    assertThat("Second channel", secondEdges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+    assertThat("First channel", firstEdges.availablePermits(), equalTo(0));
+
+    signal(first);
+    assertThat("First channel", firstEdges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+  }
+
+  @Test
+  public void noCallbackAfterCancel() throws IOException, InterruptedException
+  {
+    Pipe pipe = Pipe.open();
+    Semaphore edges = new Semaphore(0);
+
+    EdgeEngine.Registration registration = engine.register(pipe.source(), edges::release);
+
+    signal(pipe);
+    assertThat("Edge before cancel", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+
+    registration.cancel();
+
+    signal(pipe);
+    assertThat("Edge after cancel", edges.tryAcquire(200, TimeUnit.MILLISECONDS), equalTo(false));
+  }
+
+  @Test
+  public void failedChannelPolled() throws IOException, InterruptedException
+  {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    PollDispatcher dispatcher = new PollDispatcher(executor, 10, TimeUnit.MILLISECONDS);
+
+    try (EdgeEngine fallbackEngine = new EdgeEngine(dispatcher))
+    {
+      Pipe failing = Pipe.open();
+      Pipe working = Pipe.open();
+      Semaphore polls = new Semaphore(0);
+      Semaphore edges = new Semaphore(0);
+
+      EdgeEngine.Registration registration =
+          fallbackEngine.register(failing.source(), polls::release);
+      fallbackEngine.register(working.source(), edges::release);
+
+      // The source reports the end of the stream, so the channel can not signal edges anymore
+      failing.sink().close();
+
+      assertThat("Polled after failure", polls.tryAcquire(3, 1, TimeUnit.SECONDS), equalTo(true));
+      assertThat(registration.isPolled(), equalTo(true));
+      assertThat(fallbackEngine.getFailure(), notNullValue());
+      assertThat(fallbackEngine.getFallbackCount(), equalTo(1L));
+
+      signal(working);
+      assertThat("Other channel", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+
+      registration.cancel();
+      assertThat(dispatcher.getTargetCount(), equalTo(0));
+    } finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void failingCallbackDoesNotStopEngine() throws IOException, InterruptedException
+  {
+    Pipe failing = Pipe.open();
+    Pipe working = Pipe.open();
+    Semaphore failures = new Semaphore(0);
+    Semaphore edges = new Semaphore(0);
+
+    engine.register(failing.source(), () -> {
+      failures.release();
+      throw new IllegalStateException("Listener failed");
+    });
+    engine.register(working.source(), edges::release);
+
+    signal(failing);
+    assertThat("Failing callback", failures.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+
+    signal(working);
+    assertThat("Other channel", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+
+    signal(failing);
+    assertThat("Same channel", failures.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+
+    // The failure is recorded after the callback released the permit
+    long deadline = System.currentTimeMillis() + 1000;
+
+    while (engine.getCallbackFailureCount() < 2 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat(engine.getCallbackFailureCount(), equalTo(2L));
+    assertThat(engine.getLastCallbackFailure() instanceof IllegalStateException, equalTo(true));
+  }
+
+  @Test
+  public void unreadablePinPolled() throws IOException, InterruptedException
+  {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    PollDispatcher dispatcher = new PollDispatcher(executor, 10, TimeUnit.MILLISECONDS);
+
+    try (EdgeEngine fallbackEngine = new EdgeEngine(dispatcher))
+    {
+      Pipe pipe = Pipe.open();
+      Semaphore calls = new Semaphore(0);
+      AtomicBoolean fail = new AtomicBoolean(true);
+
+      EdgeEngine.Registration registration = fallbackEngine.register(pipe.source(), () -> {
+        calls.release();
+
+        if (fail.getAndSet(false))
+        {
+          throw new BeagleIOException("Pin not readable", null);
+        }
+      });
+
+      signal(pipe);
+      assertThat("Polled after failure", calls.tryAcquire(3, 1, TimeUnit.SECONDS), equalTo(true));
+      assertThat(registration.isPolled(), equalTo(true));
+      assertThat(fallbackEngine.getCallbackFailureCount(), equalTo(1L));
+
+      registration.cancel();
+      assertThat(dispatcher.getTargetCount(), equalTo(0));
+    } finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private void signal(Pipe pipe) throws IOException
+  {
+    pipe.sink().write(ByteBuffer.wrap(new byte[] {1}));
+  }
+}
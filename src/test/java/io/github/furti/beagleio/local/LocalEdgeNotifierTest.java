@@ -0,0 +1,98 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.local;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.gpio.local.LocalEdgeNotifier;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * There is no GPIO sysfs outside of a BeagleBone. But /proc/self/mounts signals POLLPRI like a value
+ * file when the mounts change, so the native wait can be tested by mounting a tmpfs.
+ * 
+ * @author Daniel
+ *
+ */
+public class LocalEdgeNotifierTest
+{
+
+  @Test
+  public void pollPriSignaled() throws IOException, InterruptedException
+  {
+    if (!LocalEdgeNotifier.isSupported())
+    {
+      throw new SkipException("Native library not available: " + NativeLibrary.getLoadFailure());
+    }
+
+    Path mountPoint = Files.createTempDirectory("beagleio-mount");
+
+    try (LocalEdgeNotifier notifier = new LocalEdgeNotifier())
+    {
+      Semaphore edges = new Semaphore(0);
+
+      // The callback is executed on the notifier thread. A failing listener must not stop it.
+      notifier.register(Paths.get("/proc/self/mounts"), () -> {
+        edges.release();
+        throw new IllegalStateException("Listener failed");
+      });
+      assertThat("No edge before the change", edges.tryAcquire(200, TimeUnit.MILLISECONDS),
+          equalTo(false));
+
+      if (!run("mount", "-t", "tmpfs", "none", mountPoint.toString()))
+      {
+        throw new SkipException("Mounting a tmpfs is not permitted");
+      }
+
+      try
+      {
+        assertThat("Edge after mount", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+      } finally
+      {
+        run("umount", mountPoint.toString());
+      }
+
+      assertThat("Edge after umount", edges.tryAcquire(1, TimeUnit.SECONDS), equalTo(true));
+      assertThat(notifier.getFailure() == null, equalTo(true));
+      assertThat(notifier.getCallbackFailureCount() >= 1, equalTo(true));
+    } finally
+    {
+      Files.delete(mountPoint);
+    }
+  }
+
+  private boolean run(String... command) throws IOException, InterruptedException
+  {
+    try
+    {
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+      return process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+    } catch (IOException e)
+    {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.memory;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.DogHouse;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.memory.InMemoryBeagle;
+
+/**
+ * @author Daniel
+ *
+ */
+public class InMemoryBeagleTest
+{
+  private InMemoryBeagle beagle;
+
+  @BeforeMethod
+  public void setup()
+  {
+    beagle = new InMemoryBeagle();
+  }
+
+  @AfterMethod
+  public void cleanup()
+  {
+    beagle.release();
+  }
+
+  @Test
+  public void calledByDogHouse()
+  {
+    System.setProperty(DogHouse.DOG_CLASS_PROPERTY, "inmemory");
+
+    try
+    {
+      assertThat(DogHouse.callDog(), instanceOf(InMemoryBeagle.class));
+    } finally
+    {
+      System.clearProperty(DogHouse.DOG_CLASS_PROPERTY);
+    }
+  }
+
+  @Test
+  public void outputsWritten()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT_HIGH);
+    assertThat(beagle.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+
+    PinGroup group = PinGroup.fromPins(Pin.P8_04, Pin.P8_05);
+
+    beagle.initializePins(group, Direction.OUT);
+    beagle.writePins(group, 0b10);
+
+    assertThat(beagle.readPins(group), equalTo(0b10L));
+  }
+
+  @Test
+  public void activeLowInverted()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT_HIGH, true);
+    beagle.initializePin(Pin.P8_04, Direction.IN, true);
+
+    // Like the sysfs, the initial value of the direction is the raw level
+    assertThat(beagle.getPinValue(Pin.P8_03), equalTo(PinValue.LOW));
+    assertThat(beagle.getPinValue(Pin.P8_04), equalTo(PinValue.HIGH));
+
+    beagle.drive(Pin.P8_04, PinValue.HIGH);
+    assertThat(beagle.getPinValue(Pin.P8_04), equalTo(PinValue.LOW));
+  }
+
+  @Test(expectedExceptions = BeagleIOException.class)
+  public void inputsNotWritable()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+    beagle.setPinValue(Pin.P8_03, PinValue.HIGH);
+  }
+
+  @Test(expectedExceptions = BeagleIOException.class)
+  public void outputsNotDriven()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT);
+    beagle.drive(Pin.P8_03, PinValue.HIGH);
+  }
+
+  @Test
+  public void changesPolled()
+  {
+    AtomicInteger changes = new AtomicInteger();
+
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    PollValue value = beagle.poll(Pin.P8_03);
+    value.addChangeListener(changes::incrementAndGet);
+
+    beagle.drive(Pin.P8_03, PinValue.HIGH);
+    beagle.drive(Pin.P8_03, PinValue.HIGH);
+    beagle.drive(Pin.P8_03, PinValue.LOW);
+
+    assertThat(value.getValue(), equalTo(PinValue.LOW));
+    assertThat(value.getSequence(), equalTo(2L));
+    assertThat(changes.get(), equalTo(2));
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.mmap;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.testng.SkipException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.gpio.mmap.GpioRegisters;
+import io.github.furti.beagleio.gpio.mmap.MemoryMappedBeagle;
+import io.github.furti.beagleio.gpio.util.NativeLibrary;
+
+/**
+ * There is no /dev/mem with GPIO registers outside of a BeagleBone. But /dev/zero is a character
+ * device that can be mapped shared, so it shows that devices are mapped without growing them.
+ * 
+ * @author Daniel
+ *
+ */
+public class GpioRegistersTest
+{
+  private static final Path DEVICE = Paths.get("/dev/zero");
+  /**
+   * A shared mapping of /dev/zero is a new object with the size of the mapping, so only offset 0 is
+   * valid. But each mapping is a separate object, so the banks do not overlap.
+   */
+  private static final long[] BANK_ADDRESSES = {0, 0, 0, 0};
+
+  @BeforeMethod
+  public void checkDevice()
+  {
+    if (!Files.exists(DEVICE))
+    {
+      throw new SkipException(DEVICE + " does not exist");
+    }
+
+    if (!NativeLibrary.isAvailable())
+    {
+      throw new SkipException("Native library not available: " + NativeLibrary.getLoadFailure());
+    }
+  }
+
+  @Test
+  public void registersMappedFromDevice() throws IOException
+  {
+    try (GpioRegisters registers = new GpioRegisters(DEVICE, BANK_ADDRESSES))
+    {
+      registers.write(1, GpioRegisters.DATAOUT, 0x12345678);
+      registers.set(2, 1 << 3);
+      registers.clear(3, 1 << 4);
+
+      assertThat(registers.read(1, GpioRegisters.DATAOUT), equalTo(0x12345678));
+      assertThat(registers.read(2, GpioRegisters.SETDATAOUT), equalTo(1 << 3));
+      assertThat(registers.read(3, GpioRegisters.CLEARDATAOUT), equalTo(1 << 4));
+      assertThat("Banks mapped separately", registers.read(0, GpioRegisters.DATAOUT), equalTo(0));
+    }
+  }
+
+  @Test
+  public void beagleOnDevice()
+  {
+    MemoryMappedBeagle beagle = new MemoryMappedBeagle(DEVICE, BANK_ADDRESSES);
+
+    try
+    {
+      beagle.initializePin(Pin.P8_03, Direction.IN);
+
+      assertThat(beagle.getRegisters().read(1, GpioRegisters.OE), equalTo(1 << 6));
+    } finally
+    {
+      beagle.release();
+    }
+  }
+}
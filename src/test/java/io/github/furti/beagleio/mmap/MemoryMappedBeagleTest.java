@@ -0,0 +1,243 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.mmap;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.mmap.GpioRegisters;
+import io.github.furti.beagleio.gpio.mmap.MemoryMappedBeagle;
+
+/**
+ * Runs the {@link MemoryMappedBeagle} against a file laid out like the register space of four
+ * banks.
+ * 
+ * @author Daniel
+ *
+ */
+public class MemoryMappedBeagleTest
+{
+  private static final long[] BANK_ADDRESSES = {0, GpioRegisters.BANK_SIZE,
+      2 * GpioRegisters.BANK_SIZE, 3 * GpioRegisters.BANK_SIZE};
+
+  private static final int READS = 10000;
+
+  private Path registerFile;
+  private MemoryMappedBeagle beagle;
+
+  @BeforeMethod
+  public void setup() throws IOException
+  {
+    registerFile = Files.createTempFile("beagleio", ".registers");
+
+    try (FileChannel channel = FileChannel.open(registerFile, StandardOpenOption.WRITE))
+    {
+      channel.write(ByteBuffer.allocate(BANK_ADDRESSES.length * GpioRegisters.BANK_SIZE));
+
+      // After a reset all Pins are inputs
+      for (int bank = 0; bank < BANK_ADDRESSES.length; bank++)
+      {
+        writeRegister(channel, bank, GpioRegisters.OE, 0xFFFFFFFF);
+      }
+    }
+
+    beagle = new MemoryMappedBeagle(registerFile, BANK_ADDRESSES);
+  }
+
+  @AfterMethod
+  public void release() throws IOException
+  {
+    beagle.release();
+    Files.delete(registerFile);
+  }
+
+  @Test
+  public void bankAndBitFromKernelNumber()
+  {
+    assertThat(Pin.P8_03.getBank(), equalTo(1));
+    assertThat(Pin.P8_03.getBankMask(), equalTo(1 << 6));
+    assertThat(Pin.P9_22.getBank(), equalTo(0));
+    assertThat(Pin.P9_22.getBankMask(), equalTo(1 << 2));
+    assertThat(Pin.P9_25.getBank(), equalTo(3));
+    assertThat(Pin.P9_25.getBankMask(), equalTo(1 << 21));
+  }
+
+  @Test
+  public void outputEnabledWithInitialValue() throws IOException
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT_HIGH);
+
+    assertThat(readRegister(1, GpioRegisters.SETDATAOUT), equalTo(1 << 6));
+    assertThat(readRegister(1, GpioRegisters.OE), equalTo(~(1 << 6)));
+    assertThat("Other banks untouched", readRegister(0, GpioRegisters.OE), equalTo(0xFFFFFFFF));
+
+    beagle.closePin(Pin.P8_03);
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    assertThat(readRegister(1, GpioRegisters.OE), equalTo(0xFFFFFFFF));
+  }
+
+  @Test
+  public void valueWrittenToSetAndClearRegister() throws IOException
+  {
+    beagle.initializePin(Pin.P9_25, Direction.OUT);
+
+    beagle.setPinValue(Pin.P9_25, PinValue.HIGH);
+    assertThat(readRegister(3, GpioRegisters.SETDATAOUT), equalTo(1 << 21));
+
+    beagle.setPinValue(Pin.P9_25, PinValue.LOW);
+    assertThat(readRegister(3, GpioRegisters.CLEARDATAOUT), equalTo(1 << 21));
+  }
+
+  @Test
+  public void activeLowInvertsValues() throws IOException
+  {
+    beagle.initializePin(Pin.P9_22, Direction.OUT, true);
+
+    beagle.setPinValue(Pin.P9_22, PinValue.HIGH);
+    assertThat(readRegister(0, GpioRegisters.CLEARDATAOUT), equalTo(1 << 2));
+
+    // Read the value from DATAIN instead of the shadow state
+    beagle.setCached(Pin.P9_22, false);
+    beagle.getRegisters().write(0, GpioRegisters.DATAIN, 1 << 2);
+    assertThat(beagle.getPinValue(Pin.P9_22), equalTo(PinValue.LOW));
+  }
+
+  @Test
+  public void groupWrittenWithOneStorePerBank() throws IOException
+  {
+    // P8_03 and P8_04 are in bank 1, P9_22 in bank 0
+    PinGroup pins = PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P9_22);
+    beagle.initializePins(pins, Direction.OUT);
+    beagle.setPinValue(Pin.P8_04, PinValue.HIGH);
+    beagle.getRegisters().write(1, GpioRegisters.DATAOUT, 0xF0000000);
+
+    beagle.writePins(pins, 0b101);
+
+    assertThat("Mixed values in bank 1", readRegister(1, GpioRegisters.DATAOUT),
+        equalTo(0xF0000000 | 1 << 6));
+    assertThat("Only high values in bank 0", readRegister(0, GpioRegisters.SETDATAOUT),
+        equalTo(1 << 2));
+
+    beagle.setPinsValue(pins, PinValue.LOW);
+
+    assertThat("P8_04 is already low", readRegister(1, GpioRegisters.CLEARDATAOUT),
+        equalTo(1 << 6));
+    assertThat(readRegister(0, GpioRegisters.CLEARDATAOUT), equalTo(1 << 2));
+    assertThat(beagle.getSkippedWrites(), equalTo(1L));
+  }
+
+  @Test
+  public void groupReadFromDataIn()
+  {
+    PinGroup pins = PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P9_22);
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+    beagle.initializePin(Pin.P8_04, Direction.IN, true);
+    beagle.initializePin(Pin.P9_22, Direction.IN);
+
+    beagle.getRegisters().write(1, GpioRegisters.DATAIN, 1 << 6 | 1 << 7);
+    beagle.getRegisters().write(0, GpioRegisters.DATAIN, 1 << 2);
+
+    assertThat(beagle.readPins(pins), equalTo(0b101L));
+  }
+
+  @Test
+  public void groupReadDoesNotAllocate()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+    {
+      throw new SkipException("Allocations can not be measured on this JVM");
+    }
+
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+    PinGroup pins = PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P9_22);
+    beagle.initializePins(pins, Direction.IN);
+
+    for (int i = 0; i < READS; i++)
+    {
+      beagle.readPins(pins);
+    }
+
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+
+    for (int i = 0; i < READS; i++)
+    {
+      beagle.readPins(pins);
+    }
+
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat("Allocated " + allocated + " bytes", allocated < READS, equalTo(true));
+  }
+
+  @Test(timeOut = 5000)
+  public void pollReadsDataIn() throws InterruptedException
+  {
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    PollValue pollValue = beagle.poll(Pin.P8_03);
+    assertThat(pollValue.getValue(), equalTo(PinValue.LOW));
+
+    beagle.getRegisters().write(1, GpioRegisters.DATAIN, 1 << 6);
+
+    while (pollValue.getValue() != PinValue.HIGH)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat(pollValue.getSequence(), equalTo(1L));
+  }
+
+  private int readRegister(int bank, int register) throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+    try (FileChannel channel = FileChannel.open(registerFile, StandardOpenOption.READ))
+    {
+      channel.read(buffer, BANK_ADDRESSES[bank] + register);
+    }
+
+    return buffer.getInt(0);
+  }
+
+  private void writeRegister(FileChannel channel, int bank, int register, int value)
+      throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value);
+
+    channel.write(buffer, BANK_ADDRESSES[bank] + register);
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.multicast;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.CountingBeagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.multicast.BoardSnapshot;
+import io.github.furti.beagleio.gpio.multicast.BoardStatePublisher;
+import io.github.furti.beagleio.gpio.multicast.MulticastBeagle;
+
+/**
+ * @author Daniel
+ *
+ */
+public class MulticastBeagleTest
+{
+  private NetworkInterface loopback;
+  private InetSocketAddress group;
+  private MulticastBeagle beagle;
+
+  @BeforeMethod
+  public void setup() throws IOException
+  {
+    loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+
+    try (DatagramSocket socket = new DatagramSocket(0))
+    {
+      group = new InetSocketAddress(InetAddress.getByName("239.255.66.66"), socket.getLocalPort());
+    }
+
+    beagle = new MulticastBeagle(group, loopback);
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    beagle.release();
+  }
+
+  @Test
+  public void snapshotsPublished() throws IOException, InterruptedException
+  {
+    CountingBeagle target = new CountingBeagle(0);
+    PinGroup pins = PinGroup.fromPins(Pin.P8_04, Pin.P8_05);
+    target.initializePins(pins, Direction.IN);
+    DefaultPollValue targetValue = (DefaultPollValue) target.poll(Pin.P8_04);
+
+    beagle.initializePin(Pin.P8_04, Direction.IN);
+    beagle.initializePin(Pin.P8_05, Direction.IN, true);
+
+    try (BoardStatePublisher publisher =
+        new BoardStatePublisher(target, pins, group, loopback, 50))
+    {
+      publisher.start();
+      waitFor(() -> beagle.getReceivedSnapshots() > 0);
+
+      assertThat(beagle.getPinValue(Pin.P8_04), equalTo(PinValue.LOW));
+      assertThat(beagle.getPinValue(Pin.P8_05), equalTo(PinValue.HIGH));
+
+      // Published on change, long before the next periodic snapshot
+      PollValue value = beagle.poll(Pin.P8_04);
+      targetValue.setValue(PinValue.HIGH);
+      waitFor(() -> value.getValue() == PinValue.HIGH);
+    } finally
+    {
+      target.release();
+    }
+  }
+
+  @Test
+  public void gapsDetected() throws IOException, InterruptedException
+  {
+    beagle.initializePin(Pin.P8_04, Direction.IN);
+
+    try (DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET))
+    {
+      channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, loopback);
+
+      send(channel, 1, 1, PinValue.LOW);
+      send(channel, 1, 2, PinValue.LOW);
+      send(channel, 1, 5, PinValue.HIGH);
+      waitFor(() -> beagle.getSequence() == 5);
+
+      // Late, so it is ignored
+      send(channel, 1, 4, PinValue.LOW);
+      // A restarted publisher
+      send(channel, 2, 1, PinValue.LOW);
+      waitFor(() -> beagle.getSequence() == 1);
+
+      assertThat(beagle.getReceivedSnapshots(), equalTo(4L));
+      assertThat(beagle.getLostSnapshots(), equalTo(2L));
+      assertThat(beagle.getPinValue(Pin.P8_04), equalTo(PinValue.LOW));
+    }
+  }
+
+  @Test(expectedExceptions = BeagleIOException.class)
+  public void readOnly()
+  {
+    beagle.initializePin(Pin.P8_04, Direction.OUT);
+  }
+
+  private void send(DatagramChannel channel, int session, long sequence, PinValue value)
+      throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(BoardSnapshot.SIZE);
+
+    new BoardSnapshot().setHeader(session, sequence).setValue(Pin.P8_04, value).encode(buffer);
+    buffer.flip();
+    channel.send(buffer, group);
+  }
+
+  private void waitFor(BooleanSupplier condition) throws InterruptedException
+  {
+    long end = System.currentTimeMillis() + 5000;
+
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < end)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat(condition.getAsBoolean(), equalTo(true));
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.pwm;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BankMask;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.memory.InMemoryBeagle;
+import io.github.furti.beagleio.gpio.pwm.SoftwarePwm;
+
+/**
+ * @author Daniel
+ *
+ */
+public class SoftwarePwmTest
+{
+  private static final long PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+  private WriteCountingBeagle beagle;
+  private SoftwarePwm pwm;
+
+  @BeforeMethod
+  public void setup()
+  {
+    beagle = new WriteCountingBeagle();
+    beagle.initializePins(PinGroup.fromPins(Pin.P8_03, Pin.P8_04), Direction.OUT);
+    pwm = new SoftwarePwm(beagle);
+  }
+
+  @AfterMethod
+  public void cleanup()
+  {
+    pwm.close();
+    beagle.release();
+  }
+
+  @Test(timeOut = 10000)
+  public void signalGenerated() throws InterruptedException
+  {
+    AtomicInteger rising = new AtomicInteger();
+    AtomicLong firstRising = new AtomicLong();
+    AtomicLong lastRising = new AtomicLong();
+
+    // The listener is executed by the write, so it sees when each rising edge was written
+    beagle.poll(Pin.P8_03).addChangeListener(() -> {
+      if (beagle.poll(Pin.P8_03).getValue() == PinValue.HIGH)
+      {
+        long now = System.nanoTime();
+        firstRising.compareAndSet(0, now);
+        lastRising.set(now);
+        rising.incrementAndGet();
+      }
+    });
+
+    SoftwarePwm.Channel channel = pwm.add(Pin.P8_03, PERIOD_NANOS, 0.25);
+    long start = System.nanoTime();
+    pwm.start();
+
+    Thread.sleep(200);
+    pwm.close();
+    long wallNanos = System.nanoTime() - start;
+
+    long cycles = channel.getCycles();
+    long skipped = channel.getSkippedCycles();
+
+    assertTrue("Cycles in 200ms: " + cycles + " + " + skipped + " skipped",
+        cycles + skipped >= 50 && cycles <= 101);
+    assertThat((long) rising.get(), equalTo(cycles));
+
+    double achieved = channel.getAchievedFrequency();
+    double observed = (rising.get() - 1) * 1e9 / (lastRising.get() - firstRising.get());
+
+    assertTrue("Achieved frequency: " + achieved + ", observed " + observed,
+        Math.abs(achieved - observed) < observed * 0.05);
+    assertTrue("Achieved frequency: " + achieved + " with " + rising.get() + " edges in "
+        + wallNanos + "ns", achieved >= (rising.get() - 1) * 1e9 / wallNanos && achieved <= 510);
+    assertThat(pwm.getFailure(), nullValue());
+  }
+
+  @Test(timeOut = 10000)
+  public void dutyCycleChanged() throws InterruptedException
+  {
+    SoftwarePwm.Channel channel = pwm.add(Pin.P8_03, PERIOD_NANOS, 0.5);
+    pwm.start();
+
+    channel.setDutyCycle(1);
+    Thread.sleep(20);
+    int writes = beagle.writes.get();
+    Thread.sleep(20);
+
+    assertThat(beagle.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+    assertThat("The output does not change anymore", beagle.writes.get(), equalTo(writes));
+
+    channel.setDutyCycle(0);
+    Thread.sleep(20);
+
+    assertThat(beagle.getPinValue(Pin.P8_03), equalTo(PinValue.LOW));
+  }
+
+  @Test(timeOut = 10000)
+  public void coincidentEdgesWrittenTogether() throws InterruptedException
+  {
+    SoftwarePwm.Channel first = pwm.add(Pin.P8_03, PERIOD_NANOS, 0.5);
+    SoftwarePwm.Channel second = pwm.add(Pin.P8_04, PERIOD_NANOS, 0.5);
+    pwm.start();
+
+    Thread.sleep(100);
+    pwm.close();
+
+    long cycles = first.getCycles() + first.getSkippedCycles();
+
+    assertThat(second.getCycles() + second.getSkippedCycles(), equalTo(cycles));
+    // Two edges per period and the final write that turns the outputs off
+    assertTrue("Writes for " + cycles + " cycles: " + beagle.writes.get(),
+        beagle.writes.get() <= 2 * cycles + 1);
+    assertThat(beagle.getPinValue(Pin.P8_03), equalTo(PinValue.LOW));
+    assertThat(beagle.getPinValue(Pin.P8_04), equalTo(PinValue.LOW));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void invalidDutyCycleRejected()
+  {
+    pwm.add(Pin.P8_03, PERIOD_NANOS, 1.5);
+  }
+
+  /**
+   * Counts the calls to writeBanks.
+   */
+  private static class WriteCountingBeagle extends InMemoryBeagle
+  {
+    private AtomicInteger writes = new AtomicInteger();
+
+    @Override
+    public void writeBanks(BankMask banks)
+    {
+      writes.incrementAndGet();
+      super.writeBanks(banks);
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.pwm;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.gpio.pwm.HardwarePwm;
+import io.github.furti.beagleio.gpio.pwm.HardwarePwmChannel;
+import io.github.furti.beagleio.gpio.pwm.TemporaryHardwarePwm;
+import io.github.furti.beagleio.gpio.util.FileUtils;
+
+/**
+ * @author Daniel
+ *
+ */
+public class TemporaryHardwarePwmTest
+{
+  private Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"), "beagleio-pwm");
+  private HardwarePwm pwm = null;
+
+  @Test
+  public void channelOpened() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    HardwarePwmChannel channel = pwm.open(1, 0, 20000000);
+    Path channelDirectory = tmpDir.resolve("pwmchip1").resolve("pwm0");
+
+    hasContent(channelDirectory.resolve("period"), "20000000", "Period: ");
+    hasContent(channelDirectory.resolve("duty_cycle"), "0", "Duty cycle: ");
+    hasContent(channelDirectory.resolve("enable"), "0", "Enable: ");
+    assertThat(channel.getDutyCycle(), equalTo(0.0));
+  }
+
+  @Test
+  public void dutyCycleWritten() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    HardwarePwmChannel channel = pwm.open(0, 1, 1000000);
+    Path dutyCycleFile = tmpDir.resolve("pwmchip0").resolve("pwm1").resolve("duty_cycle");
+
+    channel.setDutyCycle(0.25);
+    hasContent(dutyCycleFile, "250000", "Quarter: ");
+
+    channel.setDutyNanos(7);
+    hasContent(dutyCycleFile, "7", "Shorter value truncated: ");
+
+    channel.setDutyCycle(1);
+    hasContent(dutyCycleFile, "1000000", "Full: ");
+    assertThat(channel.getDutyNanos(), equalTo(1000000L));
+
+    try
+    {
+      channel.setDutyNanos(1000001);
+      fail("Duty cycle longer than the period should not be accepted");
+    } catch (IllegalArgumentException e)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void periodChangeKeepsDutyCycle() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    HardwarePwmChannel channel = pwm.open(0, 0, 1000000);
+    Path channelDirectory = tmpDir.resolve("pwmchip0").resolve("pwm0");
+
+    channel.setDutyCycle(0.5);
+
+    channel.setPeriodNanos(100000);
+    hasContent(channelDirectory.resolve("period"), "100000", "Shorter period: ");
+    hasContent(channelDirectory.resolve("duty_cycle"), "50000", "Shorter duty cycle: ");
+
+    channel.setPeriodNanos(4000000);
+    hasContent(channelDirectory.resolve("period"), "4000000", "Longer period: ");
+    hasContent(channelDirectory.resolve("duty_cycle"), "2000000", "Longer duty cycle: ");
+  }
+
+  @Test
+  public void channelClosed() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    HardwarePwmChannel channel = pwm.open(2, 0, 1000000);
+    Path channelDirectory = tmpDir.resolve("pwmchip2").resolve("pwm0");
+
+    channel.enable();
+    hasContent(channelDirectory.resolve("enable"), "1", "Enabled: ");
+
+    channel.close();
+    assertThat("Channel directory removed", Files.exists(channelDirectory), equalTo(false));
+
+    try
+    {
+      channel.setDutyCycle(0.5);
+      fail("Closed channel should not be written");
+    } catch (BeagleIOException e)
+    {
+      // expected
+    }
+
+    // The channel can be opened again after it was closed
+    pwm.open(2, 0, 1000000);
+  }
+
+  @Test
+  public void tmpDirRemovedOnClose() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+    pwm.open(0, 0, 1000000);
+    pwm.close();
+    pwm = null;
+
+    assertThat("Tmp Directory should not exist anymore", Files.exists(tmpDir), equalTo(false));
+  }
+
+  @Test
+  public void channelUnexportedWhenSetupFails() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    try
+    {
+      pwm.open(1, 0, -1);
+      fail("A negative period should not be accepted");
+    } catch (IllegalArgumentException e)
+    {
+      // expected
+    }
+
+    Path channelDirectory = tmpDir.resolve("pwmchip1").resolve("pwm0");
+
+    assertThat("Channel directory removed", Files.exists(channelDirectory), equalTo(false));
+
+    pwm.open(1, 0, 1000000);
+  }
+
+  @Test
+  public void channelUnexportedWhenAttributeMissing() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm()
+    {
+      @Override
+      protected Path export(int chip, int channel) throws IOException
+      {
+        Path channelDirectory = super.export(chip, channel);
+
+        Files.delete(channelDirectory.resolve(ENABLE_FILE));
+        return channelDirectory;
+      }
+    };
+
+    try
+    {
+      pwm.open(1, 0, 1000000);
+      fail("The enable attribute can not be opened");
+    } catch (BeagleIOException e)
+    {
+      // expected
+    }
+
+    Path channelDirectory = tmpDir.resolve("pwmchip1").resolve("pwm0");
+
+    assertThat("Channel directory removed", Files.exists(channelDirectory), equalTo(false));
+  }
+
+  @Test
+  public void channelUnexportedWhenDisableFails() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    HardwarePwmChannel channel = pwm.open(2, 0, 1000000);
+    Path channelDirectory = tmpDir.resolve("pwmchip2").resolve("pwm0");
+
+    channel.enable();
+
+    // An interrupted thread can not write the attribute anymore
+    Thread.currentThread().interrupt();
+
+    try
+    {
+      channel.close();
+      fail("The channel can not be disabled");
+    } catch (BeagleIOException e)
+    {
+      // expected
+    } finally
+    {
+      Thread.interrupted();
+    }
+
+    assertThat("Channel directory removed", Files.exists(channelDirectory), equalTo(false));
+
+    pwm.open(2, 0, 1000000);
+  }
+
+  @Test(expectedExceptions = BeagleIOException.class)
+  public void channelOpenedTwice() throws IOException
+  {
+    pwm = new TemporaryHardwarePwm();
+
+    pwm.open(0, 0, 1000000);
+    pwm.open(0, 0, 1000000);
+  }
+
+  @AfterMethod
+  public void cleanup() throws IOException
+  {
+    try
+    {
+      if (pwm != null)
+      {
+        pwm.close();
+        pwm = null;
+      }
+    } finally
+    {
+      FileUtils.deleteDirectory(tmpDir);
+    }
+  }
+
+  private void hasContent(Path file, String expectedContent, String message) throws IOException
+  {
+    List<String> actualContent = Files.readAllLines(file);
+
+    assertThat(message, actualContent.size(), equalTo(1));
+    assertThat(message, actualContent.get(0), equalTo(expectedContent));
+  }
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.remote;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.CountingBeagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinEvent;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.remote.BeagleServer;
+import io.github.furti.beagleio.gpio.remote.Protocol;
+import io.github.furti.beagleio.gpio.remote.RemoteBeagle;
+
+/**
+ * @author Daniel
+ *
+ */
+public class BeagleServerTest
+{
+  private CountingBeagle target;
+  private BeagleServer server;
+  private List<RemoteBeagle> clients = new ArrayList<>();
+
+  @BeforeMethod
+  public void setup() throws IOException
+  {
+    target = new CountingBeagle(0);
+    server = new BeagleServer(target, new InetSocketAddress("localhost", 0));
+    server.start();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException
+  {
+    for (RemoteBeagle client : clients)
+    {
+      client.release();
+    }
+
+    clients.clear();
+    server.close();
+    target.release();
+  }
+
+  @Test
+  public void outputsExclusive()
+  {
+    RemoteBeagle first = connect();
+    RemoteBeagle second = connect();
+
+    first.initializePin(Pin.P8_03, Direction.OUT);
+
+    try
+    {
+      second.initializePin(Pin.P8_03, Direction.OUT);
+      throw new AssertionError("The Pin belongs to the first client");
+    } catch (BeagleIOException e)
+    {
+      assertTrue(e.getMessage(), e.getMessage().contains("used by another client"));
+    }
+  }
+
+  @Test
+  public void inputsShared()
+  {
+    RemoteBeagle first = connect();
+    RemoteBeagle second = connect();
+
+    first.initializePin(Pin.P8_04, Direction.IN);
+    second.initializePin(Pin.P8_04, Direction.IN);
+
+    first.closePin(Pin.P8_04);
+    assertThat(second.getPinValue(Pin.P8_04), equalTo(PinValue.LOW));
+
+    second.closePin(Pin.P8_04);
+    second.sync();
+
+    // Closed on the target when the last client closed it
+    target.initializePin(Pin.P8_04, Direction.IN);
+  }
+
+  @Test
+  public void pinsClosedOnDisconnect() throws IOException, InterruptedException
+  {
+    try (Socket socket = new Socket("localhost", server.getAddress().getPort()))
+    {
+      ByteBuffer request = ByteBuffer.allocate(Protocol.MAX_FRAME_SIZE);
+      int start = Protocol.beginFrame(request, 1, Protocol.INITIALIZE);
+      Protocol.putPin(request, Pin.P8_03);
+      request.put(Protocol.toArgument(Direction.OUT, false));
+      Protocol.endFrame(request, start);
+
+      OutputStream output = socket.getOutputStream();
+      output.write(request.array(), 0, request.position());
+
+      DataInputStream input = new DataInputStream(socket.getInputStream());
+      byte[] response = new byte[input.readInt()];
+      input.readFully(response);
+
+      assertThat(response[4], equalTo(Protocol.STATUS_OK));
+    }
+
+    long end = System.currentTimeMillis() + 5000;
+
+    while (server.getConnectionCount() > 0 && System.currentTimeMillis() < end)
+    {
+      Thread.sleep(10);
+    }
+
+    assertThat(server.getConnectionCount(), equalTo(0));
+    target.initializePin(Pin.P8_03, Direction.OUT);
+  }
+
+  @Test
+  public void slowClientDoesNotBlock() throws IOException, InterruptedException
+  {
+    try (Socket slow = new Socket())
+    {
+      // The slow client subscribes but never reads its events
+      slow.setReceiveBufferSize(256);
+      slow.connect(server.getAddress());
+
+      ByteBuffer request = ByteBuffer.allocate(Protocol.MAX_FRAME_SIZE);
+      int start = Protocol.beginFrame(request, 1, Protocol.INITIALIZE);
+      Protocol.putPin(request, Pin.P8_04);
+      request.put(Protocol.toArgument(Direction.IN, false));
+      Protocol.endFrame(request, start);
+      start = Protocol.beginFrame(request, 2, Protocol.SUBSCRIBE);
+      request.put((byte) 0);
+      Protocol.putPins(request, PinGroup.fromPins(Pin.P8_04));
+      Protocol.endFrame(request, start);
+      slow.getOutputStream().write(request.array(), 0, request.position());
+
+      RemoteBeagle fast = connect();
+      fast.initializePin(Pin.P8_04, Direction.IN);
+      PollValue value = fast.poll(Pin.P8_04);
+      DefaultPollValue targetValue = (DefaultPollValue) target.poll(Pin.P8_04);
+
+      for (int change = 0; change < 1000; change++)
+      {
+        targetValue.setValue(targetValue.getValue().opposite());
+        fast.sync();
+      }
+
+      long end = System.currentTimeMillis() + 5000;
+
+      while (value.getSequence() < 1000 && System.currentTimeMillis() < end)
+      {
+        Thread.sleep(1);
+      }
+
+      assertThat(value.getSequence(), equalTo(1000L));
+    }
+  }
+
+  @Test
+  public void manyClients() throws InterruptedException
+  {
+    int clientCount = 50;
+    int reads = 20;
+    AtomicInteger errors = new AtomicInteger();
+    Thread[] threads = new Thread[clientCount];
+
+    for (int i = 0; i < clientCount; i++)
+    {
+      RemoteBeagle client = connect();
+
+      threads[i] = new Thread(() -> {
+        try
+        {
+          client.initializePin(Pin.P8_05, Direction.IN);
+
+          for (int read = 0; read < reads; read++)
+          {
+            client.getPinValue(Pin.P8_05);
+          }
+        } catch (BeagleIOException e)
+        {
+          errors.incrementAndGet();
+        }
+      });
+      threads[i].start();
+    }
+
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    assertThat(errors.get(), equalTo(0));
+    assertThat(server.getConnectionCount(), equalTo(clientCount));
+    assertThat(server.getRequestCount(), equalTo((long) clientCount * (reads + 1)));
+  }
+
+  /**
+   * Reading the changes of the subscribed Pin throws, which happens outside of any request.
+   */
+  @Test(timeOut = 10000)
+  public void failingClientDisconnectedAlone() throws IOException, InterruptedException
+  {
+    DefaultPollValue value = new DefaultPollValue(PinValue.LOW);
+    AtomicBoolean failing = new AtomicBoolean();
+    CountingBeagle failingTarget = new CountingBeagle(0)
+    {
+      @Override
+      public PollValue poll(Pin pin)
+      {
+        return new PollValue()
+        {
+          @Override
+          public PinValue getValue()
+          {
+            return value.getValue();
+          }
+
+          @Override
+          public PinEvent read(PinEvent event)
+          {
+            if (failing.get())
+            {
+              throw new IllegalStateException("Poll failed");
+            }
+
+            return value.read(event);
+          }
+
+          @Override
+          public void addChangeListener(Runnable listener)
+          {
+            value.addChangeListener(listener);
+          }
+
+          @Override
+          public void removeChangeListener(Runnable listener)
+          {
+            value.removeChangeListener(listener);
+          }
+        };
+      }
+    };
+    BeagleServer failingServer =
+        new BeagleServer(failingTarget, new InetSocketAddress("localhost", 0));
+    failingServer.start();
+
+    RemoteBeagle subscriber = new RemoteBeagle(failingServer.getAddress(), 5000);
+    RemoteBeagle other = new RemoteBeagle(failingServer.getAddress(), 5000);
+
+    try
+    {
+      subscriber.initializePin(Pin.P8_04, Direction.IN);
+      subscriber.subscribe(PinGroup.fromPins(Pin.P8_04));
+      other.initializePin(Pin.P8_03, Direction.OUT);
+
+      failing.set(true);
+      value.setValue(PinValue.HIGH);
+
+      while (failingServer.getConnectionCount() > 1)
+      {
+        Thread.sleep(1);
+      }
+
+      other.setPinValue(Pin.P8_03, PinValue.HIGH);
+      other.sync();
+
+      assertThat(failingTarget.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+      assertThat(failingServer.getFailure() == null, equalTo(true));
+    } finally
+    {
+      try
+      {
+        subscriber.release();
+      } catch (BeagleIOException e)
+      {
+        // The subscriber was disconnected
+      }
+
+      other.release();
+      failingServer.close();
+      failingTarget.release();
+    }
+  }
+
+  /**
+   * The PollValue of the target neither notifies listeners nor counts its changes.
+   */
+  @Test(timeOut = 10000)
+  public void plainPollValueServed() throws IOException, InterruptedException
+  {
+    AtomicReference<PinValue> value = new AtomicReference<>(PinValue.LOW);
+    CountingBeagle plainTarget = new CountingBeagle(0)
+    {
+      @Override
+      public PollValue poll(Pin pin)
+      {
+        return value::get;
+      }
+    };
+    BeagleServer plainServer = new BeagleServer(plainTarget, new InetSocketAddress("localhost", 0));
+    plainServer.start();
+
+    RemoteBeagle subscriber = new RemoteBeagle(plainServer.getAddress(), 5000);
+
+    try
+    {
+      subscriber.initializePin(Pin.P8_04, Direction.IN);
+      subscriber.subscribe(PinGroup.fromPins(Pin.P8_04));
+
+      PollValue pollValue = subscriber.poll(Pin.P8_04);
+      value.set(PinValue.HIGH);
+
+      while (pollValue.getValue() != PinValue.HIGH)
+      {
+        Thread.sleep(1);
+      }
+
+      assertThat(plainServer.getFailure() == null, equalTo(true));
+    } finally
+    {
+      subscriber.release();
+      plainServer.close();
+      plainTarget.release();
+    }
+  }
+
+  private RemoteBeagle connect()
+  {
+    RemoteBeagle client = new RemoteBeagle(server.getAddress(), 5000);
+
+    clients.add(client);
+
+    return client;
+  }
+}
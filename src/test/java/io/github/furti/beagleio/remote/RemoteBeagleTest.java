@@ -0,0 +1,335 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.remote;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.CountingBeagle;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinGroup;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.DefaultPollValue;
+import io.github.furti.beagleio.gpio.remote.BeagleServer;
+import io.github.furti.beagleio.gpio.remote.Protocol;
+import io.github.furti.beagleio.gpio.remote.RemoteBeagle;
+
+/**
+ * @author Daniel
+ *
+ */
+public class RemoteBeagleTest
+{
+  private CountingBeagle target;
+  private BeagleServer server;
+  private RemoteBeagle beagle;
+
+  @BeforeMethod
+  public void setup() throws IOException
+  {
+    target = new CountingBeagle(0);
+    server = new BeagleServer(target, new InetSocketAddress("localhost", 0));
+    server.start();
+    beagle = new RemoteBeagle(server.getAddress(), 5000);
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException
+  {
+    beagle.release();
+    server.close();
+    target.release();
+  }
+
+  @Test
+  public void setAndGetValue()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT);
+    beagle.initializePin(Pin.P8_04, Direction.IN);
+
+    beagle.setPinValue(Pin.P8_03, PinValue.HIGH);
+    beagle.sync();
+
+    assertThat(target.getPinValue(Pin.P8_03), equalTo(PinValue.HIGH));
+
+    target.setCached(Pin.P8_04, false);
+    assertThat(beagle.getPinValue(Pin.P8_04), equalTo(PinValue.LOW));
+  }
+
+  @Test
+  public void writesPipelined()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT);
+
+    for (int i = 0; i < 1000; i++)
+    {
+      beagle.setPinValue(Pin.P8_03, i % 2 == 0 ? PinValue.HIGH : PinValue.LOW);
+    }
+
+    beagle.sync();
+
+    // Initialize, 1000 writes and the sync
+    assertThat(server.getRequestCount(), equalTo(1002L));
+    assertThat(target.getWrites(Pin.P8_03), equalTo(1000L));
+  }
+
+  @Test
+  public void groupsSentAsOneRequest()
+  {
+    PinGroup pins = PinGroup.fromPins(Pin.P8_03, Pin.P8_04, Pin.P9_22);
+
+    beagle.initializePins(pins, Direction.OUT);
+    beagle.writePins(pins, 0b101);
+
+    assertThat(beagle.readPins(pins), equalTo(0b101L));
+    assertThat(server.getRequestCount(), equalTo(3L));
+  }
+
+  @Test
+  public void remoteErrorThrown()
+  {
+    beagle.initializePin(Pin.P8_03, Direction.OUT);
+
+    // Released behind the back of the client, so the next write fails on the server
+    target.closePin(Pin.P8_03);
+    beagle.setPinValue(Pin.P8_03, PinValue.HIGH);
+
+    try
+    {
+      beagle.sync();
+      throw new AssertionError("The failed write should be reported");
+    } catch (BeagleIOException e)
+    {
+      assertTrue(e.getMessage(), e.getMessage().contains("P8_03"));
+    }
+
+    target.initializePin(Pin.P8_03, Direction.OUT);
+  }
+
+  @Test
+  public void changesPushed() throws InterruptedException
+  {
+    beagle.initializePin(Pin.P8_04, Direction.IN);
+
+    PollValue value = beagle.poll(Pin.P8_04);
+    DefaultPollValue targetValue = (DefaultPollValue) target.poll(Pin.P8_04);
+    long requests = server.getRequestCount();
+
+    for (int change = 0; change < 100; change++)
+    {
+      targetValue.setValue(targetValue.getValue().opposite());
+    }
+
+    await(value, 100);
+
+    assertThat(value.getValue(), equalTo(PinValue.LOW));
+    assertThat(server.getRequestCount(), equalTo(requests));
+  }
+
+  @Test
+  public void groupSubscribedWithOneRequest() throws InterruptedException
+  {
+    PinGroup pins = PinGroup.fromPins(Pin.P8_04, Pin.P8_05);
+
+    beagle.initializePins(pins, Direction.IN);
+    beagle.subscribe(pins);
+
+    assertThat(server.getRequestCount(), equalTo(2L));
+
+    ((DefaultPollValue) target.poll(Pin.P8_05)).setValue(PinValue.HIGH);
+    await(beagle.poll(Pin.P8_05), 1);
+
+    assertThat(beagle.poll(Pin.P8_05).getValue(), equalTo(PinValue.HIGH));
+    assertThat(beagle.poll(Pin.P8_04).getValue(), equalTo(PinValue.LOW));
+    assertThat(server.getRequestCount(), equalTo(2L));
+  }
+
+  /**
+   * The server stops reading while it executes the first write, so the send buffer fills up.
+   */
+  @Test(timeOut = 30000)
+  public void sendTimeoutClosesConnection() throws IOException
+  {
+    CountDownLatch unblock = new CountDownLatch(1);
+    CountingBeagle blockingTarget = new CountingBeagle(0)
+    {
+      @Override
+      public void setPinValue(Pin pin, PinValue value)
+      {
+        try
+        {
+          unblock.await();
+        } catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+
+        super.setPinValue(pin, value);
+      }
+    };
+
+    try (BeagleServer blockedServer =
+        new BeagleServer(blockingTarget, new InetSocketAddress("localhost", 0)))
+    {
+      blockedServer.start();
+
+      RemoteBeagle blockedBeagle = new RemoteBeagle(blockedServer.getAddress(), 200);
+
+      try
+      {
+        blockedBeagle.initializePin(Pin.P8_03, Direction.OUT);
+
+        try
+        {
+          for (int i = 0;; i++)
+          {
+            blockedBeagle.setPinValue(Pin.P8_03, i % 2 == 0 ? PinValue.HIGH : PinValue.LOW);
+          }
+        } catch (BeagleIOException e)
+        {
+          assertTrue(e.getMessage(), e.getMessage().startsWith("Error sending"));
+        }
+
+        assertClosed(blockedBeagle);
+      } finally
+      {
+        unblock.countDown();
+        releaseDropped(blockedBeagle);
+      }
+    } finally
+    {
+      blockingTarget.release();
+    }
+  }
+
+  @Test(dataProvider = "invalidFrameLengths", timeOut = 10000)
+  public void invalidFrameLengthDropsConnection(int length) throws Exception
+  {
+    try (ServerSocketChannel fakeServer = ServerSocketChannel.open())
+    {
+      fakeServer.bind(new InetSocketAddress("localhost", 0));
+
+      Thread responder = new Thread(() -> {
+        try (SocketChannel client = fakeServer.accept())
+        {
+          ByteBuffer buffer = ByteBuffer.allocate(Protocol.MAX_FRAME_SIZE);
+
+          client.read(buffer);
+          buffer.clear();
+          buffer.putInt(length).putInt(1).flip();
+          client.write(buffer);
+
+          // Wait until the client drops the connection
+          buffer.clear();
+          while (client.read(buffer) >= 0)
+          {
+            buffer.clear();
+          }
+        } catch (IOException e)
+        {
+          // The client dropped the connection
+        }
+      });
+      responder.start();
+
+      // The timeout is longer than the test, so only dropping the connection ends the wait
+      RemoteBeagle fakeBeagle =
+          new RemoteBeagle((InetSocketAddress) fakeServer.getLocalAddress(), 20000);
+
+      try
+      {
+        fakeBeagle.initializePin(Pin.P8_03, Direction.OUT);
+        fail("The invalid frame should fail the request");
+      } catch (BeagleIOException e)
+      {
+        Throwable cause = e;
+
+        while (cause.getCause() != null)
+        {
+          cause = cause.getCause();
+        }
+
+        assertThat(cause.getMessage(), equalTo("Invalid frame length " + length));
+      }
+
+      assertClosed(fakeBeagle);
+      releaseDropped(fakeBeagle);
+      responder.join();
+    }
+  }
+
+  @DataProvider
+  public Object[][] invalidFrameLengths()
+  {
+    return new Object[][] {
+        {-8},
+        {Protocol.MAX_FRAME_SIZE * 100}
+    };
+  }
+
+  private void assertClosed(RemoteBeagle remoteBeagle)
+  {
+    try
+    {
+      remoteBeagle.sync();
+      fail("The connection should be closed");
+    } catch (BeagleIOException e)
+    {
+      assertTrue(e.getMessage(), e.getMessage().endsWith("is closed"));
+    }
+  }
+
+  /**
+   * Closing the Pins fails on a dropped connection.
+   */
+  private void releaseDropped(RemoteBeagle remoteBeagle)
+  {
+    try
+    {
+      remoteBeagle.release();
+    } catch (BeagleIOException e)
+    {
+      // expected
+    }
+  }
+
+  private void await(PollValue value, long sequence) throws InterruptedException
+  {
+    long end = System.currentTimeMillis() + 5000;
+
+    while (value.getSequence() < sequence && System.currentTimeMillis() < end)
+    {
+      Thread.sleep(1);
+    }
+
+    assertThat(value.getSequence(), equalTo(sequence));
+  }
+}
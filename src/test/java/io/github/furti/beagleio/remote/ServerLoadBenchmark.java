@@ -0,0 +1,185 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.gpio.remote.BeagleServer;
+import io.github.furti.beagleio.gpio.remote.RemoteBeagle;
+import io.github.furti.beagleio.gpio.temporary.TemporaryFilesystemBeagle;
+
+/**
+ * Measures the throughput and the latency of a {@link BeagleServer} serving a
+ * {@link TemporaryFilesystemBeagle} to many clients on localhost. The first clients own an output
+ * each and write it, the others share the remaining Pins as inputs and read them. Every operation
+ * measured is a round trip. Run it with:
+ * 
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.furti.beagleio.remote.ServerLoadBenchmark -Dexec.args=200
+ * </pre>
+ * 
+ * @author Daniel
+ *
+ */
+public class ServerLoadBenchmark
+{
+  private static final int DEFAULT_CLIENTS = 200;
+  private static final int OUTPUTS = 32;
+  private static final int MAX_SAMPLES = 1 << 16;
+  private static final long WARMUP_MILLIS = 1000;
+  private static final long MEASURE_MILLIS = 5000;
+
+  public static void main(String[] args) throws IOException, InterruptedException
+  {
+    int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+    Pin[] pins = Pin.values();
+    TemporaryFilesystemBeagle target = new TemporaryFilesystemBeagle();
+    BeagleServer server = new BeagleServer(target, new InetSocketAddress("localhost", 0));
+    RemoteBeagle[] clients = new RemoteBeagle[clientCount];
+    long[][] samples = new long[clientCount][MAX_SAMPLES];
+    int[] sampleCounts = new int[clientCount];
+    long[] operations = new long[clientCount];
+    Thread[] threads = new Thread[clientCount];
+    CountDownLatch start = new CountDownLatch(1);
+    long[] phase = {Long.MAX_VALUE, Long.MAX_VALUE};
+
+    server.start();
+
+    for (int i = 0; i < clientCount; i++)
+    {
+      int client = i;
+      boolean writer = i < OUTPUTS;
+      Pin pin = writer ? pins[i] : pins[OUTPUTS + i % (pins.length - OUTPUTS)];
+
+      clients[i] = new RemoteBeagle(server.getAddress(), 10000);
+      clients[i].initializePin(pin, writer ? Direction.OUT : Direction.IN);
+
+      threads[i] = new Thread(() -> {
+        RemoteBeagle beagle = clients[client];
+
+        try
+        {
+          start.await();
+        } catch (InterruptedException e)
+        {
+          return;
+        }
+
+        long count = 0;
+
+        while (true)
+        {
+          long begin = System.nanoTime();
+
+          if (begin >= phase[1])
+          {
+            break;
+          }
+
+          if (writer)
+          {
+            beagle.setPinValue(pin, (count & 1) == 0 ? PinValue.HIGH : PinValue.LOW);
+            beagle.sync();
+          } else
+          {
+            beagle.getPinValue(pin);
+          }
+
+          long end = System.nanoTime();
+
+          if (begin >= phase[0])
+          {
+            count++;
+
+            if (sampleCounts[client] < MAX_SAMPLES)
+            {
+              samples[client][sampleCounts[client]++] = end - begin;
+            }
+          }
+        }
+
+        operations[client] = count;
+      });
+
+      threads[i].start();
+    }
+
+    phase[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+    phase[1] = phase[0] + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+    start.countDown();
+
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    for (RemoteBeagle client : clients)
+    {
+      client.release();
+    }
+
+    server.close();
+    target.release();
+
+    print(clientCount, operations, samples, sampleCounts);
+  }
+
+  private static void print(int clientCount, long[] operations, long[][] samples,
+      int[] sampleCounts)
+  {
+    long total = 0;
+    int sampleCount = 0;
+
+    for (int i = 0; i < clientCount; i++)
+    {
+      total += operations[i];
+      sampleCount += sampleCounts[i];
+    }
+
+    long[] latencies = new long[sampleCount];
+    int index = 0;
+
+    for (int i = 0; i < clientCount; i++)
+    {
+      System.arraycopy(samples[i], 0, latencies, index, sampleCounts[i]);
+      index += sampleCounts[i];
+    }
+
+    Arrays.sort(latencies);
+
+    System.out.println("clients  round trips/s  p50 (us)  p99 (us)  max (us)");
+    System.out.printf("%7d  %13.0f  %8.1f  %8.1f  %8.1f%n", clientCount,
+        total * 1000.0 / MEASURE_MILLIS, percentile(latencies, 0.5) / 1000.0,
+        percentile(latencies, 0.99) / 1000.0,
+        latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000.0);
+  }
+
+  private static long percentile(long[] sorted, double percentile)
+  {
+    if (sorted.length == 0)
+    {
+      return 0;
+    }
+
+    return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2015 Daniel Furtlehner
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.github.furti.beagleio.stimulus;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.github.furti.beagleio.Beagle;
+import io.github.furti.beagleio.BeagleApplication;
+import io.github.furti.beagleio.BeagleIOException;
+import io.github.furti.beagleio.Direction;
+import io.github.furti.beagleio.LoopMode;
+import io.github.furti.beagleio.Pin;
+import io.github.furti.beagleio.PinEvent;
+import io.github.furti.beagleio.PinEventCursor;
+import io.github.furti.beagleio.PinValue;
+import io.github.furti.beagleio.PollValue;
+import io.github.furti.beagleio.gpio.memory.InMemoryBeagle;
+import io.github.furti.beagleio.gpio.stimulus.StimulusEngine;
+import io.github.furti.beagleio.gpio.stimulus.Waveform;
+import io.github.furti.beagleio.gpio.stimulus.Waveforms;
+
+/**
+ * @author Daniel
+ *
+ */
+public class StimulusEngineTest
+{
+  private InMemoryBeagle beagle;
+  private StimulusEngine engine;
+
+  @BeforeMethod
+  public void setup()
+  {
+    beagle = new InMemoryBeagle();
+    engine = new StimulusEngine(beagle);
+  }
+
+  @AfterMethod
+  public void cleanup()
+  {
+    engine.close();
+    beagle.release();
+  }
+
+  @Test(timeOut = 10000)
+  public void squareWaveTimestamped() throws InterruptedException
+  {
+    long periodNanos = TimeUnit.MICROSECONDS.toNanos(10);
+
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+
+    PollValue value = beagle.poll(Pin.P8_03);
+    PinEventCursor cursor = value.events();
+    StimulusEngine.Channel channel =
+        engine.add(Pin.P8_03, Waveforms.squareWave(periodNanos, 1000));
+
+    engine.start();
+    assertTrue(engine.await(5, TimeUnit.SECONDS));
+
+    assertThat(channel.getDrivenEdges(), equalTo(1000L));
+    assertThat(value.getSequence(), equalTo(1000L));
+
+    // The timestamps are the scheduled times, no matter how late the edges were driven
+    PinEvent event = new PinEvent();
+    long edge = 0;
+
+    while (cursor.next(event))
+    {
+      edge++;
+      assertThat(event.getTimestamp() - engine.getStartTime(), equalTo(edge * periodNanos / 2));
+      assertThat(event.getValue(), equalTo(edge % 2 == 1 ? PinValue.HIGH : PinValue.LOW));
+    }
+
+    assertThat(edge, equalTo(1000L));
+  }
+
+  @Test
+  public void waveformsGenerated()
+  {
+    assertThat(count(Waveforms.bounce(new Random(1), 3, 2, 1000, 100000)), equalTo(3L * 10));
+    assertThat(count(Waveforms.trace(PinValue.HIGH, 0, 5, 5, 10)), equalTo(4L));
+
+    long bursts = count(Waveforms.randomBursts(new Random(1), 10, 8, 1000, 100000));
+
+    assertTrue("Each burst has an even number of edges", bursts % 2 == 0);
+    assertTrue(bursts >= 20 && bursts <= 80);
+  }
+
+  @Test(timeOut = 10000)
+  public void deliveriesCounted() throws InterruptedException
+  {
+    EdgeCountingApplication application = new EdgeCountingApplication();
+
+    Thread thread = new Thread(application::launch);
+    thread.start();
+    application.ready.await();
+
+    engine.start();
+    assertTrue(engine.await(5, TimeUnit.SECONDS));
+
+    StimulusEngine.Channel channel = application.channel;
+
+    assertThat(channel.getDrivenEdges(), equalTo(2L * (2 + 4 * 3)));
+
+    // The listener replays every change it missed, so nothing is lost on the way
+    while (channel.getDroppedEdges() > 0)
+    {
+      Thread.sleep(10);
+    }
+
+    application.stop();
+    thread.join();
+
+    assertThat(channel.getDeliveredEdges(), equalTo(channel.getDrivenEdges()));
+  }
+
+  @Test(timeOut = 10000, expectedExceptions = BeagleIOException.class)
+  public void outputsNotDriven() throws InterruptedException
+  {
+    beagle.initializePin(Pin.P8_03, Direction.IN);
+    beagle.initializePin(Pin.P8_04, Direction.OUT);
+
+    engine.add(Pin.P8_03, Waveforms.squareWave(1000, 10));
+    engine.add(Pin.P8_04, Waveforms.squareWave(1000, 10));
+    engine.start();
+  }
+
+  private static long count(Waveform waveform)
+  {
+    long count = 0;
+    long last = 0;
+    long edge;
+
+    while ((edge = waveform.nextEdge()) != Waveform.END)
+    {
+      assertTrue("Edges must not go back in time", edge >= last);
+      last = edge;
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Counts the edges of a bouncing button in an event driven application.
+   */
+  private class EdgeCountingApplication extends BeagleApplication
+  {
+    private CountDownLatch ready = new CountDownLatch(1);
+    private volatile boolean stopped;
+    private StimulusEngine.Channel channel;
+
+    public void launch()
+    {
+      start(new String[0]);
+    }
+
+    public void stop()
+    {
+      stopped = true;
+      wakeUp();
+    }
+
+    @Override
+    protected Beagle setupBeagle()
+    {
+      return beagle;
+    }
+
+    @Override
+    protected LoopMode getLoopMode()
+    {
+      return LoopMode.EVENT_DRIVEN;
+    }
+
+    @Override
+    protected void initialize(Beagle beagle)
+    {
+      beagle.initializePin(Pin.P8_03, Direction.IN);
+
+      channel = engine.add(Pin.P8_03, Waveforms.bounce(new Random(1), 2, 3,
+          TimeUnit.MICROSECONDS.toNanos(20), TimeUnit.MICROSECONDS.toNanos(200)));
+      listen(Pin.P8_03).onChange(channel.countDeliveries());
+    }
+
+    @Override
+    protected boolean run(Beagle beagle)
+    {
+      ready.countDown();
+      return !stopped;
+    }
+
+    @Override
+    protected void cleanup(Beagle beagle)
+    {
+    }
+  }
+}
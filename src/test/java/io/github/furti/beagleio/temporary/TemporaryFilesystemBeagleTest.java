@@ -25,6 +25,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
 
+import org.testng.SkipException;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -161,6 +162,42 @@ public class TemporaryFilesystemBeagleTest
     }
   }
 
+  @Test
+  public void outputValueCached() throws IOException
+  {
+    beagle = new TemporaryFilesystemBeagle();
+    Pin pin = Pin.P8_05;
+    Path valueFile = tmpDir.resolve(pin.toString()).resolve("value");
+
+    beagle.initializePin(pin, Direction.OUT);
+
+    try
+    {
+      beagle.setPinValue(pin, PinValue.HIGH);
+
+      try (BufferedWriter writer = Files.newBufferedWriter(valueFile, StandardOpenOption.WRITE))
+      {
+        writer.write("0");
+      }
+
+      // The value did not change from our point of view, so nothing is written or read
+      beagle.setPinValue(pin, PinValue.HIGH);
+      hasContent(valueFile, "0", "Redundant write should be skipped");
+      assertThat(beagle.getPinValue(pin), equalTo(PinValue.HIGH));
+
+      beagle.refresh(pin);
+      assertThat(beagle.getPinValue(pin), equalTo(PinValue.LOW));
+
+      beagle.setCached(pin, false);
+      beagle.setPinValue(pin, PinValue.LOW);
+      beagle.setPinValue(pin, PinValue.LOW);
+      hasContent(valueFile, "0", "Value should be low");
+    } finally
+    {
+      beagle.closePin(pin);
+    }
+  }
+
   @Test
   public void poll() throws IOException, InterruptedException
   {
@@ -192,6 +229,39 @@ public class TemporaryFilesystemBeagleTest
     assertThat(value.getValue(), equalTo(PinValue.LOW));
   }
 
+  @Test
+  public void pollWithoutInterrupts() throws IOException, InterruptedException
+  {
+    Path full = Paths.get("/dev/full");
+
+    if (!Files.exists(full))
+    {
+      throw new SkipException("/dev/full is needed to reject writes to the edge file");
+    }
+
+    beagle = new TemporaryFilesystemBeagle();
+    Pin pin = Pin.P8_07;
+    Path pinDirectory = Files.createDirectory(tmpDir.resolve(pin.toString()));
+    Path valueFile = pinDirectory.resolve("value");
+
+    // Every write to the edge file fails, like on a Pin that can not generate interrupts
+    Files.createSymbolicLink(pinDirectory.resolve("edge"), full);
+
+    beagle.initializePin(pin, Direction.IN);
+
+    PollValue value = beagle.poll(pin);
+    assertThat(value.getValue(), equalTo(PinValue.LOW));
+
+    try (BufferedWriter writer = Files.newBufferedWriter(valueFile, StandardOpenOption.WRITE))
+    {
+      writer.write("1");
+    }
+
+    // The Pin is polled instead
+    Thread.sleep(1000);
+    assertThat(value.getValue(), equalTo(PinValue.HIGH));
+  }
+
   @DataProvider
   public Object[][] pinDirectoriesCreatedData()
   {